@@ -1,9 +1,17 @@
 package com.archcraft;
 
 import com.archcraft.commands.*;
+import com.archcraft.io.ModelFormat;
 import com.archcraft.io.ModelManager;
+import com.archcraft.io.acm.AcmExporter;
+import com.archcraft.io.acm.AcmImporter;
+import com.archcraft.io.gltf.GlbExporter;
+import com.archcraft.io.gltf.GltfImporter;
+import com.archcraft.io.ifc.IfcImporter;
 import com.archcraft.io.obj.ObjExporter;
 import com.archcraft.io.obj.ObjImporter;
+import com.archcraft.io.stl.StlExporter;
+import com.archcraft.io.stl.StlImporter;
 import com.archcraft.listeners.PlayerInteractListener;
 import com.archcraft.utils.ConfigManager;
 import com.archcraft.utils.DatabaseManager;
@@ -59,13 +67,26 @@ public class Main extends JavaPlugin {
         
         // Register model importers and exporters
         modelManager.registerImporter(new ObjImporter(logger));
-        modelManager.registerExporter(new ObjExporter());
+        modelManager.registerImporter(new AcmImporter());
+        modelManager.registerImporter(new StlImporter());
+        modelManager.registerImporter(new GltfImporter(ModelFormat.GLB));
+        modelManager.registerImporter(new GltfImporter(ModelFormat.GLTF));
+        modelManager.registerImporter(new IfcImporter());
+        modelManager.registerExporter(ObjExporter::new);
+        modelManager.registerExporter(StlExporter::new);
+        modelManager.registerExporter(GlbExporter::new);
+        modelManager.registerExporter(AcmExporter::new);
         
         logger.info("Registered model import/export handlers");
     }
     
     @Override
     public void onDisable() {
+        // Stop background model jobs
+        if (modelManager != null) {
+            modelManager.shutdown();
+        }
+        
         // Save any pending data
         if (databaseManager != null) {
             databaseManager.shutdown();
@@ -1,9 +1,15 @@
 package com.archcraft.commands;
 
 import com.archcraft.Main;
+import com.archcraft.io.ExportOptions;
 import com.archcraft.io.ModelFormat;
+import com.archcraft.io.ModelInfo;
 import com.archcraft.io.ModelManager;
+import com.archcraft.io.job.JobManager;
+import com.archcraft.io.job.ModelJob;
+import com.archcraft.io.voxel.Transform;
 import com.archcraft.models.Project;
+import com.archcraft.tools.PreviewTool;
 
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
@@ -17,7 +23,9 @@ import org.bukkit.entity.Player;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -26,6 +34,8 @@ import java.util.stream.Collectors;
  */
 public class ProjectCommand implements CommandExecutor, TabCompleter {
     
+    private static final int MODELS_PER_PAGE = 10;
+    
     private final Main plugin;
     private final ModelManager modelManager;
     
@@ -76,6 +86,21 @@ public class ProjectCommand implements CommandExecutor, TabCompleter {
             case "formats":
                 handleFormats(player);
                 break;
+            case "models":
+                handleModels(player, args);
+                break;
+            case "jobs":
+                handleJobs(player);
+                break;
+            case "cancel":
+                handleCancel(player, args);
+                break;
+            case "preview":
+                handlePreview(player, args);
+                break;
+            case "undo":
+                modelManager.undoLastImport(player);
+                break;
             default:
                 player.sendMessage(ChatColor.RED + "Unknown sub-command: " + subCommand);
                 sendHelpMessage(player);
@@ -113,33 +138,46 @@ public class ProjectCommand implements CommandExecutor, TabCompleter {
      * Handle the 'import' sub-command
      */
     private void handleImport(Player player, String[] args) {
-        if (args.length < 2) {
-            player.sendMessage(ChatColor.RED + "Usage: /project import <filename> [scale] [rotationY]");
+        List<String> params = new ArrayList<>();
+        Map<String, String> flags = new HashMap<>();
+        parseArguments(args, params, flags);
+        
+        if (params.isEmpty()) {
+            player.sendMessage(ChatColor.RED + "Usage: /project import <filename> [scale] [rotationY] [--preview] [--confirm]");
+            player.sendMessage(ChatColor.RED + "Options: --rotate-x=<deg> --rotate-z=<deg> --scale=<x,y,z> "
+                    + "--mirror=<x|y|z> --offset=<x,y,z> --priority=<low|normal|high>");
             return;
         }
         
-        String fileName = args[1];
+        String fileName = params.get(0);
         double scale = 1.0;
         float rotationY = 0.0f;
+        boolean preview = flags.containsKey("preview");
         
-        if (args.length >= 3) {
+        if (params.size() >= 2) {
             try {
-                scale = Double.parseDouble(args[2]);
+                scale = Double.parseDouble(params.get(1));
             } catch (NumberFormatException e) {
                 player.sendMessage(ChatColor.RED + "Scale must be a number");
                 return;
             }
         }
         
-        if (args.length >= 4) {
+        if (params.size() >= 3) {
             try {
-                rotationY = Float.parseFloat(args[3]);
+                rotationY = Float.parseFloat(params.get(2));
             } catch (NumberFormatException e) {
                 player.sendMessage(ChatColor.RED + "Rotation must be a number");
                 return;
             }
         }
         
+        Transform transform = parseTransform(player, flags, scale, rotationY);
+        ModelJob.Priority priority = parsePriority(player, flags);
+        if (transform == null || priority == null) {
+            return;
+        }
+        
         File modelsDir = modelManager.getModelsDirectory();
         File modelFile = new File(modelsDir, fileName);
         
@@ -148,39 +186,270 @@ public class ProjectCommand implements CommandExecutor, TabCompleter {
             return;
         }
         
+        ModelInfo info = modelManager.getCatalog().get(fileName);
+        if (info != null && info.getGeometry() != null) {
+            player.sendMessage(ChatColor.GRAY + "Model: " + describeGeometry(info.getGeometry()));
+        }
+        
         World world = player.getWorld();
         Location origin = player.getLocation();
         
-        player.sendMessage(ChatColor.YELLOW + "Starting import at your location...");
-        boolean success = modelManager.importModel(modelFile, world, origin, scale, rotationY, player);
+        // Runs in the background; progress is reported by the job
+        player.sendMessage(ChatColor.YELLOW + (preview ? "Preparing preview" : "Starting import") + " at your location...");
+        modelManager.importModel(modelFile, world, origin, transform, preview, flags.containsKey("confirm"), priority,
+                player);
+    }
+    
+    /**
+     * Read the "--priority" option of a job
+     * High priority lets a job skip ahead of other players' jobs, so it needs a permission
+     * @param player The player starting the job, told about invalid values
+     * @param flags The "--flag=value" options
+     * @return The priority, or null if the option was invalid
+     */
+    private ModelJob.Priority parsePriority(Player player, Map<String, String> flags) {
+        if (!flags.containsKey("priority")) {
+            return ModelJob.Priority.NORMAL;
+        }
+        
+        ModelJob.Priority priority;
+        try {
+            priority = ModelJob.Priority.valueOf(flags.get("priority").toUpperCase());
+        } catch (IllegalArgumentException e) {
+            player.sendMessage(ChatColor.RED + "Priority must be low, normal or high");
+            return null;
+        }
+        if (priority == ModelJob.Priority.HIGH && !player.hasPermission("archtools.project.priority")) {
+            player.sendMessage(ChatColor.RED + "You don't have permission to start high priority jobs");
+            return null;
+        }
+        return priority;
+    }
+    
+    /**
+     * Split "--flag" and "--flag=value" options from positional arguments
+     * @param args The command arguments, starting with the sub-command
+     * @param params Receives the positional arguments after the sub-command
+     * @param flags Receives the options by lower case name; flags without a value map to ""
+     */
+    private void parseArguments(String[] args, List<String> params, Map<String, String> flags) {
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].startsWith("--")) {
+                String flag = args[i].substring(2);
+                int equals = flag.indexOf('=');
+                if (equals < 0) {
+                    flags.put(flag.toLowerCase(), "");
+                } else {
+                    flags.put(flag.substring(0, equals).toLowerCase(), flag.substring(equals + 1));
+                }
+            } else {
+                params.add(args[i]);
+            }
+        }
+    }
+    
+    /**
+     * Build the import transform from the import arguments
+     * Applied in order: scale and mirror, X rotation, Z rotation, Y rotation, then offset
+     * @param player The importing player, told about invalid options
+     * @param flags The "--flag=value" options
+     * @param scale Uniform scale factor
+     * @param rotationY Y rotation in degrees
+     * @return The transform, or null if an option was invalid
+     */
+    private Transform parseTransform(Player player, Map<String, String> flags, double scale, float rotationY) {
+        try {
+            double[] axisScale = parseTriple(flags.getOrDefault("scale", "1,1,1"));
+            String mirror = flags.getOrDefault("mirror", "").toLowerCase();
+            double[] offset = parseTriple(flags.getOrDefault("offset", "0,0,0"));
+            
+            return Transform.scale(
+                    scale * axisScale[0] * (mirror.contains("x") ? -1 : 1),
+                    scale * axisScale[1] * (mirror.contains("y") ? -1 : 1),
+                    scale * axisScale[2] * (mirror.contains("z") ? -1 : 1))
+                    .then(Transform.rotationX(Double.parseDouble(flags.getOrDefault("rotate-x", "0"))))
+                    .then(Transform.rotationZ(Double.parseDouble(flags.getOrDefault("rotate-z", "0"))))
+                    .then(Transform.rotationY(rotationY))
+                    .then(Transform.translation(offset[0], offset[1], offset[2]));
+        } catch (NumberFormatException e) {
+            player.sendMessage(ChatColor.RED + "Transform options must be numbers, e.g. --scale=1,2,1 --rotate-x=90");
+            return null;
+        }
+    }
+    
+    /**
+     * Parse an "x,y,z" triple
+     */
+    private double[] parseTriple(String value) {
+        String[] parts = value.split(",");
+        if (parts.length != 3) {
+            throw new NumberFormatException("Expected x,y,z: " + value);
+        }
+        return new double[]{
+                Double.parseDouble(parts[0]),
+                Double.parseDouble(parts[1]),
+                Double.parseDouble(parts[2])
+        };
+    }
+    
+    /**
+     * Handle the 'preview' sub-command
+     */
+    private void handlePreview(Player player, String[] args) {
+        if (args.length < 2) {
+            player.sendMessage(ChatColor.RED + "Usage: /project preview <move|rotate|confirm|discard>");
+            return;
+        }
+        
+        if (!PreviewTool.isRegistered(player)) {
+            player.sendMessage(ChatColor.RED + "You have no active preview. Use /project import <filename> --preview");
+            return;
+        }
+        
+        String action = args[1].toLowerCase();
         
-        if (!success) {
-            player.sendMessage(ChatColor.RED + "Import failed. Check console for details.");
+        switch (action) {
+            case "move":
+                if (args.length < 5) {
+                    player.sendMessage(ChatColor.RED + "Usage: /project preview move <dx> <dy> <dz>");
+                    return;
+                }
+                try {
+                    PreviewTool.move(player, Integer.parseInt(args[2]), Integer.parseInt(args[3]), Integer.parseInt(args[4]));
+                } catch (NumberFormatException e) {
+                    player.sendMessage(ChatColor.RED + "Offsets must be whole numbers");
+                }
+                break;
+            case "rotate":
+                int degrees = 90;
+                if (args.length >= 3) {
+                    try {
+                        degrees = Integer.parseInt(args[2]);
+                    } catch (NumberFormatException e) {
+                        player.sendMessage(ChatColor.RED + "Rotation must be a number");
+                        return;
+                    }
+                }
+                if (degrees % 90 != 0) {
+                    player.sendMessage(ChatColor.RED + "Preview rotation must be a multiple of 90 degrees");
+                    return;
+                }
+                PreviewTool.rotate(player, degrees);
+                break;
+            case "confirm":
+                PreviewTool.confirm(player);
+                break;
+            case "discard":
+                PreviewTool.discard(player);
+                break;
+            default:
+                player.sendMessage(ChatColor.RED + "Unknown preview action: " + action);
+                player.sendMessage(ChatColor.RED + "Usage: /project preview <move|rotate|confirm|discard>");
+                break;
         }
     }
     
+    /**
+     * Handle the 'jobs' sub-command
+     */
+    private void handleJobs(Player player) {
+        JobManager jobManager = modelManager.getJobManager();
+        List<ModelJob> jobs = player.isOp() ? jobManager.getAllJobs() : jobManager.getJobs(player.getUniqueId());
+        
+        player.sendMessage(ChatColor.YELLOW + "Jobs:");
+        if (jobs.isEmpty()) {
+            player.sendMessage(ChatColor.GRAY + "  No running or queued jobs");
+            return;
+        }
+        
+        long now = System.currentTimeMillis();
+        for (ModelJob job : jobs) {
+            long seconds = (now - job.getCreatedTime()) / 1000;
+            int position = jobManager.getQueuePosition(job);
+            String status = position > 0 ? "queued, position " + position
+                    : job.getState().name().toLowerCase()
+                            + (job.getProgress().isEmpty() ? "" : " (" + job.getProgress() + ")");
+            long memory = job.getEstimatedMemory() / (1024 * 1024);
+            player.sendMessage(ChatColor.GRAY + "  #" + job.getId() + " " + ChatColor.WHITE + job.getDescription()
+                    + ChatColor.GRAY + " - " + status + ", " + seconds + "s"
+                    + (memory > 0 ? ", ~" + memory + " MB" : "")
+                    + (job.getPriority() != ModelJob.Priority.NORMAL
+                            ? ", " + job.getPriority().name().toLowerCase() + " priority" : ""));
+        }
+    }
+    
+    /**
+     * Handle the 'cancel' sub-command
+     */
+    private void handleCancel(Player player, String[] args) {
+        if (args.length < 2) {
+            player.sendMessage(ChatColor.RED + "Usage: /project cancel <job id>");
+            return;
+        }
+        
+        int jobId;
+        try {
+            jobId = Integer.parseInt(args[1].startsWith("#") ? args[1].substring(1) : args[1]);
+        } catch (NumberFormatException e) {
+            player.sendMessage(ChatColor.RED + "Job id must be a number");
+            return;
+        }
+        
+        ModelJob job = modelManager.getJobManager().getJob(jobId);
+        if (job == null || (!job.getOwner().equals(player.getUniqueId()) && !player.isOp())) {
+            player.sendMessage(ChatColor.RED + "No running or queued job #" + jobId);
+            return;
+        }
+        
+        job.cancel();
+        player.sendMessage(ChatColor.YELLOW + "Cancelling job #" + jobId + "...");
+    }
+    
     /**
      * Handle the 'export' sub-command
      */
     private void handleExport(Player player, String[] args) {
-        if (args.length < 2) {
-            player.sendMessage(ChatColor.RED + "Usage: /project export <filename> [scale]");
+        List<String> params = new ArrayList<>();
+        Map<String, String> flags = new HashMap<>();
+        parseArguments(args, params, flags);
+        
+        if (params.isEmpty()) {
+            player.sendMessage(ChatColor.RED + "Usage: /project export <filename> [scale] [--lod=<levels>] [--gzip] "
+                    + "[--priority=<low|normal|high>]");
             player.sendMessage(ChatColor.RED + "You must select a region first with /project select");
             return;
         }
         
-        String fileName = args[1];
+        String fileName = params.get(0);
         double scale = 1.0;
+        int lodLevels = 0;
         
-        if (args.length >= 3) {
+        if (params.size() >= 2) {
             try {
-                scale = Double.parseDouble(args[2]);
+                scale = Double.parseDouble(params.get(1));
             } catch (NumberFormatException e) {
                 player.sendMessage(ChatColor.RED + "Scale must be a number");
                 return;
             }
         }
         
+        if (flags.containsKey("lod")) {
+            try {
+                lodLevels = Integer.parseInt(flags.get("lod"));
+            } catch (NumberFormatException e) {
+                lodLevels = -1;
+            }
+            if (lodLevels < 0 || lodLevels > ExportOptions.MAX_LOD_LEVELS) {
+                player.sendMessage(ChatColor.RED + "Detail levels must be a number from 0 to " + ExportOptions.MAX_LOD_LEVELS);
+                return;
+            }
+        }
+        ExportOptions options = new ExportOptions(scale, lodLevels, flags.containsKey("gzip"));
+        ModelJob.Priority priority = parsePriority(player, flags);
+        if (priority == null) {
+            return;
+        }
+        
         // TODO: Get selected region from player metadata
         player.sendMessage(ChatColor.RED + "You need to select a region first with /project select");
         
@@ -194,7 +463,7 @@ public class ProjectCommand implements CommandExecutor, TabCompleter {
             return;
         }
         
-        modelManager.exportModel(min, max, fileName, scale, player);
+        modelManager.exportModel(min, max, fileName, options, priority, player);
         */
     }
     
@@ -238,6 +507,75 @@ public class ProjectCommand implements CommandExecutor, TabCompleter {
         player.sendMessage(ChatColor.GRAY + "No active project (feature under development)");
     }
     
+    /**
+     * Handle the 'models' sub-command
+     */
+    private void handleModels(Player player, String[] args) {
+        List<ModelInfo> models = modelManager.getCatalog().getModels();
+        int pages = Math.max(1, (models.size() + MODELS_PER_PAGE - 1) / MODELS_PER_PAGE);
+        int page = 1;
+        if (args.length >= 2) {
+            try {
+                page = Integer.parseInt(args[1]);
+            } catch (NumberFormatException e) {
+                page = 0;
+            }
+            if (page < 1 || page > pages) {
+                player.sendMessage(ChatColor.RED + "Page must be a number from 1 to " + pages);
+                return;
+            }
+        }
+        
+        player.sendMessage(ChatColor.YELLOW + "Models (page " + page + "/" + pages + "):");
+        if (models.isEmpty()) {
+            player.sendMessage(ChatColor.GRAY + "  No models in " + modelManager.getModelsDirectory().getName() + "/");
+            return;
+        }
+        
+        int end = Math.min(models.size(), page * MODELS_PER_PAGE);
+        for (ModelInfo info : models.subList((page - 1) * MODELS_PER_PAGE, end)) {
+            String details;
+            if (!info.isScanned()) {
+                details = "reading...";
+            } else if (info.getGeometry() != null) {
+                details = describeGeometry(info.getGeometry());
+            } else {
+                details = "no details for this format";
+            }
+            player.sendMessage(ChatColor.GRAY + "  " + ChatColor.WHITE + info.getName() + ChatColor.GRAY + " - "
+                    + info.getFormat().name() + ", " + formatSize(info.getSize()) + ", " + details);
+        }
+    }
+    
+    /**
+     * Describe a model's counts and size for chat
+     */
+    private static String describeGeometry(ModelInfo.Geometry geometry) {
+        StringBuilder text = new StringBuilder();
+        if (geometry.getVertexCount() >= 0) {
+            text.append(String.format("%,d vertices, ", geometry.getVertexCount()));
+        }
+        if (geometry.getFaceCount() >= 0) {
+            text.append(String.format("%,d faces, ", geometry.getFaceCount()));
+        }
+        double[] size = geometry.getSize();
+        text.append(String.format("%.1f x %.1f x %.1f", size[0], size[1], size[2]));
+        return text.toString();
+    }
+    
+    /**
+     * Format a file size for chat
+     */
+    private static String formatSize(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format("%.1f KB", bytes / 1024.0);
+        }
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+    
     /**
      * Handle the 'formats' sub-command
      */
@@ -270,11 +608,17 @@ public class ProjectCommand implements CommandExecutor, TabCompleter {
         player.sendMessage(ChatColor.YELLOW + "=== ArchCraft Project Commands ===");
         player.sendMessage(ChatColor.GRAY + "/project create <name> " + ChatColor.WHITE + "- Create a new project");
         player.sendMessage(ChatColor.GRAY + "/project list " + ChatColor.WHITE + "- List all projects");
-        player.sendMessage(ChatColor.GRAY + "/project import <filename> [scale] [rotationY] " + ChatColor.WHITE + "- Import a 3D model");
-        player.sendMessage(ChatColor.GRAY + "/project export <filename> [scale] " + ChatColor.WHITE + "- Export selection as 3D model");
+        player.sendMessage(ChatColor.GRAY + "/project import <filename> [scale] [rotationY] [--preview] [--confirm] " + ChatColor.WHITE + "- Import a 3D model");
+        player.sendMessage(ChatColor.GRAY + "  options: --rotate-x=<deg> --rotate-z=<deg> --scale=<x,y,z> --mirror=<x|y|z> --offset=<x,y,z>");
+        player.sendMessage(ChatColor.GRAY + "/project preview <move|rotate|confirm|discard> " + ChatColor.WHITE + "- Adjust an import preview");
+        player.sendMessage(ChatColor.GRAY + "/project export <filename> [scale] [--lod=<levels>] [--gzip] [--priority=<level>] " + ChatColor.WHITE + "- Export selection as 3D model");
         player.sendMessage(ChatColor.GRAY + "/project select <pos1|pos2|clear> " + ChatColor.WHITE + "- Select a region");
         player.sendMessage(ChatColor.GRAY + "/project info " + ChatColor.WHITE + "- Show info about current project");
         player.sendMessage(ChatColor.GRAY + "/project formats " + ChatColor.WHITE + "- List supported file formats");
+        player.sendMessage(ChatColor.GRAY + "/project models [page] " + ChatColor.WHITE + "- List model files with their size and bounds");
+        player.sendMessage(ChatColor.GRAY + "/project jobs " + ChatColor.WHITE + "- List running and queued jobs");
+        player.sendMessage(ChatColor.GRAY + "/project cancel <job id> " + ChatColor.WHITE + "- Cancel a running or queued job");
+        player.sendMessage(ChatColor.GRAY + "/project undo " + ChatColor.WHITE + "- Undo your last import");
     }
     
     @Override
@@ -283,7 +627,8 @@ public class ProjectCommand implements CommandExecutor, TabCompleter {
         
         if (args.length == 1) {
             String partialCommand = args[0].toLowerCase();
-            List<String> subCommands = Arrays.asList("create", "list", "import", "export", "select", "info", "formats");
+            List<String> subCommands = Arrays.asList("create", "list", "import", "export", "select", "info", "formats",
+                    "models", "jobs", "cancel", "preview", "undo");
             
             for (String subCommand : subCommands) {
                 if (subCommand.startsWith(partialCommand)) {
@@ -294,23 +639,26 @@ public class ProjectCommand implements CommandExecutor, TabCompleter {
             String subCommand = args[0].toLowerCase();
             String partial = args[1].toLowerCase();
             
-            if (subCommand.equals("select")) {
-                List<String> options = Arrays.asList("pos1", "pos2", "clear");
+            if (subCommand.equals("select") || subCommand.equals("preview")) {
+                List<String> options = subCommand.equals("select")
+                        ? Arrays.asList("pos1", "pos2", "clear")
+                        : Arrays.asList("move", "rotate", "confirm", "discard");
                 for (String option : options) {
                     if (option.startsWith(partial)) {
                         completions.add(option);
                     }
                 }
-            } else if (subCommand.equals("import")) {
-                // TODO: List available model files
-                File modelsDir = modelManager.getModelsDirectory();
-                if (modelsDir.exists() && modelsDir.isDirectory()) {
-                    for (File file : modelsDir.listFiles()) {
-                        if (file.isFile() && file.getName().toLowerCase().startsWith(partial)) {
-                            completions.add(file.getName());
-                        }
+            } else if (subCommand.equals("cancel") && sender instanceof Player) {
+                for (ModelJob job : modelManager.getJobManager().getJobs(((Player) sender).getUniqueId())) {
+                    String id = String.valueOf(job.getId());
+                    if (id.startsWith(partial)) {
+                        completions.add(id);
                     }
                 }
+            } else if (subCommand.equals("import")) {
+                // Served from the catalog, so typing never lists the directory
+                completions.addAll(modelManager.getCatalog().complete(partial,
+                        modelManager.getSupportedImportFormats()));
             }
         }
         
@@ -0,0 +1,372 @@
+package com.archcraft.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Buffered output for exporters, backed by a file channel and a reusable direct buffer
+ * Text is written as ASCII straight into the buffer, with numbers formatted without
+ * creating strings, so writing a line allocates nothing. Binary values are little-endian.
+ * Output can be gzip compressed, in which case each full buffer is compressed as one block
+ * on a worker pool.
+ */
+public class ChannelWriter implements Closeable {
+    
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 18;
+    
+    // Compressed blocks in flight per file before writing waits
+    private static final int MAX_PENDING_BLOCKS = 16;
+    
+    private static final int COMPRESSION_LEVEL = 6;
+    
+    // Values at or above this are formatted with Double.toString instead
+    private static final double MAX_FIXED = 1e12;
+    
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L
+    };
+    
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final ParallelGzipOutput gzip;
+    private final byte[] digits = new byte[20];
+    private long flushed;
+    
+    /**
+     * Open a file for writing, replacing any existing content
+     * @param file The file to write
+     * @throws IOException If the file could not be opened
+     */
+    public ChannelWriter(File file) throws IOException {
+        this(file, DEFAULT_BUFFER_SIZE);
+    }
+    
+    /**
+     * Open a file for writing with a given buffer size, replacing any existing content
+     * Smaller buffers suit writers that keep many files open at once
+     * @param file The file to write
+     * @param bufferSize Buffer size in bytes (at least 64)
+     * @throws IOException If the file could not be opened
+     */
+    public ChannelWriter(File file, int bufferSize) throws IOException {
+        this(file, bufferSize, null);
+    }
+    
+    /**
+     * Open a file for writing, replacing any existing content
+     * @param file The file to write
+     * @param bufferSize Buffer size in bytes (at least 64); also the size of compressed blocks
+     * @param compressionPool Pool to gzip the output on, or null to write it uncompressed
+     * @throws IOException If the file could not be opened
+     */
+    public ChannelWriter(File file, int bufferSize, ExecutorService compressionPool) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = ByteBuffer.allocateDirect(Math.max(64, bufferSize)).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            this.gzip = compressionPool != null
+                    ? new ParallelGzipOutput(channel, compressionPool, COMPRESSION_LEVEL, MAX_PENDING_BLOCKS) : null;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * Open an export output file
+     * @param file The file to write
+     * @param compressionPool Pool to gzip the output on, or null to write it uncompressed
+     * @return A writer for the file, or for the file name with ".gz" appended if compressed
+     * @throws IOException If the file could not be opened
+     */
+    public static ChannelWriter open(File file, ExecutorService compressionPool) throws IOException {
+        if (compressionPool == null) {
+            return new ChannelWriter(file);
+        }
+        return new ChannelWriter(new File(file.getPath() + ParallelGzipOutput.EXTENSION), DEFAULT_BUFFER_SIZE,
+                compressionPool);
+    }
+    
+    /**
+     * Write ASCII text
+     * @param text The text; characters outside ASCII are written as '?'
+     * @return This writer
+     * @throws IOException If writing failed
+     */
+    public ChannelWriter write(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            write(c < 128 ? c : '?');
+        }
+        return this;
+    }
+    
+    /**
+     * Write a single ASCII character
+     * @param c The character
+     * @return This writer
+     * @throws IOException If writing failed
+     */
+    public ChannelWriter write(char c) throws IOException {
+        ensure(1);
+        buffer.put((byte) c);
+        return this;
+    }
+    
+    /**
+     * Write a line break
+     * @return This writer
+     * @throws IOException If writing failed
+     */
+    public ChannelWriter newLine() throws IOException {
+        return write('\n');
+    }
+    
+    /**
+     * Write an integer in decimal
+     * @param value The value
+     * @return This writer
+     * @throws IOException If writing failed
+     */
+    public ChannelWriter writeInt(long value) throws IOException {
+        ensure(digits.length + 1);
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                return write(Long.toString(value));
+            }
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        
+        while (count > 0) {
+            buffer.put(digits[--count]);
+        }
+        return this;
+    }
+    
+    /**
+     * Write a number with at most the given number of decimals
+     * Trailing zeros are dropped, and whole numbers are written without a decimal point
+     * @param value The value
+     * @param decimals Max digits after the decimal point (0-9)
+     * @return This writer
+     * @throws IOException If writing failed
+     */
+    public ChannelWriter writeDecimal(double value, int decimals) throws IOException {
+        if (Double.isNaN(value) || Math.abs(value) >= MAX_FIXED) {
+            return write(Double.toString(value));
+        }
+        
+        long power = POWERS_OF_TEN[decimals];
+        long scaled = Math.round(Math.abs(value) * power);
+        if (value < 0 && scaled != 0) {
+            write('-');
+        }
+        writeInt(scaled / power);
+        
+        long fraction = scaled % power;
+        if (fraction != 0) {
+            // Drop trailing zeros, then pad with leading zeros to the remaining width
+            int width = decimals;
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+                width--;
+            }
+            ensure(width + 1);
+            buffer.put((byte) '.');
+            for (int i = width - 1; i >= 0; i--) {
+                buffer.put((byte) ('0' + (fraction / POWERS_OF_TEN[i]) % 10));
+            }
+        }
+        return this;
+    }
+    
+    /**
+     * Write a little-endian 32-bit float
+     * @param value The value
+     * @return This writer
+     * @throws IOException If writing failed
+     */
+    public ChannelWriter writeFloatLE(float value) throws IOException {
+        ensure(4);
+        buffer.putFloat(value);
+        return this;
+    }
+    
+    /**
+     * Write a little-endian 32-bit integer
+     * @param value The value
+     * @return This writer
+     * @throws IOException If writing failed
+     */
+    public ChannelWriter writeIntLE(int value) throws IOException {
+        ensure(4);
+        buffer.putInt(value);
+        return this;
+    }
+    
+    /**
+     * Write a little-endian 16-bit integer
+     * @param value The value
+     * @return This writer
+     * @throws IOException If writing failed
+     */
+    public ChannelWriter writeShortLE(int value) throws IOException {
+        ensure(2);
+        buffer.putShort((short) value);
+        return this;
+    }
+    
+    /**
+     * Write raw bytes
+     * @param bytes The bytes
+     * @return This writer
+     * @throws IOException If writing failed
+     */
+    public ChannelWriter writeBytes(byte[] bytes) throws IOException {
+        return writeBytes(bytes, 0, bytes.length);
+    }
+    
+    /**
+     * Write part of a byte array
+     * @param bytes The bytes
+     * @param offset Index of the first byte to write
+     * @param length Number of bytes to write
+     * @return This writer
+     * @throws IOException If writing failed
+     */
+    public ChannelWriter writeBytes(byte[] bytes, int offset, int length) throws IOException {
+        int end = offset + length;
+        while (offset < end) {
+            ensure(1);
+            int count = Math.min(buffer.remaining(), end - offset);
+            buffer.put(bytes, offset, count);
+            offset += count;
+        }
+        return this;
+    }
+    
+    /**
+     * Overwrite a little-endian 32-bit integer that was already written
+     * Used to fill in counts that are only known at the end, such as in file headers
+     * @param position Byte offset from the start of the file
+     * @param value The value
+     * @throws IOException If writing failed
+     */
+    public void patchIntLE(long position, int value) throws IOException {
+        checkUncompressed();
+        flush();
+        ByteBuffer patch = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, value);
+        while (patch.hasRemaining()) {
+            position += channel.write(patch, position);
+        }
+    }
+    
+    /**
+     * Overwrite a little-endian 64-bit integer that was already written
+     * @param position Byte offset from the start of the file
+     * @param value The value
+     * @throws IOException If writing failed
+     */
+    public void patchLongLE(long position, long value) throws IOException {
+        checkUncompressed();
+        flush();
+        ByteBuffer patch = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(0, value);
+        while (patch.hasRemaining()) {
+            position += channel.write(patch, position);
+        }
+    }
+    
+    /**
+     * Append the whole content of another file
+     * The bytes are copied by the channel, without passing through this writer's buffer
+     * @param file The file to append
+     * @throws IOException If reading or writing failed
+     */
+    public void writeFile(File file) throws IOException {
+        flush();
+        try (FileChannel source = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (gzip != null) {
+                // Compressed output has to pass through the buffer
+                while (source.read(buffer) >= 0) {
+                    if (!buffer.hasRemaining()) {
+                        flush();
+                    }
+                }
+                return;
+            }
+            
+            long size = source.size();
+            long copied = 0;
+            while (copied < size) {
+                copied += source.transferTo(copied, size - copied, channel);
+            }
+            flushed += size;
+        }
+    }
+    
+    /**
+     * Get the number of bytes written so far, before any compression
+     * @return Byte count
+     */
+    public long getPosition() {
+        return flushed + buffer.position();
+    }
+    
+    /**
+     * Write all buffered bytes to the file
+     * @throws IOException If writing failed
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        if (gzip != null) {
+            flushed += buffer.remaining();
+            gzip.write(buffer);
+        }
+        while (buffer.hasRemaining()) {
+            flushed += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        boolean finished = false;
+        try {
+            flush();
+            if (gzip != null) {
+                gzip.finish();
+            }
+            finished = true;
+        } finally {
+            if (!finished && gzip != null) {
+                gzip.abandon();
+            }
+            channel.close();
+        }
+    }
+    
+    private void checkUncompressed() {
+        if (gzip != null) {
+            throw new IllegalStateException("Compressed output cannot be patched");
+        }
+    }
+    
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+}
\ No newline at end of file
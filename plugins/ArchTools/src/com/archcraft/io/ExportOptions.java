@@ -0,0 +1,57 @@
+package com.archcraft.io;
+
+/**
+ * Options for exporting a region
+ */
+public class ExportOptions {
+    
+    // Coarsest level halves the resolution this many times
+    public static final int MAX_LOD_LEVELS = 4;
+    
+    private final double scale;
+    private final int lodLevels;
+    private final boolean compressed;
+    
+    /**
+     * Create export options
+     * @param scale The scale factor to apply (1.0 = no scaling)
+     * @param lodLevels Number of reduced detail levels to write besides the full model (0 for none)
+     */
+    public ExportOptions(double scale, int lodLevels) {
+        this(scale, lodLevels, false);
+    }
+    
+    /**
+     * Create export options
+     * @param scale The scale factor to apply (1.0 = no scaling)
+     * @param lodLevels Number of reduced detail levels to write besides the full model (0 for none)
+     * @param compressed Whether to gzip the output files
+     */
+    public ExportOptions(double scale, int lodLevels, boolean compressed) {
+        this.scale = scale;
+        this.lodLevels = Math.max(0, Math.min(MAX_LOD_LEVELS, lodLevels));
+        this.compressed = compressed;
+    }
+    
+    public double getScale() {
+        return scale;
+    }
+    
+    /**
+     * Get the number of reduced detail levels
+     * Level n has one cell per 2^n blocks along each axis
+     * @return LOD levels beyond the full detail model
+     */
+    public int getLodLevels() {
+        return lodLevels;
+    }
+    
+    /**
+     * Check whether output files are gzip compressed
+     * Compressed files get ".gz" appended to their names
+     * @return True to compress
+     */
+    public boolean isCompressed() {
+        return compressed;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,266 @@
+package com.archcraft.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sorted index of the model files in the models directory
+ * The directory is listed once and then followed with a {@link WatchService}, so lookups and
+ * tab completion never touch the disk. Each new version of a file is hashed and summarized
+ * once on a background thread; until then it is listed without those details.
+ */
+public class ModelCatalog implements Closeable {
+    
+    private final File directory;
+    private final Logger logger;
+    private final Function<ModelFormat, ModelImporter> importers;
+    private final ConcurrentSkipListMap<String, ModelInfo> models =
+            new ConcurrentSkipListMap<>(String.CASE_INSENSITIVE_ORDER);
+    
+    // Names waiting to be read, so a burst of events for one file reads it once
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final ExecutorService scanner;
+    private WatchService watchService;
+    
+    /**
+     * Create a catalog; nothing is read until {@link #start()}
+     * @param directory The models directory
+     * @param importers Looks up the importer of a format, used to summarize files
+     * @param logger Logger for errors
+     */
+    public ModelCatalog(File directory, Function<ModelFormat, ModelImporter> importers, Logger logger) {
+        this.directory = directory;
+        this.importers = importers;
+        this.logger = logger;
+        this.scanner = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ArchTools-Catalog");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+    
+    /**
+     * Start watching the directory and read the files already in it
+     */
+    public void start() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            directory.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            Thread watcher = new Thread(this::watch, "ArchTools-Catalog-Watcher");
+            watcher.setDaemon(true);
+            watcher.start();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not watch the models directory; the model list won't update", e);
+        }
+        rescan();
+    }
+    
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        rescan();
+                    } else {
+                        queue(((Path) event.context()).getFileName().toString());
+                    }
+                }
+                if (!key.reset()) {
+                    logger.warning("The models directory is no longer watched");
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Catalog closed
+        }
+    }
+    
+    /**
+     * Queue every file in the directory for reading, and drop entries for files that are gone
+     */
+    public void rescan() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Set<String> names = new HashSet<>();
+        for (File file : files) {
+            names.add(file.getName());
+            queue(file.getName());
+        }
+        models.keySet().removeIf(name -> !names.contains(name));
+    }
+    
+    /**
+     * Re-read the files of a format, after its importer was registered
+     * @param format The format
+     */
+    public void refresh(ModelFormat format) {
+        for (ModelInfo info : models.values()) {
+            if (info.getFormat() == format) {
+                models.put(info.getName(), new ModelInfo(info.getName(), format, info.getSize(),
+                        info.getLastModified(), null, null));
+                queue(info.getName());
+            }
+        }
+    }
+    
+    /**
+     * Queue a file for reading if it is new or changed
+     */
+    private void queue(String name) {
+        if (getFormat(name) != null && pending.add(name)) {
+            try {
+                scanner.execute(() -> {
+                    pending.remove(name);
+                    read(name);
+                });
+            } catch (RuntimeException e) {
+                pending.remove(name);
+            }
+        }
+    }
+    
+    private void read(String name) {
+        File file = new File(directory, name);
+        if (!file.isFile()) {
+            models.remove(name);
+            return;
+        }
+        ModelInfo known = models.get(name);
+        if (known != null && known.isScanned() && known.isCurrent(file)) {
+            return;
+        }
+        
+        // List the file right away; the details follow once it has been read
+        ModelFormat format = getFormat(name);
+        long size = file.length();
+        long lastModified = file.lastModified();
+        models.put(name, new ModelInfo(name, format, size, lastModified, null, null));
+        
+        try {
+            String hash = hash(file);
+            ModelInfo.Geometry geometry = null;
+            ModelImporter importer = importers.apply(format);
+            if (importer != null) {
+                try {
+                    geometry = importer.describe(file);
+                } catch (IOException | RuntimeException e) {
+                    logger.log(Level.FINE, "Could not summarize model " + name, e);
+                }
+            }
+            
+            // A file that changed while it was read is read again for its newer event
+            if (file.length() == size && file.lastModified() == lastModified) {
+                models.put(name, new ModelInfo(name, format, size, lastModified, hash, geometry));
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not read model " + name, e);
+        }
+    }
+    
+    private static ModelFormat getFormat(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? ModelFormat.fromExtension(name.substring(dot + 1).toLowerCase()) : null;
+    }
+    
+    private static String hash(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 is not available", e);
+        }
+        
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream in = new FileInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+    
+    /**
+     * Get the info of a model file
+     * @param name File name within the models directory
+     * @return The info, or null if there is no such model
+     */
+    public ModelInfo get(String name) {
+        return models.get(name);
+    }
+    
+    /**
+     * Get all model files
+     * @return Infos sorted by name, ignoring case
+     */
+    public List<ModelInfo> getModels() {
+        return new ArrayList<>(models.values());
+    }
+    
+    /**
+     * Get the names of model files starting with a prefix, ignoring case
+     * @param prefix The typed prefix
+     * @param formats Formats to include
+     * @return Matching names in order
+     */
+    public List<String> complete(String prefix, Set<ModelFormat> formats) {
+        List<String> names = new ArrayList<>();
+        for (ModelInfo info : models.tailMap(prefix).values()) {
+            if (!info.getName().regionMatches(true, 0, prefix, 0, prefix.length())) {
+                break;
+            }
+            if (formats.contains(info.getFormat())) {
+                names.add(info.getName());
+            }
+        }
+        return names;
+    }
+    
+    /**
+     * Stop watching the directory and reading files
+     */
+    @Override
+    public void close() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                // Closing anyway
+            }
+        }
+        scanner.shutdownNow();
+    }
+}
\ No newline at end of file
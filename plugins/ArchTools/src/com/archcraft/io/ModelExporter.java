@@ -1,29 +1,27 @@
 package com.archcraft.io;
 
+import com.archcraft.io.job.ModelJob;
+import com.archcraft.io.mesh.ExportRegion;
+
 import java.io.File;
 import java.io.IOException;
 
-import org.bukkit.Location;
-import org.bukkit.World;
-import org.bukkit.entity.Player;
-
 /**
  * Interface for exporting Minecraft builds to 3D model formats
  */
 public interface ModelExporter {
     
     /**
-     * Export a region of a Minecraft world to a 3D model file
-     * @param min The minimum corner location of the region to export
-     * @param max The maximum corner location of the region to export
+     * Export a region of the world to a 3D model file
+     * Called from a worker thread, so implementations must not touch the world
+     * @param region The region, read band by band so memory stays bounded
      * @param outputFile The file to export to
-     * @param scale The scale factor to apply (1.0 = no scaling)
-     * @param player The player performing the export (for notifications)
-     * @return True if export was successful
+     * @param options Scale and detail levels to export
+     * @param job The job running the export (for notifications and cancellation)
      * @throws IOException If there was an error writing to the file
      * @throws UnsupportedOperationException If the format is not supported
      */
-    boolean exportModel(Location min, Location max, File outputFile, double scale, Player player) 
+    void exportModel(ExportRegion region, File outputFile, ExportOptions options, ModelJob job) 
             throws IOException, UnsupportedOperationException;
     
     /**
@@ -48,6 +46,7 @@ public interface ModelExporter {
         COLORS,
         METADATA,
         HOLLOW_OPTIMIZATION,
-        LOD_GENERATION
+        LOD_GENERATION,
+        COMPRESSION
     }
 }
\ No newline at end of file
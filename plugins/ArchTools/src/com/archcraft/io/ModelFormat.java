@@ -18,7 +18,7 @@ public enum ModelFormat {
     IFC("ifc", "Industry Foundation Classes", true, false),
     GLB("glb", "GL Transmission Format", true, true),
     GLTF("gltf", "GL Transmission Format (Text)", true, true),
-    JSON("json", "ArchCraft Native Format", true, true);
+    ACM("acm", "ArchCraft Native Format", true, true);
     
     private final String extension;
     private final String displayName;
@@ -1,11 +1,13 @@
 package com.archcraft.io;
 
+import com.archcraft.io.job.ModelJob;
+import com.archcraft.io.voxel.Transform;
+import com.archcraft.io.voxel.VoxelModel;
+
 import java.io.File;
 import java.io.IOException;
-
-import org.bukkit.Location;
-import org.bukkit.World;
-import org.bukkit.entity.Player;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Interface for importing 3D models into Minecraft
@@ -13,20 +15,40 @@ import org.bukkit.entity.Player;
 public interface ModelImporter {
     
     /**
-     * Import a 3D model file into Minecraft
+     * Parse and voxelize a 3D model file
+     * Called from a worker thread, so implementations must not touch the world
      * @param file The model file to import
-     * @param world The world to import into
-     * @param origin The origin location for the import
-     * @param scale The scale factor to apply (1.0 = no scaling)
-     * @param rotationY The Y-axis rotation in degrees
-     * @param player The player performing the import (for notifications)
-     * @return True if import was successful
+     * @param transform Transform from model coordinates to blocks relative to the import origin
+     * @param job The job running the import (for notifications and cancellation)
+     * @return The voxelized model, relative to the import origin
      * @throws IOException If there was an error reading the file
      * @throws UnsupportedOperationException If the format is not supported
      */
-    boolean importModel(File file, World world, Location origin, double scale, float rotationY, Player player) 
+    VoxelModel importModel(File file, Transform transform, ModelJob job) 
             throws IOException, UnsupportedOperationException;
     
+    /**
+     * Summarize a model file without importing it
+     * Called on a background thread for the model list; should be much cheaper than an import
+     * @param file The model file
+     * @return Vertex and face counts and bounds in model units, or null if not supported
+     * @throws IOException If there was an error reading the file
+     */
+    default ModelInfo.Geometry describe(File file) throws IOException {
+        return null;
+    }
+    
+    /**
+     * List the other files an import of a model reads, such as material libraries
+     * They are hashed into the voxel cache key, so editing one invalidates cached imports of the model
+     * @param file The model file
+     * @return Existing files the model refers to; empty if it is self-contained
+     * @throws IOException If the model file could not be read
+     */
+    default List<File> getDependencies(File file) throws IOException {
+        return Collections.emptyList();
+    }
+    
     /**
      * Get the model format this importer supports
      * @return The supported model format
@@ -0,0 +1,175 @@
+package com.archcraft.io;
+
+import java.io.File;
+
+/**
+ * Cached facts about a model file in the models directory
+ * Describes one version of the file, identified by its size and modification time.
+ */
+public class ModelInfo {
+    
+    private final String name;
+    private final ModelFormat format;
+    private final long size;
+    private final long lastModified;
+    private final String contentHash;
+    private final Geometry geometry;
+    
+    /**
+     * Create the info of a file version
+     * @param name File name within the models directory
+     * @param format The file's format
+     * @param size Size in bytes
+     * @param lastModified Modification time in milliseconds
+     * @param contentHash Hex SHA-256 of the content, or null while it is being computed
+     * @param geometry Geometry summary, or null if unknown
+     */
+    public ModelInfo(String name, ModelFormat format, long size, long lastModified, String contentHash,
+                     Geometry geometry) {
+        this.name = name;
+        this.format = format;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.contentHash = contentHash;
+        this.geometry = geometry;
+    }
+    
+    /**
+     * Check whether this info still describes a file
+     * @param file The file
+     * @return True if the file has the same size and modification time
+     */
+    public boolean isCurrent(File file) {
+        return file.length() == size && file.lastModified() == lastModified;
+    }
+    
+    /**
+     * Check whether the file has been read
+     * @return False while the hash and geometry are still being computed
+     */
+    public boolean isScanned() {
+        return contentHash != null;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public ModelFormat getFormat() {
+        return format;
+    }
+    
+    public long getSize() {
+        return size;
+    }
+    
+    public long getLastModified() {
+        return lastModified;
+    }
+    
+    public String getContentHash() {
+        return contentHash;
+    }
+    
+    /**
+     * Get the geometry summary
+     * @return The summary, or null if the file has not been read or its importer can't summarize it
+     */
+    public Geometry getGeometry() {
+        return geometry;
+    }
+    
+    /**
+     * Vertex and face counts and bounds of a model, in model units
+     */
+    public static class Geometry {
+        private final long vertexCount;
+        private final long faceCount;
+        private final long triangleCount;
+        private final double[] min;
+        private final double[] max;
+        private final long blockCount;
+        private final boolean meshHeld;
+        
+        /**
+         * Create a geometry summary of a mesh that is parsed whole before it is voxelized
+         * @param vertexCount Vertices, or -1 if the format has none
+         * @param faceCount Faces, or -1 if the format has none
+         * @param triangleCount Triangles the faces split into, or -1 if the format has none
+         * @param min Minimum corner (x, y, z)
+         * @param max Maximum corner (x, y, z)
+         */
+        public Geometry(long vertexCount, long faceCount, long triangleCount, double[] min, double[] max) {
+            this(vertexCount, faceCount, triangleCount, min, max, -1, true);
+        }
+        
+        /**
+         * Create a geometry summary
+         * @param vertexCount Vertices, or -1 if the format has none
+         * @param faceCount Faces, or -1 if the format has none
+         * @param triangleCount Triangles the faces split into, or -1 if the format has none
+         * @param min Minimum corner (x, y, z)
+         * @param max Maximum corner (x, y, z)
+         * @param blockCount Most blocks the model can place, for formats that store blocks; otherwise -1
+         * @param meshHeld Whether the importer holds the parsed mesh while voxelizing, rather than streaming it
+         */
+        public Geometry(long vertexCount, long faceCount, long triangleCount, double[] min, double[] max,
+                        long blockCount, boolean meshHeld) {
+            this.vertexCount = vertexCount;
+            this.faceCount = faceCount;
+            this.triangleCount = triangleCount;
+            this.min = min.clone();
+            this.max = max.clone();
+            this.blockCount = blockCount;
+            this.meshHeld = meshHeld;
+        }
+        
+        public long getVertexCount() {
+            return vertexCount;
+        }
+        
+        public long getFaceCount() {
+            return faceCount;
+        }
+        
+        public long getTriangleCount() {
+            return triangleCount;
+        }
+        
+        public double[] getMin() {
+            return min.clone();
+        }
+        
+        public double[] getMax() {
+            return max.clone();
+        }
+        
+        /**
+         * Get the most blocks the model can place, known for formats that store blocks
+         * @return Block count, or -1 if it has to be estimated from the surface
+         */
+        public long getBlockCount() {
+            return blockCount;
+        }
+        
+        /**
+         * Check if importing holds the whole parsed mesh in memory
+         * @return False for importers that stream the model into the voxelizer
+         */
+        public boolean isMeshHeld() {
+            return meshHeld;
+        }
+        
+        /**
+         * Get the size of the bounds
+         * @return Size along x, y and z; zero for a model without vertices
+         */
+        public double[] getSize() {
+            return new double[]{
+                    Math.max(0, max[0] - min[0]),
+                    Math.max(0, max[1] - min[1]),
+                    Math.max(0, max[2] - min[2])
+            };
+        }
+    }
+}
\ No newline at end of file
@@ -1,6 +1,17 @@
 package com.archcraft.io;
 
 import com.archcraft.Main;
+import com.archcraft.io.job.ExportJob;
+import com.archcraft.io.job.ImportJob;
+import com.archcraft.io.job.JobManager;
+import com.archcraft.io.job.ModelJob;
+import com.archcraft.io.job.UndoJob;
+import com.archcraft.io.mesh.ExportRegion;
+import com.archcraft.io.voxel.ImportEstimate;
+import com.archcraft.io.voxel.Transform;
+import com.archcraft.io.voxel.UndoJournal;
+import com.archcraft.io.voxel.VoxelCache;
+import com.archcraft.utils.ConfigManager;
 
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
@@ -8,11 +19,12 @@ import org.bukkit.World;
 import org.bukkit.entity.Player;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.logging.Level;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
 /**
@@ -24,8 +36,11 @@ public class ModelManager {
     private final Main plugin;
     private final Logger logger;
     private final Map<ModelFormat, ModelImporter> importers;
-    private final Map<ModelFormat, ModelExporter> exporters;
+    private final Map<ModelFormat, Supplier<? extends ModelExporter>> exporters;
     private final File modelsDirectory;
+    private final JobManager jobManager;
+    private final VoxelCache voxelCache;
+    private final ModelCatalog catalog;
     
     /**
      * Create a new model manager
@@ -34,7 +49,7 @@ public class ModelManager {
     public ModelManager(Main plugin) {
         this.plugin = plugin;
         this.logger = plugin.getLogger();
-        this.importers = new HashMap<>();
+        this.importers = new ConcurrentHashMap<>(); // Also read by the catalog's thread
         this.exporters = new HashMap<>();
         
         // Create directory for model storage
@@ -43,6 +58,24 @@ public class ModelManager {
             this.modelsDirectory.mkdirs();
         }
         
+        // Worker pool and queue for background import and export jobs
+        this.jobManager = new JobManager(plugin,
+                plugin.getConfigManager().getImportWorkerThreads(),
+                plugin.getConfigManager().getImportMaxJobsPerPlayer(),
+                plugin.getConfigManager().getJobsMaxQueuedPerPlayer(),
+                plugin.getConfigManager().getJobsMaxMemoryMb() * 1024L * 1024L);
+        
+        // Cache of voxelized imports, keyed by file content and import settings
+        this.voxelCache = plugin.getConfigManager().isCacheEnabled()
+                ? new VoxelCache(new File(plugin.getDataFolder(), "cache"),
+                        plugin.getConfigManager().getCacheMaxSizeMb() * 1024L * 1024L,
+                        plugin.getDescription().getVersion(), logger)
+                : null;
+        
+        // Index of the models directory, kept up to date as files change
+        this.catalog = new ModelCatalog(modelsDirectory, importers::get, logger);
+        catalog.start();
+        
         // Register default importers and exporters
         registerDefaultHandlers();
     }
@@ -62,15 +95,20 @@ public class ModelManager {
     public void registerImporter(ModelImporter importer) {
         importers.put(importer.getFormat(), importer);
         logger.info("Registered importer for " + importer.getFormat().getDisplayName() + " format");
+        
+        // Files listed before the importer existed have no geometry yet
+        catalog.refresh(importer.getFormat());
     }
     
     /**
      * Register a model exporter
-     * @param exporter The exporter to register
+     * Every export job gets its own exporter, so exporters may keep per-export state in fields
+     * @param factory Creates an exporter for each export
      */
-    public void registerExporter(ModelExporter exporter) {
-        exporters.put(exporter.getFormat(), exporter);
-        logger.info("Registered exporter for " + exporter.getFormat().getDisplayName() + " format");
+    public void registerExporter(Supplier<? extends ModelExporter> factory) {
+        ModelFormat format = factory.get().getFormat();
+        exporters.put(format, factory);
+        logger.info("Registered exporter for " + format.getDisplayName() + " format");
     }
     
     /**
@@ -90,16 +128,20 @@ public class ModelManager {
     }
     
     /**
-     * Import a model from a file
+     * Start a background import of a model file
+     * Parsing and voxelizing run on a worker thread; blocks are placed on the main thread
      * @param file The file to import
      * @param world The world to import into
      * @param origin The origin location for the import
-     * @param scale The scale factor
-     * @param rotationY The Y rotation in degrees
+     * @param transform Transform from model coordinates to blocks relative to the origin
+     * @param preview Whether to preview the model to the player before placing it
+     * @param confirmed Whether the player confirmed an import over the confirmation limit
+     * @param priority Priority of the job in the queue
      * @param player The player performing the import
-     * @return True if import was successful
+     * @return True if the import job was queued
      */
-    public boolean importModel(File file, World world, Location origin, double scale, float rotationY, Player player) {
+    public boolean importModel(File file, World world, Location origin, Transform transform,
+                               boolean preview, boolean confirmed, ModelJob.Priority priority, Player player) {
         String fileName = file.getName();
         String extension = fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase();
         ModelFormat format = ModelFormat.fromExtension(extension);
@@ -115,47 +157,99 @@ public class ModelManager {
             return false;
         }
         
-        try {
-            player.sendMessage(ChatColor.YELLOW + "Importing " + fileName + "...");
-            long startTime = System.currentTimeMillis();
-            
-            boolean success = importer.importModel(file, world, origin, scale, rotationY, player);
-            
-            long endTime = System.currentTimeMillis();
-            double seconds = (endTime - startTime) / 1000.0;
-            
-            if (success) {
-                player.sendMessage(ChatColor.GREEN + "Import completed in " + String.format("%.1f", seconds) + " seconds");
-                return true;
-            } else {
-                player.sendMessage(ChatColor.RED + "Import failed");
+        ConfigManager config = plugin.getConfigManager();
+        long maxFileBytes = config.getImportMaxFileMb() * 1024L * 1024L;
+        if (maxFileBytes > 0 && file.length() > maxFileBytes) {
+            player.sendMessage(ChatColor.RED + "File too large: " + file.length() / (1024 * 1024) + " MB (limit "
+                    + config.getImportMaxFileMb() + " MB)");
+            return false;
+        }
+        
+        // With the file already summarized by the catalog, the estimate costs nothing and is checked now;
+        // otherwise the job scans the file for it before importing
+        ImportEstimate estimate = null;
+        ModelInfo info = catalog.get(fileName);
+        if (info != null && info.getGeometry() != null && info.isCurrent(file)) {
+            estimate = ImportEstimate.of(info.getGeometry(), transform);
+            player.sendMessage(ChatColor.GRAY + "Estimate: " + estimate.describe());
+            String refusal = ImportJob.checkLimits(config, estimate, confirmed);
+            if (refusal != null) {
+                player.sendMessage(ChatColor.RED + refusal);
                 return false;
             }
-        } catch (IOException e) {
-            player.sendMessage(ChatColor.RED + "Error reading file: " + e.getMessage());
-            logger.log(Level.WARNING, "Error importing model", e);
-            return false;
-        } catch (UnsupportedOperationException e) {
-            player.sendMessage(ChatColor.RED + "Unsupported operation: " + e.getMessage());
+        }
+        
+        Location importOrigin = origin.clone();
+        importOrigin.setWorld(world);
+        
+        ImportJob job = new ImportJob(plugin, importer, file, importOrigin, transform, preview, estimate, confirmed,
+                player);
+        job.setPriority(priority);
+        return submit(job, player, "Importing " + fileName);
+    }
+    
+    /**
+     * Revert a player's most recent import by replaying its undo journal
+     * @param player The player
+     * @return True if the undo job was started
+     */
+    public boolean undoLastImport(Player player) {
+        File directory = new File(plugin.getDataFolder(), "journals/" + player.getUniqueId());
+        List<File> journals = UndoJournal.listJournals(directory);
+        
+        // Skip journals that are already being replayed
+        for (ModelJob running : jobManager.getJobs(player.getUniqueId())) {
+            if (running instanceof UndoJob) {
+                journals.remove(((UndoJob) running).getJournalFile());
+            }
+        }
+        
+        if (journals.isEmpty()) {
+            player.sendMessage(ChatColor.RED + "Nothing to undo");
             return false;
-        } catch (Exception e) {
-            player.sendMessage(ChatColor.RED + "Error importing model: " + e.getMessage());
-            logger.log(Level.SEVERE, "Error importing model", e);
+        }
+        
+        UndoJob job = new UndoJob(plugin, journals.get(0), player);
+        return submit(job, player, "Undoing last import");
+    }
+    
+    /**
+     * Queue a job and tell the player whether it started or where it waits
+     * @param job The job
+     * @param player The player who started it
+     * @param action What the job does, for the message
+     * @return True if the job was queued
+     */
+    private boolean submit(ModelJob job, Player player, String action) {
+        if (!jobManager.submit(job)) {
+            player.sendMessage(ChatColor.RED + "You already have " + jobManager.getMaxQueuedPerPlayer()
+                    + " waiting job(s). Use /project jobs to see them.");
             return false;
         }
+        
+        player.sendMessage(ChatColor.YELLOW + action + " as job #" + job.getId() + "...");
+        int position = jobManager.getQueuePosition(job);
+        if (position > 0) {
+            player.sendMessage(ChatColor.GRAY + "Waiting for other jobs to finish; position " + position + " in the queue");
+        }
+        return true;
     }
     
     /**
-     * Export a region to a model file
+     * Start a background export of a region to a model file
+     * Chunks are captured on the main thread over several ticks; meshing and writing run on a worker thread
      * @param min Minimum corner of region
      * @param max Maximum corner of region
      * @param fileName Name of the file to export to (with extension)
-     * @param scale Scale factor
+     * @param options Scale and detail levels
+     * @param priority Priority of the job in the queue
      * @param player Player performing the export
-     * @return True if export was successful
+     * @return True if the export job was queued
      */
-    public boolean exportModel(Location min, Location max, String fileName, double scale, Player player) {
-        if (!min.getWorld().equals(max.getWorld())) {
+    public boolean exportModel(Location min, Location max, String fileName, ExportOptions options,
+                               ModelJob.Priority priority, Player player) {
+        World world = min.getWorld();
+        if (!world.equals(max.getWorld())) {
             player.sendMessage(ChatColor.RED + "Both locations must be in the same world");
             return false;
         }
@@ -168,42 +262,112 @@ public class ModelManager {
             return false;
         }
         
-        ModelExporter exporter = exporters.get(format);
-        if (exporter == null) {
+        Supplier<? extends ModelExporter> factory = exporters.get(format);
+        if (factory == null) {
             player.sendMessage(ChatColor.RED + "No exporter available for " + format.getDisplayName() + " format");
             return false;
         }
+        ModelExporter exporter = factory.get();
+        if (options.getLodLevels() > 0 && !exporter.supportsFeature(ModelExporter.ExportFeature.LOD_GENERATION)) {
+            player.sendMessage(ChatColor.RED + format.getDisplayName() + " export does not support detail levels");
+            return false;
+        }
+        if (options.isCompressed() && !exporter.supportsFeature(ModelExporter.ExportFeature.COMPRESSION)) {
+            player.sendMessage(ChatColor.RED + format.getDisplayName() + " export does not support compression");
+            return false;
+        }
         
-        File outputFile = new File(modelsDirectory, fileName);
-        try {
-            player.sendMessage(ChatColor.YELLOW + "Exporting region to " + fileName + "...");
-            long startTime = System.currentTimeMillis();
-            
-            boolean success = exporter.exportModel(min, max, outputFile, scale, player);
-            
-            long endTime = System.currentTimeMillis();
-            double seconds = (endTime - startTime) / 1000.0;
-            
-            if (success) {
-                player.sendMessage(ChatColor.GREEN + "Export completed in " + String.format("%.1f", seconds) + " seconds");
-                player.sendMessage(ChatColor.GREEN + "Saved to: " + outputFile.getAbsolutePath());
-                return true;
-            } else {
-                player.sendMessage(ChatColor.RED + "Export failed");
-                return false;
-            }
-        } catch (IOException e) {
-            player.sendMessage(ChatColor.RED + "Error writing file: " + e.getMessage());
-            logger.log(Level.WARNING, "Error exporting model", e);
+        // Define region bounds, clamped to the world's height
+        int[] regionMin = {
+                Math.min(min.getBlockX(), max.getBlockX()),
+                Math.max(0, Math.min(min.getBlockY(), max.getBlockY())),
+                Math.min(min.getBlockZ(), max.getBlockZ())
+        };
+        int[] regionMax = {
+                Math.max(min.getBlockX(), max.getBlockX()),
+                Math.min(world.getMaxHeight() - 1, Math.max(min.getBlockY(), max.getBlockY())),
+                Math.max(min.getBlockZ(), max.getBlockZ())
+        };
+        if (regionMin[1] > regionMax[1]) {
+            player.sendMessage(ChatColor.RED + "The selected region is outside the world");
             return false;
-        } catch (UnsupportedOperationException e) {
-            player.sendMessage(ChatColor.RED + "Unsupported operation: " + e.getMessage());
+        }
+        
+        // Regions are streamed in bands, so size is limited by memory per band and total time
+        int width = regionMax[0] - regionMin[0] + 1;
+        int height = regionMax[1] - regionMin[1] + 1;
+        int depth = regionMax[2] - regionMin[2] + 1;
+        long totalBlocks = (long) width * height * depth;
+        long totalChunks = (long) ((regionMax[0] >> 4) - (regionMin[0] >> 4) + 1)
+                * ((regionMax[2] >> 4) - (regionMin[2] >> 4) + 1);
+        
+        ConfigManager config = plugin.getConfigManager();
+        long memoryBudget = config.getExportMaxMemoryMb() * 1024L * 1024L;
+        int bandChunks = ExportRegion.chooseBandChunks(width, height, world.getMaxHeight(), memoryBudget);
+        if (bandChunks == 0) {
+            long needed = ExportRegion.estimateMemory(width, height, world.getMaxHeight(), 1) / (1024 * 1024);
+            player.sendMessage(ChatColor.RED + "Region too wide: exporting it would need about " + needed
+                    + " MB (limit " + config.getExportMaxMemoryMb() + " MB)");
+            player.sendMessage(ChatColor.RED + "Please select a narrower region along X");
             return false;
-        } catch (Exception e) {
-            player.sendMessage(ChatColor.RED + "Error exporting model: " + e.getMessage());
-            logger.log(Level.SEVERE, "Error exporting model", e);
+        }
+        
+        long seconds = ExportRegion.estimateSeconds(totalBlocks, totalChunks, config.getExportChunksPerTick());
+        if (seconds > config.getExportMaxSeconds()) {
+            player.sendMessage(ChatColor.RED + "Region too large: " + totalBlocks + " blocks would take about "
+                    + formatDuration(seconds) + " to export (limit " + formatDuration(config.getExportMaxSeconds()) + ")");
+            player.sendMessage(ChatColor.RED + "Please select a smaller region");
             return false;
         }
+        
+        File outputFile = new File(modelsDirectory, fileName);
+        ExportJob job = new ExportJob(plugin, exporter, world, regionMin, regionMax, outputFile, options,
+                bandChunks, player);
+        job.setPriority(priority);
+        
+        // Shown before the job is queued, so the player knows what it will cost while it waits
+        player.sendMessage(ChatColor.GRAY + "Estimated " + formatDuration(seconds) + " for " + totalBlocks
+                + " blocks, using about " + job.getEstimatedMemory() / (1024 * 1024) + " MB");
+        return submit(job, player, "Exporting region to " + fileName);
+    }
+    
+    /**
+     * Format a duration for chat
+     */
+    private static String formatDuration(long seconds) {
+        return seconds < 60 ? seconds + "s" : (seconds / 60) + "m " + (seconds % 60) + "s";
+    }
+    
+    /**
+     * Get the job manager
+     * @return JobManager instance
+     */
+    public JobManager getJobManager() {
+        return jobManager;
+    }
+    
+    /**
+     * Get the cache of voxelized imports
+     * @return The voxel cache, or null if caching is disabled
+     */
+    public VoxelCache getVoxelCache() {
+        return voxelCache;
+    }
+    
+    /**
+     * Get the index of the models directory
+     * @return The model catalog
+     */
+    public ModelCatalog getCatalog() {
+        return catalog;
+    }
+    
+    /**
+     * Stop all background jobs
+     */
+    public void shutdown() {
+        jobManager.shutdown();
+        catalog.close();
     }
     
     /**
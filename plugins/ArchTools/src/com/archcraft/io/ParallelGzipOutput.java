@@ -0,0 +1,179 @@
+package com.archcraft.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Gzip compression of a byte stream on a worker pool, in the style of pigz
+ * The stream is cut into blocks that are deflated independently, each primed with the end of
+ * the block before it so the ratio stays close to a single-threaded deflate. Blocks end on a
+ * byte boundary (sync flush), so their output is simply concatenated in order into one gzip
+ * member. The checksum is computed in order on the writing thread.
+ */
+public class ParallelGzipOutput {
+    
+    public static final String EXTENSION = ".gz";
+    
+    // Deflate looks back at most this far, so a longer dictionary would not help
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    
+    private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+    
+    private final FileChannel channel;
+    private final ExecutorService pool;
+    private final int level;
+    private final int maxPending;
+    private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+    private final CRC32 crc = new CRC32();
+    private byte[] previous;
+    private long size;
+    
+    /**
+     * Start a gzip stream
+     * @param channel Channel to write the compressed stream to
+     * @param pool Pool to compress blocks on, usually shared by all files of an export
+     * @param level Deflate level (1-9)
+     * @param maxPending Max blocks in flight before writing waits for the oldest one
+     * @throws IOException If the header could not be written
+     */
+    public ParallelGzipOutput(FileChannel channel, ExecutorService pool, int level, int maxPending) throws IOException {
+        this.channel = channel;
+        this.pool = pool;
+        this.level = level;
+        this.maxPending = Math.max(1, maxPending);
+        
+        // Deflate, no flags, no modification time, unknown OS
+        writeFully(ByteBuffer.wrap(new byte[]{0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff}));
+    }
+    
+    /**
+     * Create a pool for compressing export output
+     * @param threads Worker threads, or 0 to use every available core
+     * @return The pool; shut it down when the export is done
+     */
+    public static ExecutorService createPool(int threads) {
+        int count = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return Executors.newFixedThreadPool(count, runnable -> {
+            Thread thread = new Thread(runnable, "ArchTools-Gzip-" + POOL_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Queue the remaining bytes of a buffer as the next block
+     * The bytes are copied, so the buffer can be reused right away
+     * @param data The data to compress
+     * @throws IOException If writing an earlier block failed
+     */
+    public void write(ByteBuffer data) throws IOException {
+        if (!data.hasRemaining()) {
+            return;
+        }
+        byte[] block = new byte[data.remaining()];
+        data.get(block);
+        submit(block, false);
+    }
+    
+    /**
+     * Compress the last block, wait for all blocks and write the gzip trailer
+     * @throws IOException If compressing or writing failed
+     */
+    public void finish() throws IOException {
+        submit(new byte[0], true);
+        while (!pending.isEmpty()) {
+            writeOldest();
+        }
+        
+        ByteBuffer trailer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        trailer.putInt((int) crc.getValue()).putInt((int) size).flip();
+        writeFully(trailer);
+    }
+    
+    /**
+     * Stop waiting for queued blocks, after a failed export
+     */
+    public void abandon() {
+        for (Future<byte[]> future : pending) {
+            future.cancel(false);
+        }
+        pending.clear();
+    }
+    
+    private void submit(byte[] block, boolean last) throws IOException {
+        crc.update(block, 0, block.length);
+        size += block.length;
+        
+        byte[] dictionary = previous == null ? null
+                : Arrays.copyOfRange(previous, Math.max(0, previous.length - DICTIONARY_SIZE), previous.length);
+        pending.add(pool.submit(() -> deflate(block, dictionary, last)));
+        if (block.length > 0) {
+            previous = block;
+        }
+        
+        while (pending.size() > maxPending) {
+            writeOldest();
+        }
+    }
+    
+    private byte[] deflate(byte[] block, byte[] dictionary, boolean last) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(block);
+            if (last) {
+                deflater.finish();
+            }
+            
+            byte[] output = new byte[block.length + (block.length >> 3) + 64];
+            int length = 0;
+            while (true) {
+                if (length == output.length) {
+                    output = Arrays.copyOf(output, output.length * 2);
+                }
+                length += deflater.deflate(output, length, output.length - length,
+                        last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                
+                // A sync flush is complete once it leaves room in the output
+                if (last ? deflater.finished() : length < output.length && deflater.needsInput()) {
+                    return Arrays.copyOf(output, length);
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+    
+    private void writeOldest() throws IOException {
+        byte[] compressed;
+        try {
+            compressed = pending.poll().get();
+        } catch (ExecutionException e) {
+            throw new IOException("Could not compress output", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing output");
+        }
+        writeFully(ByteBuffer.wrap(compressed));
+    }
+    
+    private void writeFully(ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+}
\ No newline at end of file
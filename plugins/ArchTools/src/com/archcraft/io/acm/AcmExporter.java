@@ -0,0 +1,295 @@
+package com.archcraft.io.acm;
+
+import com.archcraft.Main;
+import com.archcraft.io.ChannelWriter;
+import com.archcraft.io.ExportOptions;
+import com.archcraft.io.ModelExporter;
+import com.archcraft.io.ModelFormat;
+import com.archcraft.io.job.ModelJob;
+import com.archcraft.io.mesh.ExportRegion;
+import com.archcraft.io.mesh.MaterialPalette;
+import com.archcraft.io.mesh.VoxelGrid;
+
+import org.bukkit.ChatColor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * Exporter for the ArchCraft native model format
+ * Blocks are stored exactly as they are in the world, section by section, as each band of the
+ * region is scanned. See {@link AcmFile} for the layout.
+ */
+public class AcmExporter implements ModelExporter {
+    
+    // Largest raw section: full palette, then 4096 indices of 12 bits at 5 per word
+    private static final int MAX_SECTION_BYTES = 2 + 2 * AcmFile.SECTION_VOLUME + 1 + 8 * 820;
+    
+    @Override
+    public void exportModel(ExportRegion region, File outputFile, ExportOptions options, ModelJob job)
+            throws IOException, UnsupportedOperationException {
+        
+        // Create directory if it doesn't exist
+        outputFile.getParentFile().mkdirs();
+        
+        boolean compress = Main.getInstance().getConfigManager().isExportNativeCompression();
+        SectionWriter sections = new SectionWriter(region, compress);
+        
+        try (ChannelWriter writer = new ChannelWriter(outputFile)) {
+            writer.writeIntLE(AcmFile.MAGIC)
+                    .writeShortLE(AcmFile.VERSION)
+                    .writeShortLE(compress ? AcmFile.FLAG_COMPRESSED : 0)
+                    .writeIntLE(region.getMinX()).writeIntLE(region.getMinY()).writeIntLE(region.getMinZ())
+                    .writeIntLE(region.getMaxX()).writeIntLE(region.getMaxY()).writeIntLE(region.getMaxZ())
+                    .writeIntLE(0) // Section count, filled in at the end
+                    .writeIntLE(0).writeIntLE(0); // Footer offset, filled in at the end
+            
+            ExportRegion.Band band;
+            while ((band = region.nextBand()) != null) {
+                job.checkCancelled();
+                job.setProgress("Writing band " + (band.getIndex() + 1) + "/" + region.getBandCount());
+                sections.writeBand(band, writer);
+                writer.flush();
+            }
+            
+            long footerOffset = writer.getPosition();
+            MaterialPalette palette = region.getPalette();
+            writer.writeIntLE(palette.size());
+            for (int i = 0; i < palette.size(); i++) {
+                writeString(writer, palette.get(i).name());
+            }
+            writeString(writer, region.getWorld().getName());
+            sections.writeIndex(writer);
+            
+            writer.patchIntLE(AcmFile.SECTION_COUNT_POSITION, sections.count);
+            writer.patchLongLE(AcmFile.FOOTER_OFFSET_POSITION, footerOffset);
+            
+            job.sendMessage(ChatColor.GRAY + "Wrote " + sections.count + " sections with "
+                    + palette.size() + " materials (" + writer.getPosition() / 1024 + " KB)");
+        } finally {
+            sections.end();
+        }
+    }
+    
+    private static void writeString(ChannelWriter writer, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        writer.writeShortLE(bytes.length).writeBytes(bytes);
+    }
+    
+    @Override
+    public ModelFormat getFormat() {
+        return ModelFormat.ACM;
+    }
+    
+    @Override
+    public boolean supportsFeature(ExportFeature feature) {
+        switch (feature) {
+            case MATERIALS:
+            case METADATA:
+                return true;
+            case TEXTURES:
+            case COLORS:
+            case HOLLOW_OPTIMIZATION:
+            case LOD_GENERATION:
+                return false;
+            default:
+                return false;
+        }
+    }
+    
+    /**
+     * Encodes the sections of each band and keeps their index entries until the footer
+     */
+    private static class SectionWriter {
+        private final ExportRegion region;
+        private final Deflater deflater;
+        private final int baseSectionX;
+        private final int baseSectionY;
+        private final int baseSectionZ;
+        
+        private final short[] cells = new short[AcmFile.SECTION_VOLUME];
+        private final ByteBuffer encoded = ByteBuffer.allocate(MAX_SECTION_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        private byte[] compressed = new byte[MAX_SECTION_BYTES];
+        
+        // Local palette of the section being encoded; stamps avoid clearing the lookup per section
+        private int[] localIndex = new int[64];
+        private int[] localStamp = new int[64];
+        private final short[] localPalette = new short[AcmFile.SECTION_VOLUME];
+        private int stamp;
+        
+        private long[] keys = new long[256];
+        private long[] offsets = new long[256];
+        private int[] storedLengths = new int[256];
+        private int[] rawLengths = new int[256];
+        private int count;
+        
+        SectionWriter(ExportRegion region, boolean compress) {
+            this.region = region;
+            this.deflater = compress ? new Deflater(Deflater.DEFAULT_COMPRESSION) : null;
+            this.baseSectionX = region.getMinX() >> 4;
+            this.baseSectionY = region.getMinY() >> 4;
+            this.baseSectionZ = region.getMinZ() >> 4;
+        }
+        
+        /**
+         * Write every section in a band's chunk rows
+         * Bands are whole chunk rows, so no section is split between two bands
+         */
+        void writeBand(ExportRegion.Band band, ChannelWriter writer) throws IOException {
+            VoxelGrid grid = band.getGrid();
+            int firstZ = grid.getOriginZ() + band.getStartZ();
+            int lastZ = grid.getOriginZ() + band.getEndZ() - 1;
+            
+            for (int sectionZ = firstZ >> 4; sectionZ <= lastZ >> 4; sectionZ++) {
+                for (int sectionY = baseSectionY; sectionY <= region.getMaxY() >> 4; sectionY++) {
+                    for (int sectionX = baseSectionX; sectionX <= region.getMaxX() >> 4; sectionX++) {
+                        fillSection(grid, sectionX << 4, sectionY << 4, sectionZ << 4, firstZ, lastZ);
+                        if (encodeSection()) {
+                            writeSection(writer, sectionX - baseSectionX, sectionY - baseSectionY,
+                                    sectionZ - baseSectionZ);
+                        }
+                    }
+                }
+            }
+        }
+        
+        /**
+         * Copy a section's blocks out of the grid; blocks outside the region are air
+         */
+        private void fillSection(VoxelGrid grid, int worldX, int worldY, int worldZ, int firstZ, int lastZ) {
+            int cell = 0;
+            for (int y = 0; y < 16; y++) {
+                int gridY = worldY + y - grid.getOriginY();
+                for (int z = 0; z < 16; z++) {
+                    int blockZ = worldZ + z;
+                    boolean inBand = blockZ >= firstZ && blockZ <= lastZ;
+                    int gridZ = blockZ - grid.getOriginZ();
+                    for (int x = 0; x < 16; x++) {
+                        // The grid reads air outside itself, which covers X and Y beyond the region
+                        cells[cell++] = inBand ? (short) grid.get(worldX + x - grid.getOriginX(), gridY, gridZ) : 0;
+                    }
+                }
+            }
+        }
+        
+        /**
+         * Build the section's palette and pack its indices
+         * @return False if the section is only air and should not be stored
+         */
+        private boolean encodeSection() {
+            int paletteSize = region.getPalette().size();
+            if (localIndex.length < paletteSize) {
+                int length = Math.max(paletteSize, localIndex.length * 2);
+                localIndex = Arrays.copyOf(localIndex, length);
+                localStamp = Arrays.copyOf(localStamp, length);
+            }
+            stamp++;
+            
+            int localSize = 0;
+            boolean empty = true;
+            for (short cell : cells) {
+                int material = cell & 0xFFFF;
+                if (localStamp[material] != stamp) {
+                    localStamp[material] = stamp;
+                    localIndex[material] = localSize;
+                    localPalette[localSize++] = cell;
+                }
+                empty &= material == 0;
+            }
+            if (empty) {
+                return false;
+            }
+            
+            encoded.clear();
+            encoded.putShort((short) localSize);
+            for (int i = 0; i < localSize; i++) {
+                encoded.putShort(localPalette[i]);
+            }
+            
+            int bits = localSize == 1 ? 0 : 32 - Integer.numberOfLeadingZeros(localSize - 1);
+            encoded.put((byte) bits);
+            if (bits > 0) {
+                int perWord = 64 / bits;
+                for (int start = 0; start < cells.length; start += perWord) {
+                    long word = 0;
+                    int end = Math.min(cells.length, start + perWord);
+                    for (int cell = end - 1; cell >= start; cell--) {
+                        word = (word << bits) | localIndex[cells[cell] & 0xFFFF];
+                    }
+                    encoded.putLong(word);
+                }
+            }
+            return true;
+        }
+        
+        /**
+         * Write the encoded section, deflated if that makes it smaller, and record its index entry
+         */
+        private void writeSection(ChannelWriter writer, int sectionX, int sectionY, int sectionZ) throws IOException {
+            int rawLength = encoded.position();
+            byte[] stored = encoded.array();
+            int storedLength = rawLength;
+            
+            if (deflater != null) {
+                deflater.reset();
+                deflater.setInput(encoded.array(), 0, rawLength);
+                deflater.finish();
+                int length = 0;
+                while (!deflater.finished() && length < rawLength) {
+                    length += deflater.deflate(compressed, length, compressed.length - length);
+                }
+                if (deflater.finished() && length < rawLength) {
+                    stored = compressed;
+                    storedLength = length;
+                }
+            }
+            
+            if (count == keys.length) {
+                int length = count * 2;
+                keys = Arrays.copyOf(keys, length);
+                offsets = Arrays.copyOf(offsets, length);
+                storedLengths = Arrays.copyOf(storedLengths, length);
+                rawLengths = Arrays.copyOf(rawLengths, length);
+            }
+            keys[count] = AcmFile.key(sectionX, sectionY, sectionZ);
+            offsets[count] = writer.getPosition();
+            storedLengths[count] = storedLength;
+            rawLengths[count] = rawLength;
+            count++;
+            
+            writer.writeBytes(stored, 0, storedLength);
+        }
+        
+        /**
+         * Write the section index, sorted by position for binary search
+         */
+        void writeIndex(ChannelWriter writer) throws IOException {
+            Integer[] order = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+            
+            for (int i : order) {
+                long key = keys[i];
+                writer.writeIntLE((int) (key & 0x1FFFFF))
+                        .writeIntLE((int) (key >>> 42))
+                        .writeIntLE((int) ((key >>> 21) & 0x1FFFFF))
+                        .writeIntLE((int) offsets[i]).writeIntLE((int) (offsets[i] >>> 32))
+                        .writeIntLE(storedLengths[i])
+                        .writeIntLE(rawLengths[i]);
+            }
+        }
+        
+        void end() {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,365 @@
+package com.archcraft.io.acm;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Random-access reader for the ArchCraft native model format (.acm)
+ *
+ * All numbers are little-endian. The file starts with a fixed header: magic "ACM1", version,
+ * flags, the exported region's minimum and maximum corners, the section count and the offset
+ * of the footer. Sections follow, each one 16x16x16 blocks aligned to the world's chunk and
+ * section grid. The footer holds the material table (entry 0 is always air), the source world
+ * name and the section index, sorted by section position.
+ *
+ * A section stores its own palette of material table entries and one bit-packed palette index
+ * per block in (y, z, x) order, with as many indices per 64-bit word as fit whole. A palette of
+ * one entry needs no indices. Sections may be deflated; a stored length shorter than the raw
+ * length marks a compressed section. Sections of only air are not stored.
+ *
+ * The file is memory mapped and a section is only decoded when it is asked for.
+ */
+public class AcmFile implements Closeable {
+    
+    static final int MAGIC = 0x314D4341; // "ACM1"
+    static final int VERSION = 1;
+    static final int FLAG_COMPRESSED = 1;
+    static final int HEADER_SIZE = 44;
+    static final int FOOTER_OFFSET_POSITION = 36;
+    static final int SECTION_COUNT_POSITION = 32;
+    static final int INDEX_ENTRY_SIZE = 28;
+    
+    public static final int SECTION_SIZE = 16;
+    public static final int SECTION_VOLUME = SECTION_SIZE * SECTION_SIZE * SECTION_SIZE;
+    
+    // Palette length, the largest possible palette, bit width and 16-bit indices for every block
+    static final int MAX_RAW_SECTION_LENGTH = 2 + 0xFFFF * 2 + 1 + SECTION_VOLUME * 2;
+    
+    private final FileChannel channel;
+    private final ByteBuffer mapped;
+    private final int flags;
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int maxX;
+    private final int maxY;
+    private final int maxZ;
+    private final String[] materials;
+    private final String worldName;
+    
+    // Section index, sorted by key
+    private final long[] keys;
+    private final long[] offsets;
+    private final int[] storedLengths;
+    private final int[] rawLengths;
+    
+    private final Inflater inflater = new Inflater();
+    private byte[] compressed = new byte[0];
+    private byte[] raw = new byte[0];
+    
+    private AcmFile(FileChannel channel) throws IOException {
+        this.channel = channel;
+        long size = channel.size();
+        
+        // Files too large for one mapping are mapped a section at a time
+        this.mapped = size <= Integer.MAX_VALUE ? order(channel.map(FileChannel.MapMode.READ_ONLY, 0, size)) : null;
+        
+        if (size < HEADER_SIZE) {
+            throw new IOException("Not an ArchCraft model");
+        }
+        ByteBuffer header = slice(0, HEADER_SIZE);
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("Not an ArchCraft model");
+        }
+        int version = header.getShort(4) & 0xFFFF;
+        if (version > VERSION) {
+            throw new IOException("Model was written by a newer version (format " + version + ")");
+        }
+        this.flags = header.getShort(6) & 0xFFFF;
+        this.minX = header.getInt(8);
+        this.minY = header.getInt(12);
+        this.minZ = header.getInt(16);
+        this.maxX = header.getInt(20);
+        this.maxY = header.getInt(24);
+        this.maxZ = header.getInt(28);
+        int sectionCount = header.getInt(SECTION_COUNT_POSITION);
+        long footerOffset = header.getLong(FOOTER_OFFSET_POSITION);
+        if (footerOffset < HEADER_SIZE || footerOffset >= size || sectionCount < 0) {
+            throw new IOException("Model is truncated or was not finished");
+        }
+        
+        // Counts and lengths come from the file, so check them before allocating anything
+        try {
+            ByteBuffer footer = slice(footerOffset, (int) Math.min(Integer.MAX_VALUE, size - footerOffset));
+            int materialCount = footer.getInt();
+            if (materialCount < 0 || materialCount > footer.remaining() / 2) {
+                throw new IOException("Model material table is corrupt");
+            }
+            this.materials = new String[materialCount];
+            for (int i = 0; i < materials.length; i++) {
+                materials[i] = readString(footer);
+            }
+            this.worldName = readString(footer);
+            
+            if (footer.remaining() < (long) sectionCount * INDEX_ENTRY_SIZE) {
+                throw new IOException("Model section index is truncated");
+            }
+            this.keys = new long[sectionCount];
+            this.offsets = new long[sectionCount];
+            this.storedLengths = new int[sectionCount];
+            this.rawLengths = new int[sectionCount];
+            for (int i = 0; i < sectionCount; i++) {
+                keys[i] = key(footer.getInt(), footer.getInt(), footer.getInt());
+                offsets[i] = footer.getLong();
+                storedLengths[i] = footer.getInt();
+                rawLengths[i] = footer.getInt();
+                if (offsets[i] < HEADER_SIZE || offsets[i] >= footerOffset
+                        || storedLengths[i] < 0 || offsets[i] + storedLengths[i] > footerOffset
+                        || rawLengths[i] < 0 || rawLengths[i] > MAX_RAW_SECTION_LENGTH
+                        || (i > 0 && keys[i] <= keys[i - 1])) {
+                    throw new IOException("Model section index is corrupt");
+                }
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Model footer is truncated or corrupt", e);
+        }
+    }
+    
+    /**
+     * Open a model and read its header, material table and section index
+     * @param file The model file
+     * @return The reader; close it to release the mapping's file handle
+     * @throws IOException If the file could not be read or is not a native model
+     */
+    public static AcmFile open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            return new AcmFile(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * Find a section by position
+     * @param sectionX Section X, counted from the section holding the region's minimum corner
+     * @param sectionY Section Y, counted likewise
+     * @param sectionZ Section Z, counted likewise
+     * @return Index of the section, or -1 if it is all air
+     */
+    public int findSection(int sectionX, int sectionY, int sectionZ) {
+        if (sectionX < 0 || sectionY < 0 || sectionZ < 0) {
+            return -1;
+        }
+        int index = Arrays.binarySearch(keys, key(sectionX, sectionY, sectionZ));
+        return index >= 0 ? index : -1;
+    }
+    
+    /**
+     * Decode a section
+     * @param index Section index, from 0 to {@link #getSectionCount()}
+     * @param cells Receives the material table entry of each block, in (y, z, x) order
+     * @throws IOException If the section is corrupt
+     */
+    public void readSection(int index, short[] cells) throws IOException {
+        ByteBuffer data;
+        if (storedLengths[index] < rawLengths[index]) {
+            data = inflate(index);
+        } else {
+            data = slice(offsets[index], storedLengths[index]);
+        }
+        
+        try {
+            short[] palette = new short[data.getShort() & 0xFFFF];
+            for (int i = 0; i < palette.length; i++) {
+                palette[i] = data.getShort();
+                if ((palette[i] & 0xFFFF) >= materials.length) {
+                    throw new IOException("Model section " + index + " refers to an unknown material");
+                }
+            }
+            int bits = data.get();
+            if (palette.length == 0 || bits < 0 || bits > 16) {
+                throw new IOException("Model section " + index + " is corrupt");
+            }
+            if (bits == 0) {
+                Arrays.fill(cells, 0, SECTION_VOLUME, palette[0]);
+                return;
+            }
+            
+            int perWord = 64 / bits;
+            long mask = (1L << bits) - 1;
+            int cell = 0;
+            while (cell < SECTION_VOLUME) {
+                long word = data.getLong();
+                int end = Math.min(SECTION_VOLUME, cell + perWord);
+                for (; cell < end; cell++) {
+                    int entry = (int) (word & mask);
+                    if (entry >= palette.length) {
+                        throw new IOException("Model section " + index + " is corrupt");
+                    }
+                    cells[cell] = palette[entry];
+                    word >>>= bits;
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Model section " + index + " is truncated");
+        }
+    }
+    
+    private ByteBuffer inflate(int index) throws IOException {
+        int storedLength = storedLengths[index];
+        int rawLength = rawLengths[index];
+        if (compressed.length < storedLength) {
+            compressed = new byte[storedLength];
+        }
+        if (raw.length < rawLength) {
+            raw = new byte[rawLength];
+        }
+        slice(offsets[index], storedLength).get(compressed, 0, storedLength);
+        
+        inflater.reset();
+        inflater.setInput(compressed, 0, storedLength);
+        try {
+            int length = inflater.inflate(raw, 0, rawLength);
+            if (length != rawLength || !inflater.finished()) {
+                throw new IOException("Model section " + index + " is corrupt");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Model section " + index + " is corrupt", e);
+        }
+        return ByteBuffer.wrap(raw, 0, rawLength).order(ByteOrder.LITTLE_ENDIAN);
+    }
+    
+    private ByteBuffer slice(long offset, int length) throws IOException {
+        if (mapped == null) {
+            return order(channel.map(FileChannel.MapMode.READ_ONLY, offset, length));
+        }
+        ByteBuffer view = mapped.duplicate();
+        view.position((int) offset).limit((int) offset + length);
+        return order(view.slice());
+    }
+    
+    private static ByteBuffer order(ByteBuffer buffer) {
+        return buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+    
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Sort key of a section position, in (y, z, x) order like the blocks within a section
+     */
+    static long key(int sectionX, int sectionY, int sectionZ) {
+        return ((long) sectionY << 42) | ((long) sectionZ << 21) | sectionX;
+    }
+    
+    public int getSectionCount() {
+        return keys.length;
+    }
+    
+    public int getSectionX(int index) {
+        return (int) (keys[index] & 0x1FFFFF);
+    }
+    
+    public int getSectionY(int index) {
+        return (int) (keys[index] >>> 42);
+    }
+    
+    public int getSectionZ(int index) {
+        return (int) ((keys[index] >>> 21) & 0x1FFFFF);
+    }
+    
+    /**
+     * Get the position of a section's first block relative to the region's minimum corner
+     * Sections are world aligned, so the first sections can start before the region
+     * @param index Section index
+     * @return X offset of the section from the minimum corner
+     */
+    public int getSectionOriginX(int index) {
+        return (((minX >> 4) + getSectionX(index)) << 4) - minX;
+    }
+    
+    public int getSectionOriginY(int index) {
+        return (((minY >> 4) + getSectionY(index)) << 4) - minY;
+    }
+    
+    public int getSectionOriginZ(int index) {
+        return (((minZ >> 4) + getSectionZ(index)) << 4) - minZ;
+    }
+    
+    /**
+     * Get the material table
+     * @return Material names by table entry; entry 0 is air
+     */
+    public String[] getMaterials() {
+        return materials;
+    }
+    
+    public boolean isCompressed() {
+        return (flags & FLAG_COMPRESSED) != 0;
+    }
+    
+    public String getWorldName() {
+        return worldName;
+    }
+    
+    public int getMinX() {
+        return minX;
+    }
+    
+    public int getMinY() {
+        return minY;
+    }
+    
+    public int getMinZ() {
+        return minZ;
+    }
+    
+    public int getMaxX() {
+        return maxX;
+    }
+    
+    public int getMaxY() {
+        return maxY;
+    }
+    
+    public int getMaxZ() {
+        return maxZ;
+    }
+    
+    /**
+     * Get the size of the region along X
+     * @return Width in blocks
+     */
+    public int getWidth() {
+        return maxX - minX + 1;
+    }
+    
+    public int getHeight() {
+        return maxY - minY + 1;
+    }
+    
+    public int getDepth() {
+        return maxZ - minZ + 1;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        channel.close();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,130 @@
+package com.archcraft.io.acm;
+
+import com.archcraft.io.ModelFormat;
+import com.archcraft.io.ModelImporter;
+import com.archcraft.io.ModelInfo;
+import com.archcraft.io.job.ModelJob;
+import com.archcraft.io.voxel.Transform;
+import com.archcraft.io.voxel.VoxelModel;
+
+import org.bukkit.ChatColor;
+import org.bukkit.Material;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Importer for the ArchCraft native model format
+ * Blocks are read back exactly as they were exported, with no meshing or voxelizing. Each
+ * stored block is moved through the import transform by its center, so rotations and
+ * offsets are exact; scaling up leaves gaps between the blocks.
+ */
+public class AcmImporter implements ModelImporter {
+    
+    // How often reading checks for cancellation
+    private static final int CANCEL_CHECK_INTERVAL = 64;
+    
+    @Override
+    public VoxelModel importModel(File file, Transform transform, ModelJob job)
+            throws IOException, UnsupportedOperationException {
+        
+        try (AcmFile model = AcmFile.open(file)) {
+            Material[] materials = resolveMaterials(model.getMaterials(), job);
+            
+            int sectionCount = model.getSectionCount();
+            VoxelModel result = new VoxelModel((int) Math.min(1 << 24, sectionCount * 1024L));
+            short[] cells = new short[AcmFile.SECTION_VOLUME];
+            double[] xs = new double[AcmFile.SECTION_VOLUME];
+            double[] ys = new double[AcmFile.SECTION_VOLUME];
+            double[] zs = new double[AcmFile.SECTION_VOLUME];
+            short[] blocks = new short[AcmFile.SECTION_VOLUME];
+            
+            for (int s = 0; s < sectionCount; s++) {
+                if (s % CANCEL_CHECK_INTERVAL == 0) {
+                    job.checkCancelled();
+                    job.setProgress("Reading section " + (s + 1) + "/" + sectionCount);
+                }
+                model.readSection(s, cells);
+                
+                // Block centers relative to the model's minimum corner
+                int originX = model.getSectionOriginX(s);
+                int originY = model.getSectionOriginY(s);
+                int originZ = model.getSectionOriginZ(s);
+                int count = 0;
+                for (int cell = 0; cell < AcmFile.SECTION_VOLUME; cell++) {
+                    int block = cells[cell] & 0xFFFF;
+                    if (materials[block] == null) {
+                        continue;
+                    }
+                    xs[count] = originX + (cell & 15) + 0.5;
+                    ys[count] = originY + (cell >>> 8) + 0.5;
+                    zs[count] = originZ + ((cell >> 4) & 15) + 0.5;
+                    blocks[count] = (short) block;
+                    count++;
+                }
+                
+                transform.apply(xs, ys, zs, count);
+                for (int i = 0; i < count; i++) {
+                    result.set((int) Math.floor(xs[i]), (int) Math.floor(ys[i]), (int) Math.floor(zs[i]),
+                            materials[blocks[i] & 0xFFFF]);
+                }
+            }
+            return result;
+        }
+    }
+    
+    /**
+     * Read the bounds from the header; blocks have no vertices or faces to count
+     * Every stored section counts as full, which bounds the blocks an import can place.
+     */
+    @Override
+    public ModelInfo.Geometry describe(File file) throws IOException {
+        try (AcmFile model = AcmFile.open(file)) {
+            return new ModelInfo.Geometry(-1, -1, -1, new double[3],
+                    new double[]{model.getWidth(), model.getHeight(), model.getDepth()},
+                    (long) model.getSectionCount() * AcmFile.SECTION_VOLUME, false);
+        }
+    }
+    
+    /**
+     * Look up the model's materials on this server
+     * @return Materials by table entry; null for air and for blocks this server does not know
+     */
+    private Material[] resolveMaterials(String[] names, ModelJob job) {
+        Material[] materials = new Material[names.length];
+        int unknown = 0;
+        for (int i = 1; i < names.length; i++) {
+            materials[i] = Material.matchMaterial(names[i]);
+            if (materials[i] == null) {
+                unknown++;
+            } else if (materials[i].isAir()) {
+                materials[i] = null;
+            }
+        }
+        if (unknown > 0) {
+            job.sendMessage(ChatColor.YELLOW + "Skipping " + unknown + " block type(s) this server does not know");
+        }
+        return materials;
+    }
+    
+    @Override
+    public ModelFormat getFormat() {
+        return ModelFormat.ACM;
+    }
+    
+    @Override
+    public boolean supportsFeature(ImportFeature feature) {
+        switch (feature) {
+            case MATERIALS:
+            case METADATA:
+            case SCALING:
+                return true;
+            case TEXTURES:
+            case COLORS:
+            case ANIMATION:
+                return false;
+            default:
+                return false;
+        }
+    }
+}
\ No newline at end of file
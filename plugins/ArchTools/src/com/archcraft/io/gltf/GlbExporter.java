@@ -0,0 +1,618 @@
+package com.archcraft.io.gltf;
+
+import com.archcraft.Main;
+import com.archcraft.io.ChannelWriter;
+import com.archcraft.io.ExportOptions;
+import com.archcraft.io.ModelExporter;
+import com.archcraft.io.ModelFormat;
+import com.archcraft.io.job.ModelJob;
+import com.archcraft.io.mesh.ExportRegion;
+import com.archcraft.io.mesh.MaterialColors;
+import com.archcraft.io.mesh.MaterialPalette;
+import com.archcraft.io.mesh.MeshBuffer;
+import com.archcraft.io.mesh.RegionMesher;
+import com.archcraft.io.mesh.VoxelGrid;
+
+import org.bukkit.ChatColor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exporter for binary glTF (GLB) format
+ * The visible surface becomes one mesh with a primitive per material. Meshed boxes whose
+ * geometry repeats elsewhere in the region are stored once as a mesh of their own and placed
+ * by translated nodes. Geometry is streamed to temporary files while the region is meshed and
+ * copied into the binary chunk at the end, so memory does not grow with the model.
+ */
+public class GlbExporter implements ModelExporter {
+    
+    private static final int GLB_MAGIC = 0x46546C67; // "glTF"
+    private static final int GLB_VERSION = 2;
+    private static final int CHUNK_JSON = 0x4E4F534A; // "JSON"
+    private static final int CHUNK_BIN = 0x004E4942; // "BIN\0"
+    
+    private static final int COMPONENT_FLOAT = 5126;
+    private static final int COMPONENT_UNSIGNED_INT = 5125;
+    private static final int TARGET_ARRAY_BUFFER = 34962;
+    private static final int TARGET_ELEMENT_ARRAY_BUFFER = 34963;
+    
+    // Interleaved float32 position and normal
+    private static final int VERTEX_STRIDE = 24;
+    
+    // Four vertices and six uint32 indices per quad
+    private static final int QUAD_BYTES = 4 * VERTEX_STRIDE + 6 * 4;
+    
+    // GLB lengths are uint32, for the whole file as well as for each chunk
+    private static final long MAX_GLB_LENGTH = 0xFFFFFFFFL;
+    
+    // Boxes with fewer quads are cheaper to keep in the main mesh than to instance
+    private static final int MIN_INSTANCE_QUADS = 16;
+    
+    // Per-stream write buffer; one material keeps two streams open
+    private static final int STREAM_BUFFER_SIZE = 1 << 16;
+    
+    // Unit normal of each face direction, indexed by axis * 2 + (positive ? 1 : 0)
+    private static final float[][] NORMALS = {
+            {-1, 0, 0}, {1, 0, 0}, {0, -1, 0}, {0, 1, 0}, {0, 0, -1}, {0, 0, 1}
+    };
+    
+    @Override
+    public void exportModel(ExportRegion region, File outputFile, ExportOptions options, ModelJob job)
+            throws IOException, UnsupportedOperationException {
+        
+        // Create directory if it doesn't exist
+        outputFile.getParentFile().mkdirs();
+        
+        GeometryCollector collector = new GeometryCollector(outputFile, region, options.getScale());
+        try {
+            RegionMesher.mesh(region, new RegionMesher.MeshSink[]{collector},
+                    Main.getInstance().getConfigManager().getExportMeshThreads(), job);
+            
+            job.checkCancelled();
+            job.setProgress("Writing GLB");
+            collector.writeGlb(outputFile, region.getPalette());
+            
+            job.sendMessage(ChatColor.GRAY + "Wrote " + collector.quadCount + " faces in "
+                    + collector.materials.size() + " materials, with " + collector.instanceNodes.size()
+                    + " instances of " + collector.instanceMeshes.size() + " repeated sections");
+        } finally {
+            collector.deleteStreams();
+        }
+    }
+    
+    @Override
+    public ModelFormat getFormat() {
+        return ModelFormat.GLB;
+    }
+    
+    @Override
+    public boolean supportsFeature(ExportFeature feature) {
+        switch (feature) {
+            case MATERIALS:
+            case COLORS:
+            case HOLLOW_OPTIMIZATION:
+                return true;
+            case TEXTURES:
+            case METADATA:
+            case LOD_GENERATION:
+                return false;
+            default:
+                return false;
+        }
+    }
+    
+    /**
+     * Collects the meshed region into vertex and index streams, then assembles the GLB
+     */
+    private static class GeometryCollector implements RegionMesher.MeshSink {
+        private final File outputFile;
+        private final ExportRegion region;
+        private final double scale;
+        
+        // Main mesh: one stream pair, and so one primitive, per material
+        private final Map<Integer, GeometryStream> materials = new HashMap<>();
+        private final List<Integer> materialOrder = new ArrayList<>();
+        
+        // Instanced meshes share one stream pair, each primitive a range of it
+        private GeometryStream instanceStream;
+        private final Map<ShapeKey, Integer> shapes = new HashMap<>();
+        private final List<List<Primitive>> instanceMeshes = new ArrayList<>();
+        private final List<float[]> instanceNodes = new ArrayList<>();
+        private final List<Integer> instanceNodeMeshes = new ArrayList<>();
+        
+        private int[] boxMaterials = new int[16];
+        private long quadCount;
+        
+        GeometryCollector(File outputFile, ExportRegion region, double scale) {
+            this.outputFile = outputFile;
+            this.region = region;
+            this.scale = scale;
+        }
+        
+        @Override
+        public void write(MeshBuffer buffer, VoxelGrid grid) throws IOException {
+            int quads = buffer.getQuadCount();
+            if (quads == 0) {
+                return;
+            }
+            quadCount += quads;
+            int offsetX = grid.getOriginX() - region.getMinX();
+            int offsetY = grid.getOriginY() - region.getMinY();
+            int offsetZ = grid.getOriginZ() - region.getMinZ();
+            
+            if (quads < MIN_INSTANCE_QUADS) {
+                writeInline(buffer, offsetX, offsetY, offsetZ);
+                return;
+            }
+            
+            // Identify the box's geometry relative to its own lowest corner
+            int minX = Integer.MAX_VALUE;
+            int minY = Integer.MAX_VALUE;
+            int minZ = Integer.MAX_VALUE;
+            for (int v = 0; v < buffer.getVertexCount(); v++) {
+                minX = Math.min(minX, buffer.getVertexX(v));
+                minY = Math.min(minY, buffer.getVertexY(v));
+                minZ = Math.min(minZ, buffer.getVertexZ(v));
+            }
+            ShapeKey key = ShapeKey.of(buffer, minX, minY, minZ);
+            
+            // The first occurrence stays in the main mesh; the second one becomes the shared mesh
+            Integer mesh = shapes.get(key);
+            if (mesh == null) {
+                shapes.put(key, -1);
+                writeInline(buffer, offsetX, offsetY, offsetZ);
+                return;
+            }
+            if (mesh < 0) {
+                mesh = writeInstanceMesh(buffer, minX, minY, minZ);
+                shapes.put(key, mesh);
+            }
+            instanceNodeMeshes.add(mesh);
+            instanceNodes.add(new float[]{
+                    (float) ((minX + offsetX) * scale),
+                    (float) ((minY + offsetY) * scale),
+                    (float) ((minZ + offsetZ) * scale)
+            });
+        }
+        
+        /**
+         * Append a box to the main mesh, at its place in the region
+         */
+        private void writeInline(MeshBuffer buffer, int offsetX, int offsetY, int offsetZ) throws IOException {
+            for (int q = 0; q < buffer.getQuadCount(); q++) {
+                int material = buffer.getMaterial(q);
+                GeometryStream stream = materials.get(material);
+                if (stream == null) {
+                    stream = new GeometryStream(outputFile, "m" + material);
+                    materials.put(material, stream);
+                    materialOrder.add(material);
+                }
+                stream.writeQuad(buffer, q, offsetX, offsetY, offsetZ, scale);
+            }
+        }
+        
+        /**
+         * Write a box as a mesh of its own, relative to its lowest corner
+         * @return Index of the new instance mesh
+         */
+        private int writeInstanceMesh(MeshBuffer buffer, int minX, int minY, int minZ) throws IOException {
+            if (instanceStream == null) {
+                instanceStream = new GeometryStream(outputFile, "instances");
+            }
+            
+            // Group the box's quads by material, one primitive each
+            int distinct = 0;
+            for (int q = 0; q < buffer.getQuadCount(); q++) {
+                int material = buffer.getMaterial(q);
+                int i = 0;
+                while (i < distinct && boxMaterials[i] != material) {
+                    i++;
+                }
+                if (i == distinct) {
+                    if (distinct == boxMaterials.length) {
+                        boxMaterials = Arrays.copyOf(boxMaterials, distinct * 2);
+                    }
+                    boxMaterials[distinct++] = material;
+                }
+            }
+            
+            List<Primitive> primitives = new ArrayList<>();
+            for (int i = 0; i < distinct; i++) {
+                Primitive primitive = instanceStream.startPrimitive(boxMaterials[i]);
+                for (int q = 0; q < buffer.getQuadCount(); q++) {
+                    if (buffer.getMaterial(q) == boxMaterials[i]) {
+                        instanceStream.writeQuad(buffer, q, -minX, -minY, -minZ, scale);
+                    }
+                }
+                instanceStream.endPrimitive(primitive);
+                primitives.add(primitive);
+            }
+            instanceMeshes.add(primitives);
+            return instanceMeshes.size() - 1;
+        }
+        
+        /**
+         * Assemble the GLB from the streams
+         */
+        void writeGlb(File file, MaterialPalette palette) throws IOException {
+            List<GeometryStream> streams = new ArrayList<>();
+            List<Primitive> mainPrimitives = new ArrayList<>();
+            for (int material : materialOrder) {
+                GeometryStream stream = materials.get(material);
+                stream.close();
+                streams.add(stream);
+                mainPrimitives.add(stream.asPrimitive(material));
+            }
+            if (instanceStream != null) {
+                instanceStream.close();
+                streams.add(instanceStream);
+            }
+            
+            // glTF material for each palette entry that produced faces
+            Map<Integer, Integer> gltfMaterials = new HashMap<>();
+            StringBuilder materialJson = new StringBuilder();
+            for (int material = 1; material < palette.size(); material++) {
+                if (!isUsed(material, mainPrimitives)) {
+                    continue;
+                }
+                float[] rgb = MaterialColors.getColor(palette.get(material));
+                boolean transparent = palette.isTransparent(material);
+                appendSeparator(materialJson);
+                materialJson.append("{\"name\":\"mc_").append(palette.get(material).name().toLowerCase())
+                        .append("\",\"pbrMetallicRoughness\":{\"baseColorFactor\":[")
+                        .append(rgb[0]).append(',').append(rgb[1]).append(',').append(rgb[2]).append(',')
+                        .append(transparent ? 0.5f : 1.0f)
+                        .append("],\"metallicFactor\":0,\"roughnessFactor\":1}")
+                        .append(transparent ? ",\"alphaMode\":\"BLEND\"" : "").append('}');
+                gltfMaterials.put(material, gltfMaterials.size());
+            }
+            
+            // One buffer view for the vertices and one for the indices of each stream
+            StringBuilder views = new StringBuilder();
+            long binaryLength = 0;
+            for (int i = 0; i < streams.size(); i++) {
+                GeometryStream stream = streams.get(i);
+                stream.vertexView = i * 2;
+                stream.indexView = i * 2 + 1;
+                appendSeparator(views);
+                views.append("{\"buffer\":0,\"byteOffset\":").append(binaryLength)
+                        .append(",\"byteLength\":").append(stream.getVertexBytes())
+                        .append(",\"byteStride\":").append(VERTEX_STRIDE)
+                        .append(",\"target\":").append(TARGET_ARRAY_BUFFER).append('}');
+                binaryLength += stream.getVertexBytes();
+                views.append(",{\"buffer\":0,\"byteOffset\":").append(binaryLength)
+                        .append(",\"byteLength\":").append(stream.getIndexBytes())
+                        .append(",\"target\":").append(TARGET_ELEMENT_ARRAY_BUFFER).append('}');
+                binaryLength += stream.getIndexBytes();
+            }
+            
+            // Mesh 0 is the region's main mesh; instance meshes follow
+            StringBuilder accessors = new StringBuilder();
+            StringBuilder meshes = new StringBuilder();
+            int accessorCount = 0;
+            List<List<Primitive>> allMeshes = new ArrayList<>();
+            if (!mainPrimitives.isEmpty()) {
+                allMeshes.add(mainPrimitives);
+            }
+            allMeshes.addAll(instanceMeshes);
+            
+            for (int m = 0; m < allMeshes.size(); m++) {
+                appendSeparator(meshes);
+                meshes.append("{\"primitives\":[");
+                List<Primitive> primitives = allMeshes.get(m);
+                for (int p = 0; p < primitives.size(); p++) {
+                    Primitive primitive = primitives.get(p);
+                    appendAccessors(accessors, primitive);
+                    meshes.append(p > 0 ? "," : "")
+                            .append("{\"attributes\":{\"POSITION\":").append(accessorCount)
+                            .append(",\"NORMAL\":").append(accessorCount + 1)
+                            .append("},\"indices\":").append(accessorCount + 2)
+                            .append(",\"material\":").append(gltfMaterials.get(primitive.material)).append('}');
+                    accessorCount += 3;
+                }
+                meshes.append("]}");
+            }
+            
+            StringBuilder nodes = new StringBuilder();
+            StringBuilder sceneNodes = new StringBuilder();
+            int nodeCount = 0;
+            int firstInstanceMesh = mainPrimitives.isEmpty() ? 0 : 1;
+            if (!mainPrimitives.isEmpty()) {
+                nodes.append("{\"name\":\"region\",\"mesh\":0}");
+                sceneNodes.append(nodeCount++);
+            }
+            for (int i = 0; i < instanceNodes.size(); i++) {
+                float[] translation = instanceNodes.get(i);
+                appendSeparator(nodes);
+                nodes.append("{\"mesh\":").append(firstInstanceMesh + instanceNodeMeshes.get(i))
+                        .append(",\"translation\":[").append(translation[0]).append(',')
+                        .append(translation[1]).append(',').append(translation[2]).append("]}");
+                appendSeparator(sceneNodes);
+                sceneNodes.append(nodeCount++);
+            }
+            
+            StringBuilder json = new StringBuilder();
+            json.append("{\"asset\":{\"version\":\"2.0\",\"generator\":\"ArchCraft\"}")
+                    .append(",\"scene\":0,\"scenes\":[{\"nodes\":[").append(sceneNodes).append("]}]");
+            if (nodeCount > 0) {
+                json.append(",\"nodes\":[").append(nodes).append(']')
+                        .append(",\"meshes\":[").append(meshes).append(']')
+                        .append(",\"materials\":[").append(materialJson).append(']')
+                        .append(",\"accessors\":[").append(accessors).append(']')
+                        .append(",\"bufferViews\":[").append(views).append(']')
+                        .append(",\"buffers\":[{\"byteLength\":").append(binaryLength).append("}]");
+            }
+            json.append('}');
+            
+            // Chunks are padded to 4 bytes: JSON with spaces, binary data is already aligned
+            byte[] jsonBytes = json.toString().getBytes(StandardCharsets.UTF_8);
+            int jsonLength = (jsonBytes.length + 3) & ~3;
+            long totalLength = 12 + 8 + jsonLength + (binaryLength > 0 ? 8 + binaryLength : 0);
+            if (totalLength > MAX_GLB_LENGTH) {
+                throw new IOException("Model is too large for GLB (" + totalLength / (1024 * 1024) + " MB, limit 4 GB)");
+            }
+            
+            try (ChannelWriter writer = new ChannelWriter(file)) {
+                writer.writeIntLE(GLB_MAGIC).writeIntLE(GLB_VERSION).writeIntLE((int) totalLength);
+                writer.writeIntLE(jsonLength).writeIntLE(CHUNK_JSON).writeBytes(jsonBytes);
+                for (int i = jsonBytes.length; i < jsonLength; i++) {
+                    writer.write(' ');
+                }
+                if (binaryLength > 0) {
+                    writer.writeIntLE((int) binaryLength).writeIntLE(CHUNK_BIN);
+                    for (GeometryStream stream : streams) {
+                        writer.writeFile(stream.vertexFile);
+                        writer.writeFile(stream.indexFile);
+                    }
+                }
+            }
+        }
+        
+        private void appendAccessors(StringBuilder accessors, Primitive primitive) {
+            GeometryStream stream = primitive.stream;
+            appendSeparator(accessors);
+            accessors.append("{\"bufferView\":").append(stream.vertexView)
+                    .append(",\"byteOffset\":").append(primitive.firstVertex * VERTEX_STRIDE)
+                    .append(",\"componentType\":").append(COMPONENT_FLOAT)
+                    .append(",\"count\":").append(primitive.vertexCount)
+                    .append(",\"type\":\"VEC3\",\"min\":[").append(primitive.min[0]).append(',')
+                    .append(primitive.min[1]).append(',').append(primitive.min[2])
+                    .append("],\"max\":[").append(primitive.max[0]).append(',')
+                    .append(primitive.max[1]).append(',').append(primitive.max[2]).append("]}");
+            accessors.append(",{\"bufferView\":").append(stream.vertexView)
+                    .append(",\"byteOffset\":").append(primitive.firstVertex * VERTEX_STRIDE + 12)
+                    .append(",\"componentType\":").append(COMPONENT_FLOAT)
+                    .append(",\"count\":").append(primitive.vertexCount)
+                    .append(",\"type\":\"VEC3\"}");
+            accessors.append(",{\"bufferView\":").append(stream.indexView)
+                    .append(",\"byteOffset\":").append(primitive.firstIndex * 4)
+                    .append(",\"componentType\":").append(COMPONENT_UNSIGNED_INT)
+                    .append(",\"count\":").append(primitive.indexCount)
+                    .append(",\"type\":\"SCALAR\"}");
+        }
+        
+        private boolean isUsed(int material, List<Primitive> mainPrimitives) {
+            for (Primitive primitive : mainPrimitives) {
+                if (primitive.material == material) {
+                    return true;
+                }
+            }
+            for (List<Primitive> mesh : instanceMeshes) {
+                for (Primitive primitive : mesh) {
+                    if (primitive.material == material) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+        
+        private static void appendSeparator(StringBuilder builder) {
+            if (builder.length() > 0) {
+                builder.append(',');
+            }
+        }
+        
+        void deleteStreams() {
+            for (GeometryStream stream : materials.values()) {
+                stream.delete();
+            }
+            if (instanceStream != null) {
+                instanceStream.delete();
+            }
+        }
+    }
+    
+    /**
+     * Interleaved vertex data and uint32 indices, written to temporary files
+     * Each quad gets four vertices of its own, as faces of a block model don't share normals
+     */
+    private static class GeometryStream {
+        private final File vertexFile;
+        private final File indexFile;
+        private final ChannelWriter vertices;
+        private final ChannelWriter indices;
+        private final float[] min = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE};
+        private final float[] max = {-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+        private long vertexCount;
+        private long indexCount;
+        private long writtenBytes;
+        private int vertexView;
+        private int indexView;
+        
+        GeometryStream(File outputFile, String name) throws IOException {
+            File directory = outputFile.getAbsoluteFile().getParentFile();
+            this.vertexFile = File.createTempFile(outputFile.getName() + "." + name + ".", ".vtx.tmp", directory);
+            this.indexFile = File.createTempFile(outputFile.getName() + "." + name + ".", ".idx.tmp", directory);
+            this.vertices = new ChannelWriter(vertexFile, STREAM_BUFFER_SIZE);
+            this.indices = new ChannelWriter(indexFile, STREAM_BUFFER_SIZE);
+        }
+        
+        void writeQuad(MeshBuffer buffer, int quad, int offsetX, int offsetY, int offsetZ, double scale)
+                throws IOException {
+            // Fail before an index wraps or the stream alone outgrows the binary chunk
+            if (vertexCount + 4 > MAX_GLB_LENGTH + 1 || writtenBytes + QUAD_BYTES > MAX_GLB_LENGTH) {
+                throw new IOException("Model is too large for GLB (limit 4 GB)");
+            }
+            float[] normal = NORMALS[buffer.getNormal(quad)];
+            for (int corner = 0; corner < 4; corner++) {
+                int vertex = buffer.getCorner(quad, corner);
+                float x = (float) ((buffer.getVertexX(vertex) + offsetX) * scale);
+                float y = (float) ((buffer.getVertexY(vertex) + offsetY) * scale);
+                float z = (float) ((buffer.getVertexZ(vertex) + offsetZ) * scale);
+                vertices.writeFloatLE(x).writeFloatLE(y).writeFloatLE(z)
+                        .writeFloatLE(normal[0]).writeFloatLE(normal[1]).writeFloatLE(normal[2]);
+                
+                min[0] = Math.min(min[0], x);
+                min[1] = Math.min(min[1], y);
+                min[2] = Math.min(min[2], z);
+                max[0] = Math.max(max[0], x);
+                max[1] = Math.max(max[1], y);
+                max[2] = Math.max(max[2], z);
+            }
+            
+            // Corners are counter-clockwise seen from outside, which glTF treats as the front
+            int base = (int) vertexCount;
+            indices.writeIntLE(base).writeIntLE(base + 1).writeIntLE(base + 2)
+                    .writeIntLE(base).writeIntLE(base + 2).writeIntLE(base + 3);
+            vertexCount += 4;
+            indexCount += 6;
+            writtenBytes += QUAD_BYTES;
+        }
+        
+        /**
+         * Start a primitive covering the quads written from now on
+         * Indices restart at 0 for each primitive, relative to its first vertex
+         */
+        Primitive startPrimitive(int material) {
+            Primitive primitive = new Primitive(this, material, vertexCount, indexCount);
+            Arrays.fill(min, Float.MAX_VALUE);
+            Arrays.fill(max, -Float.MAX_VALUE);
+            vertexCount = 0;
+            indexCount = 0;
+            return primitive;
+        }
+        
+        void endPrimitive(Primitive primitive) {
+            primitive.vertexCount = vertexCount;
+            primitive.indexCount = indexCount;
+            primitive.min = min.clone();
+            primitive.max = max.clone();
+            vertexCount = primitive.firstVertex + vertexCount;
+            indexCount = primitive.firstIndex + indexCount;
+        }
+        
+        /**
+         * Describe the whole stream as a single primitive
+         */
+        Primitive asPrimitive(int material) {
+            Primitive primitive = new Primitive(this, material, 0, 0);
+            primitive.vertexCount = vertexCount;
+            primitive.indexCount = indexCount;
+            primitive.min = min.clone();
+            primitive.max = max.clone();
+            return primitive;
+        }
+        
+        long getVertexBytes() {
+            return vertexCount * VERTEX_STRIDE;
+        }
+        
+        long getIndexBytes() {
+            return indexCount * 4;
+        }
+        
+        void close() throws IOException {
+            vertices.close();
+            indices.close();
+        }
+        
+        void delete() {
+            try {
+                close();
+            } catch (IOException e) {
+                // Only cleaning up
+            }
+            vertexFile.delete();
+            indexFile.delete();
+        }
+    }
+    
+    /**
+     * A range of a geometry stream drawn with one material
+     */
+    private static class Primitive {
+        private final GeometryStream stream;
+        private final int material;
+        private final long firstVertex;
+        private final long firstIndex;
+        private long vertexCount;
+        private long indexCount;
+        private float[] min;
+        private float[] max;
+        
+        Primitive(GeometryStream stream, int material, long firstVertex, long firstIndex) {
+            this.stream = stream;
+            this.material = material;
+            this.firstVertex = firstVertex;
+            this.firstIndex = firstIndex;
+        }
+    }
+    
+    /**
+     * Identifies the geometry of a meshed box independent of its position
+     * Two 64-bit hashes and the quad count make accidental matches practically impossible
+     */
+    private static class ShapeKey {
+        private final long hash1;
+        private final long hash2;
+        private final int quads;
+        
+        private ShapeKey(long hash1, long hash2, int quads) {
+            this.hash1 = hash1;
+            this.hash2 = hash2;
+            this.quads = quads;
+        }
+        
+        static ShapeKey of(MeshBuffer buffer, int minX, int minY, int minZ) {
+            long hash1 = 0xCBF29CE484222325L;
+            long hash2 = 0x84222325CBF29CE4L;
+            for (int q = 0; q < buffer.getQuadCount(); q++) {
+                int value = buffer.getMaterial(q) * 8 + buffer.getNormal(q);
+                hash1 = (hash1 ^ value) * 0x100000001B3L;
+                hash2 = (hash2 + value) * 0x9E3779B97F4A7C15L;
+                for (int corner = 0; corner < 4; corner++) {
+                    int vertex = buffer.getCorner(q, corner);
+                    int local = ((buffer.getVertexX(vertex) - minX) << 20)
+                            | ((buffer.getVertexY(vertex) - minY) << 10)
+                            | (buffer.getVertexZ(vertex) - minZ);
+                    hash1 = (hash1 ^ local) * 0x100000001B3L;
+                    hash2 = (hash2 + local) * 0x9E3779B97F4A7C15L;
+                    hash2 ^= hash2 >>> 29;
+                }
+            }
+            return new ShapeKey(hash1, hash2, buffer.getQuadCount());
+        }
+        
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof ShapeKey)) {
+                return false;
+            }
+            ShapeKey key = (ShapeKey) other;
+            return hash1 == key.hash1 && hash2 == key.hash2 && quads == key.quads;
+        }
+        
+        @Override
+        public int hashCode() {
+            return (int) (hash1 ^ (hash1 >>> 32));
+        }
+    }
+}
\ No newline at end of file
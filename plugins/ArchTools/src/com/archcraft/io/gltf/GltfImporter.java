@@ -0,0 +1,876 @@
+package com.archcraft.io.gltf;
+
+import com.archcraft.io.ModelFormat;
+import com.archcraft.io.ModelImporter;
+import com.archcraft.io.ModelInfo;
+import com.archcraft.io.job.ModelJob;
+import com.archcraft.io.voxel.BlockPalette;
+import com.archcraft.io.voxel.Transform;
+import com.archcraft.io.voxel.TriangleBatch;
+import com.archcraft.io.voxel.VoxelModel;
+import com.archcraft.io.voxel.Voxelizer;
+
+import org.bukkit.ChatColor;
+import org.bukkit.Material;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Importer for glTF 2.0, both binary (GLB) and text with external or embedded buffers
+ * Only the JSON is parsed into objects. Buffers are memory mapped and accessors read them
+ * through typed views, so vertex and index data is never copied. Meshes are placed by their
+ * nodes' transforms and their triangles stream into the voxelizer.
+ */
+public class GltfImporter implements ModelImporter {
+    
+    private static final int GLB_MAGIC = 0x46546C67; // "glTF"
+    private static final int CHUNK_JSON = 0x4E4F534A; // "JSON"
+    private static final int CHUNK_BIN = 0x004E4942; // "BIN\0"
+    
+    private static final int COMPONENT_BYTE = 5120;
+    private static final int COMPONENT_UNSIGNED_BYTE = 5121;
+    private static final int COMPONENT_SHORT = 5122;
+    private static final int COMPONENT_UNSIGNED_SHORT = 5123;
+    private static final int COMPONENT_UNSIGNED_INT = 5125;
+    private static final int COMPONENT_FLOAT = 5126;
+    
+    private static final int MODE_TRIANGLES = 4;
+    private static final int MODE_TRIANGLE_STRIP = 5;
+    private static final int MODE_TRIANGLE_FAN = 6;
+    
+    // How often voxelizing checks for cancellation, in triangles
+    private static final int CANCEL_CHECK_INTERVAL = 4096;
+    
+    // Materials less opaque than this are matched against glass blocks
+    private static final float GLASS_OPACITY = 0.6f;
+    
+    // Geometry compression extensions this importer can't decode
+    private static final List<String> UNSUPPORTED_EXTENSIONS = Arrays.asList(
+            "KHR_draco_mesh_compression", "EXT_meshopt_compression");
+    
+    private final ModelFormat format;
+    
+    /**
+     * Create an importer; both formats are read the same way, told apart by their content
+     * @param format {@link ModelFormat#GLB} or {@link ModelFormat#GLTF}
+     */
+    public GltfImporter(ModelFormat format) {
+        this.format = format;
+    }
+    
+    @Override
+    public VoxelModel importModel(File file, Transform transform, ModelJob job)
+            throws IOException, UnsupportedOperationException {
+        
+        Document document = Document.open(file);
+        List<Instance> instances = document.getInstances();
+        
+        long total = 0;
+        for (Instance instance : instances) {
+            for (Map<String, Object> primitive : document.getPrimitives(instance.mesh)) {
+                total += document.getTriangleCount(primitive);
+            }
+        }
+        job.sendMessage(ChatColor.YELLOW + "Building model with " + total + " triangles from "
+                + instances.size() + " mesh instance(s)...");
+        
+        BlockMaterial[] materials = resolveMaterials(document);
+        VoxelModel model = new VoxelModel();
+        TriangleBatch batch = new TriangleBatch(transform, new Voxelizer(model));
+        double[] corners = new double[9];
+        int[] vertices = new int[3];
+        long done = 0;
+        long invalid = 0;
+        
+        for (Instance instance : instances) {
+            for (Map<String, Object> primitive : document.getPrimitives(instance.mesh)) {
+                long triangles = document.getTriangleCount(primitive);
+                if (triangles == 0) {
+                    continue;
+                }
+                Accessor positions = document.getAccessor(attribute(primitive, "POSITION"));
+                int indicesIndex = integer(primitive, "indices", -1);
+                Accessor indices = indicesIndex >= 0 ? document.getAccessor(indicesIndex) : null;
+                int mode = integer(primitive, "mode", MODE_TRIANGLES);
+                int colorIndex = integer(map(primitive.get("attributes")), "COLOR_0", -1);
+                Accessor colors = colorIndex >= 0 ? document.getAccessor(colorIndex) : null;
+                int materialIndex = integer(primitive, "material", -1);
+                BlockMaterial material = materialIndex >= 0 && materialIndex < materials.length
+                        ? materials[materialIndex] : BlockMaterial.DEFAULT;
+                double[] m = instance.matrix;
+                
+                for (int t = 0; t < triangles; t++) {
+                    if (++done % CANCEL_CHECK_INTERVAL == 0) {
+                        job.checkCancelled();
+                        job.setProgress("Voxelizing triangle " + done + "/" + total);
+                    }
+                    
+                    if (!getTriangle(mode, t, indices, positions.count, vertices)) {
+                        invalid++;
+                        continue;
+                    }
+                    for (int corner = 0; corner < 3; corner++) {
+                        int vertex = vertices[corner];
+                        double x = positions.get(vertex, 0);
+                        double y = positions.get(vertex, 1);
+                        double z = positions.get(vertex, 2);
+                        corners[corner * 3] = m[0] * x + m[4] * y + m[8] * z + m[12];
+                        corners[corner * 3 + 1] = m[1] * x + m[5] * y + m[9] * z + m[13];
+                        corners[corner * 3 + 2] = m[2] * x + m[6] * y + m[10] * z + m[14];
+                    }
+                    batch.add(corners, colors != null ? material.match(colors, vertices) : material.block);
+                }
+            }
+        }
+        batch.flush();
+        
+        invalid += batch.getSkipped();
+        if (invalid > 0) {
+            job.sendMessage(ChatColor.YELLOW + "Skipped " + invalid + " triangle(s) with invalid indices or coordinates");
+        }
+        return model;
+    }
+    
+    /**
+     * Count the geometry of the default scene
+     * Bounds come from the position accessors' min and max, which glTF requires, so buffers are
+     * only read for files that leave them out.
+     */
+    @Override
+    public ModelInfo.Geometry describe(File file) throws IOException {
+        Document document = Document.open(file);
+        long vertexCount = 0;
+        long triangleCount = 0;
+        double[] min = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+        double[] max = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        
+        for (Instance instance : document.getInstances()) {
+            for (Map<String, Object> primitive : document.getPrimitives(instance.mesh)) {
+                long triangles = document.getTriangleCount(primitive);
+                if (triangles == 0) {
+                    continue;
+                }
+                int positionIndex = attribute(primitive, "POSITION");
+                Map<String, Object> accessor = element(document.accessors, positionIndex, "accessor");
+                vertexCount += integer(accessor, "count", 0);
+                triangleCount += triangles;
+                
+                double[] low = numbers(accessor, "min");
+                double[] high = numbers(accessor, "max");
+                if (low != null && high != null && low.length >= 3 && high.length >= 3) {
+                    for (int i = 0; i < 8; i++) {
+                        include(instance.matrix, (i & 1) == 0 ? low[0] : high[0],
+                                (i & 2) == 0 ? low[1] : high[1], (i & 4) == 0 ? low[2] : high[2], min, max);
+                    }
+                } else {
+                    Accessor positions = document.getAccessor(positionIndex);
+                    for (int v = 0; v < positions.count; v++) {
+                        include(instance.matrix, positions.get(v, 0), positions.get(v, 1), positions.get(v, 2),
+                                min, max);
+                    }
+                }
+            }
+        }
+        
+        if (triangleCount == 0) {
+            return new ModelInfo.Geometry(0, 0, 0, new double[3], new double[3], -1, false);
+        }
+        return new ModelInfo.Geometry(vertexCount, triangleCount, triangleCount, min, max, -1, false);
+    }
+    
+    /**
+     * List the external buffer files the document refers to
+     * Embedded buffers are part of the file itself, and images are not read.
+     */
+    @Override
+    public List<File> getDependencies(File file) throws IOException {
+        Document document = Document.open(file);
+        List<File> files = new ArrayList<>();
+        for (Object buffer : document.buffers) {
+            Object uri = map(buffer).get("uri");
+            if (!(uri instanceof String) || ((String) uri).startsWith("data:")) {
+                continue;
+            }
+            try {
+                File bufferFile = document.resolveExternal((String) uri);
+                if (!files.contains(bufferFile)) {
+                    files.add(bufferFile);
+                }
+            } catch (IOException e) {
+                // Reported when the model is imported
+            }
+        }
+        return files;
+    }
+    
+    private static void include(double[] m, double x, double y, double z, double[] min, double[] max) {
+        double[] point = {
+                m[0] * x + m[4] * y + m[8] * z + m[12],
+                m[1] * x + m[5] * y + m[9] * z + m[13],
+                m[2] * x + m[6] * y + m[10] * z + m[14]
+        };
+        for (int axis = 0; axis < 3; axis++) {
+            min[axis] = Math.min(min[axis], point[axis]);
+            max[axis] = Math.max(max[axis], point[axis]);
+        }
+    }
+    
+    /**
+     * Find the vertices of a triangle of a primitive
+     * @param mode The primitive's topology
+     * @param triangle Index of the triangle
+     * @param indices The index accessor, or null for non-indexed geometry
+     * @param vertexCount Number of vertices in the primitive
+     * @param vertices Receives the three vertex indices
+     * @return False if an index is out of range
+     */
+    private static boolean getTriangle(int mode, int triangle, Accessor indices, int vertexCount, int[] vertices) {
+        if (mode == MODE_TRIANGLE_STRIP) {
+            // Every other strip triangle is wound the other way
+            boolean odd = (triangle & 1) != 0;
+            vertices[0] = odd ? triangle + 1 : triangle;
+            vertices[1] = odd ? triangle : triangle + 1;
+            vertices[2] = triangle + 2;
+        } else if (mode == MODE_TRIANGLE_FAN) {
+            vertices[0] = 0;
+            vertices[1] = triangle + 1;
+            vertices[2] = triangle + 2;
+        } else {
+            vertices[0] = triangle * 3;
+            vertices[1] = triangle * 3 + 1;
+            vertices[2] = triangle * 3 + 2;
+        }
+        
+        for (int i = 0; i < 3; i++) {
+            long vertex = indices != null ? indices.getIndex(vertices[i]) : vertices[i];
+            if (vertex >= vertexCount) {
+                return false;
+            }
+            vertices[i] = (int) vertex;
+        }
+        return true;
+    }
+    
+    /**
+     * Read the block and color of each glTF material
+     */
+    private static BlockMaterial[] resolveMaterials(Document document) {
+        BlockMaterial[] blocks = new BlockMaterial[document.materials.size()];
+        for (int i = 0; i < blocks.length; i++) {
+            blocks[i] = new BlockMaterial(map(document.materials.get(i)));
+        }
+        return blocks;
+    }
+    
+    /**
+     * Convert a linear glTF color component to the sRGB the palette matches
+     */
+    private static float toSrgb(double linear) {
+        double c = Math.max(0, Math.min(1, linear));
+        return (float) (c <= 0.0031308 ? c * 12.92 : 1.055 * Math.pow(c, 1 / 2.4) - 0.055);
+    }
+    
+    @Override
+    public ModelFormat getFormat() {
+        return format;
+    }
+    
+    @Override
+    public boolean supportsFeature(ImportFeature feature) {
+        switch (feature) {
+            case MATERIALS:
+            case COLORS:
+            case SCALING:
+                return true;
+            case TEXTURES:
+            case ANIMATION:
+            case METADATA:
+                return false;
+            default:
+                return false;
+        }
+    }
+    
+    /**
+     * A glTF material and the block it maps to
+     * Uses the base color factor when set, falling back to keywords in the material name.
+     */
+    private static class BlockMaterial {
+        private static final BlockMaterial DEFAULT = new BlockMaterial(Collections.emptyMap());
+        
+        private final double[] color;
+        private final boolean transparent;
+        private final Material block;
+        
+        BlockMaterial(Map<String, Object> material) {
+            String name = material.get("name") instanceof String ? ((String) material.get("name")).toLowerCase() : "";
+            double[] factor = numbers(map(material.get("pbrMetallicRoughness")), "baseColorFactor");
+            boolean blend = "BLEND".equals(material.get("alphaMode"));
+            this.transparent = name.contains("glass")
+                    || (blend && factor != null && factor.length >= 4 && factor[3] < GLASS_OPACITY);
+            this.color = factor != null && factor.length >= 3 ? factor : new double[]{1, 1, 1};
+            
+            if (factor != null && factor.length >= 3) {
+                block = getPalette().match(toSrgb(color[0]), toSrgb(color[1]), toSrgb(color[2]));
+            } else if (transparent) {
+                block = Material.GLASS;
+            } else if (name.contains("brick")) {
+                block = Material.BRICKS;
+            } else if (name.contains("wood")) {
+                block = Material.OAK_WOOD;
+            } else if (name.contains("sand")) {
+                block = Material.SANDSTONE;
+            } else {
+                block = Material.STONE;
+            }
+        }
+        
+        /**
+         * Match the average vertex color of a triangle, tinted by the base color
+         * @param colors The COLOR_0 accessor
+         * @param vertices The triangle's vertex indices
+         */
+        Material match(Accessor colors, int[] vertices) {
+            double r = 0, g = 0, b = 0;
+            for (int vertex : vertices) {
+                r += colors.get(vertex, 0);
+                g += colors.get(vertex, 1);
+                b += colors.get(vertex, 2);
+            }
+            return getPalette().match(toSrgb(r / 3 * color[0]), toSrgb(g / 3 * color[1]), toSrgb(b / 3 * color[2]));
+        }
+        
+        private BlockPalette getPalette() {
+            return transparent ? BlockPalette.glass() : BlockPalette.opaque();
+        }
+    }
+    
+    /**
+     * A mesh placed in the scene by a node
+     */
+    private static class Instance {
+        private final int mesh;
+        private final double[] matrix;
+        
+        Instance(int mesh, double[] matrix) {
+            this.mesh = mesh;
+            this.matrix = matrix;
+        }
+    }
+    
+    /**
+     * The parsed JSON of a glTF file and its buffers, which are mapped when first used
+     */
+    private static class Document {
+        private final File file;
+        private final ByteBuffer binaryChunk;
+        private final List<Object> buffers;
+        private final List<Object> bufferViews;
+        private final List<Object> accessors;
+        private final List<Object> meshes;
+        private final List<Object> nodes;
+        private final List<Object> materials;
+        private final Map<String, Object> json;
+        private final ByteBuffer[] bufferData;
+        private final Accessor[] accessorCache;
+        
+        private Document(File file, Map<String, Object> json, ByteBuffer binaryChunk) throws IOException {
+            this.file = file;
+            this.json = json;
+            this.binaryChunk = binaryChunk;
+            this.buffers = list(json, "buffers");
+            this.bufferViews = list(json, "bufferViews");
+            this.accessors = list(json, "accessors");
+            this.meshes = list(json, "meshes");
+            this.nodes = list(json, "nodes");
+            this.materials = list(json, "materials");
+            this.bufferData = new ByteBuffer[buffers.size()];
+            this.accessorCache = new Accessor[accessors.size()];
+            
+            for (Object extension : list(json, "extensionsRequired")) {
+                if (UNSUPPORTED_EXTENSIONS.contains(extension)) {
+                    throw new IOException("Model uses " + extension + ", which is not supported");
+                }
+            }
+        }
+        
+        /**
+         * Read the JSON of a GLB or text glTF file, and map the binary chunk of a GLB file
+         */
+        static Document open(File file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(channel, header, 0);
+                if (header.getInt(0) != GLB_MAGIC) {
+                    String text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+                    if (text.startsWith("\uFEFF")) {
+                        text = text.substring(1);
+                    }
+                    return new Document(file, map(JsonParser.parse(text)), null);
+                }
+                
+                // Walk the chunks; only the first JSON and binary chunks are used
+                long length = Math.min(header.getInt(8) & 0xFFFFFFFFL, channel.size());
+                String text = null;
+                ByteBuffer binary = null;
+                long offset = 12;
+                ByteBuffer chunkHeader = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+                while (offset + 8 <= length) {
+                    chunkHeader.clear();
+                    readFully(channel, chunkHeader, offset);
+                    long chunkLength = chunkHeader.getInt(0) & 0xFFFFFFFFL;
+                    int type = chunkHeader.getInt(4);
+                    offset += 8;
+                    if (offset + chunkLength > length) {
+                        throw new IOException("GLB chunk runs past the end of the file");
+                    }
+                    
+                    if (type == CHUNK_JSON && text == null) {
+                        if (chunkLength > Integer.MAX_VALUE) {
+                            throw new IOException("GLB JSON chunk is too large");
+                        }
+                        ByteBuffer bytes = ByteBuffer.allocate((int) chunkLength);
+                        readFully(channel, bytes, offset);
+                        text = new String(bytes.array(), StandardCharsets.UTF_8);
+                    } else if (type == CHUNK_BIN && binary == null) {
+                        if (chunkLength > Integer.MAX_VALUE) {
+                            throw new IOException("GLB binary chunk is larger than 2 GB");
+                        }
+                        binary = channel.map(FileChannel.MapMode.READ_ONLY, offset, chunkLength)
+                                .order(ByteOrder.LITTLE_ENDIAN);
+                    }
+                    offset += (chunkLength + 3) & ~3L;
+                }
+                
+                if (text == null) {
+                    throw new IOException("GLB file has no JSON chunk");
+                }
+                return new Document(file, map(JsonParser.parse(text)), binary);
+            }
+        }
+        
+        private static void readFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of file");
+                }
+            }
+        }
+        
+        /**
+         * Get the meshes of the default scene with their node transforms
+         * Files without scenes place every root node.
+         */
+        List<Instance> getInstances() throws IOException {
+            List<Object> scenes = list(json, "scenes");
+            List<Object> roots;
+            if (!scenes.isEmpty()) {
+                roots = list(element(scenes, integer(json, "scene", 0), "scene"), "nodes");
+            } else {
+                boolean[] isChild = new boolean[nodes.size()];
+                for (Object node : nodes) {
+                    for (Object child : list(map(node), "children")) {
+                        int index = toInt(child);
+                        if (index >= 0 && index < isChild.length) {
+                            isChild[index] = true;
+                        }
+                    }
+                }
+                roots = new ArrayList<>();
+                for (int i = 0; i < isChild.length; i++) {
+                    if (!isChild[i]) {
+                        roots.add((double) i);
+                    }
+                }
+            }
+            
+            List<Instance> instances = new ArrayList<>();
+            double[] identity = {1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1};
+            for (Object root : roots) {
+                addInstances(toInt(root), identity, 0, instances);
+            }
+            return instances;
+        }
+        
+        private void addInstances(int index, double[] parent, int depth, List<Instance> instances) throws IOException {
+            // Node hierarchies are trees, so no path is longer than the node count
+            if (depth > nodes.size()) {
+                throw new IOException("Node hierarchy contains a cycle");
+            }
+            Map<String, Object> node = element(nodes, index, "node");
+            double[] matrix = multiply(parent, getLocalMatrix(node));
+            
+            int mesh = integer(node, "mesh", -1);
+            if (mesh >= 0) {
+                element(meshes, mesh, "mesh");
+                instances.add(new Instance(mesh, matrix));
+            }
+            for (Object child : list(node, "children")) {
+                addInstances(toInt(child), matrix, depth + 1, instances);
+            }
+        }
+        
+        /**
+         * Get a node's column-major transform, from its matrix or its translation, rotation and scale
+         */
+        private static double[] getLocalMatrix(Map<String, Object> node) {
+            double[] matrix = numbers(node, "matrix");
+            if (matrix != null && matrix.length == 16) {
+                return matrix;
+            }
+            
+            double[] t = numbers(node, "translation");
+            double[] r = numbers(node, "rotation");
+            double[] s = numbers(node, "scale");
+            t = t != null && t.length == 3 ? t : new double[]{0, 0, 0};
+            r = r != null && r.length == 4 ? r : new double[]{0, 0, 0, 1};
+            s = s != null && s.length == 3 ? s : new double[]{1, 1, 1};
+            
+            double x = r[0], y = r[1], z = r[2], w = r[3];
+            return new double[]{
+                    (1 - 2 * (y * y + z * z)) * s[0], 2 * (x * y + z * w) * s[0], 2 * (x * z - y * w) * s[0], 0,
+                    2 * (x * y - z * w) * s[1], (1 - 2 * (x * x + z * z)) * s[1], 2 * (y * z + x * w) * s[1], 0,
+                    2 * (x * z + y * w) * s[2], 2 * (y * z - x * w) * s[2], (1 - 2 * (x * x + y * y)) * s[2], 0,
+                    t[0], t[1], t[2], 1
+            };
+        }
+        
+        private static double[] multiply(double[] a, double[] b) {
+            double[] result = new double[16];
+            for (int column = 0; column < 4; column++) {
+                for (int row = 0; row < 4; row++) {
+                    double sum = 0;
+                    for (int k = 0; k < 4; k++) {
+                        sum += a[k * 4 + row] * b[column * 4 + k];
+                    }
+                    result[column * 4 + row] = sum;
+                }
+            }
+            return result;
+        }
+        
+        List<Map<String, Object>> getPrimitives(int mesh) throws IOException {
+            List<Map<String, Object>> primitives = new ArrayList<>();
+            for (Object primitive : list(element(meshes, mesh, "mesh"), "primitives")) {
+                primitives.add(map(primitive));
+            }
+            return primitives;
+        }
+        
+        /**
+         * Count the triangles of a primitive from its accessor counts
+         * @return The triangle count; zero for points and lines
+         */
+        long getTriangleCount(Map<String, Object> primitive) throws IOException {
+            int mode = integer(primitive, "mode", MODE_TRIANGLES);
+            if (mode != MODE_TRIANGLES && mode != MODE_TRIANGLE_STRIP && mode != MODE_TRIANGLE_FAN) {
+                return 0;
+            }
+            int indices = integer(primitive, "indices", -1);
+            Map<String, Object> accessor = element(accessors,
+                    indices >= 0 ? indices : attribute(primitive, "POSITION"), "accessor");
+            long count = integer(accessor, "count", 0);
+            return mode == MODE_TRIANGLES ? count / 3 : Math.max(0, count - 2);
+        }
+        
+        Accessor getAccessor(int index) throws IOException {
+            element(accessors, index, "accessor");
+            if (accessorCache[index] == null) {
+                accessorCache[index] = createAccessor(index);
+            }
+            return accessorCache[index];
+        }
+        
+        private Accessor createAccessor(int index) throws IOException {
+            Map<String, Object> accessor = element(accessors, index, "accessor");
+            if (accessor.containsKey("sparse")) {
+                throw new IOException("Sparse accessor " + index + " is not supported");
+            }
+            int componentType = integer(accessor, "componentType", -1);
+            int componentSize = getComponentSize(componentType);
+            int components = getComponentCount(accessor.get("type"));
+            int count = integer(accessor, "count", 0);
+            if (componentSize == 0 || components == 0 || count < 0) {
+                throw new IOException("Accessor " + index + " has an invalid type");
+            }
+            boolean normalized = Boolean.TRUE.equals(accessor.get("normalized"));
+            
+            // Accessors without a view are all zeros
+            int viewIndex = integer(accessor, "bufferView", -1);
+            if (viewIndex < 0) {
+                return new Accessor(null, 0, componentType, componentSize, components, normalized, count);
+            }
+            Map<String, Object> view = element(bufferViews, viewIndex, "buffer view");
+            ByteBuffer buffer = getBuffer(integer(view, "buffer", -1));
+            
+            long viewOffset = integer(view, "byteOffset", 0);
+            long viewLength = integer(view, "byteLength", 0);
+            long offset = viewOffset + integer(accessor, "byteOffset", 0);
+            int elementSize = componentSize * components;
+            int stride = integer(view, "byteStride", elementSize);
+            long end = count == 0 ? offset : offset + (long) stride * (count - 1) + elementSize;
+            if (stride < elementSize || stride % componentSize != 0 || offset % componentSize != 0
+                    || end > viewOffset + viewLength || end > buffer.capacity()) {
+                throw new IOException("Accessor " + index + " does not fit its buffer view");
+            }
+            
+            ByteBuffer slice = buffer.duplicate();
+            slice.limit((int) end).position((int) offset);
+            return new Accessor(slice.slice().order(ByteOrder.LITTLE_ENDIAN), stride / componentSize,
+                    componentType, componentSize, components, normalized, count);
+        }
+        
+        /**
+         * Get the data of a buffer: the GLB binary chunk, an embedded data URI, or a mapped file
+         */
+        private ByteBuffer getBuffer(int index) throws IOException {
+            Map<String, Object> buffer = element(buffers, index, "buffer");
+            if (bufferData[index] != null) {
+                return bufferData[index];
+            }
+            
+            Object uri = buffer.get("uri");
+            ByteBuffer data;
+            if (!(uri instanceof String)) {
+                if (binaryChunk == null) {
+                    throw new IOException("Buffer " + index + " has no data");
+                }
+                data = binaryChunk;
+            } else if (((String) uri).startsWith("data:")) {
+                String text = (String) uri;
+                try {
+                    data = ByteBuffer.wrap(Base64.getDecoder().decode(text.substring(text.indexOf(',') + 1)));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Buffer " + index + " has an invalid data URI");
+                }
+            } else {
+                data = mapExternal((String) uri);
+            }
+            
+            if (data.capacity() < integer(buffer, "byteLength", 0)) {
+                throw new IOException("Buffer " + index + " is shorter than its declared length");
+            }
+            bufferData[index] = data.order(ByteOrder.LITTLE_ENDIAN);
+            return bufferData[index];
+        }
+        
+        private ByteBuffer mapExternal(String uri) throws IOException {
+            File bufferFile = resolveExternal(uri);
+            try (FileChannel channel = FileChannel.open(bufferFile.toPath(), StandardOpenOption.READ)) {
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new IOException("Buffer file is larger than 2 GB: " + uri);
+                }
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        }
+        
+        /**
+         * Find the file a buffer URI refers to, relative to the document
+         * @throws IOException If it lies outside the model's directory or does not exist
+         */
+        private File resolveExternal(String uri) throws IOException {
+            String path;
+            try {
+                path = URI.create(uri).getPath();
+            } catch (IllegalArgumentException e) {
+                path = uri;
+            }
+            File directory = file.getAbsoluteFile().getParentFile();
+            File bufferFile = new File(directory, path);
+            
+            // Don't follow references out of the model's directory
+            if (!bufferFile.getCanonicalPath().startsWith(directory.getCanonicalPath() + File.separator)) {
+                throw new IOException("Buffer outside the models directory: " + uri);
+            }
+            if (!bufferFile.isFile()) {
+                throw new IOException("Buffer file not found: " + uri);
+            }
+            return bufferFile;
+        }
+    }
+    
+    private static int getComponentSize(int componentType) {
+        switch (componentType) {
+            case COMPONENT_BYTE:
+            case COMPONENT_UNSIGNED_BYTE:
+                return 1;
+            case COMPONENT_SHORT:
+            case COMPONENT_UNSIGNED_SHORT:
+                return 2;
+            case COMPONENT_UNSIGNED_INT:
+            case COMPONENT_FLOAT:
+                return 4;
+            default:
+                return 0;
+        }
+    }
+    
+    private static int getComponentCount(Object type) {
+        if ("SCALAR".equals(type)) {
+            return 1;
+        } else if ("VEC2".equals(type)) {
+            return 2;
+        } else if ("VEC3".equals(type)) {
+            return 3;
+        } else if ("VEC4".equals(type) || "MAT2".equals(type)) {
+            return 4;
+        } else if ("MAT3".equals(type)) {
+            return 9;
+        } else if ("MAT4".equals(type)) {
+            return 16;
+        }
+        return 0;
+    }
+    
+    /**
+     * Reads the elements of an accessor through a view of its component type
+     * The view wraps the mapped buffer, so nothing is copied.
+     */
+    private static class Accessor {
+        private final int count;
+        private final int stride;
+        private final int components;
+        private final int componentType;
+        private final boolean normalized;
+        private final FloatBuffer floats;
+        private final IntBuffer ints;
+        private final ShortBuffer shorts;
+        private final ByteBuffer bytes;
+        
+        /**
+         * @param data The accessor's bytes, starting at its first element, or null for zeros
+         * @param stride Distance between elements, in components
+         */
+        Accessor(ByteBuffer data, int stride, int componentType, int componentSize, int components,
+                 boolean normalized, int count) {
+            this.count = count;
+            this.stride = stride;
+            this.components = components;
+            this.componentType = componentType;
+            this.normalized = normalized;
+            this.floats = data != null && componentType == COMPONENT_FLOAT ? data.asFloatBuffer() : null;
+            this.ints = data != null && componentType == COMPONENT_UNSIGNED_INT ? data.asIntBuffer() : null;
+            this.shorts = data != null && componentSize == 2 ? data.asShortBuffer() : null;
+            this.bytes = data != null && componentSize == 1 ? data : null;
+        }
+        
+        /**
+         * Read a component as a number, applying normalization
+         */
+        double get(int element, int component) {
+            if (component >= components) {
+                return 0;
+            }
+            int at = element * stride + component;
+            switch (componentType) {
+                case COMPONENT_FLOAT:
+                    return floats != null ? floats.get(at) : 0;
+                case COMPONENT_UNSIGNED_INT:
+                    return ints != null ? ints.get(at) & 0xFFFFFFFFL : 0;
+                case COMPONENT_SHORT:
+                    double s = shorts != null ? shorts.get(at) : 0;
+                    return normalized ? Math.max(s / Short.MAX_VALUE, -1) : s;
+                case COMPONENT_UNSIGNED_SHORT:
+                    double us = shorts != null ? shorts.get(at) & 0xFFFF : 0;
+                    return normalized ? us / 0xFFFF : us;
+                case COMPONENT_BYTE:
+                    double b = bytes != null ? bytes.get(at) : 0;
+                    return normalized ? Math.max(b / Byte.MAX_VALUE, -1) : b;
+                default:
+                    double ub = bytes != null ? bytes.get(at) & 0xFF : 0;
+                    return normalized ? ub / 0xFF : ub;
+            }
+        }
+        
+        /**
+         * Read an element of an index accessor
+         * @return The vertex index, or Long.MAX_VALUE for elements past the end
+         */
+        long getIndex(int element) {
+            if (element >= count) {
+                return Long.MAX_VALUE;
+            }
+            int at = element * stride;
+            switch (componentType) {
+                case COMPONENT_UNSIGNED_INT:
+                    return ints != null ? ints.get(at) & 0xFFFFFFFFL : 0;
+                case COMPONENT_UNSIGNED_SHORT:
+                    return shorts != null ? shorts.get(at) & 0xFFFF : 0;
+                case COMPONENT_UNSIGNED_BYTE:
+                    return bytes != null ? bytes.get(at) & 0xFF : 0;
+                default:
+                    return Long.MAX_VALUE;
+            }
+        }
+    }
+    
+    // JSON access helpers; missing or mistyped members read as absent
+    
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> map(Object value) {
+        return value instanceof Map ? (Map<String, Object>) value : Collections.emptyMap();
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static List<Object> list(Map<String, Object> object, String key) {
+        Object value = object.get(key);
+        return value instanceof List ? (List<Object>) value : Collections.emptyList();
+    }
+    
+    private static Map<String, Object> element(List<Object> list, int index, String what) throws IOException {
+        if (index < 0 || index >= list.size() || !(list.get(index) instanceof Map)) {
+            throw new IOException("Reference to missing " + what + " " + index);
+        }
+        return map(list.get(index));
+    }
+    
+    private static int integer(Map<String, Object> object, String key, int defaultValue) {
+        Object value = object.get(key);
+        return value instanceof Double ? toInt(value) : defaultValue;
+    }
+    
+    private static int toInt(Object value) {
+        if (!(value instanceof Double)) {
+            return -1;
+        }
+        double number = (Double) value;
+        return number >= 0 && number <= Integer.MAX_VALUE && number == Math.floor(number) ? (int) number : -1;
+    }
+    
+    private static double[] numbers(Map<String, Object> object, String key) {
+        List<Object> values = list(object, key);
+        if (values.isEmpty()) {
+            return null;
+        }
+        double[] numbers = new double[values.size()];
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] = values.get(i) instanceof Double ? (Double) values.get(i) : 0;
+        }
+        return numbers;
+    }
+    
+    private static int attribute(Map<String, Object> primitive, String name) throws IOException {
+        int index = integer(map(primitive.get("attributes")), name, -1);
+        if (index < 0) {
+            throw new IOException("Mesh primitive has no " + name + " attribute");
+        }
+        return index;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,218 @@
+package com.archcraft.io.gltf;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal JSON parser for glTF documents
+ * Objects become maps, arrays lists, numbers doubles, and true, false and null their Java values.
+ * The JSON part of a glTF file only describes the scene, so it is small enough to parse whole.
+ */
+class JsonParser {
+    
+    // Deeper nesting than any glTF document needs; stops runaway recursion on bad input
+    private static final int MAX_DEPTH = 256;
+    
+    private final String text;
+    private int position;
+    
+    private JsonParser(String text) {
+        this.text = text;
+    }
+    
+    /**
+     * Parse a JSON document
+     * @param text The document
+     * @return The top-level value
+     * @throws IOException If the document is not valid JSON
+     */
+    static Object parse(String text) throws IOException {
+        JsonParser parser = new JsonParser(text);
+        Object value = parser.value(0);
+        parser.skipWhitespace();
+        if (parser.position < text.length()) {
+            throw parser.error("Unexpected data after the document");
+        }
+        return value;
+    }
+    
+    private Object value(int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw error("Nesting too deep");
+        }
+        skipWhitespace();
+        if (position >= text.length()) {
+            throw error("Unexpected end of document");
+        }
+        
+        char c = text.charAt(position);
+        switch (c) {
+            case '{':
+                return object(depth);
+            case '[':
+                return array(depth);
+            case '"':
+                return string();
+            case 't':
+                return literal("true", Boolean.TRUE);
+            case 'f':
+                return literal("false", Boolean.FALSE);
+            case 'n':
+                return literal("null", null);
+            default:
+                return number();
+        }
+    }
+    
+    private Map<String, Object> object(int depth) throws IOException {
+        Map<String, Object> object = new HashMap<>();
+        position++;
+        skipWhitespace();
+        if (peek() == '}') {
+            position++;
+            return object;
+        }
+        while (true) {
+            skipWhitespace();
+            if (peek() != '"') {
+                throw error("Expected a member name");
+            }
+            String name = string();
+            skipWhitespace();
+            expect(':');
+            object.put(name, value(depth + 1));
+            skipWhitespace();
+            if (peek() == ',') {
+                position++;
+            } else {
+                expect('}');
+                return object;
+            }
+        }
+    }
+    
+    private List<Object> array(int depth) throws IOException {
+        List<Object> array = new ArrayList<>();
+        position++;
+        skipWhitespace();
+        if (peek() == ']') {
+            position++;
+            return array;
+        }
+        while (true) {
+            array.add(value(depth + 1));
+            skipWhitespace();
+            if (peek() == ',') {
+                position++;
+            } else {
+                expect(']');
+                return array;
+            }
+        }
+    }
+    
+    private String string() throws IOException {
+        position++;
+        StringBuilder builder = null;
+        int start = position;
+        while (position < text.length()) {
+            char c = text.charAt(position);
+            if (c == '"') {
+                String tail = text.substring(start, position++);
+                return builder == null ? tail : builder.append(tail).toString();
+            }
+            if (c != '\\') {
+                position++;
+                continue;
+            }
+            
+            // Copy up to the escape, then decode it
+            if (builder == null) {
+                builder = new StringBuilder();
+            }
+            builder.append(text, start, position);
+            if (position + 1 >= text.length()) {
+                break;
+            }
+            char escape = text.charAt(position + 1);
+            position += 2;
+            switch (escape) {
+                case 'b':
+                    builder.append('\b');
+                    break;
+                case 'f':
+                    builder.append('\f');
+                    break;
+                case 'n':
+                    builder.append('\n');
+                    break;
+                case 'r':
+                    builder.append('\r');
+                    break;
+                case 't':
+                    builder.append('\t');
+                    break;
+                case 'u':
+                    if (position + 4 > text.length()) {
+                        throw error("Invalid unicode escape");
+                    }
+                    try {
+                        builder.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw error("Invalid unicode escape");
+                    }
+                    position += 4;
+                    break;
+                default:
+                    builder.append(escape);
+            }
+            start = position;
+        }
+        throw error("Unterminated string");
+    }
+    
+    private Double number() throws IOException {
+        int start = position;
+        while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+            position++;
+        }
+        try {
+            return Double.valueOf(text.substring(start, position));
+        } catch (NumberFormatException e) {
+            position = start;
+            throw error("Unexpected character '" + text.charAt(start) + "'");
+        }
+    }
+    
+    private Object literal(String word, Object value) throws IOException {
+        if (!text.startsWith(word, position)) {
+            throw error("Unexpected character '" + text.charAt(position) + "'");
+        }
+        position += word.length();
+        return value;
+    }
+    
+    private void expect(char c) throws IOException {
+        if (peek() != c) {
+            throw error("Expected '" + c + "'");
+        }
+        position++;
+    }
+    
+    private char peek() {
+        return position < text.length() ? text.charAt(position) : 0;
+    }
+    
+    private void skipWhitespace() {
+        while (position < text.length() && text.charAt(position) <= ' ') {
+            position++;
+        }
+    }
+    
+    private IOException error(String message) {
+        return new IOException("Invalid glTF JSON at offset " + position + ": " + message);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,796 @@
+package com.archcraft.io.ifc;
+
+import com.archcraft.io.ifc.StepFile.Record;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Resolves the body geometry of IFC building elements into triangles
+ * Entities are read from the {@link StepFile} as they are referenced. Placements are cached for
+ * the whole file, since many elements share them; points only for the element being resolved.
+ * Triangles come out in metres with Y up, ready for the import transform.
+ */
+class IfcGeometry {
+    
+    /**
+     * Receives triangles as nine coordinates; the array is reused for the next triangle
+     */
+    interface TriangleSink {
+        void accept(double[] corners);
+    }
+    
+    // Segments used for circular profiles
+    private static final int CIRCLE_SEGMENTS = 16;
+    
+    // Polygons with more vertices are fanned instead of ear clipped, which is quadratic
+    private static final int MAX_EAR_CLIP_VERTICES = 512;
+    
+    // Deepest nesting of placements, mapped items and boolean results that is followed
+    private static final int MAX_DEPTH = 32;
+    
+    private static final double[] IDENTITY = {1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0};
+    
+    // Representation types that describe a body when no representation is labelled "Body"
+    private static final List<String> BODY_TYPES = Arrays.asList("SweptSolid", "AdvancedSweptSolid", "Brep",
+            "SurfaceModel", "Tessellation", "MappedRepresentation", "Clipping", "CSG");
+    
+    private final StepFile step;
+    private final double unitScale;
+    private final Map<Integer, double[]> placements = new HashMap<>();
+    private final Map<Integer, double[]> points = new HashMap<>();
+    private final Map<String, Integer> unsupported = new TreeMap<>();
+    private final double[] corners = new double[9];
+    private TriangleSink sink;
+    
+    /**
+     * @param step The indexed file
+     * @param unitScale Metres per length unit of the file
+     */
+    IfcGeometry(StepFile step, double unitScale) {
+        this.step = step;
+        this.unitScale = unitScale;
+    }
+    
+    /**
+     * Triangulate the body of a building element
+     * @param element The element's record; every IfcProduct has its placement and representation at 5 and 6
+     * @param sink Receives the triangles
+     * @throws IOException If a referenced entity is missing or malformed
+     */
+    void addElement(Record element, TriangleSink sink) throws IOException {
+        this.sink = sink;
+        points.clear();
+        double[] matrix = getPlacement(element.getReference(5), 0);
+        for (Record body : getBodies(element)) {
+            addItems(body, matrix, 0);
+        }
+    }
+    
+    /**
+     * Find one point of a building element's body, without resolving the rest of it
+     * Only the placement and the first point of the first body item are read, so this is cheap
+     * enough to locate every element of a model for an estimate of its bounds.
+     * @param element The element's record
+     * @return The point in metres with Y up; the placement origin if the body has no point to read
+     * @throws IOException If a referenced entity is missing or malformed
+     */
+    double[] getAnchor(Record element) throws IOException {
+        points.clear();
+        double[] matrix = getPlacement(element.getReference(5), 0);
+        double[] point = null;
+        for (Record body : getBodies(element)) {
+            List<Object> items = body.getList(3);
+            if (!items.isEmpty() && items.get(0) instanceof Integer) {
+                point = getFirstPoint((Integer) items.get(0), IDENTITY, 0);
+            }
+            if (point != null) {
+                break;
+            }
+        }
+        if (point == null) {
+            point = new double[3];
+        }
+        
+        toModel(matrix, point[0], point[1], point[2], 0);
+        return Arrays.copyOf(corners, 3);
+    }
+    
+    /**
+     * Get the body representations of an element: those labelled "Body", else any of a body type
+     */
+    private List<Record> getBodies(Record element) throws IOException {
+        int representation = element.getReference(6);
+        if (representation < 0) {
+            return Collections.emptyList();
+        }
+        Record shape = step.read(representation);
+        List<Record> bodies = new ArrayList<>();
+        List<Record> fallbacks = new ArrayList<>();
+        for (Object reference : shape.getList(2)) {
+            if (!(reference instanceof Integer)) {
+                continue;
+            }
+            Record candidate = step.read((Integer) reference);
+            if ("Body".equalsIgnoreCase(candidate.getString(1))) {
+                bodies.add(candidate);
+            } else if (BODY_TYPES.contains(candidate.getString(2))) {
+                fallbacks.add(candidate);
+            }
+        }
+        return bodies.isEmpty() ? fallbacks : bodies;
+    }
+    
+    /**
+     * Get the first point of a representation item in the coordinates of the given matrix
+     * @return The point, or null for items whose points are not cheap to reach
+     */
+    private double[] getFirstPoint(int id, double[] matrix, int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw new IOException("Geometry of entity #" + id + " is nested too deeply");
+        }
+        Record item = step.read(id);
+        switch (item.getType()) {
+            case "IFCEXTRUDEDAREASOLID":
+                return transform(multiply(matrix, getAxisPlacement(item.getReference(1))), new double[3]);
+            case "IFCFACETEDBREP":
+            case "IFCFACETEDBREPWITHVOIDS":
+                return getFirstShellPoint(item.getReference(0), matrix);
+            case "IFCSHELLBASEDSURFACEMODEL":
+            case "IFCFACEBASEDSURFACEMODEL":
+                List<Object> shells = item.getList(0);
+                return !shells.isEmpty() && shells.get(0) instanceof Integer
+                        ? getFirstShellPoint((Integer) shells.get(0), matrix) : null;
+            case "IFCTRIANGULATEDFACESET":
+            case "IFCPOLYGONALFACESET":
+                double[] p = getIndexed(step.read(item.getReference(0)).getList(0), null, 1);
+                return p != null ? transform(matrix, new double[]{p[0], p[1], z(p)}) : null;
+            case "IFCMAPPEDITEM":
+                Record source = step.read(item.getReference(0));
+                double[] origin = getAxisPlacement(source.getReference(0));
+                double[] target = getTransformationOperator(item.getReference(1));
+                List<Object> items = step.read(source.getReference(1)).getList(3);
+                return !items.isEmpty() && items.get(0) instanceof Integer
+                        ? getFirstPoint((Integer) items.get(0), multiply(multiply(matrix, target), origin), depth + 1)
+                        : null;
+            case "IFCBOOLEANRESULT":
+            case "IFCBOOLEANCLIPPINGRESULT":
+                return getFirstPoint(item.getReference(1), matrix, depth + 1);
+            default:
+                return null;
+        }
+    }
+    
+    private double[] getFirstShellPoint(int id, double[] matrix) throws IOException {
+        List<Object> faces = step.read(id).getList(0);
+        if (faces.isEmpty() || !(faces.get(0) instanceof Integer)) {
+            return null;
+        }
+        List<Object> bounds = step.read((Integer) faces.get(0)).getList(0);
+        if (bounds.isEmpty() || !(bounds.get(0) instanceof Integer)) {
+            return null;
+        }
+        Record loop = step.read(step.read((Integer) bounds.get(0)).getReference(0));
+        List<Object> polygon = loop.getType().equals("IFCPOLYLOOP") ? loop.getList(0) : Collections.emptyList();
+        if (polygon.isEmpty() || !(polygon.get(0) instanceof Integer)) {
+            return null;
+        }
+        return transform(matrix, getPoint((Integer) polygon.get(0)));
+    }
+    
+    private static double[] transform(double[] m, double[] p) {
+        return new double[]{
+                m[0] * p[0] + m[1] * p[1] + m[2] * p[2] + m[3],
+                m[4] * p[0] + m[5] * p[1] + m[6] * p[2] + m[7],
+                m[8] * p[0] + m[9] * p[1] + m[10] * p[2] + m[11]
+        };
+    }
+    
+    /**
+     * Get the entity types that were skipped because they are not supported
+     * @return Skipped types and how often they occurred, by name
+     */
+    Map<String, Integer> getUnsupported() {
+        return unsupported;
+    }
+    
+    private void skip(String type) {
+        unsupported.merge(type, 1, Integer::sum);
+    }
+    
+    private void addItems(Record representation, double[] matrix, int depth) throws IOException {
+        for (Object item : representation.getList(3)) {
+            if (item instanceof Integer) {
+                addItem((Integer) item, matrix, depth);
+            }
+        }
+    }
+    
+    private void addItem(int id, double[] matrix, int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw new IOException("Geometry of entity #" + id + " is nested too deeply");
+        }
+        Record item = step.read(id);
+        switch (item.getType()) {
+            case "IFCEXTRUDEDAREASOLID":
+                addExtrusion(item, matrix);
+                break;
+            case "IFCFACETEDBREP":
+            case "IFCFACETEDBREPWITHVOIDS":
+                // Voids are inside the outer shell, so they don't change the surface seen from outside
+                addShell(item.getReference(0), matrix);
+                break;
+            case "IFCSHELLBASEDSURFACEMODEL":
+            case "IFCFACEBASEDSURFACEMODEL":
+                for (Object shell : item.getList(0)) {
+                    if (shell instanceof Integer) {
+                        addShell((Integer) shell, matrix);
+                    }
+                }
+                break;
+            case "IFCTRIANGULATEDFACESET":
+                addTriangulatedFaceSet(item, matrix);
+                break;
+            case "IFCPOLYGONALFACESET":
+                addPolygonalFaceSet(item, matrix);
+                break;
+            case "IFCMAPPEDITEM":
+                Record source = step.read(item.getReference(0));
+                double[] origin = getAxisPlacement(source.getReference(0));
+                double[] target = getTransformationOperator(item.getReference(1));
+                addItems(step.read(source.getReference(1)), multiply(multiply(matrix, target), origin), depth + 1);
+                break;
+            case "IFCBOOLEANRESULT":
+            case "IFCBOOLEANCLIPPINGRESULT":
+                // Differences and clippings keep the first operand; the cut is finer than a block
+                addItem(item.getReference(1), matrix, depth + 1);
+                if (".UNION.".equals(item.getString(0))) {
+                    addItem(item.getReference(2), matrix, depth + 1);
+                }
+                break;
+            default:
+                skip(item.getType());
+        }
+    }
+    
+    private void addExtrusion(Record solid, double[] matrix) throws IOException {
+        double[][] profile = getProfile(solid.getReference(0));
+        if (profile == null) {
+            return;
+        }
+        double[] m = multiply(matrix, getAxisPlacement(solid.getReference(1)));
+        double[] direction = getDirection(solid.getReference(2), new double[]{0, 0, 1});
+        double length = Math.sqrt(direction[0] * direction[0] + direction[1] * direction[1]
+                + direction[2] * direction[2]);
+        double depth = solid.getNumber(3, 0);
+        if (length == 0 || depth == 0) {
+            return;
+        }
+        double dx = direction[0] / length * depth;
+        double dy = direction[1] / length * depth;
+        double dz = direction[2] / length * depth;
+        
+        double[] xs = profile[0];
+        double[] ys = profile[1];
+        int n = xs.length;
+        int[] caps = triangulate(xs, ys, n);
+        for (int t = 0; t < caps.length; t += 3) {
+            int a = caps[t], b = caps[t + 1], c = caps[t + 2];
+            emit(m, xs[a], ys[a], 0, xs[b], ys[b], 0, xs[c], ys[c], 0);
+            emit(m, xs[a] + dx, ys[a] + dy, dz, xs[b] + dx, ys[b] + dy, dz, xs[c] + dx, ys[c] + dy, dz);
+        }
+        for (int i = 0; i < n; i++) {
+            int j = (i + 1) % n;
+            emit(m, xs[i], ys[i], 0, xs[j], ys[j], 0, xs[j] + dx, ys[j] + dy, dz);
+            emit(m, xs[i], ys[i], 0, xs[j] + dx, ys[j] + dy, dz, xs[i] + dx, ys[i] + dy, dz);
+        }
+    }
+    
+    /**
+     * Get the outline of a profile in its plane
+     * Parametric steel sections are approximated by their bounding rectangle, and voids are left out.
+     * @return The x and y coordinates, or null if the profile is not supported
+     */
+    private double[][] getProfile(int id) throws IOException {
+        Record profile = step.read(id);
+        String type = profile.getType();
+        double[][] outline;
+        
+        if (type.equals("IFCARBITRARYCLOSEDPROFILEDEF") || type.equals("IFCARBITRARYPROFILEDEFWITHVOIDS")) {
+            return getCurve(profile.getReference(2));
+        } else if (type.equals("IFCRECTANGLEPROFILEDEF") || type.equals("IFCRECTANGLEHOLLOWPROFILEDEF")
+                || type.equals("IFCROUNDEDRECTANGLEPROFILEDEF")) {
+            outline = rectangle(profile.getNumber(3, 0), profile.getNumber(4, 0));
+        } else if (type.equals("IFCISHAPEPROFILEDEF") || type.equals("IFCASYMMETRICISHAPEPROFILEDEF")) {
+            outline = rectangle(profile.getNumber(3, 0), profile.getNumber(4, 0));
+        } else if (type.equals("IFCLSHAPEPROFILEDEF") || type.equals("IFCCSHAPEPROFILEDEF")
+                || type.equals("IFCTSHAPEPROFILEDEF") || type.equals("IFCUSHAPEPROFILEDEF")
+                || type.equals("IFCZSHAPEPROFILEDEF")) {
+            outline = rectangle(profile.getNumber(4, 0), profile.getNumber(3, 0));
+        } else if (type.equals("IFCCIRCLEPROFILEDEF") || type.equals("IFCCIRCLEHOLLOWPROFILEDEF")) {
+            double radius = profile.getNumber(3, 0);
+            outline = ellipse(radius, radius);
+        } else if (type.equals("IFCELLIPSEPROFILEDEF")) {
+            outline = ellipse(profile.getNumber(3, 0), profile.getNumber(4, 0));
+        } else {
+            skip(type);
+            return null;
+        }
+        
+        // Parametric profiles are centred on their position
+        double[] m = getAxisPlacement(profile.getReference(2));
+        for (int i = 0; i < outline[0].length; i++) {
+            double x = outline[0][i];
+            double y = outline[1][i];
+            outline[0][i] = m[0] * x + m[1] * y + m[3];
+            outline[1][i] = m[4] * x + m[5] * y + m[7];
+        }
+        return outline;
+    }
+    
+    private static double[][] rectangle(double width, double height) {
+        double x = width / 2;
+        double y = height / 2;
+        return new double[][]{{-x, x, x, -x}, {-y, -y, y, y}};
+    }
+    
+    private static double[][] ellipse(double radiusX, double radiusY) {
+        double[][] outline = new double[2][CIRCLE_SEGMENTS];
+        for (int i = 0; i < CIRCLE_SEGMENTS; i++) {
+            double angle = 2 * Math.PI * i / CIRCLE_SEGMENTS;
+            outline[0][i] = radiusX * Math.cos(angle);
+            outline[1][i] = radiusY * Math.sin(angle);
+        }
+        return outline;
+    }
+    
+    /**
+     * Get the vertices of a closed 2D curve; arcs of indexed poly curves are replaced by chords
+     */
+    private double[][] getCurve(int id) throws IOException {
+        Record curve = step.read(id);
+        List<double[]> vertices = new ArrayList<>();
+        if (curve.getType().equals("IFCPOLYLINE")) {
+            for (Object point : curve.getList(0)) {
+                if (point instanceof Integer) {
+                    vertices.add(getPoint((Integer) point));
+                }
+            }
+        } else if (curve.getType().equals("IFCINDEXEDPOLYCURVE")) {
+            for (Object point : step.read(curve.getReference(0)).getList(0)) {
+                if (point instanceof double[]) {
+                    vertices.add((double[]) point);
+                }
+            }
+        } else {
+            skip(curve.getType());
+            return null;
+        }
+        
+        // Closed curves usually repeat their first point
+        int n = vertices.size();
+        if (n > 1 && Arrays.equals(vertices.get(0), vertices.get(n - 1))) {
+            n--;
+        }
+        if (n < 3) {
+            return null;
+        }
+        double[][] outline = new double[2][n];
+        for (int i = 0; i < n; i++) {
+            double[] vertex = vertices.get(i);
+            outline[0][i] = vertex[0];
+            outline[1][i] = vertex.length > 1 ? vertex[1] : 0;
+        }
+        return outline;
+    }
+    
+    private void addShell(int id, double[] matrix) throws IOException {
+        Record shell = step.read(id);
+        if (!shell.getType().equals("IFCCLOSEDSHELL") && !shell.getType().equals("IFCOPENSHELL")) {
+            skip(shell.getType());
+            return;
+        }
+        for (Object faceReference : shell.getList(0)) {
+            if (!(faceReference instanceof Integer)) {
+                continue;
+            }
+            
+            // Use the outer bound; inner bounds are holes, which are smaller than blocks or openings
+            Record face = step.read((Integer) faceReference);
+            Record loop = null;
+            for (Object boundReference : face.getList(0)) {
+                if (boundReference instanceof Integer) {
+                    Record bound = step.read((Integer) boundReference);
+                    if (loop == null || bound.getType().equals("IFCFACEOUTERBOUND")) {
+                        loop = step.read(bound.getReference(0));
+                    }
+                }
+            }
+            if (loop == null) {
+                continue;
+            }
+            if (!loop.getType().equals("IFCPOLYLOOP")) {
+                skip(loop.getType());
+                continue;
+            }
+            
+            List<Object> polygon = loop.getList(0);
+            double[] xs = new double[polygon.size()];
+            double[] ys = new double[polygon.size()];
+            double[] zs = new double[polygon.size()];
+            int n = 0;
+            for (Object point : polygon) {
+                if (point instanceof Integer) {
+                    double[] p = getPoint((Integer) point);
+                    xs[n] = p[0];
+                    ys[n] = p[1];
+                    zs[n] = p[2];
+                    n++;
+                }
+            }
+            addPolygon(matrix, xs, ys, zs, n);
+        }
+    }
+    
+    private void addTriangulatedFaceSet(Record faceSet, double[] matrix) throws IOException {
+        List<Object> coordinates = step.read(faceSet.getReference(0)).getList(0);
+        double[] pointIndex = faceSet.getNumbers(4);
+        for (Object triangle : faceSet.getList(3)) {
+            if (!(triangle instanceof double[]) || ((double[]) triangle).length < 3) {
+                continue;
+            }
+            double[] indices = (double[]) triangle;
+            double[] a = getIndexed(coordinates, pointIndex, indices[0]);
+            double[] b = getIndexed(coordinates, pointIndex, indices[1]);
+            double[] c = getIndexed(coordinates, pointIndex, indices[2]);
+            if (a != null && b != null && c != null) {
+                emit(matrix, a[0], a[1], z(a), b[0], b[1], z(b), c[0], c[1], z(c));
+            }
+        }
+    }
+    
+    private void addPolygonalFaceSet(Record faceSet, double[] matrix) throws IOException {
+        List<Object> coordinates = step.read(faceSet.getReference(0)).getList(0);
+        double[] pointIndex = faceSet.getNumbers(3);
+        for (Object faceReference : faceSet.getList(2)) {
+            if (!(faceReference instanceof Integer)) {
+                continue;
+            }
+            double[] indices = step.read((Integer) faceReference).getNumbers(0);
+            if (indices == null) {
+                continue;
+            }
+            double[] xs = new double[indices.length];
+            double[] ys = new double[indices.length];
+            double[] zs = new double[indices.length];
+            int n = 0;
+            for (double index : indices) {
+                double[] p = getIndexed(coordinates, pointIndex, index);
+                if (p != null) {
+                    xs[n] = p[0];
+                    ys[n] = p[1];
+                    zs[n] = z(p);
+                    n++;
+                }
+            }
+            addPolygon(matrix, xs, ys, zs, n);
+        }
+    }
+    
+    /**
+     * Look up a point of a coordinate list by its 1-based index, through the optional point index
+     */
+    private static double[] getIndexed(List<Object> coordinates, double[] pointIndex, double index) {
+        int i = (int) index - 1;
+        if (pointIndex != null) {
+            if (i < 0 || i >= pointIndex.length) {
+                return null;
+            }
+            i = (int) pointIndex[i] - 1;
+        }
+        if (i < 0 || i >= coordinates.size() || !(coordinates.get(i) instanceof double[])) {
+            return null;
+        }
+        double[] point = (double[]) coordinates.get(i);
+        return point.length >= 2 ? point : null;
+    }
+    
+    private static double z(double[] point) {
+        return point.length > 2 ? point[2] : 0;
+    }
+    
+    /**
+     * Triangulate a planar 3D polygon by projecting it onto the plane it is most parallel to
+     */
+    private void addPolygon(double[] m, double[] xs, double[] ys, double[] zs, int n) {
+        if (n < 3) {
+            return;
+        }
+        
+        // Newell's method gives the polygon's normal even for concave outlines
+        double nx = 0, ny = 0, nz = 0;
+        for (int i = 0; i < n; i++) {
+            int j = (i + 1) % n;
+            nx += (ys[i] - ys[j]) * (zs[i] + zs[j]);
+            ny += (zs[i] - zs[j]) * (xs[i] + xs[j]);
+            nz += (xs[i] - xs[j]) * (ys[i] + ys[j]);
+        }
+        double ax = Math.abs(nx), ay = Math.abs(ny), az = Math.abs(nz);
+        double[] us;
+        double[] vs;
+        if (ax >= ay && ax >= az) {
+            us = ys;
+            vs = zs;
+        } else if (ay >= az) {
+            us = xs;
+            vs = zs;
+        } else {
+            us = xs;
+            vs = ys;
+        }
+        
+        int[] triangles = triangulate(us, vs, n);
+        for (int t = 0; t < triangles.length; t += 3) {
+            int a = triangles[t], b = triangles[t + 1], c = triangles[t + 2];
+            emit(m, xs[a], ys[a], zs[a], xs[b], ys[b], zs[b], xs[c], ys[c], zs[c]);
+        }
+    }
+    
+    /**
+     * Split a simple polygon into triangles by ear clipping
+     * @return Vertex indices, three per triangle
+     */
+    static int[] triangulate(double[] xs, double[] ys, int n) {
+        if (n < 3) {
+            return new int[0];
+        }
+        int[] triangles = new int[(n - 2) * 3];
+        if (n == 3 || n > MAX_EAR_CLIP_VERTICES) {
+            for (int i = 1; i < n - 1; i++) {
+                triangles[(i - 1) * 3] = 0;
+                triangles[(i - 1) * 3 + 1] = i;
+                triangles[(i - 1) * 3 + 2] = i + 1;
+            }
+            return triangles;
+        }
+        
+        // Work in counter-clockwise order, whichever way the polygon is wound
+        double area = 0;
+        for (int i = 0; i < n; i++) {
+            int j = (i + 1) % n;
+            area += xs[i] * ys[j] - xs[j] * ys[i];
+        }
+        double orientation = area >= 0 ? 1 : -1;
+        
+        int[] previous = new int[n];
+        int[] next = new int[n];
+        for (int i = 0; i < n; i++) {
+            previous[i] = (i + n - 1) % n;
+            next[i] = (i + 1) % n;
+        }
+        
+        int count = 0;
+        int remaining = n;
+        int vertex = 0;
+        int failures = 0;
+        while (remaining > 3) {
+            int a = previous[vertex];
+            int c = next[vertex];
+            
+            // Degenerate or self-intersecting outlines may have no ear left; clip anyway
+            if (isEar(xs, ys, a, vertex, c, next, orientation) || failures > remaining) {
+                triangles[count++] = a;
+                triangles[count++] = vertex;
+                triangles[count++] = c;
+                next[a] = c;
+                previous[c] = a;
+                remaining--;
+                failures = 0;
+                vertex = c;
+            } else {
+                failures++;
+                vertex = c;
+            }
+        }
+        triangles[count++] = previous[vertex];
+        triangles[count++] = vertex;
+        triangles[count] = next[vertex];
+        return triangles;
+    }
+    
+    private static boolean isEar(double[] xs, double[] ys, int a, int b, int c, int[] next, double orientation) {
+        if (cross(xs, ys, a, b, c) * orientation <= 0) {
+            return false;
+        }
+        for (int p = next[c]; p != a; p = next[p]) {
+            if (cross(xs, ys, a, b, p) * orientation >= 0 && cross(xs, ys, b, c, p) * orientation >= 0
+                    && cross(xs, ys, c, a, p) * orientation >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static double cross(double[] xs, double[] ys, int a, int b, int c) {
+        return (xs[b] - xs[a]) * (ys[c] - ys[a]) - (ys[b] - ys[a]) * (xs[c] - xs[a]);
+    }
+    
+    /**
+     * Transform a triangle to world coordinates, convert it to metres with Y up and pass it on
+     */
+    private void emit(double[] m, double x1, double y1, double z1, double x2, double y2, double z2,
+                      double x3, double y3, double z3) {
+        toModel(m, x1, y1, z1, 0);
+        toModel(m, x2, y2, z2, 3);
+        toModel(m, x3, y3, z3, 6);
+        sink.accept(corners);
+    }
+    
+    private void toModel(double[] m, double x, double y, double z, int offset) {
+        // IFC is Z up with Y north; blocks are Y up with Z south
+        corners[offset] = (m[0] * x + m[1] * y + m[2] * z + m[3]) * unitScale;
+        corners[offset + 1] = (m[8] * x + m[9] * y + m[10] * z + m[11]) * unitScale;
+        corners[offset + 2] = -(m[4] * x + m[5] * y + m[6] * z + m[7]) * unitScale;
+    }
+    
+    /**
+     * Resolve an object placement to a matrix in world coordinates
+     * Matrices are the top three rows of a 4x4 transform, row by row.
+     */
+    private double[] getPlacement(int id, int depth) throws IOException {
+        if (id < 0) {
+            return IDENTITY;
+        }
+        double[] cached = placements.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        if (depth > MAX_DEPTH) {
+            throw new IOException("Placement #" + id + " is nested too deeply");
+        }
+        
+        Record placement = step.read(id);
+        double[] matrix;
+        if (placement.getType().equals("IFCLOCALPLACEMENT")) {
+            matrix = multiply(getPlacement(placement.getReference(0), depth + 1),
+                    getAxisPlacement(placement.getReference(1)));
+        } else {
+            skip(placement.getType());
+            matrix = IDENTITY;
+        }
+        placements.put(id, matrix);
+        return matrix;
+    }
+    
+    /**
+     * Get the matrix of an IfcAxis2Placement3D or 2D: its location and its Z and X axes
+     */
+    private double[] getAxisPlacement(int id) throws IOException {
+        if (id < 0) {
+            return IDENTITY;
+        }
+        Record placement = step.read(id);
+        double[] location = placement.getReference(0) >= 0 ? getPoint(placement.getReference(0)) : new double[3];
+        double[] z;
+        double[] x;
+        if (placement.getType().equals("IFCAXIS2PLACEMENT2D")) {
+            z = new double[]{0, 0, 1};
+            x = getDirection(placement.getReference(1), new double[]{1, 0, 0});
+        } else {
+            z = normalize(getDirection(placement.getReference(1), new double[]{0, 0, 1}), new double[]{0, 0, 1});
+            x = getDirection(placement.getReference(2), new double[]{1, 0, 0});
+        }
+        
+        // Make X perpendicular to Z, as the schema defines
+        x = perpendicular(x, z);
+        double[] y = cross(z, x);
+        return new double[]{
+                x[0], y[0], z[0], location[0],
+                x[1], y[1], z[1], location[1],
+                x[2], y[2], z[2], location[2]
+        };
+    }
+    
+    /**
+     * Get the matrix of an IfcCartesianTransformationOperator3D, uniform or not
+     */
+    private double[] getTransformationOperator(int id) throws IOException {
+        if (id < 0) {
+            return IDENTITY;
+        }
+        Record operator = step.read(id);
+        if (!operator.getType().startsWith("IFCCARTESIANTRANSFORMATIONOPERATOR3D")) {
+            skip(operator.getType());
+            return IDENTITY;
+        }
+        double[] x = normalize(getDirection(operator.getReference(0), new double[]{1, 0, 0}), new double[]{1, 0, 0});
+        double[] y = normalize(getDirection(operator.getReference(1), new double[]{0, 1, 0}), new double[]{0, 1, 0});
+        double[] origin = getPoint(operator.getReference(2));
+        double scale = operator.getNumber(3, 1);
+        double[] z = normalize(getDirection(operator.getReference(4), cross(x, y)), new double[]{0, 0, 1});
+        double scaleY = operator.getNumber(5, scale);
+        double scaleZ = operator.getNumber(6, scale);
+        
+        // Make the axes orthogonal, keeping Z
+        x = perpendicular(x, z);
+        y = cross(z, x);
+        return new double[]{
+                x[0] * scale, y[0] * scaleY, z[0] * scaleZ, origin[0],
+                x[1] * scale, y[1] * scaleY, z[1] * scaleZ, origin[1],
+                x[2] * scale, y[2] * scaleY, z[2] * scaleZ, origin[2]
+        };
+    }
+    
+    private double[] getPoint(int id) throws IOException {
+        if (id < 0) {
+            return new double[3];
+        }
+        double[] point = points.get(id);
+        if (point == null) {
+            double[] coordinates = step.read(id).getNumbers(0);
+            point = new double[3];
+            if (coordinates != null) {
+                System.arraycopy(coordinates, 0, point, 0, Math.min(3, coordinates.length));
+            }
+            points.put(id, point);
+        }
+        return point;
+    }
+    
+    private double[] getDirection(int id, double[] defaultDirection) throws IOException {
+        if (id < 0) {
+            return defaultDirection;
+        }
+        double[] ratios = step.read(id).getNumbers(0);
+        if (ratios == null || ratios.length < 2) {
+            return defaultDirection;
+        }
+        return new double[]{ratios[0], ratios[1], ratios.length > 2 ? ratios[2] : 0};
+    }
+    
+    private static double[] normalize(double[] v, double[] fallback) {
+        double length = Math.sqrt(v[0] * v[0] + v[1] * v[1] + v[2] * v[2]);
+        return length > 1e-12 ? new double[]{v[0] / length, v[1] / length, v[2] / length} : fallback;
+    }
+    
+    /**
+     * Remove the part of a vector along a unit axis and normalize the rest
+     * Falls back to any perpendicular if the vector is parallel to the axis.
+     */
+    private static double[] perpendicular(double[] v, double[] axis) {
+        double dot = v[0] * axis[0] + v[1] * axis[1] + v[2] * axis[2];
+        double[] result = normalize(new double[]{v[0] - dot * axis[0], v[1] - dot * axis[1], v[2] - dot * axis[2]}, null);
+        if (result == null) {
+            result = perpendicular(Math.abs(axis[0]) < 0.9 ? new double[]{1, 0, 0} : new double[]{0, 1, 0}, axis);
+        }
+        return result;
+    }
+    
+    private static double[] cross(double[] a, double[] b) {
+        return new double[]{
+                a[1] * b[2] - a[2] * b[1],
+                a[2] * b[0] - a[0] * b[2],
+                a[0] * b[1] - a[1] * b[0]
+        };
+    }
+    
+    private static double[] multiply(double[] a, double[] b) {
+        double[] result = new double[12];
+        for (int row = 0; row < 3; row++) {
+            for (int column = 0; column < 4; column++) {
+                double sum = column == 3 ? a[row * 4 + 3] : 0;
+                for (int k = 0; k < 3; k++) {
+                    sum += a[row * 4 + k] * b[k * 4 + column];
+                }
+                result[row * 4 + column] = sum;
+            }
+        }
+        return result;
+    }
+}
\ No newline at end of file
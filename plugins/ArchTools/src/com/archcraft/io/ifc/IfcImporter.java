@@ -0,0 +1,273 @@
+package com.archcraft.io.ifc;
+
+import com.archcraft.io.ModelFormat;
+import com.archcraft.io.ModelImporter;
+import com.archcraft.io.ModelInfo;
+import com.archcraft.io.ifc.StepFile.Record;
+import com.archcraft.io.job.ModelJob;
+import com.archcraft.io.voxel.Transform;
+import com.archcraft.io.voxel.TriangleBatch;
+import com.archcraft.io.voxel.VoxelModel;
+import com.archcraft.io.voxel.Voxelizer;
+
+import org.bukkit.ChatColor;
+import org.bukkit.Material;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Importer for IFC building models in STEP physical file format
+ * The file is indexed in one streaming pass, then the body geometry of each building element
+ * is resolved entity by entity and streamed into the voxelizer. Each element becomes the block
+ * its type maps to. Openings, spaces and sites are left out.
+ */
+public class IfcImporter implements ModelImporter {
+    
+    // How often importing reports progress, in elements
+    private static final int PROGRESS_INTERVAL = 64;
+    
+    // Block for each imported element type
+    private static final Map<String, Material> ELEMENT_MATERIALS = new LinkedHashMap<>();
+    
+    static {
+        for (String type : new String[]{"IFCWALL", "IFCWALLSTANDARDCASE", "IFCWALLELEMENTEDCASE"}) {
+            ELEMENT_MATERIALS.put(type, Material.WHITE_CONCRETE);
+        }
+        for (String type : new String[]{"IFCSLAB", "IFCSLABSTANDARDCASE", "IFCSLABELEMENTEDCASE"}) {
+            ELEMENT_MATERIALS.put(type, Material.SMOOTH_STONE);
+        }
+        for (String type : new String[]{"IFCCOLUMN", "IFCCOLUMNSTANDARDCASE", "IFCBEAM", "IFCBEAMSTANDARDCASE"}) {
+            ELEMENT_MATERIALS.put(type, Material.LIGHT_GRAY_CONCRETE);
+        }
+        for (String type : new String[]{"IFCWINDOW", "IFCWINDOWSTANDARDCASE", "IFCCURTAINWALL", "IFCPLATE"}) {
+            ELEMENT_MATERIALS.put(type, Material.GLASS);
+        }
+        for (String type : new String[]{"IFCDOOR", "IFCDOORSTANDARDCASE"}) {
+            ELEMENT_MATERIALS.put(type, Material.OAK_PLANKS);
+        }
+        for (String type : new String[]{"IFCSTAIR", "IFCSTAIRFLIGHT", "IFCRAMP", "IFCRAMPFLIGHT"}) {
+            ELEMENT_MATERIALS.put(type, Material.STONE_BRICKS);
+        }
+        for (String type : new String[]{"IFCFOOTING", "IFCPILE", "IFCMEMBER"}) {
+            ELEMENT_MATERIALS.put(type, Material.GRAY_CONCRETE);
+        }
+        for (String type : new String[]{"IFCROOF", "IFCCHIMNEY"}) {
+            ELEMENT_MATERIALS.put(type, Material.BRICKS);
+        }
+        for (String type : new String[]{"IFCFURNISHINGELEMENT", "IFCFURNITURE"}) {
+            ELEMENT_MATERIALS.put(type, Material.BIRCH_PLANKS);
+        }
+        ELEMENT_MATERIALS.put("IFCCOVERING", Material.WHITE_TERRACOTTA);
+        ELEMENT_MATERIALS.put("IFCRAILING", Material.IRON_BARS);
+        ELEMENT_MATERIALS.put("IFCBUILDINGELEMENTPROXY", Material.STONE);
+    }
+    
+    // Slabs with this predefined type are roofs
+    private static final String ROOF_SLAB = ".ROOF.";
+    
+    // Elements rise from their placement by about this much, in metres
+    private static final double STOREY_HEIGHT = 3;
+    
+    @Override
+    public VoxelModel importModel(File file, Transform transform, ModelJob job)
+            throws IOException, UnsupportedOperationException {
+        
+        try (StepFile step = StepFile.open(file, getCollectedTypes(), job)) {
+            VoxelModel model = new VoxelModel();
+            TriangleBatch batch = new TriangleBatch(transform, new Voxelizer(model));
+            IfcGeometry geometry = new IfcGeometry(step, getLengthUnitScale(step));
+            Result result = addElements(step, geometry, batch, job);
+            batch.flush();
+            
+            if (result.failed > 0) {
+                job.sendMessage(ChatColor.YELLOW + "Could not read all geometry of " + result.failed + " element(s): "
+                        + result.firstError);
+            }
+            if (!geometry.getUnsupported().isEmpty()) {
+                job.sendMessage(ChatColor.YELLOW + "Skipped unsupported geometry: " + geometry.getUnsupported());
+            }
+            job.setProgress("Imported " + result.elements + " elements, " + batch.getAdded() + " triangles");
+            return model;
+        }
+    }
+    
+    /**
+     * Estimate the bounds of the building elements from one point of each
+     * Bodies are not resolved: each element is located by its placement and the first point of
+     * its body. The top is raised by a storey height since elements rise from their base, and the
+     * outermost elements may reach a little further. Triangles are only counted when importing.
+     */
+    @Override
+    public ModelInfo.Geometry describe(File file) throws IOException {
+        try (StepFile step = StepFile.open(file, getCollectedTypes(), null)) {
+            double unitScale = getLengthUnitScale(step);
+            IfcGeometry geometry = new IfcGeometry(step, unitScale);
+            double[] min = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+            double[] max = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+            boolean placed = false;
+            
+            for (String type : ELEMENT_MATERIALS.keySet()) {
+                for (int id : step.getEntities(type)) {
+                    try {
+                        double[] anchor = geometry.getAnchor(step.read(id));
+                        for (int axis = 0; axis < 3; axis++) {
+                            min[axis] = Math.min(min[axis], anchor[axis]);
+                            max[axis] = Math.max(max[axis], anchor[axis]);
+                        }
+                        placed = true;
+                    } catch (IOException e) {
+                        // Reported when the model is imported
+                    }
+                }
+            }
+            
+            if (!placed) {
+                return new ModelInfo.Geometry(-1, -1, -1, new double[3], new double[3], -1, false);
+            }
+            max[1] += STOREY_HEIGHT;
+            return new ModelInfo.Geometry(-1, -1, -1, min, max, -1, false);
+        }
+    }
+    
+    private static Set<String> getCollectedTypes() {
+        Set<String> types = new HashSet<>(ELEMENT_MATERIALS.keySet());
+        types.add("IFCPROJECT");
+        return types;
+    }
+    
+    /**
+     * Resolve the geometry of every building element into the batch
+     * @param job The job to check for cancellation
+     */
+    private static Result addElements(StepFile step, IfcGeometry geometry, TriangleBatch batch, ModelJob job)
+            throws IOException {
+        
+        int total = 0;
+        for (String type : ELEMENT_MATERIALS.keySet()) {
+            total += step.getEntities(type).length;
+        }
+        job.sendMessage(ChatColor.YELLOW + "Building model from " + total + " elements ("
+                + step.getEntityCount() + " entities)...");
+        
+        Result result = new Result();
+        for (Map.Entry<String, Material> entry : ELEMENT_MATERIALS.entrySet()) {
+            for (int id : step.getEntities(entry.getKey())) {
+                if (result.elements % PROGRESS_INTERVAL == 0) {
+                    job.checkCancelled();
+                    job.setProgress("Building element " + result.elements + "/" + total);
+                }
+                result.elements++;
+                
+                try {
+                    Record element = step.read(id);
+                    Material material = entry.getValue();
+                    if (entry.getKey().startsWith("IFCSLAB") && ROOF_SLAB.equals(element.getString(8))) {
+                        material = ELEMENT_MATERIALS.get("IFCROOF");
+                    }
+                    Material block = material;
+                    geometry.addElement(element, corners -> batch.add(corners, block));
+                } catch (IOException e) {
+                    if (result.failed++ == 0) {
+                        result.firstError = e.getMessage();
+                    }
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Find how many metres the file's length unit is, from the project's unit assignment
+     * @return Metres per unit; 1 if the file doesn't say
+     */
+    private static double getLengthUnitScale(StepFile step) {
+        for (int project : step.getEntities("IFCPROJECT")) {
+            try {
+                Record units = step.read(step.read(project).getReference(8));
+                for (Object unit : units.getList(0)) {
+                    if (unit instanceof Integer) {
+                        Record record = step.read((Integer) unit);
+                        if (".LENGTHUNIT.".equals(record.getString(1))) {
+                            return getUnitScale(step, record, 0);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                // Fall back to metres
+            }
+        }
+        return 1;
+    }
+    
+    private static double getUnitScale(StepFile step, Record unit, int depth) throws IOException {
+        if (unit.getType().equals("IFCSIUNIT")) {
+            return getPrefixScale(unit.getString(2));
+        }
+        if (unit.getType().equals("IFCCONVERSIONBASEDUNIT") && depth < 4) {
+            // A measure such as IFCLENGTHMEASURE(0.3048) of another unit
+            Record factor = step.read(unit.getReference(3));
+            int base = factor.getReference(1);
+            return factor.getNumber(0, 1) * (base >= 0 ? getUnitScale(step, step.read(base), depth + 1) : 1);
+        }
+        return 1;
+    }
+    
+    private static double getPrefixScale(String prefix) {
+        if (prefix == null) {
+            return 1;
+        }
+        switch (prefix) {
+            case ".KILO.":
+                return 1e3;
+            case ".HECTO.":
+                return 1e2;
+            case ".DECA.":
+                return 1e1;
+            case ".DECI.":
+                return 1e-1;
+            case ".CENTI.":
+                return 1e-2;
+            case ".MILLI.":
+                return 1e-3;
+            case ".MICRO.":
+                return 1e-6;
+            default:
+                return 1;
+        }
+    }
+    
+    @Override
+    public ModelFormat getFormat() {
+        return ModelFormat.IFC;
+    }
+    
+    @Override
+    public boolean supportsFeature(ImportFeature feature) {
+        switch (feature) {
+            case MATERIALS:
+            case SCALING:
+                return true;
+            case TEXTURES:
+            case COLORS:
+            case ANIMATION:
+            case METADATA:
+                return false;
+            default:
+                return false;
+        }
+    }
+    
+    /**
+     * Element counts of an import
+     */
+    private static class Result {
+        private int elements;
+        private int failed;
+        private String firstError;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,591 @@
+package com.archcraft.io.ifc;
+
+import com.archcraft.io.job.ModelJob;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Random access to the entities of a STEP (ISO 10303-21) file
+ * Opening the file streams it once to build a table from entity id to file offset; no entity
+ * is parsed. Records are parsed when they are asked for, so memory follows what the caller
+ * resolves rather than the size of the file. The table costs 12 bytes per entity.
+ */
+class StepFile implements Closeable {
+    
+    // Buffer for the indexing pass
+    private static final int SCAN_BUFFER_SIZE = 1 << 20;
+    
+    // Window for reading records; the entities of one element are usually written close together
+    private static final int WINDOW_SIZE = 1 << 16;
+    
+    // Longest entity type name that is matched; longer names are never collected
+    private static final int MAX_TYPE_LENGTH = 64;
+    
+    // How often indexing checks for cancellation, in bytes
+    private static final long CANCEL_CHECK_BYTES = 16L << 20;
+    
+    // Scanner states
+    private static final int STATEMENT = 0;
+    private static final int ID = 1;
+    private static final int TYPE_START = 2;
+    private static final int TYPE = 3;
+    private static final int BODY = 4;
+    private static final int STRING = 5;
+    private static final int COMMENT = 6;
+    
+    private final FileChannel channel;
+    private final long size;
+    private int[] ids = new int[1024];
+    private long[] offsets = new long[1024];
+    private int count;
+    private final Map<String, int[]> collected = new HashMap<>();
+    
+    private final ByteBuffer window = ByteBuffer.allocate(WINDOW_SIZE);
+    private long windowStart;
+    private int windowLength;
+    private long position;
+    
+    private StepFile(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+    }
+    
+    /**
+     * Index a STEP file
+     * @param file The file
+     * @param collectTypes Upper case entity types whose ids should be listed, see {@link #getEntities(String)}
+     * @param job The job to check for cancellation and report progress to, or null
+     * @return The indexed file, which must be closed
+     * @throws IOException If the file can't be read
+     */
+    static StepFile open(File file, Set<String> collectTypes, ModelJob job) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            StepFile stepFile = new StepFile(channel);
+            stepFile.index(collectTypes, job);
+            return stepFile;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    private void index(Set<String> collectTypes, ModelJob job) throws IOException {
+        // Collected types are found by hashing the type name's bytes as they are read
+        int tableSize = Integer.highestOneBit(Math.max(1, collectTypes.size()) * 4) * 2;
+        byte[][] typeNames = new byte[tableSize][];
+        String[] types = new String[tableSize];
+        int[][] lists = new int[tableSize][];
+        int[] listSizes = new int[tableSize];
+        for (String type : collectTypes) {
+            byte[] name = type.getBytes(StandardCharsets.US_ASCII);
+            int slot = hash(name, name.length) & (tableSize - 1);
+            while (typeNames[slot] != null) {
+                slot = (slot + 1) & (tableSize - 1);
+            }
+            typeNames[slot] = name;
+            types[slot] = type;
+            lists[slot] = new int[16];
+        }
+        
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        byte[] type = new byte[MAX_TYPE_LENGTH];
+        int typeLength = 0;
+        int state = STATEMENT;
+        int commentReturn = STATEMENT;
+        int previous = 0;
+        int id = 0;
+        long recordStart = 0;
+        long offset = 0;
+        long nextCheck = 0;
+        
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, offset);
+            if (read <= 0) {
+                break;
+            }
+            byte[] bytes = buffer.array();
+            for (int i = 0; i < read; i++) {
+                int b = bytes[i];
+                
+                if (state == STRING) {
+                    // A doubled quote leaves and re-enters the string
+                    if (b == '\'') {
+                        state = BODY;
+                    }
+                } else if (state == COMMENT) {
+                    if (previous == '*' && b == '/') {
+                        state = commentReturn;
+                        b = 0;
+                    }
+                } else if (previous == '/' && b == '*' && (state == STATEMENT || state == BODY)) {
+                    commentReturn = state;
+                    state = COMMENT;
+                    b = 0;
+                } else if (state == STATEMENT) {
+                    if (b == '#') {
+                        state = ID;
+                        id = 0;
+                        recordStart = offset + i;
+                    } else if (b > ' ' && b != '/') {
+                        state = b == ';' ? STATEMENT : b == '\'' ? STRING : BODY;
+                    }
+                } else if (state == ID) {
+                    if (b >= '0' && b <= '9') {
+                        id = id * 10 + (b - '0');
+                    } else if (b == '=') {
+                        state = TYPE_START;
+                    } else if (b > ' ') {
+                        state = b == ';' ? STATEMENT : BODY;
+                    }
+                } else if (state == TYPE_START) {
+                    if ((b >= 'A' && b <= 'Z') || (b >= 'a' && b <= 'z')) {
+                        state = TYPE;
+                        type[0] = (byte) (b & ~0x20);
+                        typeLength = 1;
+                    } else if (b > ' ') {
+                        state = b == ';' ? STATEMENT : BODY;
+                    }
+                } else if (state == TYPE) {
+                    if ((b >= 'A' && b <= 'Z') || (b >= 'a' && b <= 'z') || (b >= '0' && b <= '9') || b == '_') {
+                        if (typeLength < MAX_TYPE_LENGTH) {
+                            type[typeLength] = (byte) (b >= 'a' ? b & ~0x20 : b);
+                        }
+                        typeLength++;
+                    } else {
+                        add(id, recordStart);
+                        if (typeLength <= MAX_TYPE_LENGTH) {
+                            int slot = hash(type, typeLength) & (tableSize - 1);
+                            while (typeNames[slot] != null) {
+                                if (matches(typeNames[slot], type, typeLength)) {
+                                    if (listSizes[slot] == lists[slot].length) {
+                                        lists[slot] = Arrays.copyOf(lists[slot], lists[slot].length * 2);
+                                    }
+                                    lists[slot][listSizes[slot]++] = id;
+                                    break;
+                                }
+                                slot = (slot + 1) & (tableSize - 1);
+                            }
+                        }
+                        state = b == ';' ? STATEMENT : b == '\'' ? STRING : BODY;
+                    }
+                } else if (b == ';') {
+                    state = STATEMENT;
+                } else if (b == '\'') {
+                    state = STRING;
+                }
+                previous = b;
+            }
+            offset += read;
+            
+            if (job != null && offset >= nextCheck) {
+                job.checkCancelled();
+                job.setProgress("Indexing " + offset / (1024 * 1024) + "/" + size / (1024 * 1024) + " MB, "
+                        + count + " entities");
+                nextCheck = offset + CANCEL_CHECK_BYTES;
+            }
+        }
+        
+        for (int slot = 0; slot < tableSize; slot++) {
+            if (types[slot] != null) {
+                collected.put(types[slot], Arrays.copyOf(lists[slot], listSizes[slot]));
+            }
+        }
+        sortById();
+    }
+    
+    private static int hash(byte[] bytes, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = hash * 31 + bytes[i];
+        }
+        return hash ^ (hash >>> 16);
+    }
+    
+    private static boolean matches(byte[] name, byte[] bytes, int length) {
+        if (name.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name[i] != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private void add(int id, long offset) {
+        if (count == ids.length) {
+            ids = Arrays.copyOf(ids, count * 2);
+            offsets = Arrays.copyOf(offsets, count * 2);
+        }
+        ids[count] = id;
+        offsets[count] = offset;
+        count++;
+    }
+    
+    /**
+     * Sort the table by id, for the rare file that doesn't write entities in order
+     */
+    private void sortById() {
+        boolean sorted = true;
+        for (int i = 1; i < count && sorted; i++) {
+            sorted = ids[i - 1] < ids[i];
+        }
+        if (sorted) {
+            ids = Arrays.copyOf(ids, count);
+            offsets = Arrays.copyOf(offsets, count);
+            return;
+        }
+        
+        long[] packed = new long[count];
+        for (int i = 0; i < count; i++) {
+            packed[i] = ((long) ids[i] << 32) | i;
+        }
+        Arrays.sort(packed);
+        int[] sortedIds = new int[count];
+        long[] sortedOffsets = new long[count];
+        for (int i = 0; i < count; i++) {
+            sortedIds[i] = (int) (packed[i] >>> 32);
+            sortedOffsets[i] = offsets[(int) packed[i]];
+        }
+        ids = sortedIds;
+        offsets = sortedOffsets;
+    }
+    
+    /**
+     * Get the number of entities in the file
+     * @return Entity count
+     */
+    int getEntityCount() {
+        return count;
+    }
+    
+    /**
+     * Get the ids of the entities of a type given to {@link #open(File, Set, ModelJob)}
+     * @param type Upper case entity type
+     * @return Ids in file order
+     */
+    int[] getEntities(String type) {
+        int[] entities = collected.get(type);
+        return entities != null ? entities : new int[0];
+    }
+    
+    /**
+     * Parse an entity
+     * @param id The entity id
+     * @return The entity's record
+     * @throws IOException If there is no such entity or its record is malformed
+     */
+    Record read(int id) throws IOException {
+        int index = Arrays.binarySearch(ids, id);
+        if (index < 0) {
+            throw new IOException("Reference to missing entity #" + id);
+        }
+        position = offsets[index];
+        
+        // Skip "#id="
+        while (peek() != '=') {
+            if (next() < 0) {
+                throw error("Unexpected end of file");
+            }
+        }
+        next();
+        skipWhitespace();
+        Object value = value(0);
+        if (!(value instanceof Record)) {
+            throw error("Entity #" + id + " is not an entity instance");
+        }
+        return (Record) value;
+    }
+    
+    private Object value(int depth) throws IOException {
+        if (depth > 64) {
+            throw error("Nesting too deep");
+        }
+        skipWhitespace();
+        int b = peek();
+        if (b == '#') {
+            next();
+            long reference = 0;
+            while (peek() >= '0' && peek() <= '9') {
+                reference = reference * 10 + (next() - '0');
+            }
+            if (reference > Integer.MAX_VALUE) {
+                throw error("Entity id out of range");
+            }
+            return (int) reference;
+        } else if (b == '\'') {
+            return string();
+        } else if (b == '.') {
+            // Enumeration or boolean, kept with its dots
+            StringBuilder builder = new StringBuilder().append((char) next());
+            int c;
+            do {
+                c = next();
+                if (c < 0) {
+                    throw error("Unexpected end of file");
+                }
+                builder.append((char) (c >= 'a' && c <= 'z' ? c & ~0x20 : c));
+            } while (c != '.');
+            return builder.toString();
+        } else if (b == '$' || b == '*') {
+            next();
+            return null;
+        } else if (b == '(') {
+            return list(depth);
+        } else if (b == '-' || b == '+' || (b >= '0' && b <= '9')) {
+            return number();
+        } else if ((b >= 'A' && b <= 'Z') || (b >= 'a' && b <= 'z')) {
+            // Entity instance or typed value such as IFCLENGTHMEASURE(0.3)
+            StringBuilder type = new StringBuilder();
+            while (isNameChar(peek())) {
+                int c = next();
+                type.append((char) (c >= 'a' && c <= 'z' ? c & ~0x20 : c));
+            }
+            skipWhitespace();
+            if (peek() != '(') {
+                throw error("Expected '(' after " + type);
+            }
+            return new Record(type.toString(), asList(list(depth)));
+        } else if (b == '"') {
+            // Binary value; no geometry uses these
+            next();
+            while (peek() != '"' && next() >= 0) {
+                // Skip hex digits
+            }
+            next();
+            return null;
+        }
+        throw error(b < 0 ? "Unexpected end of file" : "Unexpected character '" + (char) b + "'");
+    }
+    
+    /**
+     * Parse a parenthesized list
+     * @return A double[] if every element is a number, otherwise a list
+     */
+    private Object list(int depth) throws IOException {
+        next();
+        double[] numbers = new double[8];
+        int size = 0;
+        List<Object> values = null;
+        
+        skipWhitespace();
+        if (peek() == ')') {
+            next();
+            return new double[0];
+        }
+        while (true) {
+            Object value = value(depth + 1);
+            if (values == null && value instanceof Double) {
+                if (size == numbers.length) {
+                    numbers = Arrays.copyOf(numbers, size * 2);
+                }
+                numbers[size++] = (Double) value;
+            } else {
+                if (values == null) {
+                    values = new ArrayList<>(Math.max(8, size + 1));
+                    for (int i = 0; i < size; i++) {
+                        values.add(numbers[i]);
+                    }
+                }
+                values.add(value);
+            }
+            
+            skipWhitespace();
+            int b = next();
+            if (b == ')') {
+                return values != null ? values : Arrays.copyOf(numbers, size);
+            } else if (b != ',') {
+                throw error(b < 0 ? "Unexpected end of file" : "Expected ',' or ')'");
+            }
+        }
+    }
+    
+    private Double number() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        int b = peek();
+        while ((b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.' || b == 'E' || b == 'e') {
+            builder.append((char) next());
+            b = peek();
+        }
+        try {
+            return Double.valueOf(builder.toString());
+        } catch (NumberFormatException e) {
+            throw error("Invalid number " + builder);
+        }
+    }
+    
+    private String string() throws IOException {
+        next();
+        StringBuilder builder = new StringBuilder();
+        while (true) {
+            int b = next();
+            if (b < 0) {
+                throw error("Unterminated string");
+            }
+            if (b == '\'') {
+                if (peek() != '\'') {
+                    return builder.toString();
+                }
+                next();
+            }
+            builder.append((char) b);
+        }
+    }
+    
+    private static boolean isNameChar(int b) {
+        return (b >= 'A' && b <= 'Z') || (b >= 'a' && b <= 'z') || (b >= '0' && b <= '9') || b == '_';
+    }
+    
+    private void skipWhitespace() throws IOException {
+        while (true) {
+            int b = peek();
+            if (b >= 0 && b <= ' ') {
+                next();
+            } else if (b == '/' && peekAt(position + 1) == '*') {
+                position += 2;
+                while (!(peek() == '*' && peekAt(position + 1) == '/')) {
+                    if (next() < 0) {
+                        return;
+                    }
+                }
+                position += 2;
+            } else {
+                return;
+            }
+        }
+    }
+    
+    private int peek() throws IOException {
+        return peekAt(position);
+    }
+    
+    private int next() throws IOException {
+        int b = peekAt(position);
+        if (b >= 0) {
+            position++;
+        }
+        return b;
+    }
+    
+    private int peekAt(long at) throws IOException {
+        if (at < windowStart || at >= windowStart + windowLength) {
+            if (at >= size) {
+                return -1;
+            }
+            window.clear();
+            windowStart = at;
+            windowLength = 0;
+            while (window.hasRemaining()) {
+                int read = channel.read(window, at + window.position());
+                if (read <= 0) {
+                    break;
+                }
+            }
+            windowLength = window.position();
+        }
+        return window.get((int) (at - windowStart)) & 0xFF;
+    }
+    
+    private IOException error(String message) {
+        return new IOException("Invalid STEP data at offset " + position + ": " + message);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+    
+    /**
+     * Box the numbers of a list that was parsed as a double[]
+     */
+    @SuppressWarnings("unchecked")
+    static List<Object> asList(Object value) {
+        if (value instanceof List) {
+            return (List<Object>) value;
+        }
+        List<Object> list = new ArrayList<>();
+        if (value instanceof double[]) {
+            for (double number : (double[]) value) {
+                list.add(number);
+            }
+        }
+        return list;
+    }
+    
+    /**
+     * A parsed entity instance or typed value
+     * References to other entities are Integers, numbers Doubles, strings Strings, enumerations
+     * Strings with their dots, unset values null, and lists of numbers double arrays.
+     */
+    static class Record {
+        private final String type;
+        private final List<Object> values;
+        
+        Record(String type, List<Object> values) {
+            this.type = type;
+            this.values = values;
+        }
+        
+        String getType() {
+            return type;
+        }
+        
+        Object get(int index) {
+            return index < values.size() ? values.get(index) : null;
+        }
+        
+        /**
+         * @return The referenced entity id, or -1 if the value is not a reference
+         */
+        int getReference(int index) {
+            Object value = get(index);
+            return value instanceof Integer ? (Integer) value : -1;
+        }
+        
+        double getNumber(int index, double defaultValue) {
+            Object value = get(index);
+            if (value instanceof Record && ((Record) value).values.size() == 1) {
+                value = ((Record) value).get(0);
+            }
+            return value instanceof Double ? (Double) value : defaultValue;
+        }
+        
+        /**
+         * @return The numbers of a list value, or null if it is not a list of numbers
+         */
+        double[] getNumbers(int index) {
+            Object value = get(index);
+            return value instanceof double[] ? (double[]) value : null;
+        }
+        
+        /**
+         * @return The elements of a list value, empty if it is not a list
+         */
+        List<Object> getList(int index) {
+            return asList(get(index));
+        }
+        
+        /**
+         * @return A string or enumeration value, or null
+         */
+        String getString(int index) {
+            Object value = get(index);
+            return value instanceof String ? (String) value : null;
+        }
+    }
+}
\ No newline at end of file
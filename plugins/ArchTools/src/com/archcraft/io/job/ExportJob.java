@@ -0,0 +1,141 @@
+package com.archcraft.io.job;
+
+import com.archcraft.Main;
+import com.archcraft.io.ExportOptions;
+import com.archcraft.io.ModelExporter;
+import com.archcraft.io.ParallelGzipOutput;
+import com.archcraft.io.mesh.ExportRegion;
+import com.archcraft.io.mesh.MeshCache;
+
+import org.bukkit.ChatColor;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Level;
+
+/**
+ * Job that exports a region of the world to a model file
+ * The region is streamed in bands of chunk rows: each band's snapshots are captured on the
+ * main thread over several ticks, then scanned, meshed and written on a worker thread
+ */
+public class ExportJob extends ModelJob {
+    
+    private final ModelExporter exporter;
+    private final World world;
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int maxX;
+    private final int maxY;
+    private final int maxZ;
+    private final File outputFile;
+    private final ExportOptions options;
+    private final int bandChunks;
+    
+    /**
+     * Create a new export job
+     * @param plugin The plugin instance
+     * @param exporter The exporter for the file format
+     * @param world The world to export from
+     * @param min Minimum corner of the region (x, y, z)
+     * @param max Maximum corner of the region (x, y, z), inclusive
+     * @param outputFile The file to export to
+     * @param options Scale and detail levels
+     * @param bandChunks Chunk rows exported at a time
+     * @param player The player performing the export
+     */
+    public ExportJob(Main plugin, ModelExporter exporter, World world, int[] min, int[] max,
+                     File outputFile, ExportOptions options, int bandChunks, Player player) {
+        super(plugin, player.getUniqueId(), "Export " + outputFile.getName());
+        this.exporter = exporter;
+        this.world = world;
+        this.minX = min[0];
+        this.minY = min[1];
+        this.minZ = min[2];
+        this.maxX = max[0];
+        this.maxY = max[1];
+        this.maxZ = max[2];
+        this.outputFile = outputFile;
+        this.options = options;
+        this.bandChunks = bandChunks;
+    }
+    
+    @Override
+    protected void execute() throws Exception {
+        long startTime = System.currentTimeMillis();
+        
+        // Bands are captured as the exporter asks for them, so only a few are in memory at once.
+        // The coarsest detail level needs a whole cell of each neighbouring band to cull seams.
+        ExportRegion region = new ExportRegion(plugin, world, new int[]{minX, minY, minZ}, new int[]{maxX, maxY, maxZ},
+                bandChunks, 1 << options.getLodLevels(), plugin.getConfigManager().getExportChunksPerTick(), this);
+        MeshCache meshCache = openMeshCache();
+        region.setMeshCache(meshCache);
+        try {
+            exporter.exportModel(region, outputFile, options, this);
+            checkCancelled();
+            if (meshCache != null) {
+                saveMeshCache(meshCache);
+            }
+        } finally {
+            if (meshCache != null) {
+                meshCache.close();
+            }
+        }
+        
+        double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
+        sendMessage(ChatColor.GREEN + "Export completed in " + String.format("%.1f", seconds) + " seconds");
+        sendMessage(ChatColor.GREEN + "Saved to: " + outputFile.getAbsolutePath()
+                + (options.isCompressed() ? ParallelGzipOutput.EXTENSION : ""));
+    }
+    
+    @Override
+    public long getEstimatedMemory() {
+        return ExportRegion.estimateMemory(maxX - minX + 1, maxY - minY + 1, world.getMaxHeight(), bandChunks);
+    }
+    
+    /**
+     * Open the mesh cache of this region, if enabled
+     * @return The cache, or null to mesh every chunk
+     */
+    private MeshCache openMeshCache() {
+        if (!plugin.getConfigManager().isExportMeshCacheEnabled()) {
+            return null;
+        }
+        String name = world.getName() + "_" + minX + "_" + minY + "_" + minZ + "_" + maxX + "_" + maxY + "_" + maxZ;
+        File file = new File(getMeshCacheDirectory(), name + MeshCache.EXTENSION);
+        try {
+            return new MeshCache(file, plugin.getDescription().getVersion(), plugin.getLogger());
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not open mesh cache " + file.getName(), e);
+            return null;
+        }
+    }
+    
+    /**
+     * Keep this export's meshes for the next export of the region
+     * A failure only costs the next export its cache, so the export itself still succeeds
+     */
+    private void saveMeshCache(MeshCache meshCache) {
+        try {
+            meshCache.commit();
+            MeshCache.prune(getMeshCacheDirectory(),
+                    plugin.getConfigManager().getExportMeshCacheMaxSizeMb() * 1024L * 1024L);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not save mesh cache", e);
+        }
+        if (meshCache.getHits() > 0) {
+            sendMessage(ChatColor.GRAY + "Reused " + meshCache.getHits() + " of " + meshCache.getLookups()
+                    + " chunk meshes from the last export");
+        }
+    }
+    
+    private File getMeshCacheDirectory() {
+        return new File(plugin.getDataFolder(), "cache" + File.separator + "meshes");
+    }
+    
+    public File getOutputFile() {
+        return outputFile;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,215 @@
+package com.archcraft.io.job;
+
+import com.archcraft.Main;
+import com.archcraft.io.ModelImporter;
+import com.archcraft.io.ModelInfo;
+import com.archcraft.io.voxel.BlockPlacementTask;
+import com.archcraft.io.voxel.ImportEstimate;
+import com.archcraft.io.voxel.Transform;
+import com.archcraft.io.voxel.UndoJournal;
+import com.archcraft.io.voxel.VoxelCache;
+import com.archcraft.io.voxel.VoxelModel;
+import com.archcraft.tools.PreviewTool;
+import com.archcraft.utils.ConfigManager;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Level;
+
+/**
+ * Job that parses and voxelizes a model off the main thread, then places it in the world
+ */
+public class ImportJob extends ModelJob {
+    
+    private final ModelImporter importer;
+    private final File file;
+    private final Location origin;
+    private final Transform transform;
+    private final boolean preview;
+    private final boolean confirmed;
+    private volatile ImportEstimate estimate;
+    
+    /**
+     * Create a new import job
+     * @param plugin The plugin instance
+     * @param importer The importer for the file format
+     * @param file The model file to import
+     * @param origin The origin location for the import
+     * @param transform Transform from model coordinates to blocks relative to the origin
+     * @param preview Whether to show a client-side preview instead of placing blocks
+     * @param estimate Cost estimate, or null to scan the file for one before importing it
+     * @param confirmed Whether the player confirmed an import over the confirmation limit
+     * @param player The player performing the import
+     */
+    public ImportJob(Main plugin, ModelImporter importer, File file, Location origin,
+                     Transform transform, boolean preview, ImportEstimate estimate, boolean confirmed, Player player) {
+        super(plugin, player.getUniqueId(), "Import " + file.getName());
+        this.importer = importer;
+        this.file = file;
+        this.origin = origin.clone();
+        this.transform = transform;
+        this.preview = preview;
+        this.estimate = estimate;
+        this.confirmed = confirmed;
+    }
+    
+    @Override
+    protected void execute() throws Exception {
+        long startTime = System.currentTimeMillis();
+        
+        VoxelCache cache = plugin.getModelManager().getVoxelCache();
+        String cacheKey = null;
+        VoxelModel cachedModel = null;
+        if (cache != null) {
+            setProgress("Hashing");
+            cacheKey = cache.computeKey(file, importer.getDependencies(file), transform);
+            cachedModel = cache.get(cacheKey);
+        }
+        boolean cached = cachedModel != null;
+        
+        // Models that were not in the catalog yet are checked here, before anything is built.
+        // A cached model is checked by its actual size without scanning the file.
+        if (estimate == null) {
+            if (cached) {
+                estimate = ImportEstimate.of(cachedModel);
+            } else {
+                setProgress("Estimating");
+                ModelInfo.Geometry geometry = importer.describe(file);
+                checkCancelled();
+                if (geometry != null) {
+                    estimate = ImportEstimate.of(geometry, transform);
+                    sendMessage(ChatColor.GRAY + "Estimate: " + estimate.describe());
+                }
+            }
+            String refusal = estimate != null ? checkLimits(plugin.getConfigManager(), estimate, confirmed) : null;
+            if (refusal != null) {
+                sendMessage(ChatColor.RED + "Job #" + getId() + ": " + refusal);
+                finish(State.CANCELLED);
+                return;
+            }
+        }
+        
+        setProgress(cached ? "Loading from cache" : "Parsing");
+        VoxelModel model = cached ? cachedModel : importer.importModel(file, transform, this);
+        checkCancelled();
+        
+        if (cache != null && !cached && !model.isEmpty()) {
+            cache.put(cacheKey, model);
+        }
+        
+        double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
+        if (model.isEmpty()) {
+            sendMessage(ChatColor.YELLOW + "Job #" + getId() + ": model produced no blocks");
+            return;
+        }
+        
+        sendMessage(ChatColor.YELLOW + "Job #" + getId() + (cached ? ": loaded " : ": voxelized ") + model.size()
+                + " blocks in " + String.format("%.1f", seconds) + " seconds" + (cached ? " (cached)" : ""));
+        
+        // Only world and client updates go back to the main thread
+        if (preview) {
+            setState(State.PREVIEWING);
+            setProgress("Previewing");
+            Bukkit.getScheduler().runTask(plugin, () -> startPreview(model));
+        } else {
+            setState(State.PLACING);
+            Bukkit.getScheduler().runTask(plugin, () -> place(model, origin));
+        }
+    }
+    
+    /**
+     * Check an import estimate against the configured limits
+     * @param config The plugin configuration
+     * @param estimate The estimate
+     * @param confirmed Whether the player confirmed a large import
+     * @return Why the import may not start, or null if it may
+     */
+    public static String checkLimits(ConfigManager config, ImportEstimate estimate, boolean confirmed) {
+        return estimate.checkLimits(config.getImportMaxBlocks(), config.getImportConfirmBlocks(),
+                config.getImportMaxMemoryMb() * 1024L * 1024L, confirmed);
+    }
+    
+    @Override
+    public long getEstimatedMemory() {
+        ImportEstimate current = estimate;
+        return current != null ? current.getMemoryBytes() : 0;
+    }
+    
+    /**
+     * Show the voxelized model to the owner as a client-side preview
+     * Must be called on the main thread
+     * @param model The voxelized model
+     */
+    private void startPreview(VoxelModel model) {
+        Player player = Bukkit.getPlayer(getOwner());
+        if (player == null || isCancelled()) {
+            finish(State.CANCELLED);
+            return;
+        }
+        PreviewTool.startPreview(player, this, model, origin);
+    }
+    
+    /**
+     * Place a voxelized model in the world
+     * Must be called on the main thread
+     * @param model The voxelized model
+     * @param placementOrigin The origin to place the model at
+     */
+    public void place(VoxelModel model, Location placementOrigin) {
+        setState(State.PLACING);
+        setProgress("Placing 0%");
+        sendMessage(ChatColor.YELLOW + "Job #" + getId() + ": placing " + model.size() + " blocks...");
+        
+        int maxHeight = placementOrigin.getWorld().getMaxHeight();
+        int blocksPerTick = plugin.getConfigManager().getImportBlocksPerTick();
+        int budgetMillis = plugin.getConfigManager().getImportTickBudgetMillis();
+        
+        // Sorting cells into chunk order and opening the journal both stay off the main thread
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            long[] cells = BlockPlacementTask.createPlacementOrder(model, placementOrigin, maxHeight);
+            UndoJournal.Writer journal = createJournal(placementOrigin);
+            
+            Bukkit.getScheduler().runTask(plugin, () -> new BlockPlacementTask(plugin, this, placementOrigin,
+                    cells, model.getPalette(), journal, blocksPerTick, budgetMillis).start());
+        });
+    }
+    
+    /**
+     * Open an undo journal for this import in the owner's journal directory
+     * @param placementOrigin The origin the model is placed at
+     * @return The journal writer, or null if it could not be created
+     */
+    private UndoJournal.Writer createJournal(Location placementOrigin) {
+        File directory = new File(plugin.getDataFolder(), "journals/" + getOwner());
+        File journalFile = new File(directory, System.currentTimeMillis() + "-job" + getId() + UndoJournal.EXTENSION);
+        
+        try {
+            UndoJournal.Writer journal = new UndoJournal.Writer(journalFile, placementOrigin.getWorld(),
+                    "import of " + file.getName());
+            // The new journal is still a ".part" file, so keep one fewer finished journal
+            UndoJournal.pruneJournals(directory, plugin.getConfigManager().getUndoMaxJournals() - 1);
+            return journal;
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not create undo journal " + journalFile, e);
+            sendMessage(ChatColor.RED + "Job #" + getId() + ": could not create undo journal, this import cannot be undone");
+            return null;
+        }
+    }
+    
+    public File getFile() {
+        return file;
+    }
+    
+    public Location getOrigin() {
+        return origin.clone();
+    }
+    
+    public boolean isPreview() {
+        return preview;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,296 @@
+package com.archcraft.io.job;
+
+import com.archcraft.Main;
+
+import org.bukkit.ChatColor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs model jobs on a worker pool and tracks them per player
+ * Jobs wait in a queue ordered by priority, then by submission. A job starts once a worker is
+ * free, its owner is below their running job limit and its memory estimate fits next to the
+ * running jobs. Jobs held back by their owner's limit do not hold up other players' jobs.
+ * Once a job hands its work to the main thread, such as placing blocks or showing a preview,
+ * its worker is free for the next job. It still counts toward its owner's limit and the
+ * memory budget until it finishes.
+ */
+public class JobManager {
+    
+    // Highest priority first, then first come first served
+    private static final Comparator<ModelJob> QUEUE_ORDER = Comparator
+            .comparing(ModelJob::getPriority, Comparator.reverseOrder())
+            .thenComparingInt(ModelJob::getId);
+    
+    private final Main plugin;
+    private final Logger logger;
+    private final ExecutorService workers;
+    private final Map<Integer, ModelJob> activeJobs = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    private final int workerThreads;
+    private final int maxJobsPerPlayer;
+    private final int maxQueuedPerPlayer;
+    private final long maxMemoryBytes;
+    
+    // Guarded by this
+    private final PriorityQueue<ModelJob> queue = new PriorityQueue<>(QUEUE_ORDER);
+    private final Map<UUID, Integer> runningPerPlayer = new HashMap<>();
+    // Memory estimate of each running job, by id
+    private final Map<Integer, Long> runningMemory = new HashMap<>();
+    private long usedMemory;
+    private int busyWorkers;
+    
+    /**
+     * Create a new job manager
+     * @param plugin The plugin instance
+     * @param workerThreads Number of worker threads, which is also the number of jobs run on workers at once
+     * @param maxJobsPerPlayer Max jobs run at once per player (0 for unlimited)
+     * @param maxQueuedPerPlayer Max jobs waiting per player (0 for unlimited)
+     * @param maxMemoryBytes Memory the estimates of running jobs may add up to (0 for unlimited)
+     */
+    public JobManager(Main plugin, int workerThreads, int maxJobsPerPlayer, int maxQueuedPerPlayer,
+                      long maxMemoryBytes) {
+        this.plugin = plugin;
+        this.logger = plugin.getLogger();
+        this.workerThreads = Math.max(1, workerThreads);
+        this.maxJobsPerPlayer = maxJobsPerPlayer;
+        this.maxQueuedPerPlayer = maxQueuedPerPlayer;
+        this.maxMemoryBytes = maxMemoryBytes;
+        
+        AtomicInteger threadCount = new AtomicInteger(1);
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, "ArchTools-Worker-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.workers = Executors.newFixedThreadPool(this.workerThreads, factory);
+    }
+    
+    /**
+     * Queue a job; it starts right away if a worker is free and the limits allow it
+     * @param job The job to run
+     * @return True if the job was accepted, false if the owner has too many jobs waiting
+     */
+    public synchronized boolean submit(ModelJob job) {
+        if (maxQueuedPerPlayer > 0 && getQueuedCount(job.getOwner()) >= maxQueuedPerPlayer) {
+            return false;
+        }
+        
+        job.attach(nextId.getAndIncrement(), this);
+        activeJobs.put(job.getId(), job);
+        queue.add(job);
+        dispatch(job);
+        return true;
+    }
+    
+    /**
+     * Start queued jobs while the limits allow
+     * @param submitted Job that was just submitted and need not be told it started, or null
+     */
+    private synchronized void dispatch(ModelJob submitted) {
+        List<ModelJob> waiting = new ArrayList<>(queue);
+        waiting.sort(QUEUE_ORDER);
+        
+        for (ModelJob job : waiting) {
+            if (busyWorkers >= workerThreads) {
+                return;
+            }
+            if (maxJobsPerPlayer > 0 && runningPerPlayer.getOrDefault(job.getOwner(), 0) >= maxJobsPerPlayer) {
+                continue;
+            }
+            
+            // A job too large for the budget still runs once it has the memory to itself.
+            // Smaller jobs behind it wait too, or they could keep it from ever starting.
+            long memory = job.getEstimatedMemory();
+            if (maxMemoryBytes > 0 && usedMemory > 0 && usedMemory + memory > maxMemoryBytes) {
+                return;
+            }
+            
+            queue.remove(job);
+            runningPerPlayer.merge(job.getOwner(), 1, Integer::sum);
+            runningMemory.put(job.getId(), memory);
+            usedMemory += memory;
+            busyWorkers++;
+            if (job != submitted) {
+                job.sendMessage(ChatColor.YELLOW + "Job #" + job.getId() + " started");
+            }
+            workers.execute(() -> run(job));
+        }
+    }
+    
+    /**
+     * Run a job on the current worker thread
+     * @param job The job to run
+     */
+    private void run(ModelJob job) {
+        try {
+            if (job.isCancelled()) {
+                job.finish(ModelJob.State.CANCELLED);
+                return;
+            }
+            
+            job.setState(ModelJob.State.RUNNING);
+            job.execute();
+            
+            // Jobs that handed work to the main thread finish themselves
+            if (job.getState() == ModelJob.State.RUNNING) {
+                job.finish(ModelJob.State.COMPLETED);
+            }
+        } catch (CancellationException e) {
+            job.finish(ModelJob.State.CANCELLED);
+            job.sendMessage(ChatColor.YELLOW + "Job #" + job.getId() + " cancelled");
+        } catch (Exception e) {
+            job.finish(ModelJob.State.FAILED);
+            job.sendMessage(ChatColor.RED + "Job #" + job.getId() + " failed: " + e.getMessage());
+            logger.log(Level.WARNING, "Job #" + job.getId() + " (" + job.getDescription() + ") failed", e);
+        } finally {
+            releaseWorker();
+        }
+    }
+    
+    /**
+     * Called when a job's worker returns, whether the job finished or handed off to the main thread
+     */
+    private synchronized void releaseWorker() {
+        busyWorkers--;
+        dispatch(null);
+    }
+    
+    /**
+     * Called by a job once it reaches a terminal state
+     * @param job The finished job
+     */
+    void jobFinished(ModelJob job) {
+        activeJobs.remove(job.getId());
+        synchronized (this) {
+            if (queue.remove(job)) {
+                return;
+            }
+            Long memory = runningMemory.remove(job.getId());
+            if (memory != null) {
+                usedMemory -= memory;
+                runningPerPlayer.computeIfPresent(job.getOwner(), (owner, count) -> count > 1 ? count - 1 : null);
+                dispatch(null);
+            }
+        }
+    }
+    
+    /**
+     * Called by a job when cancellation is requested
+     * Queued jobs are dropped right away; running jobs stop at their next cancellation check
+     * @param job The cancelled job
+     */
+    void jobCancelled(ModelJob job) {
+        boolean queued;
+        synchronized (this) {
+            queued = queue.remove(job);
+        }
+        if (queued) {
+            job.finish(ModelJob.State.CANCELLED);
+            job.sendMessage(ChatColor.YELLOW + "Job #" + job.getId() + " cancelled");
+        }
+    }
+    
+    /**
+     * Get a job's place in the queue
+     * @param job The job
+     * @return 1 for the next job to start, or 0 if the job is not waiting
+     */
+    public synchronized int getQueuePosition(ModelJob job) {
+        if (!queue.contains(job)) {
+            return 0;
+        }
+        int position = 1;
+        for (ModelJob other : queue) {
+            if (QUEUE_ORDER.compare(other, job) < 0) {
+                position++;
+            }
+        }
+        return position;
+    }
+    
+    private int getQueuedCount(UUID owner) {
+        int count = 0;
+        for (ModelJob job : queue) {
+            if (job.getOwner().equals(owner)) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Get an active job by id
+     * @param id The job id
+     * @return The job, or null if not active
+     */
+    public ModelJob getJob(int id) {
+        return activeJobs.get(id);
+    }
+    
+    /**
+     * Get the active jobs of a player
+     * @param owner The player UUID
+     * @return Active jobs ordered by id
+     */
+    public List<ModelJob> getJobs(UUID owner) {
+        List<ModelJob> result = new ArrayList<>();
+        for (ModelJob job : activeJobs.values()) {
+            if (job.getOwner().equals(owner)) {
+                result.add(job);
+            }
+        }
+        result.sort(Comparator.comparingInt(ModelJob::getId));
+        return result;
+    }
+    
+    /**
+     * Get all active jobs
+     * @return Active jobs ordered by id
+     */
+    public List<ModelJob> getAllJobs() {
+        List<ModelJob> result = new ArrayList<>(activeJobs.values());
+        result.sort(Comparator.comparingInt(ModelJob::getId));
+        return result;
+    }
+    
+    /**
+     * Get the per-player concurrent job limit
+     * @return Max jobs per player (0 for unlimited)
+     */
+    public int getMaxJobsPerPlayer() {
+        return maxJobsPerPlayer;
+    }
+    
+    /**
+     * Get the per-player limit of waiting jobs
+     * @return Max queued jobs per player (0 for unlimited)
+     */
+    public int getMaxQueuedPerPlayer() {
+        return maxQueuedPerPlayer;
+    }
+    
+    /**
+     * Cancel all jobs and stop the worker pool
+     */
+    public void shutdown() {
+        for (ModelJob job : activeJobs.values()) {
+            job.cancel();
+        }
+        workers.shutdownNow();
+    }
+}
\ No newline at end of file
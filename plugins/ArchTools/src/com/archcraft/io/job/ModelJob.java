@@ -0,0 +1,193 @@
+package com.archcraft.io.job;
+
+import com.archcraft.Main;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Base class for long-running model jobs
+ * The heavy part of a job runs on a worker thread; only world access is handed back to the main thread
+ */
+public abstract class ModelJob {
+    
+    /**
+     * Lifecycle state of a job
+     */
+    public enum State {
+        QUEUED,
+        RUNNING,
+        PREVIEWING,
+        PLACING,
+        COMPLETED,
+        FAILED,
+        CANCELLED;
+        
+        /**
+         * Check if the job has finished
+         * @return True for terminal states
+         */
+        public boolean isFinished() {
+            return this == COMPLETED || this == FAILED || this == CANCELLED;
+        }
+    }
+    
+    /**
+     * Order in which queued jobs start
+     */
+    public enum Priority {
+        LOW,
+        NORMAL,
+        HIGH
+    }
+    
+    protected final Main plugin;
+    private final UUID owner;
+    private final String description;
+    private final long createdTime;
+    
+    private int id;
+    private JobManager manager;
+    private volatile State state = State.QUEUED;
+    private volatile Priority priority = Priority.NORMAL;
+    private volatile boolean cancelled;
+    private volatile String progress = "";
+    
+    /**
+     * Create a new job
+     * @param plugin The plugin instance
+     * @param owner The player who owns the job
+     * @param description Short description shown in job listings
+     */
+    protected ModelJob(Main plugin, UUID owner, String description) {
+        this.plugin = plugin;
+        this.owner = owner;
+        this.description = description;
+        this.createdTime = System.currentTimeMillis();
+    }
+    
+    /**
+     * Run the off-thread part of the job
+     * Implementations should call {@link #checkCancelled()} regularly
+     * @throws Exception If the job fails
+     */
+    protected abstract void execute() throws Exception;
+    
+    /**
+     * Throw if the job has been cancelled
+     * @throws CancellationException If cancellation was requested
+     */
+    public void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException("Job #" + id + " was cancelled");
+        }
+    }
+    
+    /**
+     * Request cancellation of the job
+     */
+    public void cancel() {
+        cancelled = true;
+        if (manager != null) {
+            manager.jobCancelled(this);
+        }
+    }
+    
+    /**
+     * Estimate the memory the job needs while it runs
+     * Used to keep the jobs running at once within the memory budget
+     * @return Estimated peak memory in bytes, or 0 if negligible
+     */
+    public long getEstimatedMemory() {
+        return 0;
+    }
+    
+    /**
+     * Check if cancellation was requested
+     * @return True if cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+    
+    /**
+     * Mark the job as finished and release its slot
+     * @param finalState The terminal state
+     */
+    public synchronized void finish(State finalState) {
+        if (state.isFinished()) {
+            return;
+        }
+        state = finalState;
+        if (manager != null) {
+            manager.jobFinished(this);
+        }
+    }
+    
+    /**
+     * Send a message to the job owner from any thread
+     * @param message The message to send
+     */
+    public void sendMessage(String message) {
+        if (Bukkit.isPrimaryThread()) {
+            Player player = Bukkit.getPlayer(owner);
+            if (player != null) {
+                player.sendMessage(message);
+            }
+        } else {
+            Bukkit.getScheduler().runTask(plugin, () -> sendMessage(message));
+        }
+    }
+    
+    void attach(int id, JobManager manager) {
+        this.id = id;
+        this.manager = manager;
+    }
+    
+    public int getId() {
+        return id;
+    }
+    
+    public UUID getOwner() {
+        return owner;
+    }
+    
+    public String getDescription() {
+        return description;
+    }
+    
+    public Priority getPriority() {
+        return priority;
+    }
+    
+    /**
+     * Set the job's priority; only takes effect before the job is submitted
+     * @param priority The priority
+     */
+    public void setPriority(Priority priority) {
+        this.priority = priority;
+    }
+    
+    public long getCreatedTime() {
+        return createdTime;
+    }
+    
+    public State getState() {
+        return state;
+    }
+    
+    protected void setState(State state) {
+        this.state = state;
+    }
+    
+    public String getProgress() {
+        return progress;
+    }
+    
+    public void setProgress(String progress) {
+        this.progress = progress;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,88 @@
+package com.archcraft.io.job;
+
+import com.archcraft.Main;
+import com.archcraft.io.voxel.JournalReplayTask;
+import com.archcraft.io.voxel.UndoJournal;
+
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Job that reverts an edit by replaying its undo journal
+ * The journal is decoded on a worker thread and restored on the main thread
+ */
+public class UndoJob extends ModelJob {
+    
+    // Decoded chunk records buffered ahead of the main thread
+    private static final int QUEUE_CAPACITY = 64;
+    
+    private final File journalFile;
+    
+    /**
+     * Create a new undo job
+     * @param plugin The plugin instance
+     * @param journalFile The journal to replay
+     * @param player The player performing the undo
+     */
+    public UndoJob(Main plugin, File journalFile, Player player) {
+        super(plugin, player.getUniqueId(), "Undo " + journalFile.getName());
+        this.journalFile = journalFile;
+    }
+    
+    @Override
+    protected void execute() throws Exception {
+        try (UndoJournal.Reader reader = new UndoJournal.Reader(journalFile)) {
+            World world = reader.getWorld();
+            if (world == null) {
+                throw new IOException("The world for this journal is not loaded");
+            }
+            
+            setProgress("Undoing " + reader.getDescription());
+            BlockingQueue<UndoJournal.ChunkRecord> records = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+            setState(State.PLACING);
+            JournalReplayTask replay = new JournalReplayTask(this, world, records, journalFile,
+                    plugin.getConfigManager().getImportBlocksPerTick(),
+                    plugin.getConfigManager().getImportTickBudgetMillis());
+            replay.runTaskTimer(plugin, 1L, 1L);
+            
+            // From here on the replay task finishes the job and reports to the player
+            try {
+                UndoJournal.ChunkRecord record;
+                while ((record = reader.next()) != null) {
+                    enqueue(records, record);
+                }
+                enqueue(records, JournalReplayTask.END);
+            } catch (CancellationException e) {
+                // The replay task stops on its next tick
+            } catch (IOException | RuntimeException e) {
+                replay.fail(e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Wait for space in the queue
+     * @throws CancellationException If the job was cancelled or has finished meanwhile
+     */
+    private void enqueue(BlockingQueue<UndoJournal.ChunkRecord> records, UndoJournal.ChunkRecord record)
+            throws InterruptedException {
+        while (!records.offer(record, 100, TimeUnit.MILLISECONDS)) {
+            checkCancelled();
+            if (getState().isFinished()) {
+                throw new CancellationException("Job #" + getId() + " has finished");
+            }
+        }
+        checkCancelled();
+    }
+    
+    public File getJournalFile() {
+        return journalFile;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,327 @@
+package com.archcraft.io.mesh;
+
+import com.archcraft.io.job.ModelJob;
+
+import org.bukkit.World;
+import org.bukkit.plugin.Plugin;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * An export region read as a stream of bands along Z
+ * Each band is a run of chunk rows that is captured and scanned into its own grid only when
+ * the exporter asks for it, so memory depends on the band size rather than the region size.
+ * The band after next is captured on the main thread while the current one is exported.
+ */
+public class ExportRegion {
+    
+    // Rough heap cost of one 16x16x16 section of a chunk snapshot
+    private static final long SNAPSHOT_SECTION_BYTES = 12 * 1024;
+    
+    // Rough heap cost of a vertex kept in the vertex index between boxes
+    private static final long INDEXED_VERTEX_BYTES = 24;
+    
+    // Conservative scan and mesh throughput, used for time estimates
+    private static final long BLOCKS_PER_SECOND = 2_000_000;
+    
+    // Snapshots held at once: previous, current, following and the one being captured
+    private static final int BANDS_IN_MEMORY = 4;
+    
+    private static final int MAX_BAND_CHUNKS = 16;
+    
+    // Neighbouring bands are at least one chunk row deep, so margins beyond that can't be filled
+    private static final int MAX_MARGIN = 16;
+    
+    private final Plugin plugin;
+    private final World world;
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int maxX;
+    private final int maxY;
+    private final int maxZ;
+    private final int bandChunks;
+    private final int bandCount;
+    private final int margin;
+    private final int chunksPerTick;
+    private final ModelJob job;
+    private final MaterialPalette palette = new MaterialPalette();
+    private MeshCache meshCache;
+    
+    private int nextBand;
+    private RegionSnapshot previous;
+    private RegionSnapshot current;
+    private CompletableFuture<RegionSnapshot> pending;
+    
+    /**
+     * Create a region; nothing is captured until the first band is requested
+     * @param plugin The plugin instance
+     * @param world The world
+     * @param min Minimum corner of the region (x, y, z)
+     * @param max Maximum corner of the region (x, y, z), inclusive
+     * @param bandChunks Chunk rows per band
+     * @param margin Rows of the neighbouring bands to include on each side of a band (1-16)
+     * @param chunksPerTick Max chunks to snapshot per tick
+     * @param job The job running the export
+     */
+    public ExportRegion(Plugin plugin, World world, int[] min, int[] max, int bandChunks, int margin,
+                        int chunksPerTick, ModelJob job) {
+        this.plugin = plugin;
+        this.world = world;
+        this.minX = min[0];
+        this.minY = min[1];
+        this.minZ = min[2];
+        this.maxX = max[0];
+        this.maxY = max[1];
+        this.maxZ = max[2];
+        this.bandChunks = Math.max(1, bandChunks);
+        this.bandCount = ((maxZ >> 4) - (minZ >> 4)) / this.bandChunks + 1;
+        this.margin = Math.max(1, Math.min(MAX_MARGIN, margin));
+        this.chunksPerTick = chunksPerTick;
+        this.job = job;
+    }
+    
+    /**
+     * Capture and scan the next band
+     * Blocks until its chunks (and the first rows of the band after it) have been captured
+     * @return The band, or null once the whole region has been read
+     * @throws IOException If the chunks could not be captured
+     */
+    public Band nextBand() throws IOException {
+        if (nextBand >= bandCount) {
+            return null;
+        }
+        
+        if (current == null) {
+            current = await(capture(nextBand));
+            pending = nextBand + 1 < bandCount ? capture(nextBand + 1) : null;
+        }
+        RegionSnapshot following = pending != null ? await(pending) : null;
+        pending = nextBand + 2 < bandCount ? capture(nextBand + 2) : null;
+        
+        // Extra rows on each side, so faces on the seams between bands are culled correctly
+        int bandMinZ = getBandMinZ(nextBand);
+        int bandMaxZ = getBandMaxZ(nextBand);
+        int gridMinZ = previous != null ? Math.max(minZ, bandMinZ - margin) : bandMinZ;
+        int gridMaxZ = following != null ? Math.min(maxZ, bandMaxZ + margin) : bandMaxZ;
+        
+        job.setProgress("Scanning band " + (nextBand + 1) + "/" + bandCount);
+        VoxelGrid grid = new VoxelGrid(minX, minY, gridMinZ, getWidth(), getHeight(), gridMaxZ - gridMinZ + 1, palette);
+        if (previous != null) {
+            previous.copyTo(grid, job);
+        }
+        current.copyTo(grid, job);
+        if (following != null) {
+            following.copyTo(grid, job);
+        }
+        
+        Band band = new Band(nextBand, grid, bandMinZ - gridMinZ, bandMaxZ - gridMinZ + 1, gridMinZ - minZ);
+        previous = current;
+        current = following;
+        nextBand++;
+        return band;
+    }
+    
+    private CompletableFuture<RegionSnapshot> capture(int band) {
+        return RegionSnapshot.capture(plugin, world, minX, minY, getBandMinZ(band), maxX, maxY, getBandMaxZ(band),
+                chunksPerTick, job);
+    }
+    
+    /**
+     * Wait for main-thread work, giving up if the job is cancelled
+     */
+    private RegionSnapshot await(Future<RegionSnapshot> future) throws IOException {
+        while (true) {
+            try {
+                return future.get(100, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                job.checkCancelled();
+            } catch (ExecutionException e) {
+                throw new IOException("Could not capture region: " + e.getCause().getMessage(), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while capturing region");
+            }
+        }
+    }
+    
+    private int getBandMinZ(int band) {
+        return Math.max(minZ, ((minZ >> 4) + band * bandChunks) << 4);
+    }
+    
+    private int getBandMaxZ(int band) {
+        return Math.min(maxZ, (((minZ >> 4) + (band + 1) * bandChunks) << 4) - 1);
+    }
+    
+    public World getWorld() {
+        return world;
+    }
+    
+    /**
+     * Get the palette shared by all bands
+     * Grows as bands are scanned; complete once the last band has been read
+     * @return The material palette
+     */
+    public MaterialPalette getPalette() {
+        return palette;
+    }
+    
+    /**
+     * Get the cache of this region's meshes from earlier exports
+     * @return The cache, or null if every box is meshed
+     */
+    public MeshCache getMeshCache() {
+        return meshCache;
+    }
+    
+    public void setMeshCache(MeshCache meshCache) {
+        this.meshCache = meshCache;
+    }
+    
+    public int getBandCount() {
+        return bandCount;
+    }
+    
+    public int getMinX() {
+        return minX;
+    }
+    
+    public int getMinY() {
+        return minY;
+    }
+    
+    public int getMinZ() {
+        return minZ;
+    }
+    
+    public int getMaxX() {
+        return maxX;
+    }
+    
+    public int getMaxY() {
+        return maxY;
+    }
+    
+    public int getMaxZ() {
+        return maxZ;
+    }
+    
+    public int getWidth() {
+        return maxX - minX + 1;
+    }
+    
+    public int getHeight() {
+        return maxY - minY + 1;
+    }
+    
+    public int getDepth() {
+        return maxZ - minZ + 1;
+    }
+    
+    /**
+     * Estimate the peak memory of streaming a region
+     * @param width Region size along X
+     * @param height Region size along Y
+     * @param worldHeight Height of the world (chunk snapshots are full columns)
+     * @param bandChunks Chunk rows per band
+     * @return Estimated bytes
+     */
+    public static long estimateMemory(int width, int height, int worldHeight, int bandChunks) {
+        long chunksAcross = (width + 30) / 16;
+        long sections = (worldHeight + 15) / 16;
+        long snapshots = BANDS_IN_MEMORY * bandChunks * chunksAcross * sections * SNAPSHOT_SECTION_BYTES;
+        
+        // The band's grid, plus the vertices kept on its top layer and on its seams with other bands
+        long depth = bandChunks * 16L + 2;
+        long grid = (long) width * height * depth * Short.BYTES;
+        long vertices = ((long) width * depth + 2L * width * height) * INDEXED_VERTEX_BYTES;
+        return snapshots + grid + vertices;
+    }
+    
+    /**
+     * Pick the widest band that keeps an export within a memory budget
+     * @param width Region size along X
+     * @param height Region size along Y
+     * @param worldHeight Height of the world
+     * @param budgetBytes Memory budget
+     * @return Chunk rows per band, or 0 if even a single row is over budget
+     */
+    public static int chooseBandChunks(int width, int height, int worldHeight, long budgetBytes) {
+        int bandChunks = MAX_BAND_CHUNKS;
+        while (bandChunks > 0 && estimateMemory(width, height, worldHeight, bandChunks) > budgetBytes) {
+            bandChunks /= 2;
+        }
+        return bandChunks;
+    }
+    
+    /**
+     * Estimate how long an export will take
+     * @param blocks Blocks in the region
+     * @param chunks Chunks in the region
+     * @param chunksPerTick Chunks snapshotted per tick
+     * @return Estimated seconds
+     */
+    public static long estimateSeconds(long blocks, long chunks, int chunksPerTick) {
+        long captureTicks = (chunks + Math.max(1, chunksPerTick) - 1) / Math.max(1, chunksPerTick);
+        return blocks / BLOCKS_PER_SECOND + captureTicks / 20;
+    }
+    
+    /**
+     * A run of chunk rows scanned into a grid
+     * The grid may hold a margin of extra rows on each side; only rows between the start and
+     * end belong to the band and should be meshed.
+     */
+    public static class Band {
+        private final int index;
+        private final VoxelGrid grid;
+        private final int startZ;
+        private final int endZ;
+        private final int offsetZ;
+        
+        Band(int index, VoxelGrid grid, int startZ, int endZ, int offsetZ) {
+            this.index = index;
+            this.grid = grid;
+            this.startZ = startZ;
+            this.endZ = endZ;
+            this.offsetZ = offsetZ;
+        }
+        
+        public int getIndex() {
+            return index;
+        }
+        
+        public VoxelGrid getGrid() {
+            return grid;
+        }
+        
+        /**
+         * Get the first grid Z that belongs to the band
+         * @return Start Z within the grid, inclusive
+         */
+        public int getStartZ() {
+            return startZ;
+        }
+        
+        /**
+         * Get the grid Z just past the band
+         * @return End Z within the grid, exclusive
+         */
+        public int getEndZ() {
+            return endZ;
+        }
+        
+        /**
+         * Get the offset from grid Z to Z relative to the region's minimum corner
+         * @return Z offset
+         */
+        public int getOffsetZ() {
+            return offsetZ;
+        }
+    }
+}
\ No newline at end of file
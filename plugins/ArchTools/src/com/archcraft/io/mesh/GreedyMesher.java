@@ -0,0 +1,158 @@
+package com.archcraft.io.mesh;
+
+/**
+ * Builds a surface mesh of a voxel grid as large axis-aligned quads
+ * Only faces that can be seen are emitted: faces bordering air, or bordering a transparent
+ * block of another material. Coplanar visible faces of the same material are then merged
+ * into maximal rectangles, slice by slice (greedy meshing).
+ */
+public class GreedyMesher {
+    
+    /**
+     * Receives the quads of a mesh
+     */
+    public interface QuadConsumer {
+        
+        /**
+         * Accept a quad
+         * @param material Palette index of the quad's material
+         * @param axis Axis of the face normal (0 = X, 1 = Y, 2 = Z)
+         * @param positive True if the normal points along the positive axis
+         * @param corners Four corners as x, y, z grid coordinates, counter-clockwise seen from
+         *                outside; the array is reused for the next quad
+         */
+        void accept(int material, int axis, boolean positive, int[] corners);
+    }
+    
+    private GreedyMesher() {
+    }
+    
+    /**
+     * Mesh the visible surface of a grid
+     * @param grid The voxel grid
+     * @param consumer Receives the merged quads
+     * @return Number of quads emitted
+     */
+    public static long mesh(VoxelGrid grid, QuadConsumer consumer) {
+        return mesh(grid, new int[]{0, 0, 0}, new int[]{grid.getWidth(), grid.getHeight(), grid.getDepth()}, consumer);
+    }
+    
+    /**
+     * Mesh the visible surface of the blocks in a box of a grid
+     * Quads never extend outside the box, so boxes can be meshed independently;
+     * blocks outside the box are still read to decide which faces are hidden
+     * @param grid The voxel grid
+     * @param lower Lower corner of the box (x, y, z), inclusive
+     * @param upper Upper corner of the box (x, y, z), exclusive
+     * @param consumer Receives the merged quads
+     * @return Number of quads emitted
+     */
+    public static long mesh(VoxelGrid grid, int[] lower, int[] upper, QuadConsumer consumer) {
+        int[] position = new int[3];
+        int[] corners = new int[12];
+        long quads = 0;
+        
+        for (int axis = 0; axis < 3; axis++) {
+            int u = (axis + 1) % 3;
+            int v = (axis + 2) % 3;
+            int sizeU = upper[u] - lower[u];
+            int sizeV = upper[v] - lower[v];
+            if (sizeU <= 0 || sizeV <= 0) {
+                continue;
+            }
+            int[] mask = new int[sizeU * sizeV];
+            
+            for (int side = 0; side < 2; side++) {
+                boolean positive = side == 1;
+                
+                for (int slice = lower[axis]; slice < upper[axis]; slice++) {
+                    // Mark the visible faces of this slice with their material
+                    position[axis] = slice;
+                    for (int j = 0; j < sizeV; j++) {
+                        position[v] = lower[v] + j;
+                        for (int i = 0; i < sizeU; i++) {
+                            position[u] = lower[u] + i;
+                            int block = grid.get(position[0], position[1], position[2]);
+                            int neighbor = neighbor(grid, position, axis, positive ? 1 : -1);
+                            mask[j * sizeU + i] = isVisible(grid, block, neighbor) ? block : 0;
+                        }
+                    }
+                    
+                    // Merge the marked faces into rectangles
+                    for (int j = 0; j < sizeV; j++) {
+                        for (int i = 0; i < sizeU; ) {
+                            int material = mask[j * sizeU + i];
+                            if (material == 0) {
+                                i++;
+                                continue;
+                            }
+                            
+                            int w = 1;
+                            while (i + w < sizeU && mask[j * sizeU + i + w] == material) {
+                                w++;
+                            }
+                            
+                            int h = 1;
+                            grow:
+                            while (j + h < sizeV) {
+                                int row = (j + h) * sizeU;
+                                for (int k = 0; k < w; k++) {
+                                    if (mask[row + i + k] != material) {
+                                        break grow;
+                                    }
+                                }
+                                h++;
+                            }
+                            
+                            for (int dj = 0; dj < h; dj++) {
+                                int row = (j + dj) * sizeU;
+                                for (int k = 0; k < w; k++) {
+                                    mask[row + i + k] = 0;
+                                }
+                            }
+                            
+                            setCorners(corners, axis, u, v, positive ? slice + 1 : slice,
+                                    lower[u] + i, lower[v] + j, w, h, positive);
+                            consumer.accept(material, axis, positive, corners);
+                            quads++;
+                            i += w;
+                        }
+                    }
+                }
+            }
+        }
+        return quads;
+    }
+    
+    private static int neighbor(VoxelGrid grid, int[] position, int axis, int step) {
+        position[axis] += step;
+        int block = grid.get(position[0], position[1], position[2]);
+        position[axis] -= step;
+        return block;
+    }
+    
+    /**
+     * Check whether the face of a block toward a neighbor can be seen
+     */
+    private static boolean isVisible(VoxelGrid grid, int block, int neighbor) {
+        if (block == 0) {
+            return false;
+        }
+        // Faces between blocks of the same transparent material (e.g. a glass wall) are hidden too
+        return neighbor == 0 || (grid.isTransparent(neighbor) && neighbor != block);
+    }
+    
+    /**
+     * Fill in the corners of a quad, counter-clockwise seen from the side its normal points to
+     */
+    private static void setCorners(int[] corners, int axis, int u, int v, int plane,
+                                   int i, int j, int w, int h, boolean positive) {
+        // (i, j), (i + w, j), (i + w, j + h), (i, j + h) is counter-clockwise seen from +axis
+        for (int c = 0; c < 4; c++) {
+            int source = positive ? c : 3 - c;
+            corners[c * 3 + axis] = plane;
+            corners[c * 3 + u] = source == 1 || source == 2 ? i + w : i;
+            corners[c * 3 + v] = source >= 2 ? j + h : j;
+        }
+    }
+}
\ No newline at end of file
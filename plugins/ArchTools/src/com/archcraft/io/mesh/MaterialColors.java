@@ -0,0 +1,64 @@
+package com.archcraft.io.mesh;
+
+import org.bukkit.Material;
+
+/**
+ * Representative colors of block materials, for formats without textures
+ */
+public class MaterialColors {
+    
+    private MaterialColors() {
+    }
+    
+    /**
+     * Get a representative color for a material
+     * @param material The material
+     * @return RGB color values [r, g, b] in range 0.0-1.0
+     */
+    public static float[] getColor(Material material) {
+        // This is a simplified approach - in a real implementation, 
+        // we would have a more comprehensive mapping of materials to colors
+        String name = material.name();
+        
+        if (name.contains("STONE"))
+            return new float[]{0.5f, 0.5f, 0.5f};
+        else if (name.contains("DIRT") || name.contains("SOIL"))
+            return new float[]{0.6f, 0.3f, 0.1f};
+        else if (name.contains("GRASS"))
+            return new float[]{0.1f, 0.6f, 0.1f};
+        else if (name.contains("SAND"))
+            return new float[]{0.9f, 0.8f, 0.2f};
+        else if (name.contains("WATER"))
+            return new float[]{0.0f, 0.2f, 0.9f};
+        else if (name.contains("WOOD") || name.contains("LOG"))
+            return new float[]{0.6f, 0.3f, 0.2f};
+        else if (name.contains("LEAVES"))
+            return new float[]{0.1f, 0.5f, 0.1f};
+        else if (name.contains("BRICK"))
+            return new float[]{0.7f, 0.3f, 0.3f};
+        else if (name.contains("WOOL") && name.contains("RED"))
+            return new float[]{0.9f, 0.1f, 0.1f};
+        else if (name.contains("WOOL") && name.contains("BLUE"))
+            return new float[]{0.1f, 0.1f, 0.9f};
+        else if (name.contains("WOOL") && name.contains("GREEN"))
+            return new float[]{0.1f, 0.9f, 0.1f};
+        else if (name.contains("WOOL") && name.contains("YELLOW"))
+            return new float[]{0.9f, 0.9f, 0.1f};
+        else if (name.contains("GOLD") || name.contains("GLOWSTONE"))
+            return new float[]{0.9f, 0.8f, 0.1f};
+        else if (name.contains("IRON"))
+            return new float[]{0.8f, 0.8f, 0.8f};
+        else if (name.contains("DIAMOND"))
+            return new float[]{0.0f, 0.8f, 0.8f};
+        else if (name.contains("OBSIDIAN"))
+            return new float[]{0.1f, 0.1f, 0.2f};
+        else if (name.contains("SNOW") || name.contains("QUARTZ"))
+            return new float[]{0.95f, 0.95f, 0.95f};
+        else if (name.contains("COAL"))
+            return new float[]{0.1f, 0.1f, 0.1f};
+        else if (name.contains("GLASS"))
+            return new float[]{0.8f, 0.8f, 0.9f};
+        else
+            return new float[]{0.5f, 0.5f, 0.5f}; // Default gray
+    }
+}
\ No newline at end of file
@@ -0,0 +1,80 @@
+package com.archcraft.io.mesh;
+
+import org.bukkit.Material;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Numbers the block materials of an export region
+ * Index 0 is always air. A streamed export shares one palette between all of its bands,
+ * so a material keeps the same index from the first band to the last.
+ */
+public class MaterialPalette {
+    
+    private final List<Material> materials = new ArrayList<>();
+    private final Map<Material, Integer> indices = new HashMap<>();
+    private boolean[] transparent = new boolean[16];
+    
+    public MaterialPalette() {
+        materials.add(Material.AIR);
+        indices.put(Material.AIR, 0);
+        transparent[0] = true;
+    }
+    
+    /**
+     * Get the index of a material, adding it if it is new
+     * @param material The block material
+     * @return Palette index; 0 for every kind of air
+     */
+    public int indexOf(Material material) {
+        if (material.isAir()) {
+            return 0;
+        }
+        
+        Integer index = indices.get(material);
+        if (index == null) {
+            index = materials.size();
+            materials.add(material);
+            indices.put(material, index);
+            if (index == transparent.length) {
+                transparent = Arrays.copyOf(transparent, index * 2);
+            }
+            transparent[index] = !material.isOccluding();
+        }
+        return index;
+    }
+    
+    /**
+     * Check whether blocks behind a palette entry can be seen through it
+     * @param index Palette index
+     * @return True for air and non-occluding blocks such as glass
+     */
+    public boolean isTransparent(int index) {
+        return transparent[index];
+    }
+    
+    /**
+     * Get the material of a palette entry
+     * @param index Palette index
+     * @return The material
+     */
+    public Material get(int index) {
+        return materials.get(index);
+    }
+    
+    /**
+     * Get the materials in this palette
+     * @return Materials by index; index 0 is air
+     */
+    public List<Material> getMaterials() {
+        return materials;
+    }
+    
+    public int size() {
+        return materials.size();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,95 @@
+package com.archcraft.io.mesh;
+
+import java.util.Arrays;
+
+/**
+ * Quads of one meshed box, with vertices numbered locally from 0
+ * Corners shared by quads of the same box are stored once. Exporters merge buffers in a
+ * fixed order and map local vertex numbers to output numbers while doing so.
+ */
+public class MeshBuffer implements GreedyMesher.QuadConsumer {
+    
+    // Ints per quad: material, normal, four local vertices
+    private static final int QUAD_STRIDE = 6;
+    
+    private final VertexIndex vertexIndex = new VertexIndex(0);
+    private int[] vertices = new int[3 * 64];
+    private int[] quads = new int[QUAD_STRIDE * 64];
+    private int quadCount;
+    
+    @Override
+    public void accept(int material, int axis, boolean positive, int[] corners) {
+        if ((quadCount + 1) * QUAD_STRIDE > quads.length) {
+            quads = Arrays.copyOf(quads, quads.length * 2);
+        }
+        
+        int offset = quadCount * QUAD_STRIDE;
+        quads[offset] = material;
+        quads[offset + 1] = axis * 2 + (positive ? 1 : 0);
+        for (int c = 0; c < 4; c++) {
+            int x = corners[c * 3];
+            int y = corners[c * 3 + 1];
+            int z = corners[c * 3 + 2];
+            int vertex = vertexIndex.get(x, y, z);
+            if (vertex < 0) {
+                vertex = vertexIndex.add(x, y, z);
+                if ((vertex + 1) * 3 > vertices.length) {
+                    vertices = Arrays.copyOf(vertices, vertices.length * 2);
+                }
+                vertices[vertex * 3] = x;
+                vertices[vertex * 3 + 1] = y;
+                vertices[vertex * 3 + 2] = z;
+            }
+            quads[offset + 2 + c] = vertex;
+        }
+        quadCount++;
+    }
+    
+    public int getVertexCount() {
+        return vertexIndex.getVertexCount();
+    }
+    
+    public int getVertexX(int vertex) {
+        return vertices[vertex * 3];
+    }
+    
+    public int getVertexY(int vertex) {
+        return vertices[vertex * 3 + 1];
+    }
+    
+    public int getVertexZ(int vertex) {
+        return vertices[vertex * 3 + 2];
+    }
+    
+    public int getQuadCount() {
+        return quadCount;
+    }
+    
+    /**
+     * Get the material of a quad
+     * @param quad Quad index
+     * @return Palette index of the material
+     */
+    public int getMaterial(int quad) {
+        return quads[quad * QUAD_STRIDE];
+    }
+    
+    /**
+     * Get the normal direction of a quad
+     * @param quad Quad index
+     * @return axis * 2, plus 1 if the normal points along the positive axis
+     */
+    public int getNormal(int quad) {
+        return quads[quad * QUAD_STRIDE + 1];
+    }
+    
+    /**
+     * Get a corner of a quad
+     * @param quad Quad index
+     * @param corner Corner (0-3), counter-clockwise seen from outside
+     * @return Local vertex number
+     */
+    public int getCorner(int quad, int corner) {
+        return quads[quad * QUAD_STRIDE + 2 + corner];
+    }
+}
\ No newline at end of file
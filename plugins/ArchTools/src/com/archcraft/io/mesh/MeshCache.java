@@ -0,0 +1,460 @@
+package com.archcraft.io.mesh;
+
+import com.archcraft.io.ChannelWriter;
+
+import org.bukkit.Material;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Disk cache of meshed boxes from earlier exports of a region
+ * Each box is keyed by a 128-bit hash of its materials and the layer of cells around it,
+ * which is everything its mesh depends on. A re-export looks boxes up in the previous
+ * export's cache file and only meshes the ones whose content changed. Every box of the
+ * current export is written to a new cache file, which replaces the old one once the
+ * export succeeds, so entries for blocks that are gone are dropped along the way.
+ */
+public class MeshCache implements Closeable {
+    
+    public static final String EXTENSION = ".meshes";
+    
+    private static final int MAGIC = 0x434D4341; // "ACMC"
+    private static final int HEADER_SIZE = 16;
+    private static final int ENTRY_COUNT_POSITION = 4;
+    private static final int FOOTER_OFFSET_POSITION = 8;
+    
+    // Bytes per stored quad: material, normal, four corners of three coordinates
+    private static final int QUAD_BYTES = 2 + 1 + 12;
+    
+    private final File file;
+    private final File partFile;
+    private final Logger logger;
+    
+    // Previous cache file, sorted by key; null if there was none that could be used
+    private FileChannel oldChannel;
+    private ByteBuffer oldData;
+    private long[] oldKeys1 = new long[0];
+    private long[] oldKeys2 = new long[0];
+    private long[] oldOffsets = new long[0];
+    private Material[] oldMaterials = new Material[0];
+    
+    // Lookups of the palette being meshed, refreshed as it grows
+    private MaterialPalette palette;
+    private int preparedSize;
+    private long[] materialIds = new long[0];
+    private int[] oldMaterialIndices = new int[0];
+    
+    // New cache file
+    private final ChannelWriter writer;
+    private final String version;
+    private final Map<Key, Long> written = new HashMap<>();
+    private final Map<Material, Integer> newMaterialIndices = new HashMap<>();
+    private final List<Material> newMaterials = new ArrayList<>();
+    private boolean committed;
+    
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong lookups = new AtomicLong();
+    
+    /**
+     * Open the cache of a region
+     * An unreadable or outdated cache file is ignored and replaced
+     * @param file The region's cache file
+     * @param version Plugin version; files from other versions are not used
+     * @param logger Logger for cache errors
+     * @throws IOException If the new cache file could not be created
+     */
+    public MeshCache(File file, String version, Logger logger) throws IOException {
+        this.file = file;
+        this.partFile = new File(file.getPath() + "." + Thread.currentThread().getId() + ".part");
+        this.version = version;
+        this.logger = logger;
+        
+        file.getParentFile().mkdirs();
+        if (file.isFile()) {
+            try {
+                readOld();
+            } catch (IOException | RuntimeException e) {
+                logger.log(Level.WARNING, "Ignoring unreadable mesh cache " + file.getName(), e);
+                closeOld();
+            }
+        }
+        
+        this.writer = new ChannelWriter(partFile);
+        writer.writeIntLE(MAGIC).writeIntLE(0).writeIntLE(0).writeIntLE(0);
+    }
+    
+    private void readOld() throws IOException {
+        oldChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        long size = oldChannel.size();
+        if (size > Integer.MAX_VALUE || size < HEADER_SIZE) {
+            closeOld();
+            return;
+        }
+        ByteBuffer data = oldChannel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+        if (data.getInt(0) != MAGIC) {
+            throw new IOException("Not a mesh cache");
+        }
+        int count = data.getInt(ENTRY_COUNT_POSITION);
+        long footerOffset = data.getLong(FOOTER_OFFSET_POSITION);
+        if (footerOffset < HEADER_SIZE || footerOffset >= size) {
+            throw new IOException("Mesh cache was not finished");
+        }
+        
+        ByteBuffer footer = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        footer.position((int) footerOffset);
+        if (!version.equals(readString(footer))) {
+            closeOld();
+            return;
+        }
+        
+        Material[] materials = new Material[footer.getInt()];
+        for (int i = 0; i < materials.length; i++) {
+            materials[i] = Material.matchMaterial(readString(footer));
+        }
+        
+        long[] keys1 = new long[count];
+        long[] keys2 = new long[count];
+        long[] offsets = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys1[i] = footer.getLong();
+            keys2[i] = footer.getLong();
+            offsets[i] = footer.getLong();
+            if (offsets[i] < HEADER_SIZE || offsets[i] >= footerOffset) {
+                throw new IOException("Mesh cache index is corrupt");
+            }
+        }
+        
+        this.oldData = data;
+        this.oldKeys1 = keys1;
+        this.oldKeys2 = keys2;
+        this.oldOffsets = offsets;
+        this.oldMaterials = materials;
+    }
+    
+    /**
+     * Refresh the material lookups before a slab of a grid is meshed
+     * Must not be called while boxes are being looked up
+     * @param palette The palette of the grid about to be meshed
+     */
+    void prepare(MaterialPalette palette) {
+        if (palette == this.palette && palette.size() == preparedSize) {
+            return;
+        }
+        this.palette = palette;
+        this.preparedSize = palette.size();
+        
+        // Hash materials by name rather than palette index or ordinal, which differ between exports and versions
+        materialIds = new long[preparedSize];
+        Map<Material, Integer> indices = new HashMap<>();
+        for (int i = 1; i < preparedSize; i++) {
+            materialIds[i] = nameHash(palette.get(i).name());
+            indices.put(palette.get(i), i);
+        }
+        
+        oldMaterialIndices = new int[oldMaterials.length];
+        for (int i = 0; i < oldMaterials.length; i++) {
+            Integer index = oldMaterials[i] != null ? indices.get(oldMaterials[i]) : null;
+            oldMaterialIndices[i] = index != null ? index : -1;
+        }
+    }
+    
+    /**
+     * 64-bit FNV-1a hash of a material name; never 0, which stands for air
+     */
+    private static long nameHash(String name) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < name.length(); i++) {
+            hash = (hash ^ name.charAt(i)) * 0x100000001B3L;
+        }
+        return hash != 0 ? hash : 1;
+    }
+    
+    /**
+     * Compute the key of a box
+     * Covers the box and one layer of cells around it, which decide which faces are visible
+     * @param grid The grid
+     * @param lower Lower corner of the box within the grid
+     * @param upper Upper corner of the box within the grid (exclusive)
+     * @return The key
+     */
+    Key key(VoxelGrid grid, int[] lower, int[] upper) {
+        long hash1 = 0xCBF29CE484222325L;
+        long hash2 = 0x9E3779B97F4A7C15L;
+        for (int axis = 0; axis < 3; axis++) {
+            int size = upper[axis] - lower[axis];
+            hash1 = (hash1 ^ size) * 0x100000001B3L;
+            hash2 = Long.rotateLeft(hash2 + size * 0xC2B2AE3D27D4EB4FL, 31) * 0x9E3779B97F4A7C15L;
+        }
+        
+        long[] ids = materialIds;
+        for (int y = lower[1] - 1; y <= upper[1]; y++) {
+            for (int z = lower[2] - 1; z <= upper[2]; z++) {
+                for (int x = lower[0] - 1; x <= upper[0]; x++) {
+                    long id = ids[grid.get(x, y, z)];
+                    hash1 = (hash1 ^ id) * 0x100000001B3L;
+                    hash2 = Long.rotateLeft(hash2 + id * 0xC2B2AE3D27D4EB4FL, 31) * 0x9E3779B97F4A7C15L;
+                }
+            }
+        }
+        return new Key(hash1, hash2);
+    }
+    
+    /**
+     * Fill a buffer with a box's mesh from the previous export
+     * Safe to call from several threads at once
+     * @param key The box's key
+     * @param lower Lower corner of the box within the grid
+     * @param buffer Empty buffer to fill
+     * @return True on a hit; false if the box has to be meshed
+     */
+    boolean load(Key key, int[] lower, MeshBuffer buffer) {
+        lookups.incrementAndGet();
+        int entry = find(key);
+        if (entry < 0) {
+            return false;
+        }
+        
+        ByteBuffer data = oldData.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        data.position((int) oldOffsets[entry]);
+        int quadCount = data.getInt();
+        int start = data.position();
+        
+        // Check every material first so a stale entry never leaves a half-filled buffer
+        for (int q = 0; q < quadCount; q++) {
+            int material = data.getShort(start + q * QUAD_BYTES) & 0xFFFF;
+            if (material >= oldMaterialIndices.length || oldMaterialIndices[material] < 0) {
+                return false;
+            }
+        }
+        
+        int[] corners = new int[12];
+        for (int q = 0; q < quadCount; q++) {
+            int material = oldMaterialIndices[data.getShort() & 0xFFFF];
+            int normal = data.get();
+            for (int i = 0; i < 12; i++) {
+                corners[i] = lower[i % 3] + data.get();
+            }
+            buffer.accept(material, normal >> 1, (normal & 1) != 0, corners);
+        }
+        hits.incrementAndGet();
+        return true;
+    }
+    
+    private int find(Key key) {
+        int low = 0;
+        int high = oldKeys1.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int compare = compare(oldKeys1[middle], oldKeys2[middle], key.hash1, key.hash2);
+            if (compare < 0) {
+                low = middle + 1;
+            } else if (compare > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Add a box's mesh to the new cache file
+     * @param key The box's key
+     * @param lower Lower corner of the box within the grid
+     * @param buffer The box's mesh
+     * @throws IOException If writing failed
+     */
+    void store(Key key, int[] lower, MeshBuffer buffer) throws IOException {
+        if (written.containsKey(key)) {
+            return;
+        }
+        written.put(key, writer.getPosition());
+        
+        writer.writeIntLE(buffer.getQuadCount());
+        for (int q = 0; q < buffer.getQuadCount(); q++) {
+            Material material = palette.get(buffer.getMaterial(q));
+            Integer index = newMaterialIndices.get(material);
+            if (index == null) {
+                index = newMaterials.size();
+                newMaterials.add(material);
+                newMaterialIndices.put(material, index);
+            }
+            writer.writeShortLE(index);
+            writer.write((char) buffer.getNormal(q));
+            for (int c = 0; c < 4; c++) {
+                int vertex = buffer.getCorner(q, c);
+                writer.write((char) (buffer.getVertexX(vertex) - lower[0]))
+                        .write((char) (buffer.getVertexY(vertex) - lower[1]))
+                        .write((char) (buffer.getVertexZ(vertex) - lower[2]));
+            }
+        }
+    }
+    
+    /**
+     * Finish the new cache file and replace the old one with it
+     * Nothing is replaced if no boxes were meshed, such as for exporters that don't mesh
+     * @throws IOException If the cache file could not be written
+     */
+    public void commit() throws IOException {
+        if (written.isEmpty()) {
+            return;
+        }
+        
+        long footerOffset = writer.getPosition();
+        writeString(version);
+        writer.writeIntLE(newMaterials.size());
+        for (Material material : newMaterials) {
+            writeString(material.name());
+        }
+        
+        List<Map.Entry<Key, Long>> entries = new ArrayList<>(written.entrySet());
+        entries.sort(Comparator.comparing(Map.Entry::getKey,
+                (a, b) -> compare(a.hash1, a.hash2, b.hash1, b.hash2)));
+        for (Map.Entry<Key, Long> entry : entries) {
+            writer.writeIntLE((int) entry.getKey().hash1).writeIntLE((int) (entry.getKey().hash1 >>> 32))
+                    .writeIntLE((int) entry.getKey().hash2).writeIntLE((int) (entry.getKey().hash2 >>> 32))
+                    .writeIntLE((int) (long) entry.getValue()).writeIntLE((int) (entry.getValue() >>> 32));
+        }
+        writer.patchIntLE(ENTRY_COUNT_POSITION, entries.size());
+        writer.patchLongLE(FOOTER_OFFSET_POSITION, footerOffset);
+        writer.close();
+        
+        closeOld();
+        file.delete();
+        if (!partFile.renameTo(file)) {
+            throw new IOException("Could not move mesh cache into place: " + file.getName());
+        }
+        committed = true;
+    }
+    
+    private void writeString(String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        writer.writeShortLE(bytes.length).writeBytes(bytes);
+    }
+    
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private static int compare(long a1, long a2, long b1, long b2) {
+        int compare = Long.compare(a1, b1);
+        return compare != 0 ? compare : Long.compare(a2, b2);
+    }
+    
+    /**
+     * Get the number of boxes that were looked up
+     * @return Lookups so far
+     */
+    public long getLookups() {
+        return lookups.get();
+    }
+    
+    /**
+     * Get the number of boxes found in the previous export's cache
+     * @return Hits so far
+     */
+    public long getHits() {
+        return hits.get();
+    }
+    
+    private void closeOld() {
+        oldData = null;
+        oldKeys1 = new long[0];
+        oldKeys2 = new long[0];
+        oldOffsets = new long[0];
+        if (oldChannel != null) {
+            try {
+                oldChannel.close();
+            } catch (IOException e) {
+                // Only reading
+            }
+            oldChannel = null;
+        }
+    }
+    
+    /**
+     * Release the cache; an uncommitted new cache file is discarded
+     */
+    @Override
+    public void close() {
+        closeOld();
+        if (!committed) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                // Discarded anyway
+            }
+            partFile.delete();
+        }
+    }
+    
+    /**
+     * Delete the least recently written cache files until the directory fits its size limit
+     * @param directory The cache directory
+     * @param maxBytes Max total size in bytes
+     */
+    public static void prune(File directory, long maxBytes) {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (files == null) {
+            return;
+        }
+        
+        long total = 0;
+        for (File cacheFile : files) {
+            total += cacheFile.length();
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File cacheFile : files) {
+            if (total <= maxBytes) {
+                break;
+            }
+            total -= cacheFile.length();
+            cacheFile.delete();
+        }
+    }
+    
+    /**
+     * 128-bit content hash of a box
+     */
+    static final class Key {
+        private final long hash1;
+        private final long hash2;
+        
+        Key(long hash1, long hash2) {
+            this.hash1 = hash1;
+            this.hash2 = hash2;
+        }
+        
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return hash1 == key.hash1 && hash2 == key.hash2;
+        }
+        
+        @Override
+        public int hashCode() {
+            return (int) (hash1 ^ (hash1 >>> 32));
+        }
+    }
+}
\ No newline at end of file
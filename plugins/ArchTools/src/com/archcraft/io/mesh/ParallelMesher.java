@@ -0,0 +1,166 @@
+package com.archcraft.io.mesh;
+
+import com.archcraft.io.job.ModelJob;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Meshes a voxel grid one chunk section at a time on a fork-join pool
+ * Each chunk column of a Y slab is meshed into its own {@link MeshBuffer}. Buffers are
+ * returned in a fixed order (X, then Z) regardless of which thread built them, so the
+ * merged output is identical to meshing the same boxes one after another.
+ * With a {@link MeshCache}, boxes whose content is unchanged since the last export are
+ * copied from the cache instead of being meshed again.
+ */
+public class ParallelMesher implements AutoCloseable {
+    
+    private final ForkJoinPool pool;
+    private final MeshCache cache;
+    
+    /**
+     * Create a mesher
+     * @param threads Worker threads, or 0 to use every available core
+     */
+    public ParallelMesher(int threads) {
+        this(threads, null);
+    }
+    
+    /**
+     * Create a mesher that reuses and records meshes in a cache
+     * @param threads Worker threads, or 0 to use every available core
+     * @param cache The cache, or null to mesh every box
+     */
+    public ParallelMesher(int threads, MeshCache cache) {
+        this.pool = new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+        this.cache = cache;
+    }
+    
+    /**
+     * Mesh one Y slab of a grid
+     * @param grid The voxel grid
+     * @param slabY First Y of the slab within the grid
+     * @param slabTop Y just above the slab
+     * @param job The job running the export, checked for cancellation
+     * @return One buffer per chunk column, ordered by X then Z
+     * @throws IOException If writing the cache failed
+     */
+    public MeshBuffer[] meshSlab(VoxelGrid grid, int slabY, int slabTop, ModelJob job) throws IOException {
+        return meshSlab(grid, slabY, slabTop, 0, grid.getDepth(), job);
+    }
+    
+    /**
+     * Mesh one Y slab of a range of Z rows of a grid
+     * Rows outside the range are only read to cull hidden faces
+     * @param grid The voxel grid
+     * @param slabY First Y of the slab within the grid
+     * @param slabTop Y just above the slab
+     * @param startZ First Z to mesh within the grid
+     * @param endZ Z just past the rows to mesh
+     * @param job The job running the export, checked for cancellation
+     * @return One buffer per chunk column, ordered by X then Z
+     * @throws IOException If writing the cache failed
+     */
+    public MeshBuffer[] meshSlab(VoxelGrid grid, int slabY, int slabTop, int startZ, int endZ, ModelJob job)
+            throws IOException {
+        List<int[]> boxes = new ArrayList<>();
+        int xEnd;
+        for (int x = 0; x < grid.getWidth(); x = xEnd) {
+            xEnd = nextChunkBoundary(grid.getOriginX(), x, grid.getWidth());
+            int zEnd;
+            for (int z = startZ; z < endZ; z = zEnd) {
+                zEnd = nextChunkBoundary(grid.getOriginZ(), z, endZ);
+                boxes.add(new int[]{x, slabY, z, xEnd, slabTop, zEnd});
+            }
+        }
+        
+        MeshBuffer[] buffers = new MeshBuffer[boxes.size()];
+        MeshCache.Key[] keys = null;
+        if (cache != null) {
+            cache.prepare(grid.getMaterialPalette());
+            keys = new MeshCache.Key[buffers.length];
+        }
+        pool.invoke(new MeshTask(grid, boxes, buffers, keys, cache, 0, buffers.length, job));
+        job.checkCancelled();
+        
+        // The cache file is written in box order, on this thread
+        if (cache != null) {
+            for (int i = 0; i < buffers.length; i++) {
+                cache.store(keys[i], boxes.get(i), buffers[i]);
+            }
+        }
+        return buffers;
+    }
+    
+    /**
+     * Get the end of the chunk column starting at a grid position
+     */
+    private static int nextChunkBoundary(int origin, int position, int end) {
+        int world = origin + position;
+        return Math.min(end, (((world >> 4) + 1) << 4) - origin);
+    }
+    
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+    
+    /**
+     * Splits a range of boxes in half until single boxes are left, then meshes them
+     */
+    private static class MeshTask extends RecursiveAction {
+        private final VoxelGrid grid;
+        private final List<int[]> boxes;
+        private final MeshBuffer[] buffers;
+        private final MeshCache.Key[] keys;
+        private final MeshCache cache;
+        private final int from;
+        private final int to;
+        private final ModelJob job;
+        
+        MeshTask(VoxelGrid grid, List<int[]> boxes, MeshBuffer[] buffers, MeshCache.Key[] keys, MeshCache cache,
+                 int from, int to, ModelJob job) {
+            this.grid = grid;
+            this.boxes = boxes;
+            this.buffers = buffers;
+            this.keys = keys;
+            this.cache = cache;
+            this.from = from;
+            this.to = to;
+            this.job = job;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new MeshTask(grid, boxes, buffers, keys, cache, from, middle, job),
+                        new MeshTask(grid, boxes, buffers, keys, cache, middle, to, job));
+                return;
+            }
+            
+            if (from == to) {
+                return;
+            }
+            
+            MeshBuffer buffer = new MeshBuffer();
+            if (!job.isCancelled()) {
+                int[] box = boxes.get(from);
+                int[] lower = {box[0], box[1], box[2]};
+                int[] upper = {box[3], box[4], box[5]};
+                if (cache == null) {
+                    GreedyMesher.mesh(grid, lower, upper, buffer);
+                } else {
+                    keys[from] = cache.key(grid, lower, upper);
+                    if (!cache.load(keys[from], lower, buffer)) {
+                        GreedyMesher.mesh(grid, lower, upper, buffer);
+                    }
+                }
+            }
+            buffers[from] = buffer;
+        }
+    }
+}
\ No newline at end of file
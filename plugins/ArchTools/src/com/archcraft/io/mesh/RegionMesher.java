@@ -0,0 +1,96 @@
+package com.archcraft.io.mesh;
+
+import com.archcraft.io.job.ModelJob;
+
+import java.io.IOException;
+
+/**
+ * Streams the visible surface of an export region to exporters
+ * The region is read band by band, each band is reduced to the requested detail levels,
+ * and every level is meshed in Y slabs with the chunk columns of a slab meshed in parallel.
+ * Sinks receive the boxes in a fixed order, so output does not depend on thread timing.
+ * Boxes found in the region's {@link MeshCache} are reused rather than meshed again.
+ */
+public class RegionMesher {
+    
+    // Height of the Y slabs a band is meshed in
+    private static final int SLAB_HEIGHT = 16;
+    
+    /**
+     * Receives the mesh of one detail level
+     */
+    public interface MeshSink {
+        
+        /**
+         * Accept the mesh of one box
+         * Vertex coordinates are grid positions; world X = (grid origin X + x) * 2^level
+         * @param buffer The box's mesh
+         * @param grid The grid it was meshed from
+         * @throws IOException If writing failed
+         */
+        void write(MeshBuffer buffer, VoxelGrid grid) throws IOException;
+        
+        /**
+         * Called when a slab of a band is done
+         * Vertices below the slab top, and not on either side of the band, are never shared again
+         * @param grid The grid being meshed
+         * @param slabTop Grid Y just above the slab
+         * @param startZ First grid Z of the band
+         * @param endZ Grid Z just past the band
+         */
+        default void endSlab(VoxelGrid grid, int slabTop, int startZ, int endZ) {
+        }
+        
+        /**
+         * Called when a band is done, before the next band is read
+         * @throws IOException If writing failed
+         */
+        default void endBand() throws IOException {
+        }
+    }
+    
+    private RegionMesher() {
+    }
+    
+    /**
+     * Mesh a region
+     * @param region The region to mesh
+     * @param levels One sink per detail level; index 0 gets full detail
+     * @param threads Mesh threads, or 0 for one per CPU core
+     * @param job The job running the export, checked for cancellation
+     * @throws IOException If reading the region or writing failed
+     */
+    public static void mesh(ExportRegion region, MeshSink[] levels, int threads, ModelJob job) throws IOException {
+        int levelCount = levels.length - 1;
+        
+        try (ParallelMesher mesher = new ParallelMesher(threads, region.getMeshCache())) {
+            ExportRegion.Band band;
+            while ((band = region.nextBand()) != null) {
+                // Reduced levels are built from the same band, so the world is read only once
+                VoxelOctree octree = new VoxelOctree(band.getGrid(), levelCount);
+                int bandMinZ = band.getGrid().getOriginZ() + band.getStartZ();
+                int bandEndZ = band.getGrid().getOriginZ() + band.getEndZ();
+                
+                for (int level = 0; level <= levelCount; level++) {
+                    VoxelGrid grid = octree.getLevel(level);
+                    int cell = 1 << level;
+                    int startZ = Math.floorDiv(bandMinZ, cell) - grid.getOriginZ();
+                    int endZ = Math.floorDiv(bandEndZ - 1, cell) + 1 - grid.getOriginZ();
+                    
+                    for (int slabY = 0; slabY < grid.getHeight(); slabY += SLAB_HEIGHT) {
+                        job.checkCancelled();
+                        job.setProgress("Meshing band " + (band.getIndex() + 1) + "/" + region.getBandCount()
+                                + (level > 0 ? ", LOD " + level : "") + ", layer " + slabY + "/" + grid.getHeight());
+                        
+                        int slabTop = Math.min(slabY + SLAB_HEIGHT, grid.getHeight());
+                        for (MeshBuffer buffer : mesher.meshSlab(grid, slabY, slabTop, startZ, endZ, job)) {
+                            levels[level].write(buffer, grid);
+                        }
+                        levels[level].endSlab(grid, slabTop, startZ, endZ);
+                    }
+                    levels[level].endBand();
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,192 @@
+package com.archcraft.io.mesh;
+
+import com.archcraft.io.job.ModelJob;
+
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.World;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Chunk snapshots covering an export region
+ * Snapshots are captured on the main thread a few chunks per tick; they are immutable
+ * copies, so the region can then be scanned on a worker thread without touching the world.
+ */
+public class RegionSnapshot {
+    
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int maxX;
+    private final int maxY;
+    private final int maxZ;
+    private final int minChunkX;
+    private final int minChunkZ;
+    private final int chunksX;
+    private final int chunksZ;
+    private final ChunkSnapshot[] chunks;
+    
+    private RegionSnapshot(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.maxZ = maxZ;
+        this.minChunkX = minX >> 4;
+        this.minChunkZ = minZ >> 4;
+        this.chunksX = (maxX >> 4) - minChunkX + 1;
+        this.chunksZ = (maxZ >> 4) - minChunkZ + 1;
+        this.chunks = new ChunkSnapshot[chunksX * chunksZ];
+    }
+    
+    /**
+     * Start capturing the chunks of a region
+     * May be called from any thread; chunks are read on the main thread, spread over ticks
+     * @param plugin The plugin instance
+     * @param world The world
+     * @param minX Minimum X of the region
+     * @param minY Minimum Y of the region
+     * @param minZ Minimum Z of the region
+     * @param maxX Maximum X of the region (inclusive)
+     * @param maxY Maximum Y of the region (inclusive)
+     * @param maxZ Maximum Z of the region (inclusive)
+     * @param chunksPerTick Max chunks to snapshot per tick
+     * @param job The job the capture is for; cancelling it stops the capture
+     * @return Future completed with the snapshot once all chunks are captured
+     */
+    public static CompletableFuture<RegionSnapshot> capture(Plugin plugin, World world,
+                                                            int minX, int minY, int minZ,
+                                                            int maxX, int maxY, int maxZ,
+                                                            int chunksPerTick, ModelJob job) {
+        RegionSnapshot region = new RegionSnapshot(minX, minY, minZ, maxX, maxY, maxZ);
+        CompletableFuture<RegionSnapshot> future = new CompletableFuture<>();
+        new CaptureTask(region, world, Math.max(1, chunksPerTick), job, future).runTaskTimer(plugin, 0L, 1L);
+        return future;
+    }
+    
+    /**
+     * Scan the snapshots into a dense voxel grid
+     * Safe to call from any thread
+     * @param job The job running the scan, checked for cancellation
+     * @return The voxel grid, with its origin at the region's minimum corner
+     */
+    public VoxelGrid toGrid(ModelJob job) {
+        VoxelGrid grid = new VoxelGrid(minX, minY, minZ, maxX - minX + 1, maxY - minY + 1, maxZ - minZ + 1);
+        copyTo(grid, job);
+        return grid;
+    }
+    
+    /**
+     * Scan the part of the snapshots that overlaps a grid into it
+     * Cells of the grid outside this region are left untouched, so a grid spanning several
+     * regions can be filled from each of them in turn
+     * @param grid The grid to fill
+     * @param job The job running the scan, checked for cancellation
+     */
+    public void copyTo(VoxelGrid grid, ModelJob job) {
+        int gridMaxX = grid.getOriginX() + grid.getWidth() - 1;
+        int gridMaxY = grid.getOriginY() + grid.getHeight() - 1;
+        int gridMaxZ = grid.getOriginZ() + grid.getDepth() - 1;
+        int fromX = Math.max(minX, grid.getOriginX());
+        int fromY = Math.max(minY, grid.getOriginY());
+        int fromZ = Math.max(minZ, grid.getOriginZ());
+        int toX = Math.min(maxX, gridMaxX);
+        int toY = Math.min(maxY, gridMaxY);
+        int toZ = Math.min(maxZ, gridMaxZ);
+        if (fromX > toX || fromY > toY || fromZ > toZ) {
+            return;
+        }
+        
+        // Chunk by chunk, so each snapshot is read while it is hot
+        for (int cx = (fromX >> 4) - minChunkX; cx <= (toX >> 4) - minChunkX; cx++) {
+            for (int cz = (fromZ >> 4) - minChunkZ; cz <= (toZ >> 4) - minChunkZ; cz++) {
+                job.checkCancelled();
+                ChunkSnapshot chunk = chunks[cx * chunksZ + cz];
+                int chunkMinX = Math.max(fromX, (minChunkX + cx) << 4);
+                int chunkMaxX = Math.min(toX, ((minChunkX + cx) << 4) + 15);
+                int chunkMinZ = Math.max(fromZ, (minChunkZ + cz) << 4);
+                int chunkMaxZ = Math.min(toZ, ((minChunkZ + cz) << 4) + 15);
+                
+                for (int y = fromY; y <= toY; y++) {
+                    for (int z = chunkMinZ; z <= chunkMaxZ; z++) {
+                        for (int x = chunkMinX; x <= chunkMaxX; x++) {
+                            grid.set(x - grid.getOriginX(), y - grid.getOriginY(), z - grid.getOriginZ(),
+                                    chunk.getBlockType(x & 15, y, z & 15));
+                        }
+                    }
+                }
+            }
+        }
+    }
+    
+    public int getMinX() {
+        return minX;
+    }
+    
+    public int getMinY() {
+        return minY;
+    }
+    
+    public int getMinZ() {
+        return minZ;
+    }
+    
+    public int getMaxX() {
+        return maxX;
+    }
+    
+    public int getMaxY() {
+        return maxY;
+    }
+    
+    public int getMaxZ() {
+        return maxZ;
+    }
+    
+    /**
+     * Snapshots a limited number of chunks every tick
+     */
+    private static class CaptureTask extends BukkitRunnable {
+        private final RegionSnapshot region;
+        private final World world;
+        private final int chunksPerTick;
+        private final ModelJob job;
+        private final CompletableFuture<RegionSnapshot> future;
+        private int next;
+        
+        CaptureTask(RegionSnapshot region, World world, int chunksPerTick, ModelJob job,
+                    CompletableFuture<RegionSnapshot> future) {
+            this.region = region;
+            this.world = world;
+            this.chunksPerTick = chunksPerTick;
+            this.job = job;
+            this.future = future;
+        }
+        
+        @Override
+        public void run() {
+            if (job.isCancelled()) {
+                cancel();
+                future.cancel(false);
+                return;
+            }
+            
+            ChunkSnapshot[] chunks = region.chunks;
+            int end = Math.min(chunks.length, next + chunksPerTick);
+            for (; next < end; next++) {
+                int chunkX = region.minChunkX + next / region.chunksZ;
+                int chunkZ = region.minChunkZ + next % region.chunksZ;
+                chunks[next] = world.getChunkAt(chunkX, chunkZ).getChunkSnapshot(false, false, false);
+            }
+            job.setProgress("Capturing chunk " + next + "/" + chunks.length);
+            
+            if (next >= chunks.length) {
+                cancel();
+                future.complete(region);
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,148 @@
+package com.archcraft.io.mesh;
+
+/**
+ * Maps lattice points to output vertex numbers so shared corners are written once
+ * Keys are packed lattice coordinates in a primitive open-addressing table. Meshing runs
+ * in Y slabs of Z bands, and only the top layer of a slab and the two sides of a band can be
+ * shared with later boxes, so the table is trimmed to those between slabs to keep memory bounded.
+ */
+public class VertexIndex {
+    
+    private static final int COORD_BITS = 21;
+    private static final long COORD_MASK = (1L << COORD_BITS) - 1;
+    
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int nextVertex;
+    
+    /**
+     * Create an empty index
+     * @param firstVertex Number given to the first vertex (1 for OBJ, 0 for binary formats)
+     */
+    public VertexIndex(int firstVertex) {
+        this.keys = new long[1024];
+        this.values = new int[1024];
+        this.nextVertex = firstVertex;
+    }
+    
+    /**
+     * Look up a lattice point
+     * @param x Lattice X
+     * @param y Lattice Y
+     * @param z Lattice Z
+     * @return The vertex number, or -1 if the point has no vertex yet
+     */
+    public int get(int x, int y, int z) {
+        long key = pack(x, y, z);
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; values[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot] - 1;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Give a lattice point the next vertex number
+     * Call only after {@link #get} returned -1 for the point
+     * @param x Lattice X
+     * @param y Lattice Y
+     * @param z Lattice Z
+     * @return The new vertex number
+     */
+    public int add(int x, int y, int z) {
+        int vertex = nextVertex++;
+        insert(pack(x, y, z), vertex + 1);
+        return vertex;
+    }
+    
+    /**
+     * Forget all lattice points except those on one Y layer or two Z planes
+     * @param y The layer to keep
+     * @param nearZ The first plane to keep
+     * @param farZ The second plane to keep
+     */
+    public void retain(int y, int nearZ, int farZ) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        int kept = 0;
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldValues[slot] != 0 && isRetained(oldKeys[slot], y, nearZ, farZ)) {
+                kept++;
+            }
+        }
+        
+        int capacity = 1024;
+        while (capacity < kept * 2) {
+            capacity <<= 1;
+        }
+        keys = new long[capacity];
+        values = new int[capacity];
+        size = 0;
+        
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldValues[slot] != 0 && isRetained(oldKeys[slot], y, nearZ, farZ)) {
+                insert(oldKeys[slot], oldValues[slot]);
+            }
+        }
+    }
+    
+    /**
+     * Get the number of vertices handed out
+     * @return Vertex count
+     */
+    public int getVertexCount() {
+        return nextVertex;
+    }
+    
+    private void insert(long key, int value) {
+        // Keep the load factor at or below 0.5
+        if ((size + 1) * 2 > keys.length) {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldValues.length * 2];
+            size = 0;
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldValues[slot] != 0) {
+                    insert(oldKeys[slot], oldValues[slot]);
+                }
+            }
+        }
+        
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (values[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+    }
+    
+    private static long pack(int x, int y, int z) {
+        return ((x & COORD_MASK) << (2 * COORD_BITS))
+                | ((y & COORD_MASK) << COORD_BITS)
+                | (z & COORD_MASK);
+    }
+    
+    private static boolean isRetained(long key, int y, int nearZ, int farZ) {
+        int z = unpackZ(key);
+        return unpackY(key) == y || z == nearZ || z == farZ;
+    }
+    
+    private static int unpackY(long key) {
+        return (int) ((key << (64 - 2 * COORD_BITS)) >> (64 - COORD_BITS));
+    }
+    
+    private static int unpackZ(long key) {
+        return (int) ((key << (64 - COORD_BITS)) >> (64 - COORD_BITS));
+    }
+    
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
\ No newline at end of file
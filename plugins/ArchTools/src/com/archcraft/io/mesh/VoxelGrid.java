@@ -0,0 +1,145 @@
+package com.archcraft.io.mesh;
+
+import org.bukkit.Material;
+
+import java.util.List;
+
+/**
+ * Dense snapshot of the block materials in an export region
+ * Each cell holds a palette index; index 0 is always air.
+ */
+public class VoxelGrid {
+    
+    private final int originX;
+    private final int originY;
+    private final int originZ;
+    private final int width;
+    private final int height;
+    private final int depth;
+    private final short[] cells;
+    private final MaterialPalette palette;
+    
+    /**
+     * Create an empty (all air) grid
+     * @param originX World X of the grid's first cell
+     * @param originY World Y of the grid's first cell
+     * @param originZ World Z of the grid's first cell
+     * @param width Size along X
+     * @param height Size along Y
+     * @param depth Size along Z
+     */
+    public VoxelGrid(int originX, int originY, int originZ, int width, int height, int depth) {
+        this(originX, originY, originZ, width, height, depth, new MaterialPalette());
+    }
+    
+    /**
+     * Create an empty (all air) grid numbering its materials with an existing palette
+     * @param originX World X of the grid's first cell
+     * @param originY World Y of the grid's first cell
+     * @param originZ World Z of the grid's first cell
+     * @param width Size along X
+     * @param height Size along Y
+     * @param depth Size along Z
+     * @param palette Palette shared with other grids of the same export
+     */
+    public VoxelGrid(int originX, int originY, int originZ, int width, int height, int depth,
+                     MaterialPalette palette) {
+        this.originX = originX;
+        this.originY = originY;
+        this.originZ = originZ;
+        this.width = width;
+        this.height = height;
+        this.depth = depth;
+        this.cells = new short[width * height * depth];
+        this.palette = palette;
+    }
+    
+    /**
+     * Set the material of a cell
+     * @param x X within the grid
+     * @param y Y within the grid
+     * @param z Z within the grid
+     * @param material The block material
+     */
+    public void set(int x, int y, int z, Material material) {
+        cells[index(x, y, z)] = (short) palette.indexOf(material);
+    }
+    
+    /**
+     * Set the palette index of a cell
+     * @param x X within the grid
+     * @param y Y within the grid
+     * @param z Z within the grid
+     * @param paletteIndex Index in this grid's palette
+     */
+    public void setIndex(int x, int y, int z, int paletteIndex) {
+        cells[index(x, y, z)] = (short) paletteIndex;
+    }
+    
+    /**
+     * Get the palette index of a cell
+     * @param x X within the grid
+     * @param y Y within the grid
+     * @param z Z within the grid
+     * @return Palette index, or 0 (air) outside the grid
+     */
+    public int get(int x, int y, int z) {
+        if (x < 0 || y < 0 || z < 0 || x >= width || y >= height || z >= depth) {
+            return 0;
+        }
+        return cells[index(x, y, z)];
+    }
+    
+    /**
+     * Check whether blocks behind a palette entry can be seen through it
+     * @param paletteIndex Palette index
+     * @return True for air and non-occluding blocks such as glass
+     */
+    public boolean isTransparent(int paletteIndex) {
+        return palette.isTransparent(paletteIndex);
+    }
+    
+    /**
+     * Get the materials in this grid
+     * @return Palette of materials; index 0 is air
+     */
+    public List<Material> getPalette() {
+        return palette.getMaterials();
+    }
+    
+    /**
+     * Get the palette numbering this grid's materials
+     * @return The material palette
+     */
+    public MaterialPalette getMaterialPalette() {
+        return palette;
+    }
+    
+    public int getOriginX() {
+        return originX;
+    }
+    
+    public int getOriginY() {
+        return originY;
+    }
+    
+    public int getOriginZ() {
+        return originZ;
+    }
+    
+    public int getWidth() {
+        return width;
+    }
+    
+    public int getHeight() {
+        return height;
+    }
+    
+    public int getDepth() {
+        return depth;
+    }
+    
+    private int index(int x, int y, int z) {
+        return (y * depth + z) * width + x;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,120 @@
+package com.archcraft.io.mesh;
+
+/**
+ * Material-majority octree over a voxel grid, stored densely one level at a time
+ * Each cell of level n covers a 2x2x2 block of level n - 1 and takes the material most of
+ * those cells have. Ties between air and blocks keep the block, so walls one block thick
+ * survive the first reduction. Cells are aligned to world coordinates rather than to the
+ * grid, so grids of neighbouring bands reduce to matching cells.
+ */
+public class VoxelOctree {
+    
+    private final VoxelGrid[] levels;
+    
+    /**
+     * Build the reduced levels of a grid
+     * @param grid The full detail grid (level 0)
+     * @param levelCount Number of reduced levels to build
+     */
+    public VoxelOctree(VoxelGrid grid, int levelCount) {
+        this.levels = new VoxelGrid[levelCount + 1];
+        levels[0] = grid;
+        for (int level = 1; level <= levelCount; level++) {
+            levels[level] = reduce(levels[level - 1]);
+        }
+    }
+    
+    /**
+     * Get one level of the octree
+     * Its origin and size are in cells of that level, so world X = (origin X + x) * 2^level
+     * @param level The level; 0 is the full detail grid
+     * @return The level's grid
+     */
+    public VoxelGrid getLevel(int level) {
+        return levels[level];
+    }
+    
+    public int getLevelCount() {
+        return levels.length - 1;
+    }
+    
+    /**
+     * Halve the resolution of a grid
+     */
+    private static VoxelGrid reduce(VoxelGrid fine) {
+        int originX = Math.floorDiv(fine.getOriginX(), 2);
+        int originY = Math.floorDiv(fine.getOriginY(), 2);
+        int originZ = Math.floorDiv(fine.getOriginZ(), 2);
+        int width = Math.floorDiv(fine.getOriginX() + fine.getWidth() - 1, 2) - originX + 1;
+        int height = Math.floorDiv(fine.getOriginY() + fine.getHeight() - 1, 2) - originY + 1;
+        int depth = Math.floorDiv(fine.getOriginZ() + fine.getDepth() - 1, 2) - originZ + 1;
+        VoxelGrid coarse = new VoxelGrid(originX, originY, originZ, width, height, depth, fine.getMaterialPalette());
+        
+        // Grid position of the first fine cell under coarse cell 0; -1 when the grid starts on an odd cell
+        int baseX = originX * 2 - fine.getOriginX();
+        int baseY = originY * 2 - fine.getOriginY();
+        int baseZ = originZ * 2 - fine.getOriginZ();
+        int[] materials = new int[8];
+        int[] counts = new int[8];
+        
+        for (int y = 0; y < height; y++) {
+            for (int z = 0; z < depth; z++) {
+                for (int x = 0; x < width; x++) {
+                    int distinct = 0;
+                    int air = 0;
+                    int solid = 0;
+                    
+                    // Only cells inside the fine grid vote; cells past the region edge don't count as air
+                    for (int dy = 0; dy < 2; dy++) {
+                        int fy = baseY + y * 2 + dy;
+                        if (fy < 0 || fy >= fine.getHeight()) {
+                            continue;
+                        }
+                        for (int dz = 0; dz < 2; dz++) {
+                            int fz = baseZ + z * 2 + dz;
+                            if (fz < 0 || fz >= fine.getDepth()) {
+                                continue;
+                            }
+                            for (int dx = 0; dx < 2; dx++) {
+                                int fx = baseX + x * 2 + dx;
+                                if (fx < 0 || fx >= fine.getWidth()) {
+                                    continue;
+                                }
+                                
+                                int material = fine.get(fx, fy, fz);
+                                if (material == 0) {
+                                    air++;
+                                    continue;
+                                }
+                                solid++;
+                                int i = 0;
+                                while (i < distinct && materials[i] != material) {
+                                    i++;
+                                }
+                                if (i == distinct) {
+                                    materials[distinct] = material;
+                                    counts[distinct++] = 0;
+                                }
+                                counts[i]++;
+                            }
+                        }
+                    }
+                    
+                    if (solid == 0 || solid < air) {
+                        continue;
+                    }
+                    
+                    // Most common block; ties go to the one seen first, so the result is deterministic
+                    int best = 0;
+                    for (int i = 1; i < distinct; i++) {
+                        if (counts[i] > counts[best]) {
+                            best = i;
+                        }
+                    }
+                    coarse.setIndex(x, y, z, materials[best]);
+                }
+            }
+        }
+        return coarse;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,101 @@
+package com.archcraft.io.obj;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Parser for Wavefront MTL material libraries
+ * Only the properties used for block matching are read (diffuse color and opacity)
+ */
+public class MtlParser {
+    
+    private MtlParser() {
+    }
+    
+    /**
+     * Parse a material library and add its materials to a map
+     * @param file The .mtl file
+     * @param materials Map to add materials to, keyed by material name
+     * @throws IOException If there was an error reading the file
+     */
+    public static void parse(File file, Map<String, MtlMaterial> materials) throws IOException {
+        MtlMaterial current = null;
+        
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                
+                String[] parts = line.split("\\s+");
+                String type = parts[0];
+                
+                try {
+                    if (type.equals("newmtl") && parts.length >= 2) {
+                        current = new MtlMaterial(parts[1]);
+                        materials.put(current.getName(), current);
+                    } else if (current == null) {
+                        continue;
+                    } else if (type.equals("Kd") && parts.length >= 2) {
+                        // "Kd r g b", or "Kd r" for a gray; spectral and xyz forms are skipped
+                        if (parts.length >= 4) {
+                            current.diffuse = new float[]{
+                                    Float.parseFloat(parts[1]),
+                                    Float.parseFloat(parts[2]),
+                                    Float.parseFloat(parts[3])
+                            };
+                        } else {
+                            float gray = Float.parseFloat(parts[1]);
+                            current.diffuse = new float[]{gray, gray, gray};
+                        }
+                    } else if (type.equals("d") && parts.length >= 2) {
+                        current.opacity = Float.parseFloat(parts[parts.length - 1]);
+                    } else if (type.equals("Tr") && parts.length >= 2) {
+                        current.opacity = 1.0f - Float.parseFloat(parts[1]);
+                    }
+                } catch (NumberFormatException e) {
+                    // Skip malformed values, keep the rest of the material
+                }
+            }
+        }
+    }
+    
+    /**
+     * Class representing a material from an MTL library
+     */
+    public static class MtlMaterial {
+        private final String name;
+        private float[] diffuse;
+        private float opacity = 1.0f;
+        
+        public MtlMaterial(String name) {
+            this.name = name;
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        /**
+         * Get the diffuse color
+         * @return RGB color values [r, g, b] in range 0.0-1.0, or null if not set
+         */
+        public float[] getDiffuse() {
+            return diffuse;
+        }
+        
+        /**
+         * Get the opacity ("d", or 1 - "Tr")
+         * @return Opacity in range 0.0-1.0
+         */
+        public float getOpacity() {
+            return opacity;
+        }
+    }
+}
\ No newline at end of file
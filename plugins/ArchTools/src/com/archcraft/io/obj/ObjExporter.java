@@ -1,242 +1,150 @@
 package com.archcraft.io.obj;
 
+import com.archcraft.Main;
+import com.archcraft.io.ChannelWriter;
+import com.archcraft.io.ExportOptions;
 import com.archcraft.io.ModelExporter;
 import com.archcraft.io.ModelFormat;
+import com.archcraft.io.ParallelGzipOutput;
+import com.archcraft.io.job.ModelJob;
+import com.archcraft.io.mesh.ExportRegion;
+import com.archcraft.io.mesh.MaterialColors;
+import com.archcraft.io.mesh.MaterialPalette;
+import com.archcraft.io.mesh.MeshBuffer;
+import com.archcraft.io.mesh.RegionMesher;
+import com.archcraft.io.mesh.VertexIndex;
+import com.archcraft.io.mesh.VoxelGrid;
 
-import org.bukkit.Location;
-import org.bukkit.Material;
-import org.bukkit.World;
-import org.bukkit.block.Block;
-import org.bukkit.entity.Player;
+import org.bukkit.ChatColor;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Exporter for Wavefront OBJ format
  */
 public class ObjExporter implements ModelExporter {
     
-    // Material map to store unique material definitions
-    private final Map<Material, String> materialMap = new HashMap<>();
+    // Digits after the decimal point in vertex coordinates and colors
+    private static final int COORDINATE_DECIMALS = 6;
+    private static final int COLOR_DECIMALS = 3;
     
     @Override
-    public boolean exportModel(Location min, Location max, File outputFile, double scale, Player player) 
+    public void exportModel(ExportRegion region, File outputFile, ExportOptions options, ModelJob job) 
             throws IOException, UnsupportedOperationException {
         
-        // Get world
-        World world = min.getWorld();
-        
-        // Check that both locations are in the same world
-        if (!world.equals(max.getWorld())) {
-            throw new IllegalArgumentException("Both locations must be in the same world");
-        }
-        
-        // Define region bounds
-        int minX = Math.min(min.getBlockX(), max.getBlockX());
-        int minY = Math.min(min.getBlockY(), max.getBlockY());
-        int minZ = Math.min(min.getBlockZ(), max.getBlockZ());
-        int maxX = Math.max(min.getBlockX(), max.getBlockX());
-        int maxY = Math.max(min.getBlockY(), max.getBlockY());
-        int maxZ = Math.max(min.getBlockZ(), max.getBlockZ());
-        
-        // Check region size (safety measure for very large regions)
-        int width = maxX - minX + 1;
-        int height = maxY - minY + 1;
-        int depth = maxZ - minZ + 1;
-        int totalBlocks = width * height * depth;
-        
-        if (totalBlocks > 1000000) { // Limit to 1 million blocks
-            player.sendMessage("Region too large: " + totalBlocks + " blocks");
-            player.sendMessage("Please select a smaller region (max 1,000,000 blocks)");
-            return false;
-        }
-        
         // Create directory if it doesn't exist
         outputFile.getParentFile().mkdirs();
         
-        // Create material library file
+        // Material library file, shared by all detail levels and written last from the materials that produced faces
         File mtlFile = new File(outputFile.getParent(), outputFile.getName().replace(".obj", ".mtl"));
         
-        // Initialize counters
-        int vertexCount = 1; // OBJ indices start at 1, not 0
+        // Compressed files are gzipped in blocks on a pool shared by all of them
+        ExecutorService compressionPool = options.isCompressed() ? ParallelGzipOutput.createPool(
+                Main.getInstance().getConfigManager().getExportCompressionThreads()) : null;
+        try {
+            writeModel(region, outputFile, mtlFile, options, compressionPool, job);
+        } finally {
+            if (compressionPool != null) {
+                compressionPool.shutdownNow();
+            }
+        }
+    }
+    
+    private void writeModel(ExportRegion region, File outputFile, File mtlFile, ExportOptions options,
+                            ExecutorService compressionPool, ModelJob job) throws IOException {
+        MaterialPalette palette = region.getPalette();
         
-        // Scan blocks and identify unique materials
-        Set<Material> materials = new HashSet<>();
-        for (int x = minX; x <= maxX; x++) {
-            for (int y = minY; y <= maxY; y++) {
-                for (int z = minZ; z <= maxZ; z++) {
-                    Block block = world.getBlockAt(x, y, z);
-                    Material material = block.getType();
-                    
-                    if (material != Material.AIR) {
-                        materials.add(material);
-                    }
-                }
+        // Full detail goes to the output file, each reduced level to "<name>_lod<level>.obj"
+        int levelCount = options.getLodLevels();
+        LevelWriter[] levels = new LevelWriter[levelCount + 1];
+        try {
+            for (int level = 0; level <= levelCount; level++) {
+                File levelFile = level == 0 ? outputFile
+                        : new File(outputFile.getParent(), outputFile.getName().replace(".obj", "_lod" + level + ".obj"));
+                levels[level] = new LevelWriter(levelFile, region, palette, options.getScale(), level, compressionPool);
+                levels[level].writeHeader(mtlFile.getName());
+            }
+            
+            // Only visible faces, merged into rectangles. The region streams in as Z bands,
+            // each meshed in Y slabs, so each level's vertex index only has to remember the
+            // layer shared with the next slab and the planes shared with neighbouring bands.
+            RegionMesher.mesh(region, levels, Main.getInstance().getConfigManager().getExportMeshThreads(), job);
+            
+            for (LevelWriter level : levels) {
+                job.sendMessage(ChatColor.GRAY + "Wrote " + level.getQuadCount() + " faces with "
+                        + level.getVertexCount() + " vertices"
+                        + (level.getLevel() > 0 ? " to " + level.getFile().getName() : ""));
             }
+        } finally {
+            closeAll(levels);
         }
         
         // Create material library
-        try (PrintWriter mtlWriter = new PrintWriter(new FileWriter(mtlFile))) {
-            mtlWriter.println("# Material library generated by ArchCraft");
-            mtlWriter.println("# Contains materials for Minecraft blocks");
+        try (ChannelWriter mtlWriter = ChannelWriter.open(mtlFile, compressionPool)) {
+            mtlWriter.write("# Material library generated by ArchCraft").newLine();
+            mtlWriter.write("# Contains materials for Minecraft blocks").newLine();
             
-            int materialIndex = 1;
-            for (Material material : materials) {
-                String materialName = "mc_" + material.name().toLowerCase();
-                materialMap.put(material, materialName);
+            for (int i = 1; i < palette.size(); i++) {
+                if (!isUsed(levels, i)) {
+                    continue;
+                }
                 
                 // Get material color based on block type
-                float[] rgb = getMaterialColor(material);
-                
-                mtlWriter.println("newmtl " + materialName);
-                mtlWriter.println("Ka " + rgb[0] + " " + rgb[1] + " " + rgb[2]);
-                mtlWriter.println("Kd " + rgb[0] + " " + rgb[1] + " " + rgb[2]);
-                mtlWriter.println("Ks 0.000 0.000 0.000");
-                mtlWriter.println("d 1.0");
-                mtlWriter.println("illum 1");
-                mtlWriter.println();
+                float[] rgb = MaterialColors.getColor(palette.get(i));
                 
-                materialIndex++;
+                mtlWriter.write("newmtl ").write(levels[0].getMaterialName(i)).newLine();
+                writeColor(mtlWriter, "Ka ", rgb);
+                writeColor(mtlWriter, "Kd ", rgb);
+                mtlWriter.write("Ks 0.000 0.000 0.000").newLine();
+                mtlWriter.write("d 1.0").newLine();
+                mtlWriter.write("illum 1").newLine();
+                mtlWriter.newLine();
             }
         }
-        
-        // Create OBJ file
-        try (PrintWriter writer = new PrintWriter(new FileWriter(outputFile))) {
-            // Write header
-            writer.println("# Wavefront OBJ file");
-            writer.println("# Generated by ArchCraft");
-            writer.println("# Region: [" + minX + "," + minY + "," + minZ + "] to [" + maxX + "," + maxY + "," + maxZ + "]");
-            writer.println("# Scale: " + scale);
-            writer.println();
-            
-            // Reference material library
-            writer.println("mtllib " + mtlFile.getName());
-            writer.println();
-            
-            // Export blocks as cubes
-            for (int x = minX; x <= maxX; x++) {
-                for (int y = minY; y <= maxY; y++) {
-                    for (int z = minZ; z <= maxZ; z++) {
-                        Block block = world.getBlockAt(x, y, z);
-                        Material material = block.getType();
-                        
-                        if (material != Material.AIR) {
-                            // Scale and offset coordinates
-                            float sx = (float)((x - minX) * scale);
-                            float sy = (float)((y - minY) * scale);
-                            float sz = (float)((z - minZ) * scale);
-                            
-                            String materialName = materialMap.get(material);
-                            
-                            // Start a new object for this block
-                            writer.println("o block_" + x + "_" + y + "_" + z);
-                            writer.println("usemtl " + materialName);
-                            
-                            // Define vertices for a unit cube at the given position
-                            // Each vertex is positioned relative to the minimum corner of the region
-                            float cubeSize = (float)scale;
-                            
-                            // Vertices: 8 corners of the cube
-                            writer.println("v " + sx + " " + sy + " " + sz);                              // 1: bottom-left-back
-                            writer.println("v " + (sx + cubeSize) + " " + sy + " " + sz);                 // 2: bottom-right-back
-                            writer.println("v " + (sx + cubeSize) + " " + sy + " " + (sz + cubeSize));    // 3: bottom-right-front
-                            writer.println("v " + sx + " " + sy + " " + (sz + cubeSize));                 // 4: bottom-left-front
-                            writer.println("v " + sx + " " + (sy + cubeSize) + " " + sz);                 // 5: top-left-back
-                            writer.println("v " + (sx + cubeSize) + " " + (sy + cubeSize) + " " + sz);    // 6: top-right-back
-                            writer.println("v " + (sx + cubeSize) + " " + (sy + cubeSize) + " " + (sz + cubeSize));  // 7: top-right-front
-                            writer.println("v " + sx + " " + (sy + cubeSize) + " " + (sz + cubeSize));    // 8: top-left-front
-                            
-                            // Faces: 6 faces of the cube
-                            // Each face is a square made of two triangles
-                            // Using relative indices based on the current vertex count
-                            writer.println("f " + vertexCount + " " + (vertexCount + 1) + " " + (vertexCount + 2));  // Bottom face (triangle 1)
-                            writer.println("f " + vertexCount + " " + (vertexCount + 2) + " " + (vertexCount + 3));  // Bottom face (triangle 2)
-                            
-                            writer.println("f " + (vertexCount + 4) + " " + (vertexCount + 5) + " " + (vertexCount + 6));  // Top face (triangle 1)
-                            writer.println("f " + (vertexCount + 4) + " " + (vertexCount + 6) + " " + (vertexCount + 7));  // Top face (triangle 2)
-                            
-                            writer.println("f " + vertexCount + " " + (vertexCount + 4) + " " + (vertexCount + 7));  // Left face (triangle 1)
-                            writer.println("f " + vertexCount + " " + (vertexCount + 7) + " " + (vertexCount + 3));  // Left face (triangle 2)
-                            
-                            writer.println("f " + (vertexCount + 1) + " " + (vertexCount + 5) + " " + (vertexCount + 6));  // Right face (triangle 1)
-                            writer.println("f " + (vertexCount + 1) + " " + (vertexCount + 6) + " " + (vertexCount + 2));  // Right face (triangle 2)
-                            
-                            writer.println("f " + vertexCount + " " + (vertexCount + 1) + " " + (vertexCount + 5));  // Back face (triangle 1)
-                            writer.println("f " + vertexCount + " " + (vertexCount + 5) + " " + (vertexCount + 4));  // Back face (triangle 2)
-                            
-                            writer.println("f " + (vertexCount + 3) + " " + (vertexCount + 2) + " " + (vertexCount + 6));  // Front face (triangle 1)
-                            writer.println("f " + (vertexCount + 3) + " " + (vertexCount + 6) + " " + (vertexCount + 7));  // Front face (triangle 2)
-                            
-                            writer.println();
-                            
-                            // Update vertex count for the next block
-                            vertexCount += 8;
-                        }
-                    }
+    }
+    
+    private static boolean isUsed(LevelWriter[] levels, int material) {
+        for (LevelWriter level : levels) {
+            if (level.isUsed(material)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Close every opened level file, reporting the first failure
+     */
+    private static void closeAll(LevelWriter[] levels) throws IOException {
+        IOException error = null;
+        for (LevelWriter level : levels) {
+            if (level == null) {
+                continue;
+            }
+            try {
+                level.close();
+            } catch (IOException e) {
+                if (error == null) {
+                    error = e;
                 }
             }
         }
-        
-        return true;
+        if (error != null) {
+            throw error;
+        }
     }
     
     /**
-     * Get a representative color for a material
-     * @param material The material
-     * @return RGB color values [r, g, b] in range 0.0-1.0
+     * Write an MTL color statement
      */
-    private float[] getMaterialColor(Material material) {
-        // This is a simplified approach - in a real implementation, 
-        // we would have a more comprehensive mapping of materials to colors
-        String name = material.name();
-        
-        if (name.contains("STONE"))
-            return new float[]{0.5f, 0.5f, 0.5f};
-        else if (name.contains("DIRT") || name.contains("SOIL"))
-            return new float[]{0.6f, 0.3f, 0.1f};
-        else if (name.contains("GRASS"))
-            return new float[]{0.1f, 0.6f, 0.1f};
-        else if (name.contains("SAND"))
-            return new float[]{0.9f, 0.8f, 0.2f};
-        else if (name.contains("WATER"))
-            return new float[]{0.0f, 0.2f, 0.9f};
-        else if (name.contains("WOOD") || name.contains("LOG"))
-            return new float[]{0.6f, 0.3f, 0.2f};
-        else if (name.contains("LEAVES"))
-            return new float[]{0.1f, 0.5f, 0.1f};
-        else if (name.contains("BRICK"))
-            return new float[]{0.7f, 0.3f, 0.3f};
-        else if (name.contains("WOOL") && name.contains("RED"))
-            return new float[]{0.9f, 0.1f, 0.1f};
-        else if (name.contains("WOOL") && name.contains("BLUE"))
-            return new float[]{0.1f, 0.1f, 0.9f};
-        else if (name.contains("WOOL") && name.contains("GREEN"))
-            return new float[]{0.1f, 0.9f, 0.1f};
-        else if (name.contains("WOOL") && name.contains("YELLOW"))
-            return new float[]{0.9f, 0.9f, 0.1f};
-        else if (name.contains("GOLD") || name.contains("GLOWSTONE"))
-            return new float[]{0.9f, 0.8f, 0.1f};
-        else if (name.contains("IRON"))
-            return new float[]{0.8f, 0.8f, 0.8f};
-        else if (name.contains("DIAMOND"))
-            return new float[]{0.0f, 0.8f, 0.8f};
-        else if (name.contains("OBSIDIAN"))
-            return new float[]{0.1f, 0.1f, 0.2f};
-        else if (name.contains("SNOW") || name.contains("QUARTZ"))
-            return new float[]{0.95f, 0.95f, 0.95f};
-        else if (name.contains("COAL"))
-            return new float[]{0.1f, 0.1f, 0.1f};
-        else if (name.contains("GLASS"))
-            return new float[]{0.8f, 0.8f, 0.9f};
-        else
-            return new float[]{0.5f, 0.5f, 0.5f}; // Default gray
+    private static void writeColor(ChannelWriter writer, String keyword, float[] rgb) throws IOException {
+        writer.write(keyword)
+                .writeDecimal(rgb[0], COLOR_DECIMALS).write(' ')
+                .writeDecimal(rgb[1], COLOR_DECIMALS).write(' ')
+                .writeDecimal(rgb[2], COLOR_DECIMALS).newLine();
     }
     
     @Override
@@ -249,14 +157,189 @@ public class ObjExporter implements ModelExporter {
         switch (feature) {
             case MATERIALS:
             case COLORS:
+            case HOLLOW_OPTIMIZATION:
+            case LOD_GENERATION:
+            case COMPRESSION:
                 return true;
             case TEXTURES:
             case METADATA:
-            case HOLLOW_OPTIMIZATION:
-            case LOD_GENERATION:
                 return false;
             default:
                 return false;
         }
     }
+    
+    /**
+     * Writes the mesh of one detail level as OBJ vertices and faces
+     * Numbers go straight into the output buffer, so no strings are built per line
+     */
+    private static class LevelWriter implements RegionMesher.MeshSink {
+        private final File file;
+        private final ChannelWriter writer;
+        private final ExportRegion region;
+        private final MaterialPalette palette;
+        private final double scale;
+        private final int level;
+        private final int cell;
+        private final VertexIndex vertexIndex = new VertexIndex(1); // OBJ indices start at 1, not 0
+        
+        // Vertex index keys are relative to the region's corner cell, so they stay small
+        private final int baseX;
+        private final int baseY;
+        private final int baseZ;
+        
+        private String[] materialNames = new String[16];
+        private boolean[] used = new boolean[16];
+        private int[] outputVertices = new int[256];
+        private int currentMaterial = -1;
+        private long quadCount;
+        
+        LevelWriter(File file, ExportRegion region, MaterialPalette palette, double scale, int level,
+                    ExecutorService compressionPool) throws IOException {
+            this.file = file;
+            this.writer = ChannelWriter.open(file, compressionPool);
+            this.region = region;
+            this.palette = palette;
+            this.scale = scale;
+            this.level = level;
+            this.cell = 1 << level;
+            this.baseX = Math.floorDiv(region.getMinX(), cell);
+            this.baseY = Math.floorDiv(region.getMinY(), cell);
+            this.baseZ = Math.floorDiv(region.getMinZ(), cell);
+        }
+        
+        void writeHeader(String mtlName) throws IOException {
+            writer.write("# Wavefront OBJ file").newLine();
+            writer.write("# Generated by ArchCraft").newLine();
+            writer.write("# Region: [" + region.getMinX() + "," + region.getMinY() + "," + region.getMinZ() + "] to ["
+                    + region.getMaxX() + "," + region.getMaxY() + "," + region.getMaxZ() + "]").newLine();
+            writer.write("# Scale: " + scale).newLine();
+            if (level > 0) {
+                writer.write("# Level of detail: " + level + " (" + cell + "x" + cell + "x" + cell + " blocks per cell)").newLine();
+            }
+            writer.newLine();
+            
+            // Reference material library
+            writer.write("mtllib " + mtlName).newLine();
+            writer.newLine();
+            
+            // One normal per face direction, indexed by axis * 2 + (positive ? 2 : 1)
+            writer.write("vn -1 0 0").newLine();
+            writer.write("vn 1 0 0").newLine();
+            writer.write("vn 0 -1 0").newLine();
+            writer.write("vn 0 1 0").newLine();
+            writer.write("vn 0 0 -1").newLine();
+            writer.write("vn 0 0 1").newLine();
+            writer.newLine();
+            
+            if (level > 0) {
+                writer.write("g lod" + level).newLine();
+            }
+        }
+        
+        boolean isUsed(int material) {
+            return material < used.length && used[material];
+        }
+        
+        /**
+         * Get the OBJ name of a palette entry, named once on first use
+         * @param material Palette index
+         * @return Material name
+         */
+        String getMaterialName(int material) {
+            if (material >= materialNames.length) {
+                int length = Math.max(material + 1, materialNames.length * 2);
+                materialNames = Arrays.copyOf(materialNames, length);
+                used = Arrays.copyOf(used, length);
+            }
+            if (materialNames[material] == null) {
+                materialNames[material] = "mc_" + palette.get(material).name().toLowerCase();
+            }
+            return materialNames[material];
+        }
+        
+        /**
+         * Append a buffer, renumbering its vertices into the output
+         */
+        @Override
+        public void write(MeshBuffer buffer, VoxelGrid grid) throws IOException {
+            if (outputVertices.length < buffer.getVertexCount()) {
+                outputVertices = new int[Math.max(buffer.getVertexCount(), outputVertices.length * 2)];
+            }
+            int offsetX = grid.getOriginX() - baseX;
+            int offsetY = grid.getOriginY() - baseY;
+            int offsetZ = grid.getOriginZ() - baseZ;
+            
+            // Write each lattice point once; points on chunk and band borders may already be written
+            for (int v = 0; v < buffer.getVertexCount(); v++) {
+                int x = buffer.getVertexX(v) + offsetX;
+                int y = buffer.getVertexY(v) + offsetY;
+                int z = buffer.getVertexZ(v) + offsetZ;
+                int vertex = vertexIndex.get(x, y, z);
+                if (vertex < 0) {
+                    vertex = vertexIndex.add(x, y, z);
+                    writer.write("v ")
+                            .writeDecimal(((long) (x + baseX) * cell - region.getMinX()) * scale, COORDINATE_DECIMALS).write(' ')
+                            .writeDecimal(((long) (y + baseY) * cell - region.getMinY()) * scale, COORDINATE_DECIMALS).write(' ')
+                            .writeDecimal(((long) (z + baseZ) * cell - region.getMinZ()) * scale, COORDINATE_DECIMALS).newLine();
+                }
+                outputVertices[v] = vertex;
+            }
+            
+            for (int q = 0; q < buffer.getQuadCount(); q++) {
+                int material = buffer.getMaterial(q);
+                if (material != currentMaterial) {
+                    writer.write("usemtl ").write(getMaterialName(material)).newLine();
+                    currentMaterial = material;
+                    used[material] = true;
+                }
+                
+                int normal = buffer.getNormal(q) + 1;
+                writer.write('f');
+                for (int corner = 0; corner < 4; corner++) {
+                    writer.write(' ').writeInt(outputVertices[buffer.getCorner(q, corner)])
+                            .write("//").writeInt(normal);
+                }
+                writer.newLine();
+            }
+            quadCount += buffer.getQuadCount();
+        }
+        
+        /**
+         * Forget the vertices no later slab or band can share
+         */
+        @Override
+        public void endSlab(VoxelGrid grid, int slabTop, int startZ, int endZ) {
+            int offsetZ = grid.getOriginZ() - baseZ;
+            vertexIndex.retain(slabTop + grid.getOriginY() - baseY, startZ + offsetZ, endZ + offsetZ);
+        }
+        
+        /**
+         * Geometry of finished bands goes to disk before the next band is read
+         */
+        @Override
+        public void endBand() throws IOException {
+            writer.flush();
+        }
+        
+        void close() throws IOException {
+            writer.close();
+        }
+        
+        File getFile() {
+            return file;
+        }
+        
+        int getLevel() {
+            return level;
+        }
+        
+        long getQuadCount() {
+            return quadCount;
+        }
+        
+        int getVertexCount() {
+            return vertexIndex.getVertexCount() - 1;
+        }
+    }
 }
\ No newline at end of file
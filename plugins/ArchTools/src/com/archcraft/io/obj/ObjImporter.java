@@ -2,14 +2,18 @@ package com.archcraft.io.obj;
 
 import com.archcraft.io.ModelImporter;
 import com.archcraft.io.ModelFormat;
+import com.archcraft.io.ModelInfo;
+import com.archcraft.io.job.ModelJob;
+import com.archcraft.io.obj.MtlParser.MtlMaterial;
+import com.archcraft.io.voxel.BlockPalette;
+import com.archcraft.io.voxel.MeshSimplifier;
+import com.archcraft.io.voxel.Transform;
+import com.archcraft.io.voxel.TriangleMesh;
+import com.archcraft.io.voxel.VoxelModel;
+import com.archcraft.io.voxel.Voxelizer;
 
 import org.bukkit.ChatColor;
-import org.bukkit.Location;
 import org.bukkit.Material;
-import org.bukkit.World;
-import org.bukkit.block.Block;
-import org.bukkit.entity.Player;
-import org.bukkit.util.Vector;
 
 import java.io.BufferedReader;
 import java.io.File;
@@ -27,6 +31,12 @@ import java.util.logging.Logger;
  */
 public class ObjImporter implements ModelImporter {
     
+    // How often parsing and voxelizing check for cancellation
+    private static final int CANCEL_CHECK_INTERVAL = 4096;
+    
+    // Materials less opaque than this are matched against glass blocks
+    private static final float GLASS_OPACITY = 0.6f;
+    
     private final Logger logger;
     
     public ObjImporter(Logger logger) {
@@ -34,14 +44,15 @@ public class ObjImporter implements ModelImporter {
     }
     
     @Override
-    public boolean importModel(File file, World world, Location origin, double scale, float rotationY, Player player) 
+    public VoxelModel importModel(File file, Transform transform, ModelJob job)
             throws IOException, UnsupportedOperationException {
         
-        // Parse OBJ file and build in the world
-        List<Vector> vertices = new ArrayList<>();
-        List<Face> faces = new ArrayList<>();
-        Map<String, Material> materials = new HashMap<>();
-        String currentMaterial = null;
+        // Parse OBJ file into an indexed mesh, triangulating faces as they are read
+        TriangleMesh mesh = new TriangleMesh();
+        Map<String, MtlMaterial> mtlMaterials = new HashMap<>();
+        List<String> materialNames = new ArrayList<>();
+        Map<String, Integer> materialIndices = new HashMap<>();
+        int currentMaterial = -1;
         
         try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
             String line;
@@ -49,6 +60,10 @@ public class ObjImporter implements ModelImporter {
             
             while ((line = reader.readLine()) != null) {
                 lineNumber++;
+                if (lineNumber % CANCEL_CHECK_INTERVAL == 0) {
+                    job.checkCancelled();
+                    job.setProgress("Parsing line " + lineNumber);
+                }
                 line = line.trim();
                 
                 if (line.isEmpty() || line.startsWith("#")) {
@@ -63,7 +78,7 @@ public class ObjImporter implements ModelImporter {
                         case "v":
                             // Vertex
                             if (parts.length < 4) {
-                                player.sendMessage(ChatColor.RED + "Invalid vertex at line " + lineNumber);
+                                job.sendMessage(ChatColor.RED + "Invalid vertex at line " + lineNumber);
                                 continue;
                             }
                             
@@ -71,202 +86,286 @@ public class ObjImporter implements ModelImporter {
                             double y = Double.parseDouble(parts[2]);
                             double z = Double.parseDouble(parts[3]);
                             
-                            vertices.add(new Vector(x, y, z));
+                            mesh.addVertex(x, y, z);
                             break;
-                            
+                        
                         case "f":
                             // Face
                             if (parts.length < 4) {
-                                player.sendMessage(ChatColor.RED + "Invalid face at line " + lineNumber);
+                                job.sendMessage(ChatColor.RED + "Invalid face at line " + lineNumber);
                                 continue;
                             }
                             
                             // Parse face vertices (ignoring texture and normal indices if present)
-                            List<Integer> faceVertices = new ArrayList<>();
+                            int[] faceVertices = new int[parts.length - 1];
                             for (int i = 1; i < parts.length; i++) {
-                                String[] indices = parts[i].split("/");
-                                int vertexIndex = Integer.parseInt(indices[0]) - 1; // OBJ indices start at 1
-                                faceVertices.add(vertexIndex);
+                                faceVertices[i - 1] = parseVertexIndex(parts[i], mesh.getVertexCount());
                             }
                             
-                            faces.add(new Face(faceVertices, currentMaterial));
+                            // Split face into triangles (assuming convex polygon)
+                            for (int i = 0; i < faceVertices.length - 2; i++) {
+                                mesh.addTriangle(faceVertices[0], faceVertices[i + 1], faceVertices[i + 2],
+                                        currentMaterial);
+                            }
                             break;
-                            
+                        
                         case "usemtl":
                             // Use material
                             if (parts.length < 2) {
-                                player.sendMessage(ChatColor.RED + "Invalid material at line " + lineNumber);
+                                job.sendMessage(ChatColor.RED + "Invalid material at line " + lineNumber);
                                 continue;
                             }
                             
-                            currentMaterial = parts[1];
+                            Integer index = materialIndices.get(parts[1]);
+                            if (index == null) {
+                                index = materialNames.size();
+                                materialNames.add(parts[1]);
+                                materialIndices.put(parts[1], index);
+                            }
+                            currentMaterial = index;
                             break;
-                            
+                        
                         case "mtllib":
-                            // Material library - we would parse this in a complete implementation
-                            // For this demo, we'll use simple colored blocks
+                            // Material library, may list several files
+                            for (int i = 1; i < parts.length; i++) {
+                                loadMaterialLibrary(file, parts[i], mtlMaterials, job);
+                            }
                             break;
-                            
+                        
                         default:
                             // Ignore other types
                             break;
                     }
                 } catch (NumberFormatException | IndexOutOfBoundsException e) {
-                    player.sendMessage(ChatColor.RED + "Error parsing line " + lineNumber + ": " + e.getMessage());
+                    job.sendMessage(ChatColor.RED + "Error parsing line " + lineNumber + ": " + e.getMessage());
                     logger.log(Level.WARNING, "Error parsing OBJ file at line " + lineNumber, e);
                 }
             }
         }
         
-        // Map materials to Minecraft blocks (simplified)
-        materials.put("default", Material.STONE);
-        
-        if (currentMaterial != null && currentMaterial.toLowerCase().contains("brick")) {
-            materials.put(currentMaterial, Material.BRICK);
-        } else if (currentMaterial != null && currentMaterial.toLowerCase().contains("wood")) {
-            materials.put(currentMaterial, Material.OAK_WOOD);
-        } else if (currentMaterial != null && currentMaterial.toLowerCase().contains("glass")) {
-            materials.put(currentMaterial, Material.GLASS);
-        } else if (currentMaterial != null && currentMaterial.toLowerCase().contains("stone")) {
-            materials.put(currentMaterial, Material.STONE);
-        } else if (currentMaterial != null && currentMaterial.toLowerCase().contains("sand")) {
-            materials.put(currentMaterial, Material.SANDSTONE);
+        // Map each material to a Minecraft block once, so faces only need an array lookup
+        Material[] blocks = new Material[materialNames.size()];
+        for (int i = 0; i < blocks.length; i++) {
+            String name = materialNames.get(i);
+            blocks[i] = resolveMaterial(name, mtlMaterials.get(name));
         }
         
-        // Apply rotation matrix for Y rotation (in radians)
-        double rotationRadians = Math.toRadians(rotationY);
-        double cosY = Math.cos(rotationRadians);
-        double sinY = Math.sin(rotationRadians);
+        // Move the model into block space, once per vertex
+        job.setProgress("Transforming " + mesh.getVertexCount() + " vertices");
+        mesh.transform(transform);
+        
+        // Collapse detail finer than the block grid so voxelizing scales with the output
+        int inputTriangles = mesh.getTriangleCount();
+        job.setProgress("Simplifying " + inputTriangles + " triangles");
+        mesh = MeshSimplifier.simplify(mesh, job);
         
-        // Build the model in the Minecraft world
-        player.sendMessage(ChatColor.YELLOW + "Building model with " + faces.size() + " faces...");
+        // Voxelize the model relative to the origin
+        job.sendMessage(ChatColor.YELLOW + "Building model with " + mesh.getTriangleCount() + " triangles"
+                + (mesh.getTriangleCount() < inputTriangles ? " (simplified from " + inputTriangles + ")" : "") + "...");
         
-        // Set of blocks we've already placed (to avoid duplicates)
-        Map<String, Boolean> placedBlocks = new HashMap<>();
+        VoxelModel model = new VoxelModel();
+        Voxelizer voxelizer = new Voxelizer(model);
         
-        // For each face, we'll triangulate and fill with blocks
-        for (Face face : faces) {
-            Material material = materials.getOrDefault(face.getMaterial(), Material.STONE);
+        int triangleCount = mesh.getTriangleCount();
+        for (int t = 0; t < triangleCount; t++) {
+            if ((t + 1) % CANCEL_CHECK_INTERVAL == 0) {
+                job.checkCancelled();
+                job.setProgress("Voxelizing triangle " + (t + 1) + "/" + triangleCount);
+            }
             
-            // For each face, we'll use a simple algorithm to draw filled triangles
-            List<Integer> vertexIndices = face.getVertexIndices();
+            int materialIndex = mesh.getMaterial(t);
+            Material material = materialIndex >= 0 ? blocks[materialIndex] : Material.STONE;
             
-            // Split face into triangles (assuming convex polygon)
-            for (int i = 0; i < vertexIndices.size() - 2; i++) {
-                Vector v1 = vertices.get(vertexIndices.get(0));
-                Vector v2 = vertices.get(vertexIndices.get(i + 1));
-                Vector v3 = vertices.get(vertexIndices.get(i + 2));
-                
-                // Apply scale and rotation
-                v1 = rotateY(v1, cosY, sinY).multiply(scale);
-                v2 = rotateY(v2, cosY, sinY).multiply(scale);
-                v3 = rotateY(v3, cosY, sinY).multiply(scale);
-                
-                // Draw filled triangle
-                drawLine(world, origin, v1, v2, material, placedBlocks);
-                drawLine(world, origin, v2, v3, material, placedBlocks);
-                drawLine(world, origin, v3, v1, material, placedBlocks);
+            int a = mesh.getCorner(t, 0);
+            int b = mesh.getCorner(t, 1);
+            int c = mesh.getCorner(t, 2);
+            
+            // Draw filled triangle
+            voxelizer.addTriangle(mesh.getX(a), mesh.getY(a), mesh.getZ(a),
+                    mesh.getX(b), mesh.getY(b), mesh.getZ(b),
+                    mesh.getX(c), mesh.getY(c), mesh.getZ(c), material);
+        }
+        
+        return model;
+    }
+    
+    /**
+     * Count vertices, faces and triangles and find the bounds with a single pass over the lines
+     * Only vertex coordinates are parsed; faces, materials and everything else are just counted or skipped
+     */
+    @Override
+    public ModelInfo.Geometry describe(File file) throws IOException {
+        long vertices = 0;
+        long faces = 0;
+        long triangles = 0;
+        double[] min = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+        double[] max = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        
+        try (BufferedReader reader = new BufferedReader(new FileReader(file), 1 << 16)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.startsWith("f ") || line.startsWith("f\t")) {
+                    faces++;
+                    triangles += Math.max(0, countTokens(line) - 3);
+                } else if (line.startsWith("v ") || line.startsWith("v\t")) {
+                    String[] parts = line.split("\\s+");
+                    if (parts.length < 4) {
+                        continue;
+                    }
+                    try {
+                        for (int axis = 0; axis < 3; axis++) {
+                            double value = Double.parseDouble(parts[axis + 1]);
+                            min[axis] = Math.min(min[axis], value);
+                            max[axis] = Math.max(max[axis], value);
+                        }
+                        vertices++;
+                    } catch (NumberFormatException e) {
+                        // Reported when the model is imported
+                    }
+                }
             }
         }
         
-        player.sendMessage(ChatColor.GREEN + "Model import completed with " + placedBlocks.size() + " blocks placed");
-        return true;
+        if (vertices == 0) {
+            min = new double[3];
+            max = new double[3];
+        }
+        return new ModelInfo.Geometry(vertices, faces, triangles, min, max);
+    }
+    
+    /**
+     * List the material libraries the OBJ file names that exist inside its directory
+     */
+    @Override
+    public List<File> getDependencies(File file) throws IOException {
+        List<File> libraries = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file), 1 << 16)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.startsWith("mtllib")) {
+                    continue;
+                }
+                String[] parts = line.split("\\s+");
+                if (!parts[0].equals("mtllib")) {
+                    continue;
+                }
+                for (int i = 1; i < parts.length; i++) {
+                    File library = resolveMaterialLibrary(file, parts[i]);
+                    if (library != null && library.isFile() && !libraries.contains(library)) {
+                        libraries.add(library);
+                    }
+                }
+            }
+        }
+        return libraries;
     }
     
     /**
-     * Rotate a vector around the Y axis
-     * @param v The vector to rotate
-     * @param cosY Cosine of the rotation angle
-     * @param sinY Sine of the rotation angle
-     * @return The rotated vector
+     * Count the whitespace separated tokens of a trimmed line without splitting it
      */
-    private Vector rotateY(Vector v, double cosY, double sinY) {
-        double x = v.getX() * cosY + v.getZ() * sinY;
-        double z = -v.getX() * sinY + v.getZ() * cosY;
-        return new Vector(x, v.getY(), z);
+    private static int countTokens(String line) {
+        int count = 0;
+        boolean inToken = false;
+        for (int i = 0; i < line.length(); i++) {
+            boolean space = Character.isWhitespace(line.charAt(i));
+            if (!space && !inToken) {
+                count++;
+            }
+            inToken = !space;
+        }
+        return count;
     }
     
     /**
-     * Draw a line between two points in 3D space (Bresenham's algorithm)
-     * @param world The world to draw in
-     * @param origin The origin point
-     * @param start The start point
-     * @param end The end point
-     * @param material The material to use
-     * @param placedBlocks Map to track placed blocks
+     * Parse the vertex index of a face corner ("v", "v/vt", "v//vn" or "v/vt/vn")
+     * @param corner The corner token
+     * @param vertexCount Number of vertices read so far
+     * @return Zero-based vertex index
      */
-    private void drawLine(World world, Location origin, Vector start, Vector end, Material material, Map<String, Boolean> placedBlocks) {
-        int x1 = (int) Math.round(start.getX());
-        int y1 = (int) Math.round(start.getY());
-        int z1 = (int) Math.round(start.getZ());
-        
-        int x2 = (int) Math.round(end.getX());
-        int y2 = (int) Math.round(end.getY());
-        int z2 = (int) Math.round(end.getZ());
+    private int parseVertexIndex(String corner, int vertexCount) {
+        int slash = corner.indexOf('/');
+        int index = Integer.parseInt(slash < 0 ? corner : corner.substring(0, slash));
         
-        int dx = Math.abs(x2 - x1);
-        int dy = Math.abs(y2 - y1);
-        int dz = Math.abs(z2 - z1);
-        
-        int sx = x1 < x2 ? 1 : -1;
-        int sy = y1 < y2 ? 1 : -1;
-        int sz = z1 < z2 ? 1 : -1;
-        
-        int dm = Math.max(dx, Math.max(dy, dz));
-        if (dm == 0) {
-            // Points are the same
-            setBlock(world, origin, x1, y1, z1, material, placedBlocks);
-            return;
+        // OBJ indices start at 1; negative indices count back from the last vertex
+        int resolved = index > 0 ? index - 1 : vertexCount + index;
+        if (index == 0 || resolved < 0 || resolved >= vertexCount) {
+            throw new IndexOutOfBoundsException("Vertex index out of range: " + index);
         }
+        return resolved;
+    }
+    
+    /**
+     * Parse a material library referenced by an OBJ file
+     * @param objFile The OBJ file (libraries are resolved relative to it)
+     * @param name The library file name
+     * @param materials Map to add materials to
+     * @param job The job running the import
+     */
+    private void loadMaterialLibrary(File objFile, String name, Map<String, MtlMaterial> materials, ModelJob job) {
+        File mtlFile = new File(objFile.getAbsoluteFile().getParentFile(), name);
         
-        // Normalize step size
-        double tx = (double) dx / dm;
-        double ty = (double) dy / dm;
-        double tz = (double) dz / dm;
-        
-        double x = x1;
-        double y = y1;
-        double z = z1;
-        
-        for (int i = 0; i <= dm; i++) {
-            setBlock(world, origin, (int) Math.round(x), (int) Math.round(y), (int) Math.round(z), material, placedBlocks);
-            x += tx * sx;
-            y += ty * sy;
-            z += tz * sz;
+        try {
+            if (resolveMaterialLibrary(objFile, name) == null) {
+                job.sendMessage(ChatColor.RED + "Ignoring material library outside the models directory: " + name);
+                return;
+            }
+            if (!mtlFile.isFile()) {
+                job.sendMessage(ChatColor.YELLOW + "Material library not found: " + name);
+                return;
+            }
+            
+            MtlParser.parse(mtlFile, materials);
+        } catch (IOException e) {
+            job.sendMessage(ChatColor.RED + "Error reading material library " + name + ": " + e.getMessage());
+            logger.log(Level.WARNING, "Error reading MTL file " + mtlFile, e);
         }
     }
     
     /**
-     * Set a block at a position relative to the origin
-     * @param world The world
-     * @param origin The origin location
-     * @param x X coordinate (relative to origin)
-     * @param y Y coordinate (relative to origin)
-     * @param z Z coordinate (relative to origin)
-     * @param material The material to use
-     * @param placedBlocks Map to track placed blocks
+     * Resolve a material library name relative to the OBJ file
+     * @return The library file, or null if it lies outside the model's directory
      */
-    private void setBlock(World world, Location origin, int x, int y, int z, Material material, Map<String, Boolean> placedBlocks) {
-        int worldX = origin.getBlockX() + x;
-        int worldY = origin.getBlockY() + y;
-        int worldZ = origin.getBlockZ() + z;
+    private static File resolveMaterialLibrary(File objFile, String name) throws IOException {
+        File directory = objFile.getAbsoluteFile().getParentFile();
+        File mtlFile = new File(directory, name);
         
-        // Check if we've already placed a block here
-        String key = worldX + "," + worldY + "," + worldZ;
-        if (placedBlocks.containsKey(key)) {
-            return;
+        // Don't follow references out of the model's directory
+        if (!mtlFile.getCanonicalPath().startsWith(directory.getCanonicalPath() + File.separator)) {
+            return null;
         }
+        return mtlFile;
+    }
+    
+    /**
+     * Map a material to the closest Minecraft block
+     * Uses the MTL diffuse color when available, falling back to keywords in the material name
+     * @param name The material name
+     * @param mtl The material definition, or null if not defined in a library
+     * @return The block material
+     */
+    private Material resolveMaterial(String name, MtlMaterial mtl) {
+        String lowerName = name.toLowerCase();
+        boolean transparent = lowerName.contains("glass") || (mtl != null && mtl.getOpacity() < GLASS_OPACITY);
         
-        // Mark as placed
-        placedBlocks.put(key, true);
-        
-        // In a real implementation, we would actually place the block
-        // Since this is a simulation, we'll just log the action
-        logger.info("Would place " + material + " at " + worldX + "," + worldY + "," + worldZ);
+        if (mtl != null && mtl.getDiffuse() != null) {
+            float[] kd = mtl.getDiffuse();
+            BlockPalette palette = transparent ? BlockPalette.glass() : BlockPalette.opaque();
+            return palette.match(kd[0], kd[1], kd[2]);
+        }
         
-        // In a real implementation, we would use:
-        // Block block = world.getBlockAt(worldX, worldY, worldZ);
-        // block.setType(material);
+        if (transparent) {
+            return Material.GLASS;
+        } else if (lowerName.contains("brick")) {
+            return Material.BRICKS;
+        } else if (lowerName.contains("wood")) {
+            return Material.OAK_WOOD;
+        } else if (lowerName.contains("sand")) {
+            return Material.SANDSTONE;
+        } else {
+            return Material.STONE;
+        }
     }
     
     @Override
@@ -279,35 +378,14 @@ public class ObjImporter implements ModelImporter {
         switch (feature) {
             case MATERIALS:
             case COLORS:
+            case SCALING:
                 return true;
             case TEXTURES:
             case ANIMATION:
             case METADATA:
-            case SCALING:
                 return false;
             default:
                 return false;
         }
     }
-    
-    /**
-     * Class representing a face in the 3D model
-     */
-    private static class Face {
-        private final List<Integer> vertexIndices;
-        private final String material;
-        
-        public Face(List<Integer> vertexIndices, String material) {
-            this.vertexIndices = vertexIndices;
-            this.material = material;
-        }
-        
-        public List<Integer> getVertexIndices() {
-            return vertexIndices;
-        }
-        
-        public String getMaterial() {
-            return material;
-        }
-    }
 }
\ No newline at end of file
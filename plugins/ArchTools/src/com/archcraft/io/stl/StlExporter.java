@@ -0,0 +1,138 @@
+package com.archcraft.io.stl;
+
+import com.archcraft.Main;
+import com.archcraft.io.ChannelWriter;
+import com.archcraft.io.ExportOptions;
+import com.archcraft.io.ModelExporter;
+import com.archcraft.io.ModelFormat;
+import com.archcraft.io.job.ModelJob;
+import com.archcraft.io.mesh.ExportRegion;
+import com.archcraft.io.mesh.MeshBuffer;
+import com.archcraft.io.mesh.RegionMesher;
+import com.archcraft.io.mesh.VoxelGrid;
+
+import org.bukkit.ChatColor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Exporter for binary STL format
+ * Triangles are streamed to the file as they are meshed, so memory use does not grow with
+ * the model. The triangle count in the header is filled in once the last band is written.
+ */
+public class StlExporter implements ModelExporter {
+    
+    private static final int HEADER_SIZE = 80;
+    
+    // Binary STL has no vertex sharing: each quad becomes two independent triangles
+    private static final int[][] QUAD_TRIANGLES = {{0, 1, 2}, {0, 2, 3}};
+    
+    // Unit normal of each face direction, indexed by axis * 2 + (positive ? 1 : 0)
+    private static final float[][] NORMALS = {
+            {-1, 0, 0}, {1, 0, 0}, {0, -1, 0}, {0, 1, 0}, {0, 0, -1}, {0, 0, 1}
+    };
+    
+    @Override
+    public void exportModel(ExportRegion region, File outputFile, ExportOptions options, ModelJob job)
+            throws IOException, UnsupportedOperationException {
+        
+        // Create directory if it doesn't exist
+        outputFile.getParentFile().mkdirs();
+        
+        try (ChannelWriter writer = new ChannelWriter(outputFile)) {
+            // The header must not start with "solid", or readers may take the file for ASCII STL
+            byte[] header = Arrays.copyOf(("ArchCraft binary STL, region [" + region.getMinX() + "," + region.getMinY()
+                    + "," + region.getMinZ() + "] to [" + region.getMaxX() + "," + region.getMaxY() + ","
+                    + region.getMaxZ() + "], scale " + options.getScale()).getBytes(StandardCharsets.US_ASCII), HEADER_SIZE);
+            writer.writeBytes(header);
+            writer.writeIntLE(0); // Triangle count, patched in at the end
+            
+            TriangleWriter triangles = new TriangleWriter(writer, region, options.getScale());
+            RegionMesher.mesh(region, new RegionMesher.MeshSink[]{triangles},
+                    Main.getInstance().getConfigManager().getExportMeshThreads(), job);
+            
+            if (triangles.getCount() > 0xFFFFFFFFL) {
+                throw new IOException("Too many triangles for STL: " + triangles.getCount());
+            }
+            writer.patchIntLE(HEADER_SIZE, (int) triangles.getCount());
+            job.sendMessage(ChatColor.GRAY + "Wrote " + triangles.getCount() + " triangles");
+        }
+    }
+    
+    @Override
+    public ModelFormat getFormat() {
+        return ModelFormat.STL;
+    }
+    
+    @Override
+    public boolean supportsFeature(ExportFeature feature) {
+        switch (feature) {
+            case HOLLOW_OPTIMIZATION:
+                return true;
+            case TEXTURES:
+            case MATERIALS:
+            case COLORS:
+            case METADATA:
+            case LOD_GENERATION:
+                return false;
+            default:
+                return false;
+        }
+    }
+    
+    /**
+     * Writes mesh buffers as 50-byte STL triangle records
+     */
+    private static class TriangleWriter implements RegionMesher.MeshSink {
+        private final ChannelWriter writer;
+        private final ExportRegion region;
+        private final double scale;
+        private float[] coordinates = new float[3 * 256];
+        private long count;
+        
+        TriangleWriter(ChannelWriter writer, ExportRegion region, double scale) {
+            this.writer = writer;
+            this.region = region;
+            this.scale = scale;
+        }
+        
+        @Override
+        public void write(MeshBuffer buffer, VoxelGrid grid) throws IOException {
+            // Convert each vertex once, as most are used by several triangles
+            int vertexCount = buffer.getVertexCount();
+            if (coordinates.length < vertexCount * 3) {
+                coordinates = new float[Math.max(vertexCount * 3, coordinates.length * 2)];
+            }
+            int offsetX = grid.getOriginX() - region.getMinX();
+            int offsetY = grid.getOriginY() - region.getMinY();
+            int offsetZ = grid.getOriginZ() - region.getMinZ();
+            for (int v = 0; v < vertexCount; v++) {
+                coordinates[v * 3] = (float) ((buffer.getVertexX(v) + offsetX) * scale);
+                coordinates[v * 3 + 1] = (float) ((buffer.getVertexY(v) + offsetY) * scale);
+                coordinates[v * 3 + 2] = (float) ((buffer.getVertexZ(v) + offsetZ) * scale);
+            }
+            
+            for (int q = 0; q < buffer.getQuadCount(); q++) {
+                float[] normal = NORMALS[buffer.getNormal(q)];
+                for (int[] triangle : QUAD_TRIANGLES) {
+                    writer.writeFloatLE(normal[0]).writeFloatLE(normal[1]).writeFloatLE(normal[2]);
+                    for (int corner : triangle) {
+                        int vertex = buffer.getCorner(q, corner) * 3;
+                        writer.writeFloatLE(coordinates[vertex])
+                                .writeFloatLE(coordinates[vertex + 1])
+                                .writeFloatLE(coordinates[vertex + 2]);
+                    }
+                    writer.writeShortLE(0); // Attribute byte count
+                }
+            }
+            count += buffer.getQuadCount() * 2L;
+        }
+        
+        long getCount() {
+            return count;
+        }
+    }
+}
\ No newline at end of file
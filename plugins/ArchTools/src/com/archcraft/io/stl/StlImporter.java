@@ -0,0 +1,380 @@
+package com.archcraft.io.stl;
+
+import com.archcraft.io.ModelFormat;
+import com.archcraft.io.ModelImporter;
+import com.archcraft.io.ModelInfo;
+import com.archcraft.io.job.ModelJob;
+import com.archcraft.io.voxel.Transform;
+import com.archcraft.io.voxel.TriangleBatch;
+import com.archcraft.io.voxel.VoxelModel;
+import com.archcraft.io.voxel.Voxelizer;
+
+import org.bukkit.ChatColor;
+import org.bukkit.Material;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Importer for binary and ASCII STL
+ * Binary files are memory mapped and their 50-byte triangle records are read straight from
+ * the mapping. ASCII files are read with a streaming tokenizer. Either way triangles go to
+ * the voxelizer in batches as they are read, so the mesh is never held in memory.
+ * STL has no materials, so every triangle becomes stone, like untextured OBJ faces.
+ */
+public class StlImporter implements ModelImporter {
+    
+    private static final int HEADER_SIZE = 80;
+    private static final int RECORD_SIZE = 50;
+    
+    // How often reading checks for cancellation, in triangles
+    private static final int CANCEL_CHECK_INTERVAL = 1 << 16;
+    
+    // Largest mapping, in whole records; larger files are mapped a window at a time
+    private static final long MAX_WINDOW_TRIANGLES = Integer.MAX_VALUE / RECORD_SIZE;
+    
+    @Override
+    public VoxelModel importModel(File file, Transform transform, ModelJob job)
+            throws IOException, UnsupportedOperationException {
+        
+        VoxelModel model = new VoxelModel();
+        TriangleBatch batch = new TriangleBatch(transform, new Voxelizer(model));
+        long triangles = read(file, corners -> batch.add(corners, Material.STONE), job);
+        batch.flush();
+        
+        if (batch.getSkipped() > 0) {
+            job.sendMessage(ChatColor.YELLOW + "Skipped " + batch.getSkipped() + " triangle(s) with invalid coordinates");
+        }
+        job.setProgress("Read " + triangles + " triangles");
+        return model;
+    }
+    
+    /**
+     * Count the triangles and find the bounds with one pass over the file
+     * The triangle count of a binary file is in its header; the bounds still need every vertex
+     */
+    @Override
+    public ModelInfo.Geometry describe(File file) throws IOException {
+        BoundsSink bounds = new BoundsSink();
+        long triangles = read(file, bounds, null);
+        if (triangles == 0) {
+            return new ModelInfo.Geometry(0, 0, 0, new double[3], new double[3], -1, false);
+        }
+        return new ModelInfo.Geometry(triangles * 3, triangles, triangles, bounds.min, bounds.max, -1, false);
+    }
+    
+    /**
+     * Read every triangle of a binary or ASCII file
+     * @param job The job to check for cancellation, or null
+     * @return The number of triangles read
+     */
+    private long read(File file, TriangleSink sink, ModelJob job) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long count = getBinaryTriangleCount(channel);
+            if (count >= 0) {
+                readBinary(channel, count, sink, job);
+                return count;
+            }
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            return readAscii(new Tokenizer(in), sink, job);
+        }
+    }
+    
+    /**
+     * Tell binary from ASCII STL
+     * Some exporters start binary headers with "solid" too, so a file is only taken for ASCII
+     * if it starts with "solid" and its size does not match the header's triangle count.
+     * @return The triangle count of a binary file, or -1 for ASCII
+     */
+    private static long getBinaryTriangleCount(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < HEADER_SIZE + 4) {
+            return size >= 5 ? -1 : 0;
+        }
+        
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + 4).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+            // Read the whole header
+        }
+        long count = header.getInt(HEADER_SIZE) & 0xFFFFFFFFL;
+        long records = (size - HEADER_SIZE - 4) / RECORD_SIZE;
+        if (HEADER_SIZE + 4 + count * RECORD_SIZE == size) {
+            return count;
+        }
+        
+        String start = new String(header.array(), 0, 5, StandardCharsets.US_ASCII);
+        if (start.equalsIgnoreCase("solid")) {
+            return -1;
+        }
+        // A binary file with a wrong count or trailing bytes; read the records that are there
+        return Math.min(count, records);
+    }
+    
+    private static void readBinary(FileChannel channel, long count, TriangleSink sink, ModelJob job) throws IOException {
+        double[] corners = new double[9];
+        for (long start = 0; start < count; start += MAX_WINDOW_TRIANGLES) {
+            int window = (int) Math.min(MAX_WINDOW_TRIANGLES, count - start);
+            ByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY,
+                    HEADER_SIZE + 4 + start * RECORD_SIZE, (long) window * RECORD_SIZE);
+            records.order(ByteOrder.LITTLE_ENDIAN);
+            
+            for (int t = 0; t < window; t++) {
+                if (job != null && t % CANCEL_CHECK_INTERVAL == 0) {
+                    job.checkCancelled();
+                    job.setProgress("Reading triangle " + (start + t) + "/" + count);
+                }
+                
+                // Skip the facet normal; it is implied by the winding
+                int offset = t * RECORD_SIZE + 12;
+                for (int i = 0; i < 9; i++) {
+                    corners[i] = records.getFloat(offset + i * 4);
+                }
+                sink.accept(corners);
+            }
+        }
+    }
+    
+    /**
+     * Read the facets of an ASCII file
+     * Facets with more than three vertices are split into a fan of triangles
+     */
+    private static long readAscii(Tokenizer tokens, TriangleSink sink, ModelJob job) throws IOException {
+        double[] corners = new double[9];
+        long triangles = 0;
+        int vertices = 0;
+        
+        while (tokens.next()) {
+            if (tokens.is("vertex")) {
+                // The first corner stays; each further vertex closes a triangle with the one before it
+                int slot = Math.min(vertices, 2) * 3;
+                if (vertices >= 3) {
+                    corners[3] = corners[6];
+                    corners[4] = corners[7];
+                    corners[5] = corners[8];
+                }
+                for (int axis = 0; axis < 3; axis++) {
+                    if (!tokens.next()) {
+                        throw new IOException("STL file ends inside a vertex");
+                    }
+                    corners[slot + axis] = tokens.number();
+                }
+                vertices++;
+                
+                if (vertices >= 3) {
+                    sink.accept(corners);
+                    triangles++;
+                    if (job != null && triangles % CANCEL_CHECK_INTERVAL == 0) {
+                        job.checkCancelled();
+                        job.setProgress("Reading triangle " + triangles);
+                    }
+                }
+            } else if (tokens.is("outer") || tokens.is("endloop")) {
+                vertices = 0;
+            } else if (tokens.is("solid") || tokens.is("endsolid")) {
+                // The name may be any text, including keywords
+                tokens.skipLine();
+            }
+        }
+        return triangles;
+    }
+    
+    @Override
+    public ModelFormat getFormat() {
+        return ModelFormat.STL;
+    }
+    
+    @Override
+    public boolean supportsFeature(ImportFeature feature) {
+        switch (feature) {
+            case SCALING:
+                return true;
+            case TEXTURES:
+            case MATERIALS:
+            case COLORS:
+            case ANIMATION:
+            case METADATA:
+                return false;
+            default:
+                return false;
+        }
+    }
+    
+    /**
+     * Receives triangles as nine coordinates; the array is reused for the next triangle
+     */
+    private interface TriangleSink {
+        void accept(double[] corners);
+    }
+    
+    /**
+     * Tracks the bounds of the triangles' corners
+     */
+    private static class BoundsSink implements TriangleSink {
+        private final double[] min = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+        private final double[] max = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        
+        @Override
+        public void accept(double[] corners) {
+            for (int i = 0; i < 9; i++) {
+                double value = corners[i];
+                if (!Double.isNaN(value) && !Double.isInfinite(value)) {
+                    min[i % 3] = Math.min(min[i % 3], value);
+                    max[i % 3] = Math.max(max[i % 3], value);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Splits a byte stream into whitespace separated tokens without allocating per token
+     */
+    private static class Tokenizer {
+        private final InputStream in;
+        private final byte[] buffer = new byte[1 << 16];
+        private int position;
+        private int limit;
+        private final byte[] token = new byte[64];
+        private int length;
+        
+        Tokenizer(InputStream in) {
+            this.in = in;
+        }
+        
+        /**
+         * Advance to the next token
+         * @return False at the end of the stream
+         */
+        boolean next() throws IOException {
+            int b;
+            do {
+                b = read();
+            } while (b >= 0 && b <= ' ');
+            if (b < 0) {
+                return false;
+            }
+            
+            // Overlong tokens are cut short; they are never keywords or valid numbers
+            length = 0;
+            while (b > ' ') {
+                if (length < token.length) {
+                    token[length++] = (byte) b;
+                }
+                b = read();
+            }
+            return true;
+        }
+        
+        /**
+         * Skip to the end of the current line
+         */
+        void skipLine() throws IOException {
+            int b;
+            do {
+                b = read();
+            } while (b >= 0 && b != '\n');
+        }
+        
+        /**
+         * Check the current token against a lower case keyword, ignoring case
+         */
+        boolean is(String keyword) {
+            if (length != keyword.length()) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if ((token[i] | 0x20) != keyword.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        /**
+         * Parse the current token as a number
+         * Plain decimals are parsed in place; anything else falls back to the JDK parser
+         */
+        double number() throws IOException {
+            int i = 0;
+            boolean negative = false;
+            if (i < length && (token[i] == '-' || token[i] == '+')) {
+                negative = token[i++] == '-';
+            }
+            
+            long mantissa = 0;
+            int digits = 0;
+            int scale = 0;
+            boolean dot = false;
+            for (; i < length; i++) {
+                byte c = token[i];
+                if (c >= '0' && c <= '9') {
+                    if (digits < 18) {
+                        mantissa = mantissa * 10 + (c - '0');
+                        digits += mantissa > 0 ? 1 : 0;
+                        scale -= dot ? 1 : 0;
+                    } else if (!dot) {
+                        scale++;
+                    }
+                } else if (c == '.' && !dot) {
+                    dot = true;
+                } else {
+                    break;
+                }
+            }
+            
+            int exponent = 0;
+            if (i < length && (token[i] == 'e' || token[i] == 'E')) {
+                i++;
+                boolean negativeExponent = false;
+                if (i < length && (token[i] == '-' || token[i] == '+')) {
+                    negativeExponent = token[i++] == '-';
+                }
+                int start = i;
+                for (; i < length && token[i] >= '0' && token[i] <= '9' && exponent < 10000; i++) {
+                    exponent = exponent * 10 + (token[i] - '0');
+                }
+                if (i == start) {
+                    i = -1;
+                }
+                exponent = negativeExponent ? -exponent : exponent;
+            }
+            
+            int power = scale + exponent;
+            if (i != length || Math.abs(power) > 22) {
+                try {
+                    return Double.parseDouble(new String(token, 0, length, StandardCharsets.US_ASCII));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid number in STL file: "
+                            + new String(token, 0, length, StandardCharsets.US_ASCII));
+                }
+            }
+            double value = power >= 0 ? mantissa * POWERS_OF_TEN[power] : mantissa / POWERS_OF_TEN[-power];
+            return negative ? -value : value;
+        }
+        
+        private int read() throws IOException {
+            if (position == limit) {
+                limit = in.read(buffer);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[position++] & 0xFF;
+        }
+    }
+    
+    // Exactly representable powers of ten, so one multiply or divide rounds correctly for short decimals
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+}
\ No newline at end of file
@@ -0,0 +1,327 @@
+package com.archcraft.io.voxel;
+
+import org.bukkit.Material;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps colors to the perceptually closest Minecraft block
+ * Block average colors are converted to CIELAB once and held in a k-d tree;
+ * results are cached per 24-bit color, so repeated lookups are a single map hit
+ */
+public class BlockPalette {
+    
+    private static final BlockPalette OPAQUE = createOpaquePalette();
+    private static final BlockPalette GLASS = createGlassPalette();
+    
+    private final List<Material> materials = new ArrayList<>();
+    private final List<Integer> colors = new ArrayList<>();
+    private final Map<Integer, Material> cache = new ConcurrentHashMap<>();
+    
+    // K-d tree over Lab colors, stored as parallel arrays in tree order
+    private float[] treeL;
+    private float[] treeA;
+    private float[] treeB;
+    private Material[] treeMaterials;
+    
+    private BlockPalette() {
+    }
+    
+    /**
+     * Get the palette of solid building blocks
+     * @return Opaque block palette
+     */
+    public static BlockPalette opaque() {
+        return OPAQUE;
+    }
+    
+    /**
+     * Get the palette of glass blocks, for transparent materials
+     * @return Glass block palette
+     */
+    public static BlockPalette glass() {
+        return GLASS;
+    }
+    
+    /**
+     * Find the block closest to an sRGB color
+     * @param r Red in range 0.0-1.0
+     * @param g Green in range 0.0-1.0
+     * @param b Blue in range 0.0-1.0
+     * @return The closest block material
+     */
+    public Material match(float r, float g, float b) {
+        int rgb = (toByte(r) << 16) | (toByte(g) << 8) | toByte(b);
+        return cache.computeIfAbsent(rgb, this::nearest);
+    }
+    
+    /**
+     * Get the average color of a block in this palette
+     * @param material The block material
+     * @return RGB color values [r, g, b] in range 0.0-1.0, or null if not in the palette
+     */
+    public float[] getColor(Material material) {
+        int index = materials.indexOf(material);
+        if (index < 0) {
+            return null;
+        }
+        int rgb = colors.get(index);
+        return new float[]{((rgb >> 16) & 0xFF) / 255f, ((rgb >> 8) & 0xFF) / 255f, (rgb & 0xFF) / 255f};
+    }
+    
+    private void add(Material material, int rgb) {
+        materials.add(material);
+        colors.add(rgb);
+    }
+    
+    /**
+     * Convert all block colors to Lab and build the k-d tree
+     */
+    private BlockPalette build() {
+        int count = materials.size();
+        float[][] lab = new float[count][];
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            int rgb = colors.get(i);
+            lab[i] = toLab(((rgb >> 16) & 0xFF) / 255f, ((rgb >> 8) & 0xFF) / 255f, (rgb & 0xFF) / 255f);
+            order[i] = i;
+        }
+        
+        treeL = new float[count];
+        treeA = new float[count];
+        treeB = new float[count];
+        treeMaterials = new Material[count];
+        buildTree(order, lab, 0, count, 0);
+        return this;
+    }
+    
+    /**
+     * Lay out the subtree for order[from, to) so its median sits at the middle index
+     */
+    private void buildTree(Integer[] order, float[][] lab, int from, int to, int depth) {
+        if (from >= to) {
+            return;
+        }
+        int axis = depth % 3;
+        Arrays.sort(order, from, to, (i, j) -> Float.compare(lab[i][axis], lab[j][axis]));
+        
+        int mid = (from + to) >>> 1;
+        int source = order[mid];
+        treeL[mid] = lab[source][0];
+        treeA[mid] = lab[source][1];
+        treeB[mid] = lab[source][2];
+        treeMaterials[mid] = materials.get(source);
+        
+        buildTree(order, lab, from, mid, depth + 1);
+        buildTree(order, lab, mid + 1, to, depth + 1);
+    }
+    
+    private Material nearest(int rgb) {
+        float[] lab = toLab(((rgb >> 16) & 0xFF) / 255f, ((rgb >> 8) & 0xFF) / 255f, (rgb & 0xFF) / 255f);
+        Nearest best = new Nearest();
+        search(lab, 0, treeL.length, 0, best);
+        return treeMaterials[best.index];
+    }
+    
+    private void search(float[] lab, int from, int to, int depth, Nearest best) {
+        if (from >= to) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        
+        float dl = lab[0] - treeL[mid];
+        float da = lab[1] - treeA[mid];
+        float db = lab[2] - treeB[mid];
+        float distance = dl * dl + da * da + db * db;
+        if (distance < best.distance) {
+            best.distance = distance;
+            best.index = mid;
+        }
+        
+        float split;
+        switch (depth % 3) {
+            case 0:
+                split = dl;
+                break;
+            case 1:
+                split = da;
+                break;
+            default:
+                split = db;
+                break;
+        }
+        
+        // Search the side containing the query first, then the other side only if it could be closer
+        if (split < 0) {
+            search(lab, from, mid, depth + 1, best);
+            if (split * split < best.distance) {
+                search(lab, mid + 1, to, depth + 1, best);
+            }
+        } else {
+            search(lab, mid + 1, to, depth + 1, best);
+            if (split * split < best.distance) {
+                search(lab, from, mid, depth + 1, best);
+            }
+        }
+    }
+    
+    /**
+     * Convert an sRGB color to CIELAB (D65 white point)
+     * @param r Red in range 0.0-1.0
+     * @param g Green in range 0.0-1.0
+     * @param b Blue in range 0.0-1.0
+     * @return Lab values [L, a, b]
+     */
+    public static float[] toLab(float r, float g, float b) {
+        double lr = linearize(r);
+        double lg = linearize(g);
+        double lb = linearize(b);
+        
+        double x = (lr * 0.4124564 + lg * 0.3575761 + lb * 0.1804375) / 0.95047;
+        double y = (lr * 0.2126729 + lg * 0.7151522 + lb * 0.0721750);
+        double z = (lr * 0.0193339 + lg * 0.1191920 + lb * 0.9503041) / 1.08883;
+        
+        double fx = labF(x);
+        double fy = labF(y);
+        double fz = labF(z);
+        
+        return new float[]{
+                (float) (116 * fy - 16),
+                (float) (500 * (fx - fy)),
+                (float) (200 * (fy - fz))
+        };
+    }
+    
+    private static double linearize(float c) {
+        return c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4);
+    }
+    
+    private static double labF(double t) {
+        return t > 216.0 / 24389.0 ? Math.cbrt(t) : (24389.0 / 27.0 * t + 16) / 116;
+    }
+    
+    private static int toByte(float c) {
+        return Math.max(0, Math.min(255, Math.round(c * 255)));
+    }
+    
+    private static BlockPalette createOpaquePalette() {
+        BlockPalette palette = new BlockPalette();
+        
+        // Concrete
+        palette.add(Material.WHITE_CONCRETE, 0xCFD5D6);
+        palette.add(Material.ORANGE_CONCRETE, 0xE06101);
+        palette.add(Material.MAGENTA_CONCRETE, 0xA9309F);
+        palette.add(Material.LIGHT_BLUE_CONCRETE, 0x2489C7);
+        palette.add(Material.YELLOW_CONCRETE, 0xF1AF15);
+        palette.add(Material.LIME_CONCRETE, 0x5EA918);
+        palette.add(Material.PINK_CONCRETE, 0xD6658F);
+        palette.add(Material.GRAY_CONCRETE, 0x373A3E);
+        palette.add(Material.LIGHT_GRAY_CONCRETE, 0x7D7D73);
+        palette.add(Material.CYAN_CONCRETE, 0x157788);
+        palette.add(Material.PURPLE_CONCRETE, 0x64209C);
+        palette.add(Material.BLUE_CONCRETE, 0x2D2F8F);
+        palette.add(Material.BROWN_CONCRETE, 0x603C20);
+        palette.add(Material.GREEN_CONCRETE, 0x495B24);
+        palette.add(Material.RED_CONCRETE, 0x8E2121);
+        palette.add(Material.BLACK_CONCRETE, 0x080A0F);
+        
+        // Terracotta
+        palette.add(Material.TERRACOTTA, 0x985E44);
+        palette.add(Material.WHITE_TERRACOTTA, 0xD2B2A1);
+        palette.add(Material.ORANGE_TERRACOTTA, 0xA25426);
+        palette.add(Material.MAGENTA_TERRACOTTA, 0x96586D);
+        palette.add(Material.LIGHT_BLUE_TERRACOTTA, 0x716D8A);
+        palette.add(Material.YELLOW_TERRACOTTA, 0xBA8523);
+        palette.add(Material.LIME_TERRACOTTA, 0x687635);
+        palette.add(Material.PINK_TERRACOTTA, 0xA24E4F);
+        palette.add(Material.GRAY_TERRACOTTA, 0x3A2A24);
+        palette.add(Material.LIGHT_GRAY_TERRACOTTA, 0x876B62);
+        palette.add(Material.CYAN_TERRACOTTA, 0x575B5B);
+        palette.add(Material.PURPLE_TERRACOTTA, 0x764656);
+        palette.add(Material.BLUE_TERRACOTTA, 0x4A3C5B);
+        palette.add(Material.BROWN_TERRACOTTA, 0x4D3324);
+        palette.add(Material.GREEN_TERRACOTTA, 0x4C532A);
+        palette.add(Material.RED_TERRACOTTA, 0x8F3D2F);
+        palette.add(Material.BLACK_TERRACOTTA, 0x251710);
+        
+        // Stone and masonry
+        palette.add(Material.STONE, 0x7E7E7E);
+        palette.add(Material.SMOOTH_STONE, 0x9F9F9F);
+        palette.add(Material.COBBLESTONE, 0x807F80);
+        palette.add(Material.STONE_BRICKS, 0x7A7A7A);
+        palette.add(Material.ANDESITE, 0x888889);
+        palette.add(Material.POLISHED_ANDESITE, 0x848786);
+        palette.add(Material.DIORITE, 0xBDBCBD);
+        palette.add(Material.POLISHED_DIORITE, 0xC1C1C3);
+        palette.add(Material.GRANITE, 0x956756);
+        palette.add(Material.POLISHED_GRANITE, 0x9A6B59);
+        palette.add(Material.BRICKS, 0x976253);
+        palette.add(Material.SANDSTONE, 0xD8CB9B);
+        palette.add(Material.SMOOTH_SANDSTONE, 0xE0D6AA);
+        palette.add(Material.RED_SANDSTONE, 0xBB631D);
+        palette.add(Material.QUARTZ_BLOCK, 0xECE6DF);
+        palette.add(Material.PRISMARINE, 0x639C97);
+        palette.add(Material.DARK_PRISMARINE, 0x335B4B);
+        palette.add(Material.NETHER_BRICKS, 0x2C151A);
+        palette.add(Material.RED_NETHER_BRICKS, 0x450709);
+        palette.add(Material.BLACKSTONE, 0x2A2429);
+        palette.add(Material.POLISHED_BLACKSTONE, 0x353038);
+        palette.add(Material.END_STONE_BRICKS, 0xDAE0A2);
+        palette.add(Material.PURPUR_BLOCK, 0xA97DA9);
+        palette.add(Material.OBSIDIAN, 0x0F0A18);
+        palette.add(Material.CLAY, 0xA0A6B3);
+        palette.add(Material.SNOW_BLOCK, 0xF9FEFE);
+        
+        // Wood
+        palette.add(Material.OAK_PLANKS, 0xA2834F);
+        palette.add(Material.SPRUCE_PLANKS, 0x735531);
+        palette.add(Material.BIRCH_PLANKS, 0xC0AF79);
+        palette.add(Material.JUNGLE_PLANKS, 0xA07351);
+        palette.add(Material.ACACIA_PLANKS, 0xA85A32);
+        palette.add(Material.DARK_OAK_PLANKS, 0x432B14);
+        
+        // Metal and misc
+        palette.add(Material.IRON_BLOCK, 0xDCDCDC);
+        palette.add(Material.GOLD_BLOCK, 0xF6D03D);
+        palette.add(Material.HAY_BLOCK, 0xA68826);
+        palette.add(Material.DIRT, 0x866043);
+        
+        return palette.build();
+    }
+    
+    private static BlockPalette createGlassPalette() {
+        BlockPalette palette = new BlockPalette();
+        
+        palette.add(Material.GLASS, 0xAFD5DB);
+        palette.add(Material.WHITE_STAINED_GLASS, 0xFFFFFF);
+        palette.add(Material.ORANGE_STAINED_GLASS, 0xD87F33);
+        palette.add(Material.MAGENTA_STAINED_GLASS, 0xB24CD8);
+        palette.add(Material.LIGHT_BLUE_STAINED_GLASS, 0x6699D8);
+        palette.add(Material.YELLOW_STAINED_GLASS, 0xE5E533);
+        palette.add(Material.LIME_STAINED_GLASS, 0x7FCC19);
+        palette.add(Material.PINK_STAINED_GLASS, 0xF27FA5);
+        palette.add(Material.GRAY_STAINED_GLASS, 0x4C4C4C);
+        palette.add(Material.LIGHT_GRAY_STAINED_GLASS, 0x999999);
+        palette.add(Material.CYAN_STAINED_GLASS, 0x4C7F99);
+        palette.add(Material.PURPLE_STAINED_GLASS, 0x7F3FB2);
+        palette.add(Material.BLUE_STAINED_GLASS, 0x334CB2);
+        palette.add(Material.BROWN_STAINED_GLASS, 0x664C33);
+        palette.add(Material.GREEN_STAINED_GLASS, 0x667F33);
+        palette.add(Material.RED_STAINED_GLASS, 0x993333);
+        palette.add(Material.BLACK_STAINED_GLASS, 0x191919);
+        
+        return palette.build();
+    }
+    
+    /**
+     * Best match found so far during a k-d tree search
+     */
+    private static class Nearest {
+        private float distance = Float.MAX_VALUE;
+        private int index;
+    }
+}
\ No newline at end of file
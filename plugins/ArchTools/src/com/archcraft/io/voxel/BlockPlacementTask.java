@@ -0,0 +1,183 @@
+package com.archcraft.io.voxel;
+
+import com.archcraft.io.job.ModelJob;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+
+/**
+ * Writes a voxel model into the world on the main thread
+ * Work is spread over ticks so that each tick stays within a block and time budget.
+ * Cells are placed chunk by chunk, and the blocks they replace are recorded in an undo journal.
+ */
+public class BlockPlacementTask extends BukkitRunnable {
+    
+    // Placement order key: [chunk X 16][chunk Z 16][y 9][local z 4][local x 4][palette 14]
+    private static final int PALETTE_BITS = 14;
+    private static final int CHUNK_OFFSET = 1 << 15;
+    
+    private final Plugin plugin;
+    private final ModelJob job;
+    private final World world;
+    private final int baseChunkX;
+    private final int baseChunkZ;
+    private final long[] cells;
+    private final Material[] palette;
+    private final UndoJournal.Writer journal;
+    private final int blocksPerTick;
+    private final long budgetNanos;
+    
+    private int index;
+    private long startTime;
+    
+    /**
+     * Create a new placement task
+     * @param plugin The plugin instance
+     * @param job The job this placement belongs to
+     * @param origin The origin location of the import
+     * @param cells Placement order created by {@link #createPlacementOrder}
+     * @param palette The model's material palette
+     * @param journal Journal to record replaced blocks in, or null
+     * @param blocksPerTick Max blocks to place per tick
+     * @param budgetMillis Max milliseconds to spend per tick
+     */
+    public BlockPlacementTask(Plugin plugin, ModelJob job, Location origin, long[] cells, List<Material> palette,
+                              UndoJournal.Writer journal, int blocksPerTick, int budgetMillis) {
+        this.plugin = plugin;
+        this.job = job;
+        this.world = origin.getWorld();
+        this.baseChunkX = origin.getBlockX() >> 4;
+        this.baseChunkZ = origin.getBlockZ() >> 4;
+        this.cells = cells;
+        this.palette = palette.toArray(new Material[0]);
+        this.journal = journal;
+        this.blocksPerTick = Math.max(1, blocksPerTick);
+        this.budgetNanos = Math.max(1, budgetMillis) * 1_000_000L;
+    }
+    
+    /**
+     * Sort a model's cells into chunk order for placement
+     * This is a full sort of the model, so call it off the main thread
+     * @param model The voxel model
+     * @param origin The origin location of the import
+     * @param maxHeight World height; cells outside the world are dropped
+     * @return Packed placement keys in placement order
+     */
+    public static long[] createPlacementOrder(VoxelModel model, Location origin, int maxHeight) {
+        int originX = origin.getBlockX();
+        int originY = origin.getBlockY();
+        int originZ = origin.getBlockZ();
+        int baseChunkX = originX >> 4;
+        int baseChunkZ = originZ >> 4;
+        
+        long[] keys = new long[model.size()];
+        int count = 0;
+        
+        for (int i = 0; i < model.size(); i++) {
+            int x = originX + model.getX(i);
+            int y = originY + model.getY(i);
+            int z = originZ + model.getZ(i);
+            if (y < 0 || y >= maxHeight) {
+                continue;
+            }
+            
+            long chunkX = (x >> 4) - baseChunkX + CHUNK_OFFSET;
+            long chunkZ = (z >> 4) - baseChunkZ + CHUNK_OFFSET;
+            keys[count++] = (chunkX << 47)
+                    | (chunkZ << 31)
+                    | ((long) UndoJournal.localIndex(x, y, z) << PALETTE_BITS)
+                    | model.getPaletteIndex(i);
+        }
+        
+        keys = Arrays.copyOf(keys, count);
+        Arrays.sort(keys);
+        return keys;
+    }
+    
+    /**
+     * Schedule the task to run every tick
+     */
+    public void start() {
+        startTime = System.currentTimeMillis();
+        runTaskTimer(plugin, 1L, 1L);
+    }
+    
+    @Override
+    public void run() {
+        if (job.isCancelled()) {
+            cancel();
+            finish(ModelJob.State.CANCELLED, ChatColor.YELLOW + "Job #" + job.getId()
+                    + " cancelled after placing " + index + " blocks");
+            return;
+        }
+        
+        long deadline = System.nanoTime() + budgetNanos;
+        int end = Math.min(cells.length, index + blocksPerTick);
+        
+        while (index < end) {
+            long key = cells[index];
+            int local = (int) (key >>> PALETTE_BITS) & 0x1FFFF;
+            int x = (((int) (key >>> 47) - CHUNK_OFFSET + baseChunkX) << 4) | (local & 15);
+            int z = (((int) (key >>> 31) & 0xFFFF) - CHUNK_OFFSET + baseChunkZ) << 4 | ((local >> 4) & 15);
+            int y = local >>> 8;
+            
+            Block block = world.getBlockAt(x, y, z);
+            if (journal != null) {
+                journal.record(x, y, z, block.getBlockData());
+            }
+            block.setType(palette[(int) (key & ((1 << PALETTE_BITS) - 1))], false);
+            index++;
+            
+            // Checking the clock is not free, so only do it every 256 blocks
+            if ((index & 0xFF) == 0 && System.nanoTime() > deadline) {
+                break;
+            }
+        }
+        
+        job.setProgress("Placing " + (cells.length == 0 ? 100 : index * 100L / cells.length) + "%");
+        
+        if (index >= cells.length) {
+            cancel();
+            double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
+            finish(ModelJob.State.COMPLETED, ChatColor.GREEN + "Job #" + job.getId() + ": placed " + index
+                    + " blocks in " + String.format("%.1f", seconds) + " seconds");
+        }
+    }
+    
+    /**
+     * Close the journal off the main thread, then finish the job
+     */
+    private void finish(ModelJob.State state, String message) {
+        if (journal == null) {
+            job.finish(state);
+            job.sendMessage(message);
+            return;
+        }
+        
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                journal.close();
+                job.sendMessage(message);
+                if (journal.getRecorded() > 0) {
+                    job.sendMessage(ChatColor.GRAY + "Use /project undo to revert this import");
+                }
+            } catch (IOException e) {
+                job.sendMessage(message);
+                job.sendMessage(ChatColor.RED + "Could not save undo journal: " + e.getMessage());
+                plugin.getLogger().log(Level.WARNING, "Could not write undo journal " + journal.getFile(), e);
+            }
+            job.finish(state);
+        });
+    }
+}
\ No newline at end of file
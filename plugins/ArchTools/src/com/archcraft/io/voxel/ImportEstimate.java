@@ -0,0 +1,178 @@
+package com.archcraft.io.voxel;
+
+import com.archcraft.io.ModelInfo;
+
+/**
+ * Cost of importing a model, estimated from its summary before any of it is parsed
+ * The model's bounds are moved through the import transform to get the size in blocks.
+ * Voxelizing keeps only surfaces, so the block count is estimated from the area of the
+ * transformed bounds, capped by their volume. Formats that store blocks give their own count,
+ * which is used instead.
+ */
+public class ImportEstimate {
+    
+    // Heap per parsed vertex (three doubles) and triangle (three corners and a material)
+    private static final long VERTEX_BYTES = 24;
+    private static final long TRIANGLE_BYTES = 16;
+    
+    // Heap per voxel: packed position, palette index and hash table slot, with growth headroom
+    private static final long VOXEL_BYTES = 32;
+    
+    // Buildings have floors and inner walls, so their surface is a few times that of their bounds
+    private static final int SURFACE_FACTOR = 3;
+    
+    private final long sizeX;
+    private final long sizeY;
+    private final long sizeZ;
+    private final long triangles;
+    private final long blocks;
+    private final long maxBlocks;
+    private final long memoryBytes;
+    
+    private ImportEstimate(long sizeX, long sizeY, long sizeZ, long vertices, long triangles, long storedBlocks,
+                           boolean meshHeld) {
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.triangles = triangles;
+        this.maxBlocks = saturatedMultiply(saturatedMultiply(sizeX, sizeY), sizeZ);
+        
+        if (storedBlocks >= 0) {
+            // Transforms only merge or spread stored blocks, so they never add any
+            this.blocks = Math.min(maxBlocks, storedBlocks);
+        } else {
+            long area = 2 * (saturatedMultiply(sizeX, sizeY) + saturatedMultiply(sizeY, sizeZ)
+                    + saturatedMultiply(sizeX, sizeZ));
+            this.blocks = Math.min(maxBlocks, saturatedMultiply(area, SURFACE_FACTOR));
+        }
+        
+        // Importers that parse the mesh whole still hold it while the model is voxelized
+        long mesh = meshHeld ? Math.max(0, vertices) * VERTEX_BYTES + Math.max(0, triangles) * TRIANGLE_BYTES : 0;
+        this.memoryBytes = mesh + saturatedMultiply(blocks, VOXEL_BYTES);
+    }
+    
+    /**
+     * Estimate an import from a model summary
+     * @param geometry The model's summary
+     * @param transform Transform from model coordinates to blocks
+     * @return The estimate
+     */
+    public static ImportEstimate of(ModelInfo.Geometry geometry, Transform transform) {
+        double[] min = geometry.getMin();
+        double[] max = geometry.getMax();
+        
+        // An affine transform maps the bounds into the box around its transformed corners
+        double[] xs = new double[8];
+        double[] ys = new double[8];
+        double[] zs = new double[8];
+        for (int i = 0; i < 8; i++) {
+            xs[i] = (i & 1) == 0 ? min[0] : max[0];
+            ys[i] = (i & 2) == 0 ? min[1] : max[1];
+            zs[i] = (i & 4) == 0 ? min[2] : max[2];
+        }
+        transform.apply(xs, ys, zs, 8);
+        
+        // Voxel models have at most 21 bits per coordinate, which also keeps the products in range
+        long limit = 1L << 21;
+        return new ImportEstimate(blockSpan(xs, limit), blockSpan(ys, limit), blockSpan(zs, limit),
+                geometry.getVertexCount(), geometry.getTriangleCount(), geometry.getBlockCount(),
+                geometry.isMeshHeld());
+    }
+    
+    /**
+     * Describe an import whose model is already voxelized, such as one loaded from the cache
+     * @param model The voxelized model
+     * @return The estimate, with the model's exact size and block count
+     */
+    public static ImportEstimate of(VoxelModel model) {
+        return new ImportEstimate(model.getMaxX() - model.getMinX() + 1L, model.getMaxY() - model.getMinY() + 1L,
+                model.getMaxZ() - model.getMinZ() + 1L, -1, -1, model.size(), false);
+    }
+    
+    private static long blockSpan(double[] values, long limit) {
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        for (double value : values) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        double span = Math.floor(max) - Math.floor(min) + 1;
+        return Double.isNaN(span) ? limit : (long) Math.min(limit, span);
+    }
+    
+    private static long saturatedMultiply(long a, long b) {
+        return b != 0 && a > Long.MAX_VALUE / b ? Long.MAX_VALUE : a * b;
+    }
+    
+    /**
+     * Check the estimate against the import limits
+     * @param maxBlocks Blocks above which imports are refused (0 for unlimited)
+     * @param confirmBlocks Blocks above which imports need confirmation (0 for never)
+     * @param maxMemoryBytes Memory above which imports are refused (0 for unlimited)
+     * @param confirmed Whether the player confirmed a large import
+     * @return Why the import may not start, or null if it may
+     */
+    public String checkLimits(long maxBlocks, long confirmBlocks, long maxMemoryBytes, boolean confirmed) {
+        if (maxBlocks > 0 && blocks > maxBlocks) {
+            return "Model too large: about " + blocks + " blocks (limit " + maxBlocks + "). Try a smaller scale.";
+        }
+        if (maxMemoryBytes > 0 && memoryBytes > maxMemoryBytes) {
+            return "Model too large: importing it would need about " + memoryBytes / (1024 * 1024)
+                    + " MB (limit " + maxMemoryBytes / (1024 * 1024) + " MB). Try a smaller scale.";
+        }
+        if (confirmBlocks > 0 && blocks > confirmBlocks && !confirmed) {
+            return "This import would place about " + blocks + " blocks. Add --confirm to import it anyway.";
+        }
+        return null;
+    }
+    
+    /**
+     * Describe the estimate for chat
+     * @return Size, triangles, blocks and memory
+     */
+    public String describe() {
+        return sizeX + " x " + sizeY + " x " + sizeZ + " blocks"
+                + (triangles >= 0 ? ", " + triangles + " triangles" : "")
+                + ", about " + blocks + " blocks placed, " + Math.max(1, memoryBytes / (1024 * 1024)) + " MB";
+    }
+    
+    public long getSizeX() {
+        return sizeX;
+    }
+    
+    public long getSizeY() {
+        return sizeY;
+    }
+    
+    public long getSizeZ() {
+        return sizeZ;
+    }
+    
+    public long getTriangles() {
+        return triangles;
+    }
+    
+    /**
+     * Get the estimated number of blocks the import places
+     * @return Estimated blocks
+     */
+    public long getBlocks() {
+        return blocks;
+    }
+    
+    /**
+     * Get the most blocks the import could place, if the bounds were solid
+     * @return Volume of the transformed bounds in blocks
+     */
+    public long getMaxBlocks() {
+        return maxBlocks;
+    }
+    
+    /**
+     * Get the estimated peak memory of the import
+     * @return Estimated bytes
+     */
+    public long getMemoryBytes() {
+        return memoryBytes;
+    }
+}
\ No newline at end of file
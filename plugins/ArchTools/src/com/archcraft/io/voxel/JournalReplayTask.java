@@ -0,0 +1,130 @@
+package com.archcraft.io.voxel;
+
+import com.archcraft.io.job.ModelJob;
+
+import org.bukkit.ChatColor;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.io.File;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Restores the blocks recorded in an undo journal on the main thread
+ * Chunk records are decoded on a worker thread and handed over through a bounded queue;
+ * placement uses the same per-tick block and time budget as imports
+ */
+public class JournalReplayTask extends BukkitRunnable {
+    
+    /**
+     * Marker put on the queue after the last record
+     */
+    public static final UndoJournal.ChunkRecord END = new UndoJournal.ChunkRecord(0, 0, new int[0], new BlockData[0]);
+    
+    private final ModelJob job;
+    private final World world;
+    private final BlockingQueue<UndoJournal.ChunkRecord> records;
+    private final File journalFile;
+    private final int blocksPerTick;
+    private final long budgetNanos;
+    
+    private UndoJournal.ChunkRecord current;
+    private int position;
+    private long restored;
+    private long startTime;
+    private volatile String failure;
+    
+    /**
+     * Create a new replay task
+     * @param job The undo job
+     * @param world The world to restore blocks in
+     * @param records Queue of decoded chunk records, terminated by {@link #END}
+     * @param journalFile The journal file, deleted once fully replayed
+     * @param blocksPerTick Max blocks to restore per tick
+     * @param budgetMillis Max milliseconds to spend per tick
+     */
+    public JournalReplayTask(ModelJob job, World world, BlockingQueue<UndoJournal.ChunkRecord> records,
+                             File journalFile, int blocksPerTick, int budgetMillis) {
+        this.job = job;
+        this.world = world;
+        this.records = records;
+        this.journalFile = journalFile;
+        this.blocksPerTick = Math.max(1, blocksPerTick);
+        this.budgetNanos = Math.max(1, budgetMillis) * 1_000_000L;
+        this.startTime = System.currentTimeMillis();
+    }
+    
+    /**
+     * Stop replaying because the journal could not be decoded; called from the worker thread
+     * @param reason What went wrong
+     */
+    public void fail(String reason) {
+        failure = reason;
+    }
+    
+    @Override
+    public void run() {
+        if (failure != null) {
+            cancel();
+            job.finish(ModelJob.State.FAILED);
+            job.sendMessage(ChatColor.RED + "Undo #" + job.getId() + " failed after restoring " + restored
+                    + " blocks: " + failure + "; the journal was kept");
+            return;
+        }
+        if (job.getState().isFinished()) {
+            cancel();
+            return;
+        }
+        if (job.isCancelled()) {
+            cancel();
+            job.finish(ModelJob.State.CANCELLED);
+            job.sendMessage(ChatColor.YELLOW + "Undo #" + job.getId() + " cancelled after restoring " + restored
+                    + " blocks; the journal was kept");
+            return;
+        }
+        
+        long deadline = System.nanoTime() + budgetNanos;
+        int budget = blocksPerTick;
+        
+        while (budget > 0) {
+            if (current == null || position >= current.size()) {
+                current = records.poll();
+                position = 0;
+                if (current == null) {
+                    // Worker has not decoded the next record yet
+                    break;
+                }
+                if (current == END) {
+                    complete();
+                    return;
+                }
+            }
+            
+            int end = Math.min(current.size(), position + budget);
+            for (int i = position; i < end; i++) {
+                world.getBlockAt(current.getX(i), current.getY(i), current.getZ(i))
+                        .setBlockData(current.getState(i), false);
+            }
+            budget -= end - position;
+            restored += end - position;
+            position = end;
+            
+            if (System.nanoTime() > deadline) {
+                break;
+            }
+        }
+        
+        job.setProgress("Restored " + restored + " blocks");
+    }
+    
+    private void complete() {
+        cancel();
+        journalFile.delete();
+        job.finish(ModelJob.State.COMPLETED);
+        
+        double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
+        job.sendMessage(ChatColor.GREEN + "Undo #" + job.getId() + ": restored " + restored + " blocks in "
+                + String.format("%.1f", seconds) + " seconds");
+    }
+}
\ No newline at end of file
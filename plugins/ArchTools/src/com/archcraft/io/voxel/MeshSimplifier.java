@@ -0,0 +1,147 @@
+package com.archcraft.io.voxel;
+
+import com.archcraft.io.job.ModelJob;
+
+/**
+ * Reduces a mesh to the detail the voxel grid can show, before voxelizing
+ * Uses vertex clustering: vertices are binned into a grid finer than one block, each
+ * occupied cell is replaced by the average of its vertices, and triangles that duplicate
+ * another triangle are dropped. Triangles that collapse are kept as a degenerate segment or
+ * point, since the voxelizer draws edges and thin features would otherwise disappear.
+ * Isolated vertices keep their exact position.
+ */
+public class MeshSimplifier {
+    
+    // Grid cells per block; vertices move at most half a cell diagonal
+    public static final int CELLS_PER_BLOCK = 2;
+    
+    private static final int COORD_BITS = 21;
+    private static final long COORD_MASK = (1L << COORD_BITS) - 1;
+    private static final int CANCEL_CHECK_INTERVAL = 65536;
+    
+    private MeshSimplifier() {
+    }
+    
+    /**
+     * Simplify a mesh by vertex clustering
+     * @param mesh The mesh, in block units
+     * @param job The job running the import, checked for cancellation
+     * @return The simplified mesh, or the input mesh if nothing could be removed
+     */
+    public static TriangleMesh simplify(TriangleMesh mesh, ModelJob job) {
+        int vertexCount = mesh.getVertexCount();
+        
+        // Assign every vertex to a cluster through a primitive open-addressing table
+        int[] clusterOf = new int[vertexCount];
+        long[] keys = new long[tableSizeFor(vertexCount)];
+        int[] slots = new int[keys.length];
+        int mask = keys.length - 1;
+        double[] sums = new double[Math.max(3, vertexCount * 3)];
+        int[] counts = new int[Math.max(1, vertexCount)];
+        int clusters = 0;
+        
+        for (int i = 0; i < vertexCount; i++) {
+            if ((i & (CANCEL_CHECK_INTERVAL - 1)) == 0) {
+                job.checkCancelled();
+            }
+            
+            double x = mesh.getX(i);
+            double y = mesh.getY(i);
+            double z = mesh.getZ(i);
+            double cellX = Math.floor(x * CELLS_PER_BLOCK);
+            double cellY = Math.floor(y * CELLS_PER_BLOCK);
+            double cellZ = Math.floor(z * CELLS_PER_BLOCK);
+            if (!inRange(cellX) || !inRange(cellY) || !inRange(cellZ)) {
+                // Too large for packed cell keys; voxelize the mesh as it is
+                return mesh;
+            }
+            long key = pack((long) cellX, (long) cellY, (long) cellZ);
+            
+            int slot = hash(key) & mask;
+            while (slots[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (slots[slot] == 0) {
+                keys[slot] = key;
+                slots[slot] = ++clusters;
+            }
+            
+            int cluster = slots[slot] - 1;
+            clusterOf[i] = cluster;
+            sums[cluster * 3] += x;
+            sums[cluster * 3 + 1] += y;
+            sums[cluster * 3 + 2] += z;
+            counts[cluster]++;
+        }
+        
+        TriangleMesh result = new TriangleMesh(clusters, mesh.getTriangleCount());
+        for (int c = 0; c < clusters; c++) {
+            result.addVertex(sums[c * 3] / counts[c], sums[c * 3 + 1] / counts[c], sums[c * 3 + 2] / counts[c]);
+        }
+        
+        // Drop duplicates when cluster ids fit a packed key
+        boolean dedupe = clusters <= COORD_MASK;
+        long[] seen = dedupe ? new long[tableSizeFor(mesh.getTriangleCount())] : null;
+        int seenMask = dedupe ? seen.length - 1 : 0;
+        
+        for (int t = 0; t < mesh.getTriangleCount(); t++) {
+            if ((t & (CANCEL_CHECK_INTERVAL - 1)) == 0) {
+                job.checkCancelled();
+            }
+            
+            int a = clusterOf[mesh.getCorner(t, 0)];
+            int b = clusterOf[mesh.getCorner(t, 1)];
+            int c = clusterOf[mesh.getCorner(t, 2)];
+            int min = Math.min(a, Math.min(b, c));
+            int max = Math.max(a, Math.max(b, c));
+            boolean collapsed = a == b || b == c || a == c;
+            if (collapsed) {
+                // Keep the surviving edge, or the point if all corners met, in one canonical form
+                a = min;
+                b = max;
+                c = max;
+            }
+            
+            if (dedupe) {
+                // Order-independent key; stored +1 so zero marks an empty slot
+                int mid = a + b + c - min - max;
+                long key = pack(min, mid, max) + 1;
+                
+                int slot = hash(key) & seenMask;
+                while (seen[slot] != 0 && seen[slot] != key) {
+                    slot = (slot + 1) & seenMask;
+                }
+                if (seen[slot] == key) {
+                    continue;
+                }
+                seen[slot] = key;
+            }
+            
+            result.addTriangle(a, b, c, mesh.getMaterial(t));
+        }
+        
+        if (result.getTriangleCount() == mesh.getTriangleCount() && clusters == vertexCount) {
+            return mesh;
+        }
+        return result;
+    }
+    
+    private static boolean inRange(double cell) {
+        return cell >= -(1 << (COORD_BITS - 1)) && cell < (1 << (COORD_BITS - 1));
+    }
+    
+    private static long pack(long x, long y, long z) {
+        return ((x & COORD_MASK) << (2 * COORD_BITS))
+                | ((y & COORD_MASK) << COORD_BITS)
+                | (z & COORD_MASK);
+    }
+    
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+    
+    private static int tableSizeFor(int capacity) {
+        return Integer.highestOneBit(Math.max(capacity * 2 - 1, 16)) * 2;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,161 @@
+package com.archcraft.io.voxel;
+
+/**
+ * Affine transform from model coordinates to block coordinates
+ * Stored as the top three rows of a 4x4 matrix; the bottom row is always (0, 0, 0, 1).
+ * Transforms are immutable and are combined with {@link #then(Transform)}.
+ */
+public final class Transform {
+    
+    private static final Transform IDENTITY = new Transform(
+            1, 0, 0, 0,
+            0, 1, 0, 0,
+            0, 0, 1, 0);
+    
+    private final double m00, m01, m02, m03;
+    private final double m10, m11, m12, m13;
+    private final double m20, m21, m22, m23;
+    
+    private Transform(double m00, double m01, double m02, double m03,
+                      double m10, double m11, double m12, double m13,
+                      double m20, double m21, double m22, double m23) {
+        this.m00 = m00;
+        this.m01 = m01;
+        this.m02 = m02;
+        this.m03 = m03;
+        this.m10 = m10;
+        this.m11 = m11;
+        this.m12 = m12;
+        this.m13 = m13;
+        this.m20 = m20;
+        this.m21 = m21;
+        this.m22 = m22;
+        this.m23 = m23;
+    }
+    
+    public static Transform identity() {
+        return IDENTITY;
+    }
+    
+    /**
+     * Create a scale transform; negative factors mirror along that axis
+     * @param x X scale factor
+     * @param y Y scale factor
+     * @param z Z scale factor
+     * @return The transform
+     */
+    public static Transform scale(double x, double y, double z) {
+        return new Transform(
+                x, 0, 0, 0,
+                0, y, 0, 0,
+                0, 0, z, 0);
+    }
+    
+    /**
+     * Create a rotation around the X axis
+     * @param degrees Rotation in degrees
+     * @return The transform
+     */
+    public static Transform rotationX(double degrees) {
+        double cos = Math.cos(Math.toRadians(degrees));
+        double sin = Math.sin(Math.toRadians(degrees));
+        return new Transform(
+                1, 0, 0, 0,
+                0, cos, -sin, 0,
+                0, sin, cos, 0);
+    }
+    
+    /**
+     * Create a rotation around the Y axis (x' = x cos + z sin, z' = -x sin + z cos)
+     * @param degrees Rotation in degrees
+     * @return The transform
+     */
+    public static Transform rotationY(double degrees) {
+        double cos = Math.cos(Math.toRadians(degrees));
+        double sin = Math.sin(Math.toRadians(degrees));
+        return new Transform(
+                cos, 0, sin, 0,
+                0, 1, 0, 0,
+                -sin, 0, cos, 0);
+    }
+    
+    /**
+     * Create a rotation around the Z axis
+     * @param degrees Rotation in degrees
+     * @return The transform
+     */
+    public static Transform rotationZ(double degrees) {
+        double cos = Math.cos(Math.toRadians(degrees));
+        double sin = Math.sin(Math.toRadians(degrees));
+        return new Transform(
+                cos, -sin, 0, 0,
+                sin, cos, 0, 0,
+                0, 0, 1, 0);
+    }
+    
+    /**
+     * Create a translation
+     * @param x X offset
+     * @param y Y offset
+     * @param z Z offset
+     * @return The transform
+     */
+    public static Transform translation(double x, double y, double z) {
+        return new Transform(
+                1, 0, 0, x,
+                0, 1, 0, y,
+                0, 0, 1, z);
+    }
+    
+    /**
+     * Combine this transform with one applied after it
+     * @param next The transform to apply after this one
+     * @return The combined transform
+     */
+    public Transform then(Transform next) {
+        return new Transform(
+                next.m00 * m00 + next.m01 * m10 + next.m02 * m20,
+                next.m00 * m01 + next.m01 * m11 + next.m02 * m21,
+                next.m00 * m02 + next.m01 * m12 + next.m02 * m22,
+                next.m00 * m03 + next.m01 * m13 + next.m02 * m23 + next.m03,
+                next.m10 * m00 + next.m11 * m10 + next.m12 * m20,
+                next.m10 * m01 + next.m11 * m11 + next.m12 * m21,
+                next.m10 * m02 + next.m11 * m12 + next.m12 * m22,
+                next.m10 * m03 + next.m11 * m13 + next.m12 * m23 + next.m13,
+                next.m20 * m00 + next.m21 * m10 + next.m22 * m20,
+                next.m20 * m01 + next.m21 * m11 + next.m22 * m21,
+                next.m20 * m02 + next.m21 * m12 + next.m22 * m22,
+                next.m20 * m03 + next.m21 * m13 + next.m22 * m23 + next.m23);
+    }
+    
+    /**
+     * Transform vertices in place
+     * The loop body is branch-free over separate coordinate arrays so the JIT can vectorize it
+     * @param xs X coordinates
+     * @param ys Y coordinates
+     * @param zs Z coordinates
+     * @param count Number of vertices
+     */
+    public void apply(double[] xs, double[] ys, double[] zs, int count) {
+        // Locals keep the matrix in registers for the whole loop
+        double a00 = m00, a01 = m01, a02 = m02, a03 = m03;
+        double a10 = m10, a11 = m11, a12 = m12, a13 = m13;
+        double a20 = m20, a21 = m21, a22 = m22, a23 = m23;
+        
+        for (int i = 0; i < count; i++) {
+            double x = xs[i];
+            double y = ys[i];
+            double z = zs[i];
+            xs[i] = a00 * x + a01 * y + a02 * z + a03;
+            ys[i] = a10 * x + a11 * y + a12 * z + a13;
+            zs[i] = a20 * x + a21 * y + a22 * z + a23;
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return "[" + m00 + ", " + m01 + ", " + m02 + ", " + m03
+                + "; " + m10 + ", " + m11 + ", " + m12 + ", " + m13
+                + "; " + m20 + ", " + m21 + ", " + m22 + ", " + m23 + "]";
+    }
+}
\ No newline at end of file
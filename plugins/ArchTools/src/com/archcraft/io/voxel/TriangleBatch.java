@@ -0,0 +1,89 @@
+package com.archcraft.io.voxel;
+
+import org.bukkit.Material;
+
+/**
+ * Collects triangles as they are read, then transforms and voxelizes them a batch at a time
+ * For importers that stream geometry instead of building a {@link TriangleMesh}.
+ */
+public class TriangleBatch {
+    
+    // Triangles transformed at once before they are voxelized
+    private static final int BATCH_TRIANGLES = 4096;
+    
+    private final Transform transform;
+    private final Voxelizer voxelizer;
+    private final double[] xs = new double[BATCH_TRIANGLES * 3];
+    private final double[] ys = new double[BATCH_TRIANGLES * 3];
+    private final double[] zs = new double[BATCH_TRIANGLES * 3];
+    private final Material[] materials = new Material[BATCH_TRIANGLES];
+    private int count;
+    private long added;
+    private long skipped;
+    
+    /**
+     * Create a batch
+     * @param transform Transform from model coordinates to blocks
+     * @param voxelizer The voxelizer to pass transformed triangles to
+     */
+    public TriangleBatch(Transform transform, Voxelizer voxelizer) {
+        this.transform = transform;
+        this.voxelizer = voxelizer;
+    }
+    
+    /**
+     * Add a triangle in model coordinates
+     * Triangles with a NaN or infinite coordinate are skipped.
+     * @param corners The corners as x1, y1, z1, x2, ..., z3; the array may be reused afterwards
+     * @param material The material to use
+     */
+    public void add(double[] corners, Material material) {
+        for (int i = 0; i < 9; i++) {
+            if (Double.isNaN(corners[i]) || Double.isInfinite(corners[i])) {
+                skipped++;
+                return;
+            }
+        }
+        
+        int vertex = count * 3;
+        for (int i = 0; i < 3; i++) {
+            xs[vertex + i] = corners[i * 3];
+            ys[vertex + i] = corners[i * 3 + 1];
+            zs[vertex + i] = corners[i * 3 + 2];
+        }
+        materials[count] = material;
+        added++;
+        if (++count == BATCH_TRIANGLES) {
+            flush();
+        }
+    }
+    
+    /**
+     * Voxelize the triangles added since the last flush
+     */
+    public void flush() {
+        transform.apply(xs, ys, zs, count * 3);
+        for (int t = 0; t < count; t++) {
+            int v = t * 3;
+            voxelizer.addTriangle(xs[v], ys[v], zs[v], xs[v + 1], ys[v + 1], zs[v + 1],
+                    xs[v + 2], ys[v + 2], zs[v + 2], materials[t]);
+        }
+        count = 0;
+    }
+    
+    /**
+     * Get the number of triangles added
+     * @return Triangles added, not counting skipped ones
+     */
+    public long getAdded() {
+        return added;
+    }
+    
+    /**
+     * Get the number of triangles skipped for invalid coordinates
+     * @return Skipped triangles
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,125 @@
+package com.archcraft.io.voxel;
+
+import java.util.Arrays;
+
+/**
+ * Indexed triangle mesh held in primitive arrays
+ * Vertex coordinates are stored in separate x, y and z arrays so transforms run as a flat
+ * loop; each triangle has three vertex indices and a material index chosen by the importer.
+ */
+public class TriangleMesh {
+    
+    private double[] xs;
+    private double[] ys;
+    private double[] zs;
+    private int vertexCount;
+    private int[] triangles;
+    private int[] materials;
+    private int triangleCount;
+    
+    /**
+     * Create an empty mesh
+     */
+    public TriangleMesh() {
+        this(1024, 1024);
+    }
+    
+    /**
+     * Create an empty mesh
+     * @param expectedVertices Expected number of vertices
+     * @param expectedTriangles Expected number of triangles
+     */
+    public TriangleMesh(int expectedVertices, int expectedTriangles) {
+        this.xs = new double[Math.max(16, expectedVertices)];
+        this.ys = new double[xs.length];
+        this.zs = new double[xs.length];
+        this.triangles = new int[Math.max(16, expectedTriangles) * 3];
+        this.materials = new int[Math.max(16, expectedTriangles)];
+    }
+    
+    /**
+     * Add a vertex
+     * @param x X coordinate
+     * @param y Y coordinate
+     * @param z Z coordinate
+     * @return Index of the new vertex
+     */
+    public int addVertex(double x, double y, double z) {
+        if (vertexCount == xs.length) {
+            xs = Arrays.copyOf(xs, vertexCount * 2);
+            ys = Arrays.copyOf(ys, vertexCount * 2);
+            zs = Arrays.copyOf(zs, vertexCount * 2);
+        }
+        xs[vertexCount] = x;
+        ys[vertexCount] = y;
+        zs[vertexCount] = z;
+        return vertexCount++;
+    }
+    
+    /**
+     * Add a triangle
+     * @param a First vertex index
+     * @param b Second vertex index
+     * @param c Third vertex index
+     * @param material Material index, or -1 for none
+     */
+    public void addTriangle(int a, int b, int c, int material) {
+        if (triangleCount == materials.length) {
+            triangles = Arrays.copyOf(triangles, triangles.length * 2);
+            materials = Arrays.copyOf(materials, materials.length * 2);
+        }
+        int offset = triangleCount * 3;
+        triangles[offset] = a;
+        triangles[offset + 1] = b;
+        triangles[offset + 2] = c;
+        materials[triangleCount] = material;
+        triangleCount++;
+    }
+    
+    /**
+     * Transform all vertices in place, once per vertex rather than once per triangle corner
+     * @param transform The transform to apply
+     */
+    public void transform(Transform transform) {
+        transform.apply(xs, ys, zs, vertexCount);
+    }
+    
+    public int getVertexCount() {
+        return vertexCount;
+    }
+    
+    public int getTriangleCount() {
+        return triangleCount;
+    }
+    
+    public double getX(int vertex) {
+        return xs[vertex];
+    }
+    
+    public double getY(int vertex) {
+        return ys[vertex];
+    }
+    
+    public double getZ(int vertex) {
+        return zs[vertex];
+    }
+    
+    /**
+     * Get a corner of a triangle
+     * @param triangle Triangle index
+     * @param corner Corner (0-2)
+     * @return Vertex index
+     */
+    public int getCorner(int triangle, int corner) {
+        return triangles[triangle * 3 + corner];
+    }
+    
+    /**
+     * Get the material of a triangle
+     * @param triangle Triangle index
+     * @return Material index, or -1 for none
+     */
+    public int getMaterial(int triangle) {
+        return materials[triangle];
+    }
+}
\ No newline at end of file
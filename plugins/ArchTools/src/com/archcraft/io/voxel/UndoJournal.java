@@ -0,0 +1,440 @@
+package com.archcraft.io.voxel;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * On-disk journal of the block states overwritten by an edit, used to undo it
+ *
+ * The journal is a sequence of chunk records. Each record holds a palette of the
+ * previous block states in that chunk, the delta-encoded positions of the changed
+ * cells, and run-length encoded palette indices. Records are encoded on the main
+ * thread as placement moves from chunk to chunk and written to disk on a background thread.
+ */
+public class UndoJournal {
+    
+    public static final String EXTENSION = ".journal";
+    
+    private static final int MAGIC = 0x41434A31; // "ACJ1"
+    private static final int RECORD_CHUNK = 1;
+    private static final int RECORD_END = 0;
+    
+    private UndoJournal() {
+    }
+    
+    /**
+     * Get the local index of a cell within its chunk column
+     * @param x World X
+     * @param y World Y
+     * @param z World Z
+     * @return Local index (y, z, x order)
+     */
+    public static int localIndex(int x, int y, int z) {
+        return (y << 8) | ((z & 15) << 4) | (x & 15);
+    }
+    
+    /**
+     * List the finished journals in a directory, newest first
+     * @param directory The journal directory
+     * @return Journal files, newest first
+     */
+    public static List<File> listJournals(File directory) {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (files == null) {
+            return new ArrayList<>();
+        }
+        
+        List<File> journals = new ArrayList<>(Arrays.asList(files));
+        journals.sort(Comparator.comparingLong(File::lastModified).reversed());
+        return journals;
+    }
+    
+    /**
+     * Delete the oldest journals in a directory
+     * @param directory The journal directory
+     * @param keep Number of journals to keep
+     */
+    public static void pruneJournals(File directory, int keep) {
+        List<File> journals = listJournals(directory);
+        for (int i = Math.max(0, keep); i < journals.size(); i++) {
+            journals.get(i).delete();
+        }
+    }
+    
+    /**
+     * Writes a journal while an edit is being applied
+     */
+    public static class Writer implements Closeable {
+        private final File file;
+        private final File partFile;
+        private final OutputStream out;
+        private final ExecutorService ioThread;
+        
+        private boolean chunkOpen;
+        private int chunkX;
+        private int chunkZ;
+        private final Map<BlockData, Integer> palette = new HashMap<>();
+        private final List<BlockData> paletteOrder = new ArrayList<>();
+        private int[] locals = new int[4096];
+        private int[] indices = new int[4096];
+        private int count;
+        private long recorded;
+        private volatile IOException writeError;
+        
+        /**
+         * Create a journal file for an edit
+         * The file is written as a ".part" and only renamed into place when closed
+         * @param file The journal file
+         * @param world The world being edited
+         * @param description Description of the edit
+         * @throws IOException If the file could not be created
+         */
+        public Writer(File file, World world, String description) throws IOException {
+            this.file = file;
+            this.partFile = new File(file.getPath() + ".part");
+            file.getParentFile().mkdirs();
+            
+            this.out = new BufferedOutputStream(new FileOutputStream(partFile), 1 << 16);
+            this.ioThread = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ArchTools-Journal");
+                thread.setDaemon(true);
+                return thread;
+            });
+            
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(header);
+            data.writeInt(MAGIC);
+            data.writeLong(world.getUID().getMostSignificantBits());
+            data.writeLong(world.getUID().getLeastSignificantBits());
+            data.writeUTF(description);
+            submit(header.toByteArray());
+        }
+        
+        /**
+         * Record the previous state of a cell before it is overwritten
+         * Cells should arrive grouped by chunk for a compact journal
+         * @param x World X
+         * @param y World Y
+         * @param z World Z
+         * @param previous The block state being replaced
+         */
+        public void record(int x, int y, int z, BlockData previous) {
+            int cx = x >> 4;
+            int cz = z >> 4;
+            if (!chunkOpen || cx != chunkX || cz != chunkZ) {
+                flushChunk();
+                chunkOpen = true;
+                chunkX = cx;
+                chunkZ = cz;
+            }
+            
+            Integer index = palette.get(previous);
+            if (index == null) {
+                index = paletteOrder.size();
+                palette.put(previous, index);
+                paletteOrder.add(previous);
+            }
+            
+            if (count == locals.length) {
+                locals = Arrays.copyOf(locals, count * 2);
+                indices = Arrays.copyOf(indices, count * 2);
+            }
+            locals[count] = localIndex(x, y, z);
+            indices[count] = index;
+            count++;
+            recorded++;
+        }
+        
+        /**
+         * Encode the current chunk and hand it to the writer thread
+         */
+        private void flushChunk() {
+            if (!chunkOpen || count == 0) {
+                return;
+            }
+            
+            try {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream(count * 2 + 64);
+                DataOutputStream data = new DataOutputStream(buffer);
+                data.writeByte(RECORD_CHUNK);
+                data.writeInt(chunkX);
+                data.writeInt(chunkZ);
+                
+                writeVarInt(data, paletteOrder.size());
+                for (BlockData state : paletteOrder) {
+                    data.writeUTF(state.getAsString());
+                }
+                
+                // Positions as zigzag deltas; mostly 1 when cells arrive in order
+                writeVarInt(data, count);
+                int previous = 0;
+                for (int i = 0; i < count; i++) {
+                    int delta = locals[i] - previous;
+                    writeVarInt(data, (delta << 1) ^ (delta >> 31));
+                    previous = locals[i];
+                }
+                
+                // Palette indices as (run length, index) pairs
+                int i = 0;
+                while (i < count) {
+                    int run = 1;
+                    while (i + run < count && indices[i + run] == indices[i]) {
+                        run++;
+                    }
+                    writeVarInt(data, run);
+                    writeVarInt(data, indices[i]);
+                    i += run;
+                }
+                
+                submit(buffer.toByteArray());
+            } catch (IOException e) {
+                writeError = e;
+            }
+            
+            palette.clear();
+            paletteOrder.clear();
+            count = 0;
+        }
+        
+        private void submit(byte[] bytes) {
+            ioThread.execute(() -> {
+                if (writeError != null) {
+                    return;
+                }
+                try {
+                    out.write(bytes);
+                } catch (IOException e) {
+                    writeError = e;
+                }
+            });
+        }
+        
+        /**
+         * Get the number of cells recorded
+         * @return Recorded cell count
+         */
+        public long getRecorded() {
+            return recorded;
+        }
+        
+        public File getFile() {
+            return file;
+        }
+        
+        /**
+         * Flush remaining records and move the journal into place
+         * Blocks until pending writes are done
+         * @throws IOException If the journal could not be written
+         */
+        @Override
+        public void close() throws IOException {
+            flushChunk();
+            submit(new byte[]{RECORD_END});
+            ioThread.execute(() -> {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    writeError = e;
+                }
+            });
+            ioThread.shutdown();
+            
+            boolean written;
+            try {
+                written = ioThread.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                written = false;
+            }
+            
+            // Never publish a journal the writer thread may still be writing
+            if (!written) {
+                ioThread.shutdownNow();
+                partFile.delete();
+                throw new IOException("Timed out writing journal " + file.getName());
+            }
+            if (writeError != null) {
+                partFile.delete();
+                throw writeError;
+            }
+            if (recorded == 0) {
+                partFile.delete();
+                return;
+            }
+            if (!partFile.renameTo(file)) {
+                throw new IOException("Could not move journal into place: " + file.getName());
+            }
+        }
+    }
+    
+    /**
+     * Reads a journal chunk record by chunk record
+     */
+    public static class Reader implements Closeable {
+        private final DataInputStream in;
+        private final UUID worldId;
+        private final String description;
+        
+        /**
+         * Open a journal for reading
+         * @param file The journal file
+         * @throws IOException If the file could not be read or is not a journal
+         */
+        public Reader(File file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+            
+            if (in.readInt() != MAGIC) {
+                in.close();
+                throw new IOException("Not an undo journal: " + file.getName());
+            }
+            this.worldId = new UUID(in.readLong(), in.readLong());
+            this.description = in.readUTF();
+        }
+        
+        /**
+         * Get the world the journal applies to
+         * @return The world, or null if it is not loaded
+         */
+        public World getWorld() {
+            return Bukkit.getWorld(worldId);
+        }
+        
+        public String getDescription() {
+            return description;
+        }
+        
+        /**
+         * Read the next chunk record
+         * @return The record, or null at the end of the journal
+         * @throws IOException If the journal is corrupt or truncated
+         */
+        public ChunkRecord next() throws IOException {
+            int type;
+            try {
+                type = in.readByte();
+            } catch (EOFException e) {
+                throw new IOException("Journal is truncated");
+            }
+            if (type == RECORD_END) {
+                return null;
+            }
+            if (type != RECORD_CHUNK) {
+                throw new IOException("Corrupt journal record");
+            }
+            
+            int chunkX = in.readInt();
+            int chunkZ = in.readInt();
+            
+            BlockData[] palette = new BlockData[readVarInt(in)];
+            for (int i = 0; i < palette.length; i++) {
+                palette[i] = Bukkit.createBlockData(in.readUTF());
+            }
+            
+            int count = readVarInt(in);
+            int[] locals = new int[count];
+            int previous = 0;
+            for (int i = 0; i < count; i++) {
+                int zigzag = readVarInt(in);
+                previous += (zigzag >>> 1) ^ -(zigzag & 1);
+                locals[i] = previous;
+            }
+            
+            BlockData[] states = new BlockData[count];
+            int filled = 0;
+            while (filled < count) {
+                int run = readVarInt(in);
+                BlockData state = palette[readVarInt(in)];
+                Arrays.fill(states, filled, filled + run, state);
+                filled += run;
+            }
+            
+            return new ChunkRecord(chunkX, chunkZ, locals, states);
+        }
+        
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+    
+    /**
+     * Previous block states of the changed cells in one chunk
+     */
+    public static class ChunkRecord {
+        private final int chunkX;
+        private final int chunkZ;
+        private final int[] locals;
+        private final BlockData[] states;
+        
+        public ChunkRecord(int chunkX, int chunkZ, int[] locals, BlockData[] states) {
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            this.locals = locals;
+            this.states = states;
+        }
+        
+        public int size() {
+            return locals.length;
+        }
+        
+        public int getX(int index) {
+            return (chunkX << 4) | (locals[index] & 15);
+        }
+        
+        public int getY(int index) {
+            return locals[index] >>> 8;
+        }
+        
+        public int getZ(int index) {
+            return (chunkZ << 4) | ((locals[index] >> 4) & 15);
+        }
+        
+        public BlockData getState(int index) {
+            return states[index];
+        }
+    }
+    
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+    
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
\ No newline at end of file
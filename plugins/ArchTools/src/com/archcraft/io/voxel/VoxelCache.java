@@ -0,0 +1,233 @@
+package com.archcraft.io.voxel;
+
+import org.bukkit.Material;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Content-addressed disk cache of voxelization results
+ * Entries are keyed by a hash of the model file (and the files it refers to), the import
+ * transform and the plugin version, so a repeated import can skip parsing and voxelizing.
+ * The cache is bounded in size and evicts the least recently used entries first.
+ */
+public class VoxelCache {
+    
+    private static final String EXTENSION = ".voxels";
+    private static final int MAGIC = 0x41435643; // "ACVC"
+    
+    // Most cells preallocated when loading an entry; larger models grow as they are read
+    private static final int MAX_INITIAL_CAPACITY = 1 << 20;
+    
+    private final File directory;
+    private final long maxBytes;
+    private final String version;
+    private final Logger logger;
+    
+    /**
+     * Create a voxel cache
+     * @param directory The cache directory
+     * @param maxBytes Max total size of the cache in bytes
+     * @param version Plugin version; entries from other versions are never matched
+     * @param logger Logger for cache errors
+     */
+    public VoxelCache(File directory, long maxBytes, String version, Logger logger) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.version = version;
+        this.logger = logger;
+        directory.mkdirs();
+    }
+    
+    /**
+     * Compute the cache key for an import
+     * Hashes the full file content, so call it off the main thread
+     * @param file The model file
+     * @param dependencies Files the import reads besides the model, such as material libraries
+     * @param transform The import transform
+     * @return Hex cache key
+     * @throws IOException If a file could not be read
+     */
+    public String computeKey(File file, List<File> dependencies, Transform transform) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 is not available", e);
+        }
+        
+        digest.update((version + "|" + transform + "|").getBytes("UTF-8"));
+        hashFile(digest, file);
+        for (File dependency : dependencies) {
+            digest.update(("|" + dependency.getName() + "|").getBytes("UTF-8"));
+            hashFile(digest, dependency);
+        }
+        
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest()) {
+            key.append(String.format("%02x", b));
+        }
+        return key.toString();
+    }
+    
+    private static void hashFile(MessageDigest digest, File file) throws IOException {
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream in = new FileInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+    }
+    
+    /**
+     * Load a cached voxel model
+     * @param key The cache key
+     * @return The cached model, or null on a miss
+     */
+    public VoxelModel get(String key) {
+        File file = new File(directory, key + EXTENSION);
+        if (!file.isFile()) {
+            return null;
+        }
+        
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new InflaterInputStream(new FileInputStream(file)), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a voxel cache entry");
+            }
+            
+            Material[] palette = new Material[in.readUnsignedShort()];
+            for (int i = 0; i < palette.length; i++) {
+                palette[i] = Material.matchMaterial(in.readUTF());
+                if (palette[i] == null) {
+                    // Entry refers to a block this server does not know
+                    file.delete();
+                    return null;
+                }
+            }
+            
+            int size = in.readInt();
+            if (size < 0) {
+                throw new IOException("Negative voxel count");
+            }
+            
+            // A corrupt count fails at the end of the data instead of allocating it up front
+            VoxelModel model = new VoxelModel(Math.min(size, MAX_INITIAL_CAPACITY));
+            for (int i = 0; i < size; i++) {
+                int x = in.readInt();
+                int y = in.readInt();
+                int z = in.readInt();
+                int index = in.readUnsignedShort();
+                if (index >= palette.length) {
+                    throw new IOException("Palette index out of range");
+                }
+                model.set(x, y, z, palette[index]);
+            }
+            
+            // Mark as recently used for eviction
+            file.setLastModified(System.currentTimeMillis());
+            return model;
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Discarding unreadable voxel cache entry " + file.getName(), e);
+            file.delete();
+            return null;
+        }
+    }
+    
+    /**
+     * Store a voxel model and evict old entries if the cache is over its size limit
+     * @param key The cache key
+     * @param model The voxelized model
+     */
+    public void put(String key, VoxelModel model) {
+        File file = new File(directory, key + EXTENSION);
+        Path partFile;
+        try {
+            // Each writer has its own part file, so concurrent imports of one model don't mix
+            partFile = Files.createTempFile(directory.toPath(), key, ".part");
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not write voxel cache entry " + file.getName(), e);
+            return;
+        }
+        
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new DeflaterOutputStream(Files.newOutputStream(partFile)), 1 << 16))) {
+            out.writeInt(MAGIC);
+            
+            List<Material> palette = model.getPalette();
+            out.writeShort(palette.size());
+            for (Material material : palette) {
+                out.writeUTF(material.name());
+            }
+            
+            out.writeInt(model.size());
+            for (int i = 0; i < model.size(); i++) {
+                out.writeInt(model.getX(i));
+                out.writeInt(model.getY(i));
+                out.writeInt(model.getZ(i));
+                out.writeShort(model.getPaletteIndex(i));
+            }
+            out.close();
+            
+            // Other threads only ever see complete entries
+            Files.move(partFile, file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not write voxel cache entry " + file.getName(), e);
+            try {
+                Files.deleteIfExists(partFile);
+            } catch (IOException ignored) {
+                // A leftover part file is never read; lookups only open finished entries
+            }
+            return;
+        }
+        
+        evict();
+    }
+    
+    /**
+     * Delete least recently used entries until the cache fits its size limit
+     */
+    private synchronized void evict() {
+        File[] entries = directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (entries == null) {
+            return;
+        }
+        
+        long total = 0;
+        for (File entry : entries) {
+            total += entry.length();
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+        
+        Arrays.sort(entries, Comparator.comparingLong(File::lastModified));
+        for (File entry : entries) {
+            if (total <= maxBytes) {
+                break;
+            }
+            total -= entry.length();
+            entry.delete();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,289 @@
+package com.archcraft.io.voxel;
+
+import org.bukkit.Material;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sparse voxel result of an import, relative to the import origin.
+ * Cells are stored in insertion order as packed coordinates plus a palette index,
+ * with an open-addressing hash table for duplicate detection (first write wins).
+ */
+public class VoxelModel {
+    
+    private static final int COORD_BITS = 21;
+    private static final long COORD_MASK = (1L << COORD_BITS) - 1;
+    
+    private long[] cells;
+    private short[] blocks;
+    private int[] table;
+    private int size;
+    
+    private final List<Material> palette = new ArrayList<>();
+    private final Map<Material, Integer> paletteIndex = new HashMap<>();
+    
+    private int minX = Integer.MAX_VALUE;
+    private int minY = Integer.MAX_VALUE;
+    private int minZ = Integer.MAX_VALUE;
+    private int maxX = Integer.MIN_VALUE;
+    private int maxY = Integer.MIN_VALUE;
+    private int maxZ = Integer.MIN_VALUE;
+    
+    /**
+     * Create an empty voxel model
+     */
+    public VoxelModel() {
+        this(1024);
+    }
+    
+    /**
+     * Create an empty voxel model
+     * @param expectedSize Expected number of cells
+     */
+    public VoxelModel(int expectedSize) {
+        int capacity = Math.max(16, expectedSize);
+        this.cells = new long[capacity];
+        this.blocks = new short[capacity];
+        this.table = new int[tableSizeFor(capacity)];
+    }
+    
+    /**
+     * Set a cell if it is not already occupied
+     * @param x X coordinate relative to the origin
+     * @param y Y coordinate relative to the origin
+     * @param z Z coordinate relative to the origin
+     * @param material The block material
+     * @return True if the cell was newly set
+     */
+    public boolean set(int x, int y, int z, Material material) {
+        long key = pack(x, y, z);
+        int mask = table.length - 1;
+        int slot = hash(key) & mask;
+        
+        while (table[slot] != 0) {
+            if (cells[table[slot] - 1] == key) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        
+        if (size == cells.length) {
+            cells = Arrays.copyOf(cells, size * 2);
+            blocks = Arrays.copyOf(blocks, size * 2);
+        }
+        
+        cells[size] = key;
+        blocks[size] = (short) paletteIndexOf(material);
+        size++;
+        table[slot] = size;
+        
+        minX = Math.min(minX, x);
+        minY = Math.min(minY, y);
+        minZ = Math.min(minZ, z);
+        maxX = Math.max(maxX, x);
+        maxY = Math.max(maxY, y);
+        maxZ = Math.max(maxZ, z);
+        
+        // Keep the load factor at or below 0.5
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        return true;
+    }
+    
+    /**
+     * Check whether a cell is occupied
+     * @param x X coordinate relative to the origin
+     * @param y Y coordinate relative to the origin
+     * @param z Z coordinate relative to the origin
+     * @return True if the cell is set
+     */
+    public boolean contains(int x, int y, int z) {
+        long key = pack(x, y, z);
+        int mask = table.length - 1;
+        int slot = hash(key) & mask;
+        
+        while (table[slot] != 0) {
+            if (cells[table[slot] - 1] == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+    
+    /**
+     * Get the number of cells
+     * @return Cell count
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Check if the model has no cells
+     * @return True if empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * Get the X coordinate of a cell
+     * @param index Cell index in insertion order
+     * @return X coordinate relative to the origin
+     */
+    public int getX(int index) {
+        return (int) ((cells[index] << 1) >> (1 + 2 * COORD_BITS));
+    }
+    
+    /**
+     * Get the Y coordinate of a cell
+     * @param index Cell index in insertion order
+     * @return Y coordinate relative to the origin
+     */
+    public int getY(int index) {
+        return (int) ((cells[index] << (64 - 2 * COORD_BITS)) >> (64 - COORD_BITS));
+    }
+    
+    /**
+     * Get the Z coordinate of a cell
+     * @param index Cell index in insertion order
+     * @return Z coordinate relative to the origin
+     */
+    public int getZ(int index) {
+        return (int) ((cells[index] << (64 - COORD_BITS)) >> (64 - COORD_BITS));
+    }
+    
+    /**
+     * Get the material of a cell
+     * @param index Cell index in insertion order
+     * @return The block material
+     */
+    public Material getMaterial(int index) {
+        return palette.get(blocks[index]);
+    }
+    
+    /**
+     * Get the palette index of a cell
+     * @param index Cell index in insertion order
+     * @return Index into {@link #getPalette()}
+     */
+    public int getPaletteIndex(int index) {
+        return blocks[index];
+    }
+    
+    /**
+     * Create a copy of this model rotated around the Y axis in quarter turns
+     * Uses the same convention as import rotation (x' = x cos + z sin, z' = -x sin + z cos)
+     * @param quarterTurns Number of 90 degree turns
+     * @return The rotated model
+     */
+    public VoxelModel rotated(int quarterTurns) {
+        int turns = quarterTurns & 3;
+        VoxelModel result = new VoxelModel(size);
+        
+        for (int i = 0; i < size; i++) {
+            int x = getX(i);
+            int z = getZ(i);
+            int rx;
+            int rz;
+            switch (turns) {
+                case 1:
+                    rx = z;
+                    rz = -x;
+                    break;
+                case 2:
+                    rx = -x;
+                    rz = -z;
+                    break;
+                case 3:
+                    rx = -z;
+                    rz = x;
+                    break;
+                default:
+                    rx = x;
+                    rz = z;
+                    break;
+            }
+            result.set(rx, getY(i), rz, getMaterial(i));
+        }
+        return result;
+    }
+    
+    /**
+     * Get the materials used by this model
+     * @return Palette of materials
+     */
+    public List<Material> getPalette() {
+        return palette;
+    }
+    
+    public int getMinX() {
+        return minX;
+    }
+    
+    public int getMinY() {
+        return minY;
+    }
+    
+    public int getMinZ() {
+        return minZ;
+    }
+    
+    public int getMaxX() {
+        return maxX;
+    }
+    
+    public int getMaxY() {
+        return maxY;
+    }
+    
+    public int getMaxZ() {
+        return maxZ;
+    }
+    
+    private int paletteIndexOf(Material material) {
+        Integer index = paletteIndex.get(material);
+        if (index == null) {
+            index = palette.size();
+            palette.add(material);
+            paletteIndex.put(material, index);
+        }
+        return index;
+    }
+    
+    private void rehash(int newTableSize) {
+        int[] newTable = new int[newTableSize];
+        int mask = newTableSize - 1;
+        
+        for (int i = 0; i < size; i++) {
+            int slot = hash(cells[i]) & mask;
+            while (newTable[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            newTable[slot] = i + 1;
+        }
+        table = newTable;
+    }
+    
+    private static long pack(int x, int y, int z) {
+        return ((x & COORD_MASK) << (2 * COORD_BITS))
+                | ((y & COORD_MASK) << COORD_BITS)
+                | (z & COORD_MASK);
+    }
+    
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+    
+    private static int tableSizeFor(int capacity) {
+        int n = Integer.highestOneBit(Math.max(capacity * 2 - 1, 16));
+        return n * 2;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,103 @@
+package com.archcraft.io.voxel;
+
+import org.bukkit.Material;
+
+/**
+ * Rasterizes transformed model geometry into a {@link VoxelModel}
+ * Coordinates are in blocks, relative to the import origin
+ */
+public class Voxelizer {
+    
+    private final VoxelModel model;
+    
+    /**
+     * Create a voxelizer writing into the given model
+     * @param model The model to fill
+     */
+    public Voxelizer(VoxelModel model) {
+        this.model = model;
+    }
+    
+    /**
+     * Rasterize the edges of a triangle
+     * @param x1 First vertex X
+     * @param y1 First vertex Y
+     * @param z1 First vertex Z
+     * @param x2 Second vertex X
+     * @param y2 Second vertex Y
+     * @param z2 Second vertex Z
+     * @param x3 Third vertex X
+     * @param y3 Third vertex Y
+     * @param z3 Third vertex Z
+     * @param material The material to use
+     */
+    public void addTriangle(double x1, double y1, double z1,
+                            double x2, double y2, double z2,
+                            double x3, double y3, double z3,
+                            Material material) {
+        addLine(x1, y1, z1, x2, y2, z2, material);
+        addLine(x2, y2, z2, x3, y3, z3, material);
+        addLine(x3, y3, z3, x1, y1, z1, material);
+    }
+    
+    /**
+     * Rasterize a line between two points in 3D space (Bresenham's algorithm)
+     * @param startX Start X
+     * @param startY Start Y
+     * @param startZ Start Z
+     * @param endX End X
+     * @param endY End Y
+     * @param endZ End Z
+     * @param material The material to use
+     */
+    public void addLine(double startX, double startY, double startZ,
+                        double endX, double endY, double endZ,
+                        Material material) {
+        int x1 = (int) Math.round(startX);
+        int y1 = (int) Math.round(startY);
+        int z1 = (int) Math.round(startZ);
+        
+        int x2 = (int) Math.round(endX);
+        int y2 = (int) Math.round(endY);
+        int z2 = (int) Math.round(endZ);
+        
+        int dx = Math.abs(x2 - x1);
+        int dy = Math.abs(y2 - y1);
+        int dz = Math.abs(z2 - z1);
+        
+        int sx = x1 < x2 ? 1 : -1;
+        int sy = y1 < y2 ? 1 : -1;
+        int sz = z1 < z2 ? 1 : -1;
+        
+        int dm = Math.max(dx, Math.max(dy, dz));
+        if (dm == 0) {
+            // Points are the same
+            model.set(x1, y1, z1, material);
+            return;
+        }
+        
+        // Normalize step size
+        double tx = (double) dx / dm;
+        double ty = (double) dy / dm;
+        double tz = (double) dz / dm;
+        
+        double x = x1;
+        double y = y1;
+        double z = z1;
+        
+        for (int i = 0; i <= dm; i++) {
+            model.set((int) Math.round(x), (int) Math.round(y), (int) Math.round(z), material);
+            x += tx * sx;
+            y += ty * sy;
+            z += tz * sz;
+        }
+    }
+    
+    /**
+     * Get the model being filled
+     * @return The voxel model
+     */
+    public VoxelModel getModel() {
+        return model;
+    }
+}
\ No newline at end of file
@@ -2,6 +2,7 @@ package com.archcraft.listeners;
 
 import com.archcraft.Main;
 import com.archcraft.tools.MeasurementTool;
+import com.archcraft.tools.PreviewTool;
 import com.archcraft.tools.ZoningTool;
 
 import org.bukkit.ChatColor;
@@ -102,5 +103,9 @@ public class PlayerInteractListener implements Listener {
         if (ZoningTool.isRegistered(player)) {
             ZoningTool.unregisterPlayer(player);
         }
+        
+        if (PreviewTool.isRegistered(player)) {
+            PreviewTool.unregisterPlayer(player);
+        }
     }
 }
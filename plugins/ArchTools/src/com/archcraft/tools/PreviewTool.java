@@ -0,0 +1,368 @@
+package com.archcraft.tools;
+
+import com.archcraft.Main;
+import com.archcraft.io.job.ImportJob;
+import com.archcraft.io.job.ModelJob;
+import com.archcraft.io.voxel.VoxelModel;
+
+import org.bukkit.ChatColor;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Tool for previewing imports before they are placed
+ * The voxelized model is sent to the importing player only, as fake block changes,
+ * so it can be moved or rotated and then confirmed or discarded without touching the world
+ */
+public class PreviewTool {
+    
+    private static final Map<UUID, PreviewSession> sessions = new HashMap<>();
+    
+    // Block used to outline models too large to preview block by block
+    private static final Material OUTLINE_MATERIAL = Material.LIME_STAINED_GLASS;
+    
+    /**
+     * Start previewing an import for a player
+     * @param player The importing player
+     * @param job The import job waiting for confirmation
+     * @param model The voxelized model
+     * @param origin The import origin
+     */
+    public static void startPreview(Player player, ImportJob job, VoxelModel model, Location origin) {
+        // Only one preview per player; replace any previous one
+        discard(player);
+        
+        PreviewSession session = new PreviewSession(player, job, model, origin);
+        sessions.put(player.getUniqueId(), session);
+        session.show();
+        
+        player.sendMessage(ChatColor.GREEN + "Previewing " + model.size() + " blocks"
+                + (session.outline ? " (outline only, model is too large to preview)" : ""));
+        player.sendMessage(ChatColor.GRAY + "/project preview move <dx> <dy> <dz> " + ChatColor.WHITE + "- Nudge the preview");
+        player.sendMessage(ChatColor.GRAY + "/project preview rotate [90|180|270] " + ChatColor.WHITE + "- Rotate the preview");
+        player.sendMessage(ChatColor.GRAY + "/project preview confirm " + ChatColor.WHITE + "- Place the model");
+        player.sendMessage(ChatColor.GRAY + "/project preview discard " + ChatColor.WHITE + "- Discard the preview");
+    }
+    
+    /**
+     * Check if a player has an active preview
+     * @param player The player to check
+     * @return True if previewing
+     */
+    public static boolean isRegistered(Player player) {
+        return sessions.containsKey(player.getUniqueId());
+    }
+    
+    /**
+     * Move a player's preview
+     * @param player The player
+     * @param dx X offset in blocks
+     * @param dy Y offset in blocks
+     * @param dz Z offset in blocks
+     */
+    public static void move(Player player, int dx, int dy, int dz) {
+        PreviewSession session = sessions.get(player.getUniqueId());
+        if (session == null) {
+            return;
+        }
+        
+        session.hide();
+        session.offsetX += dx;
+        session.offsetY += dy;
+        session.offsetZ += dz;
+        session.show();
+        
+        player.sendMessage(ChatColor.GREEN + "Preview moved to offset (" + session.offsetX + ", "
+                + session.offsetY + ", " + session.offsetZ + ")");
+    }
+    
+    /**
+     * Rotate a player's preview around the Y axis
+     * @param player The player
+     * @param degrees Rotation in degrees (multiple of 90)
+     */
+    public static void rotate(Player player, int degrees) {
+        PreviewSession session = sessions.get(player.getUniqueId());
+        if (session == null) {
+            return;
+        }
+        
+        session.hide();
+        session.quarterTurns = (session.quarterTurns + Math.floorDiv(degrees, 90)) & 3;
+        session.current = session.model.rotated(session.quarterTurns);
+        session.show();
+        
+        player.sendMessage(ChatColor.GREEN + "Preview rotated to " + (session.quarterTurns * 90) + " degrees");
+    }
+    
+    /**
+     * Place the previewed model in the world
+     * @param player The player
+     */
+    public static void confirm(Player player) {
+        PreviewSession session = sessions.remove(player.getUniqueId());
+        if (session == null) {
+            return;
+        }
+        
+        // Restore the client view; cells that get placed are resent with their real blocks anyway
+        session.hide();
+        session.job.place(session.current, session.getPlacementOrigin());
+    }
+    
+    /**
+     * Discard a player's preview without touching the world
+     * @param player The player
+     */
+    public static void discard(Player player) {
+        PreviewSession session = sessions.remove(player.getUniqueId());
+        if (session == null) {
+            return;
+        }
+        
+        session.hide();
+        session.job.finish(ModelJob.State.CANCELLED);
+        player.sendMessage(ChatColor.YELLOW + "Preview discarded");
+    }
+    
+    /**
+     * Drop a player's preview when they leave, without sending anything
+     * @param player The player to unregister
+     */
+    public static void unregisterPlayer(Player player) {
+        PreviewSession session = sessions.remove(player.getUniqueId());
+        if (session != null) {
+            session.sender.cancel();
+            session.job.finish(ModelJob.State.CANCELLED);
+        }
+    }
+    
+    /**
+     * A player's preview of a single import
+     */
+    private static class PreviewSession {
+        private final Player player;
+        private final ImportJob job;
+        private final VoxelModel model;
+        private final World world;
+        private final int originX;
+        private final int originY;
+        private final int originZ;
+        private final boolean outline;
+        private final ChangeSender sender;
+        
+        private VoxelModel current;
+        private int quarterTurns;
+        private int offsetX;
+        private int offsetY;
+        private int offsetZ;
+        
+        // World positions currently shown, grouped by chunk
+        private int[] shownX = new int[0];
+        private int[] shownY = new int[0];
+        private int[] shownZ = new int[0];
+        
+        PreviewSession(Player player, ImportJob job, VoxelModel model, Location origin) {
+            this.player = player;
+            this.job = job;
+            this.model = model;
+            this.current = model;
+            this.world = origin.getWorld();
+            this.originX = origin.getBlockX();
+            this.originY = origin.getBlockY();
+            this.originZ = origin.getBlockZ();
+            this.outline = model.size() > Main.getInstance().getConfigManager().getPreviewMaxBlocks();
+            this.sender = new ChangeSender(this, Main.getInstance().getConfigManager().getPreviewPacketsPerTick());
+            this.sender.runTaskTimer(Main.getInstance(), 1L, 1L);
+        }
+        
+        Location getPlacementOrigin() {
+            return new Location(world, originX + offsetX, originY + offsetY, originZ + offsetZ);
+        }
+        
+        /**
+         * Queue fake block changes for the current transform
+         */
+        void show() {
+            VoxelModel display = outline ? createOutline(current) : current;
+            int count = display.size();
+            int baseX = originX + offsetX;
+            int baseY = originY + offsetY;
+            int baseZ = originZ + offsetZ;
+            
+            // Sort cells by chunk so each chunk's changes go out together
+            long[] order = new long[count];
+            for (int i = 0; i < count; i++) {
+                int chunkX = (baseX + display.getX(i)) >> 4;
+                int chunkZ = (baseZ + display.getZ(i)) >> 4;
+                long chunkKey = ((long) (chunkX & 0xFFFF) << 16) | (chunkZ & 0xFFFF);
+                order[i] = (chunkKey << 32) | i;
+            }
+            Arrays.sort(order);
+            
+            List<Material> palette = display.getPalette();
+            BlockData[] paletteData = new BlockData[palette.size()];
+            for (int i = 0; i < paletteData.length; i++) {
+                paletteData[i] = palette.get(i).createBlockData();
+            }
+            
+            int maxHeight = world.getMaxHeight();
+            int[] xs = new int[count];
+            int[] ys = new int[count];
+            int[] zs = new int[count];
+            BlockData[] data = new BlockData[count];
+            int shown = 0;
+            
+            for (long entry : order) {
+                int i = (int) entry;
+                int y = baseY + display.getY(i);
+                if (y < 0 || y >= maxHeight) {
+                    continue;
+                }
+                xs[shown] = baseX + display.getX(i);
+                ys[shown] = y;
+                zs[shown] = baseZ + display.getZ(i);
+                data[shown] = paletteData[display.getPaletteIndex(i)];
+                shown++;
+            }
+            
+            shownX = Arrays.copyOf(xs, shown);
+            shownY = Arrays.copyOf(ys, shown);
+            shownZ = Arrays.copyOf(zs, shown);
+            sender.enqueue(new ChangeBatch(shownX, shownY, shownZ, Arrays.copyOf(data, shown)));
+        }
+        
+        /**
+         * Queue changes restoring the real blocks at the shown positions
+         */
+        void hide() {
+            if (shownX.length > 0) {
+                sender.enqueue(new ChangeBatch(shownX, shownY, shownZ, null));
+            }
+            shownX = new int[0];
+            shownY = new int[0];
+            shownZ = new int[0];
+        }
+        
+        /**
+         * Build a model holding only the edges of another model's bounding box
+         */
+        private static VoxelModel createOutline(VoxelModel source) {
+            VoxelModel result = new VoxelModel();
+            int minX = source.getMinX();
+            int minY = source.getMinY();
+            int minZ = source.getMinZ();
+            int maxX = source.getMaxX();
+            int maxY = source.getMaxY();
+            int maxZ = source.getMaxZ();
+            
+            for (int x = minX; x <= maxX; x++) {
+                result.set(x, minY, minZ, OUTLINE_MATERIAL);
+                result.set(x, minY, maxZ, OUTLINE_MATERIAL);
+                result.set(x, maxY, minZ, OUTLINE_MATERIAL);
+                result.set(x, maxY, maxZ, OUTLINE_MATERIAL);
+            }
+            for (int y = minY; y <= maxY; y++) {
+                result.set(minX, y, minZ, OUTLINE_MATERIAL);
+                result.set(minX, y, maxZ, OUTLINE_MATERIAL);
+                result.set(maxX, y, minZ, OUTLINE_MATERIAL);
+                result.set(maxX, y, maxZ, OUTLINE_MATERIAL);
+            }
+            for (int z = minZ; z <= maxZ; z++) {
+                result.set(minX, minY, z, OUTLINE_MATERIAL);
+                result.set(minX, maxY, z, OUTLINE_MATERIAL);
+                result.set(maxX, minY, z, OUTLINE_MATERIAL);
+                result.set(maxX, maxY, z, OUTLINE_MATERIAL);
+            }
+            return result;
+        }
+    }
+    
+    /**
+     * A run of block changes, ordered by chunk
+     * A null data array means "resend the real world blocks"
+     */
+    private static class ChangeBatch {
+        private final int[] xs;
+        private final int[] ys;
+        private final int[] zs;
+        private final BlockData[] data;
+        private int position;
+        
+        ChangeBatch(int[] xs, int[] ys, int[] zs, BlockData[] data) {
+            this.xs = xs;
+            this.ys = ys;
+            this.zs = zs;
+            this.data = data;
+        }
+    }
+    
+    /**
+     * Sends queued block changes to the player within a per-tick packet budget
+     * Keeps running after its session ends until the queue is drained
+     */
+    private static class ChangeSender extends BukkitRunnable {
+        private final PreviewSession session;
+        private final int packetsPerTick;
+        private final ArrayDeque<ChangeBatch> queue = new ArrayDeque<>();
+        
+        ChangeSender(PreviewSession session, int packetsPerTick) {
+            this.session = session;
+            this.packetsPerTick = Math.max(1, packetsPerTick);
+        }
+        
+        void enqueue(ChangeBatch batch) {
+            queue.add(batch);
+        }
+        
+        @Override
+        public void run() {
+            Player player = session.player;
+            boolean active = sessions.get(player.getUniqueId()) == session;
+            
+            if (!player.isOnline()) {
+                cancel();
+                return;
+            }
+            
+            // "/project cancel" on a previewing job discards the preview
+            if (active && session.job.isCancelled()) {
+                discard(player);
+                return;
+            }
+            
+            int budget = packetsPerTick;
+            while (budget > 0 && !queue.isEmpty()) {
+                ChangeBatch batch = queue.peek();
+                int end = Math.min(batch.xs.length, batch.position + budget);
+                
+                for (int i = batch.position; i < end; i++) {
+                    Location location = new Location(session.world, batch.xs[i], batch.ys[i], batch.zs[i]);
+                    BlockData data = batch.data != null ? batch.data[i] : location.getBlock().getBlockData();
+                    player.sendBlockChange(location, data);
+                }
+                
+                budget -= end - batch.position;
+                batch.position = end;
+                if (batch.position >= batch.xs.length) {
+                    queue.poll();
+                }
+            }
+            
+            if (!active && queue.isEmpty()) {
+                cancel();
+            }
+        }
+    }
+}
\ No newline at end of file
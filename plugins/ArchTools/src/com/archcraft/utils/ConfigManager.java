@@ -18,6 +18,39 @@ public class ConfigManager {
     private boolean resetAfterMeasurement = false;
     private int backupInterval = 30;
     
+    // Import settings
+    private int importWorkerThreads = 2;
+    private int importMaxJobsPerPlayer = 1;
+    private int jobsMaxQueuedPerPlayer = 5;
+    private int jobsMaxMemoryMb = 768;
+    private int importBlocksPerTick = 4096;
+    private int importTickBudgetMillis = 20;
+    
+    // Import preview settings
+    private int importMaxFileMb = 2048;
+    private long importMaxBlocks = 20000000;
+    private long importConfirmBlocks = 2000000;
+    private int importMaxMemoryMb = 1024;
+    private int previewMaxBlocks = 250000;
+    private int previewPacketsPerTick = 1024;
+    
+    // Voxel cache settings
+    private boolean cacheEnabled = true;
+    private int cacheMaxSizeMb = 512;
+    
+    // Undo settings
+    private int undoMaxJournals = 5;
+    
+    // Export settings
+    private int exportChunksPerTick = 16;
+    private int exportMeshThreads = 0;
+    private int exportMaxMemoryMb = 256;
+    private int exportMaxSeconds = 900;
+    private boolean exportNativeCompression = true;
+    private int exportCompressionThreads = 0;
+    private boolean exportMeshCacheEnabled = true;
+    private int exportMeshCacheMaxSizeMb = 1024;
+    
     /**
      * Create a new config manager
      * @param plugin The main plugin instance
@@ -38,6 +71,34 @@ public class ConfigManager {
         visualizeZones = config.getBoolean("visualize-zones", true);
         resetAfterMeasurement = config.getBoolean("reset-after-measurement", false);
         backupInterval = config.getInt("backup-interval", 30);
+        
+        importWorkerThreads = config.getInt("import.worker-threads", 2);
+        importMaxJobsPerPlayer = config.getInt("import.max-jobs-per-player", 1);
+        jobsMaxQueuedPerPlayer = config.getInt("jobs.max-queued-per-player", 5);
+        jobsMaxMemoryMb = config.getInt("jobs.max-memory-mb", 768);
+        importBlocksPerTick = config.getInt("import.blocks-per-tick", 4096);
+        importTickBudgetMillis = config.getInt("import.tick-budget-ms", 20);
+        
+        importMaxFileMb = config.getInt("import.limits.max-file-mb", 2048);
+        importMaxBlocks = config.getLong("import.limits.max-blocks", 20000000);
+        importConfirmBlocks = config.getLong("import.limits.confirm-blocks", 2000000);
+        importMaxMemoryMb = config.getInt("import.limits.max-memory-mb", 1024);
+        previewMaxBlocks = config.getInt("import.preview.max-blocks", 250000);
+        previewPacketsPerTick = config.getInt("import.preview.packets-per-tick", 1024);
+        
+        cacheEnabled = config.getBoolean("import.cache.enabled", true);
+        cacheMaxSizeMb = config.getInt("import.cache.max-size-mb", 512);
+        
+        undoMaxJournals = config.getInt("import.undo.max-journals-per-player", 5);
+        
+        exportChunksPerTick = config.getInt("export.chunks-per-tick", 16);
+        exportMeshThreads = config.getInt("export.mesh-threads", 0);
+        exportMaxMemoryMb = config.getInt("export.max-memory-mb", 256);
+        exportMaxSeconds = config.getInt("export.max-seconds", 900);
+        exportNativeCompression = config.getBoolean("export.native-compression", true);
+        exportCompressionThreads = config.getInt("export.compression-threads", 0);
+        exportMeshCacheEnabled = config.getBoolean("export.mesh-cache.enabled", true);
+        exportMeshCacheMaxSizeMb = config.getInt("export.mesh-cache.max-size-mb", 1024);
     }
     
     /**
@@ -123,4 +184,188 @@ public class ConfigManager {
         config.set("backup-interval", backupInterval);
         plugin.saveConfig();
     }
-}
+    
+    /**
+     * Get the number of worker threads for import and export jobs
+     * @return Worker thread count, which is also the number of jobs run at once
+     */
+    public int getImportWorkerThreads() {
+        return importWorkerThreads;
+    }
+    
+    /**
+     * Get the max number of jobs a player may run at once
+     * @return Max jobs per player (0 for unlimited)
+     */
+    public int getImportMaxJobsPerPlayer() {
+        return importMaxJobsPerPlayer;
+    }
+    
+    /**
+     * Get the max number of jobs a player may have waiting in the queue
+     * @return Max queued jobs per player (0 for unlimited)
+     */
+    public int getJobsMaxQueuedPerPlayer() {
+        return jobsMaxQueuedPerPlayer;
+    }
+    
+    /**
+     * Get the memory the estimates of all running jobs may add up to
+     * @return Memory budget in MB (0 for unlimited)
+     */
+    public int getJobsMaxMemoryMb() {
+        return jobsMaxMemoryMb;
+    }
+    
+    /**
+     * Get the max number of blocks placed per tick by imports
+     * @return Blocks per tick
+     */
+    public int getImportBlocksPerTick() {
+        return importBlocksPerTick;
+    }
+    
+    /**
+     * Get the max time spent placing blocks per tick
+     * @return Budget in milliseconds
+     */
+    public int getImportTickBudgetMillis() {
+        return importTickBudgetMillis;
+    }
+    
+    /**
+     * Get the file size above which imports are refused without reading the file
+     * @return Max file size in MB (0 for unlimited)
+     */
+    public int getImportMaxFileMb() {
+        return importMaxFileMb;
+    }
+    
+    /**
+     * Get the estimated block count above which imports are refused
+     * @return Max blocks (0 for unlimited)
+     */
+    public long getImportMaxBlocks() {
+        return importMaxBlocks;
+    }
+    
+    /**
+     * Get the estimated block count above which imports need --confirm
+     * @return Blocks needing confirmation (0 to never ask)
+     */
+    public long getImportConfirmBlocks() {
+        return importConfirmBlocks;
+    }
+    
+    /**
+     * Get the estimated memory above which imports are refused
+     * @return Max memory in MB (0 for unlimited)
+     */
+    public int getImportMaxMemoryMb() {
+        return importMaxMemoryMb;
+    }
+    
+    /**
+     * Get the max number of blocks shown in an import preview before falling back to an outline
+     * @return Max preview blocks
+     */
+    public int getPreviewMaxBlocks() {
+        return previewMaxBlocks;
+    }
+    
+    /**
+     * Get the max number of preview block changes sent to a player per tick
+     * @return Packets per tick
+     */
+    public int getPreviewPacketsPerTick() {
+        return previewPacketsPerTick;
+    }
+    
+    /**
+     * Check if voxelized imports are cached on disk
+     * @return True if the voxel cache is enabled
+     */
+    public boolean isCacheEnabled() {
+        return cacheEnabled;
+    }
+    
+    /**
+     * Get the max total size of the voxel cache
+     * @return Max cache size in megabytes
+     */
+    public int getCacheMaxSizeMb() {
+        return cacheMaxSizeMb;
+    }
+    
+    /**
+     * Get the max number of undo journals kept per player
+     * @return Max journals per player
+     */
+    public int getUndoMaxJournals() {
+        return undoMaxJournals;
+    }
+    
+    /**
+     * Get the max number of chunks snapshotted per tick for exports
+     * @return Chunks per tick
+     */
+    public int getExportChunksPerTick() {
+        return exportChunksPerTick;
+    }
+    
+    /**
+     * Get the number of threads used to mesh exports
+     * @return Mesh threads, or 0 for one per CPU core
+     */
+    public int getExportMeshThreads() {
+        return exportMeshThreads;
+    }
+    
+    /**
+     * Get the memory an export may use at once
+     * @return Memory budget in megabytes
+     */
+    public int getExportMaxMemoryMb() {
+        return exportMaxMemoryMb;
+    }
+    
+    /**
+     * Get the longest an export is estimated to take before it is refused
+     * @return Max estimated duration in seconds
+     */
+    public int getExportMaxSeconds() {
+        return exportMaxSeconds;
+    }
+    
+    /**
+     * Check whether native format exports deflate their sections
+     * @return True to compress sections
+     */
+    public boolean isExportNativeCompression() {
+        return exportNativeCompression;
+    }
+    
+    /**
+     * Get the number of threads used to gzip compressed exports
+     * @return Compression threads, or 0 for one per CPU core
+     */
+    public int getExportCompressionThreads() {
+        return exportCompressionThreads;
+    }
+    
+    /**
+     * Check whether exports reuse the meshes of unchanged chunks from earlier exports
+     * @return True if the mesh cache is enabled
+     */
+    public boolean isExportMeshCacheEnabled() {
+        return exportMeshCacheEnabled;
+    }
+    
+    /**
+     * Get the disk space the mesh cache may use before old regions are dropped
+     * @return Max cache size in MB
+     */
+    public int getExportMeshCacheMaxSizeMb() {
+        return exportMeshCacheMaxSizeMb;
+    }
+}
\ No newline at end of file